@@ -0,0 +1,80 @@
+package io.github.ihongs.bench;
+
+import io.github.ihongs.util.Dawn;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JSON 解析与序列化
+ * @author Hongs
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DawnBench {
+
+    /**
+     * 列表行数, 模拟一页查询结果
+     */
+    @Param({"1", "20", "500"})
+    public int rows;
+
+    private Map    data;
+    private String text;
+
+    @Setup
+    public void setup() {
+        List list = new ArrayList(rows);
+        for (int i = 0; i < rows; i ++) {
+            Map row = new LinkedHashMap();
+            row.put("id"   , "ID" + i);
+            row.put("name" , "名称 \"" + i + "\"\n\t<b>");
+            row.put("state", i % 3);
+            row.put("price", i * 1.25D);
+            row.put("ctime", 1500000000000L + i);
+            row.put("tags" , new String[] {"a", "b", "c"});
+            list.add(row);
+        }
+        Map page = new LinkedHashMap();
+        page.put("pn", 1);
+        page.put("rn", rows);
+        page.put("count", rows);
+        data = new LinkedHashMap();
+        data.put("list", list);
+        data.put("page", page);
+        text = Dawn.toString(data, true);
+    }
+
+    @Benchmark
+    public String toStringCompact() {
+        return Dawn.toString(data, true );
+    }
+
+    @Benchmark
+    public String toStringPretty() {
+        return Dawn.toString(data, false);
+    }
+
+    @Benchmark
+    public Object toObject() {
+        return Dawn.toObject(text);
+    }
+
+}
@@ -0,0 +1,103 @@
+package io.github.ihongs.bench;
+
+import io.github.ihongs.util.Dawn;
+import io.github.ihongs.util.Delta;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 历史快照的差异存储
+ *
+ * <p>
+ * 模拟宽表单的修改历史, 每个版本改动两个字段;
+ * 对比读取完整 JSON, 压缩快照, 和经差异链还原的耗时.
+ * setup 时输出各方式的存储字符数.
+ * </p>
+ *
+ * @author Hongs
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DeltaBench {
+
+    /**
+     * 差异链深度, 即需还原的版本数
+     */
+    @Param({"1", "8", "16"})
+    public int depth;
+
+    /**
+     * 表单字段数
+     */
+    @Param({"20", "100"})
+    public int width;
+
+    private String       plain;
+    private String       frame;
+    private List<String> delta;
+
+    @Setup
+    public void setup() {
+        List<Map> rs = new ArrayList(depth + 1);
+        for (int v = 0; v <= depth; v ++) {
+            Map row = new LinkedHashMap();
+            for (int i = 0; i < width; i ++) {
+                row.put("f" + i, "字段 " + i + " 的取值, 一段不算太短的文本");
+            }
+            row.put("f" + (v % width), "版本 " + v + " 修改的取值");
+            row.put("mtime", 1500000000L + v);
+            rs.add((Map) Dawn.toObject(Dawn.toString(row, true)));
+        }
+
+        // rs[0] 为最旧版本, rs[depth] 为当前版本
+        plain = Dawn.toString(rs.get(depth), true);
+        frame = Delta.pack(rs.get(0));
+        delta = new ArrayList(depth);
+        long fs = 0, ds = 0;
+        for (int v = 0; v < depth; v ++) {
+            String d = Delta.pack(Delta.diff(rs.get(v + 1), rs.get(v)));
+            fs += Dawn.toString(rs.get(v), true).length();
+            ds += d.length();
+            delta.add(d);
+        }
+        System.out.println("\nHistory chars: full " + fs + ", delta " + ds + ", keyframe " + frame.length() + " vs " + Dawn.toString(rs.get(0), true).length());
+    }
+
+    @Benchmark
+    public Object readPlain() {
+        return Dawn.toObject(plain);
+    }
+
+    @Benchmark
+    public Object readFrame() {
+        return Delta.unpack(frame);
+    }
+
+    @Benchmark
+    public Object readDelta() {
+        Map dd = (Map) Dawn.toObject(plain);
+        for (int i = depth - 1; i > -1; i --) {
+            Delta.patch(dd, (List) Delta.unpack(delta.get(i)));
+        }
+        return dd;
+    }
+
+}
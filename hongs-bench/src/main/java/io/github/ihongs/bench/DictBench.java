@@ -0,0 +1,60 @@
+package io.github.ihongs.bench;
+
+import io.github.ihongs.util.Dict;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 键路径解析及取值设值
+ * @author Hongs
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DictBench {
+
+    @Param({"a", "a.b.c", "a.b[c]:d.:e[:f][]", "x[y][z].w.v.u[t]"})
+    public String path;
+
+    private Map data;
+
+    @Setup
+    public void setup() {
+        data = new HashMap();
+        Dict.setParam(data, 1, "a.b.c");
+        Dict.setParam(data, 2, "x.y.z.w.v.u.t");
+    }
+
+    @Benchmark
+    public Object[] splitKeys() {
+        return Dict.splitKeys(path);
+    }
+
+    @Benchmark
+    public Map setParam() {
+        Map m = new HashMap();
+        Dict.setParam(m, 1, path);
+        return m;
+    }
+
+    @Benchmark
+    public Object getParam() {
+        return Dict.getParam(data, path);
+    }
+
+}
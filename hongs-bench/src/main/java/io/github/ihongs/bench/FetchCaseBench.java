@@ -0,0 +1,71 @@
+package io.github.ihongs.bench;
+
+import io.github.ihongs.db.util.FetchCase;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 查询结构体构建语句
+ * @author Hongs
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FetchCaseBench {
+
+    /**
+     * 单表, 常见的列表查询
+     */
+    @Benchmark
+    public String simple() {
+        return new FetchCase(FetchCase.CLEVER)
+            .from   ("a_member_user", "user")
+            .select ("id, name, email, state, ctime")
+            .filter ("state > ? AND dept_id IN (?)", 0, new Object[] {"1", "2", "3"})
+            .assort ("ctime DESC")
+            .limit  (0, 20)
+            .getSQL ();
+    }
+
+    /**
+     * 带关联及函数的查询, 需解析并补全字段层名
+     */
+    @Benchmark
+    public String joined() {
+        return joinedCase().getSQL();
+    }
+
+    /**
+     * 同上, 但每次清空语句模板缓存, 对比缓存前的开销
+     */
+    @Benchmark
+    public String joinedBuild() {
+        FetchCase.clearSQL();
+        return joinedCase().getSQL();
+    }
+
+    private static FetchCase joinedCase() {
+        return new FetchCase(FetchCase.CLEVER)
+            .from   ("table1", "t1")
+            .select ("f1, `f2` , t1.f3, t1.`f4` , `t1`.f5, `t1`.`f6`")
+            .select ("CONCAT(f1, `f2`, t1.f3, 12.3, 'ab.c', COUNT(*), COUNT(DISTINCT f1)) AS c1")
+            .filter ("f1 = ? AND f2 IN (?) AND `f3` LIKE ?", 123, 456, "abc")
+            .assort ("`f1`, f2 DESC")
+            .join   ("table2", "t2").on("`t1_id` = :`id`")
+            .select ("f1, `f2` , t2.f3, t2.`f4` , `t2`.f5, `t2`.`f6`")
+            .filter ("f1 = ? AND f2 IN (?) AND `f3` LIKE ?", 123, 456, "abc")
+            .assort ("`f1`, f2 DESC");
+    }
+
+}
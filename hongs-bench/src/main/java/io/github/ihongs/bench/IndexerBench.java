@@ -0,0 +1,116 @@
+package io.github.ihongs.bench;
+
+import io.github.ihongs.util.reflex.Classes;
+import io.github.ihongs.util.reflex.Indexer;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 启动时查找动作类, 读索引与扫描 jar 对比
+ * @author Hongs
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IndexerBench {
+
+    private static final int JARS = 60;
+    private static final int CLSS = 500;
+
+    private File path;
+    private URLClassLoader scan;
+    private URLClassLoader indx;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        path = Files.createTempDirectory("bench").toFile();
+        URL[] su = new URL[JARS];
+        URL[] iu = new URL[JARS];
+        for (int i = 0; i < JARS; i ++) {
+            su[i] = make(new File(path, "s" + i + ".jar"), "test.scan.p" + i, false).toURI().toURL();
+            iu[i] = make(new File(path, "i" + i + ".jar"), "test.indx.p" + i, true ).toURI().toURL();
+        }
+        scan = new URLClassLoader(su, null);
+        indx = new URLClassLoader(iu, null);
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws IOException {
+        scan.close();
+        indx.close();
+        Files.walk(path.toPath())
+             .sorted(Comparator.reverseOrder())
+             .map(Path::toFile)
+             .forEach(File::delete);
+    }
+
+    @Benchmark
+    public Set<String> scan() throws IOException {
+        return find(scan, "test.scan");
+    }
+
+    @Benchmark
+    public Set<String> index() throws IOException {
+        return find(indx, "test.indx");
+    }
+
+    private static Set<String> find(ClassLoader ld, String pkgn) throws IOException {
+        ClassLoader cl = Thread.currentThread().getContextClassLoader();
+        try {
+            Thread.currentThread().setContextClassLoader(ld);
+            return Classes.getClassNames(pkgn, true, Indexer.ACTIONS_IDX, Indexer.CMDLETS_IDX);
+        } finally {
+            Thread.currentThread().setContextClassLoader(cl);
+        }
+    }
+
+    /**
+     * 构建仅含空类文件的 jar, 扫描只看条目名, 无需真实的类
+     */
+    private static File make(File file, String pkgn, boolean index) throws IOException {
+        String path = pkgn.replace('.', '/');
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(file))) {
+            for (int i = path.indexOf('/'); i > 0; i = path.indexOf('/', i + 1)) {
+                out.putNextEntry(new JarEntry(path.substring(0, i) + "/"));
+            }
+            out.putNextEntry(new JarEntry(path + "/"));
+            for (int i = 0; i < CLSS; i ++) {
+                out.putNextEntry(new JarEntry(path + "/Act" + i + ".class"));
+                out.write(new byte[] {(byte) 0xca, (byte) 0xfe, (byte) 0xba, (byte) 0xbe});
+            }
+            if (index) {
+                out.putNextEntry(new JarEntry(Indexer.ACTIONS_IDX));
+                out.write((pkgn + ".Act0\n").getBytes(StandardCharsets.UTF_8));
+                out.putNextEntry(new JarEntry(Indexer.CMDLETS_IDX));
+            }
+        }
+        return file;
+    }
+
+}
@@ -0,0 +1,76 @@
+package io.github.ihongs.bench;
+
+import io.github.ihongs.CoreRoster.Invoker;
+import io.github.ihongs.CoreRoster.Mathod;
+import io.github.ihongs.HongsException;
+import io.github.ihongs.action.ActionHelper;
+import io.github.ihongs.action.anno.CommitSuccess;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 动作方法调用, 编译绑定与反射方式对比
+ * @author Hongs
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InvokerBench {
+
+    private Acts    acts;
+    private Method  method;
+    private Invoker compiled;
+    private Invoker reflects;
+
+    @Setup
+    public void setup() throws NoSuchMethodException {
+        acts     = new Acts();
+        method   = Acts.class.getMethod("count", ActionHelper.class);
+        compiled = new Mathod(method, Acts.class, true ).getInvoker();
+        reflects = new Mathod(method, Acts.class, false).getInvoker();
+    }
+
+    @Benchmark
+    public int compiled() throws HongsException {
+        compiled.invoke(acts, null);
+        return acts.count;
+    }
+
+    @Benchmark
+    public int reflects() throws HongsException {
+        reflects.invoke(acts, null);
+        return acts.count;
+    }
+
+    @Benchmark
+    public int methodInvoke() throws ReflectiveOperationException {
+        method.invoke(acts, (ActionHelper) null);
+        return acts.count;
+    }
+
+    /**
+     * 不加 Action 注解, 以免进入动作索引
+     */
+    public static class Acts {
+        public int count = 0;
+
+        @CommitSuccess
+        public void count(ActionHelper helper) {
+            count ++;
+        }
+    }
+
+}
@@ -0,0 +1,68 @@
+package io.github.ihongs.bench;
+
+import io.github.ihongs.HongsException;
+import io.github.ihongs.db.link.Link;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 语句参数展开, 主要是 IN (?) 的大列表
+ * @author Hongs
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LinkBench {
+
+    private static final String SQL = "SELECT * FROM `a_member_user` WHERE `state` > ? AND `id` IN (?) AND `dept_id` IN (?) ORDER BY `ctime` DESC";
+
+    @Param({"10", "1000", "10000"})
+    public int size;
+
+    private List ids;
+    private List dps;
+
+    @Setup
+    public void setup() {
+        ids = new ArrayList(size);
+        dps = new ArrayList(size);
+        for (int i = 0; i < size; i ++) {
+            ids.add("ID" + i);
+            dps.add(i);
+        }
+    }
+
+    @Benchmark
+    public StringBuilder checkSQLParams() throws HongsException {
+        StringBuilder sql = new StringBuilder(SQL);
+        List params = new ArrayList(Arrays.asList(0, ids, dps));
+        Link.checkSQLParams(sql, params);
+        return sql;
+    }
+
+    @Benchmark
+    public StringBuilder mergeSQLParams() throws HongsException {
+        StringBuilder sql = new StringBuilder(SQL);
+        List params = new ArrayList(Arrays.asList(0, ids, dps));
+        Link.checkSQLParams(sql, params);
+        Link.mergeSQLParams(sql, params);
+        return sql;
+    }
+
+}
@@ -0,0 +1,82 @@
+package io.github.ihongs.bench;
+
+import io.github.ihongs.HongsException;
+import io.github.ihongs.db.link.Link;
+import io.github.ihongs.db.link.Loop;
+import io.github.ihongs.db.link.Simple;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * 查询结果逐行转为 Map, 使用嵌入的 SQLite
+ * @author Hongs
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoopBench {
+
+    private static final int COUNT = 10000;
+
+    @Param({"20", "1000"})
+    public int rows;
+
+    private File file;
+    private Link link;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, HongsException {
+        file = Files.createTempFile("bench", ".db").toFile();
+        link = new Simple("org.sqlite.JDBC", "jdbc:sqlite:" + file.getAbsolutePath());
+        link.execute("CREATE TABLE `bench_row` (`id` CHAR(16) PRIMARY KEY, `name` VARCHAR(100), `state` TINYINT, `price` DECIMAL(10,2), `ctime` BIGINT)");
+        link.execute("BEGIN");
+        for (int i = 0; i < COUNT; i ++) {
+            link.execute("INSERT INTO `bench_row` VALUES (?, ?, ?, ?, ?)",
+                String.format("ID%014d", i), "Name " + i, i % 3, i * 1.25D, 1500000000000L + i);
+        }
+        link.execute("COMMIT");
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        link.close();
+        file.delete();
+    }
+
+    @Benchmark
+    public List fetch() throws HongsException {
+        return link.fetch("SELECT * FROM `bench_row` WHERE `state` >= ?", 0, rows, 0);
+    }
+
+    @Benchmark
+    public void query(Blackhole bh) throws HongsException {
+        try (Loop lp = link.query("SELECT * FROM `bench_row` WHERE `state` >= ?", 0, rows, 0)) {
+            Map row;
+            while ((row = lp.next()) != null) {
+                bh.consume(row);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,118 @@
+package io.github.ihongs.bench;
+
+import io.github.ihongs.Cnst;
+import io.github.ihongs.Core;
+import io.github.ihongs.HongsException;
+import io.github.ihongs.dh.lucene.LuceneRecord;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 索引库查询, 使用临时生成的索引
+ * @author Hongs
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LuceneBench {
+
+    private static final int COUNT = 20000;
+
+    private File path;
+    private LuceneRecord that;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, HongsException {
+        Map form = new LinkedHashMap();
+        form.put("@", field(null, "listable", "@all"));
+        form.put(Cnst.ID_KEY, field(Cnst.ID_KEY, "__type__", "string", "sortable", true, "findable", true));
+        form.put("name" , field("name" , "__type__", "string", "findable", true));
+        form.put("state", field("state", "__type__", "int"   , "findable", true, "sortable", true));
+        form.put("ctime", field("ctime", "__type__", "long"  , "findable", true, "sortable", true));
+
+        // 表单类型配置会缓存到数据目录, 避免写到当前目录下
+        path = Files.createTempDirectory("bench").toFile();
+        Core.DATA_PATH = path.getAbsolutePath();
+
+        that = new LuceneRecord(form, path.getAbsolutePath() + "/lucene/bench", "bench");
+        that.begin();
+        for (int i = 0; i < COUNT; i ++) {
+            Map row = new HashMap();
+            row.put("name" , "Name " + (i % 100));
+            row.put("state", i % 3);
+            row.put("ctime", 1500000000000L + i);
+            that.add(row);
+        }
+        that.commit();
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws IOException {
+        that.close();
+        Files.walk(path.toPath())
+             .sorted(Comparator.reverseOrder())
+             .map(Path::toFile)
+             .forEach(File::delete);
+    }
+
+    /**
+     * 分页列表, 含总数
+     */
+    @Benchmark
+    public Map list() throws HongsException {
+        Map rd = new HashMap();
+        rd.put("state", 1);
+        rd.put(Cnst.OB_KEY, "-ctime");
+        rd.put(Cnst.RN_KEY, 20);
+        rd.put(Cnst.PN_KEY, 10);
+        return that.search(rd);
+    }
+
+    /**
+     * 区间查询
+     */
+    @Benchmark
+    public Map range() throws HongsException {
+        Map rc = new HashMap();
+        rc.put(Cnst.GE_REL, 1500000005000L);
+        rc.put(Cnst.LT_REL, 1500000006000L);
+        Map rd = new HashMap();
+        rd.put("ctime", rc);
+        rd.put(Cnst.RN_KEY, 20);
+        return that.search(rd);
+    }
+
+    private static Map field(String name, Object... kvs) {
+        Map m = new HashMap();
+        if (name != null) {
+            m.put("__name__", name);
+        }
+        for (int i = 0; i < kvs.length; i += 2) {
+            m.put(kvs[i], kvs[i + 1]);
+        }
+        return m;
+    }
+
+}
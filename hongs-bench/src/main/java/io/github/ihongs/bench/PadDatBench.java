@@ -0,0 +1,137 @@
+package io.github.ihongs.bench;
+
+import io.github.ihongs.Cnst;
+import io.github.ihongs.Core;
+import io.github.ihongs.HongsException;
+import io.github.ihongs.dh.lucene.LuceneRecord;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 宽文档的字段读取
+ *
+ * <p>
+ * 对比列表只取少数字段与取全部字段的耗时,
+ * 分配量需加 -prof gc 查看 gc.alloc.rate.norm.
+ * </p>
+ *
+ * @author Hongs
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PadDatBench {
+
+    private static final int COUNT = 2000;
+
+    /**
+     * 表单字段数
+     */
+    @Param({"20", "100"})
+    public int width;
+
+    private File path;
+    private LuceneRecord that;
+    private Set  most;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, HongsException {
+        Map form = new LinkedHashMap();
+        form.put("@", field(null, "listable", "@all"));
+        form.put(Cnst.ID_KEY, field(Cnst.ID_KEY, "__type__", "string", "sortable", true, "findable", true));
+        form.put("ctime", field("ctime", "__type__", "long", "sortable", true));
+        for (int i = 0; i < width; i ++) {
+            form.put("f" + i, field("f" + i, "__type__", i % 4 == 0 ? "int" : "string"));
+        }
+        most = new LinkedHashSet(form.keySet());
+        most.remove("@");
+
+        // 表单类型配置会缓存到数据目录, 避免写到当前目录下
+        path = Files.createTempDirectory("bench").toFile();
+        Core.DATA_PATH = path.getAbsolutePath();
+
+        that = new LuceneRecord(form, path.getAbsolutePath() + "/lucene/bench", "bench");
+        that.begin();
+        for (int i = 0; i < COUNT; i ++) {
+            Map row = new HashMap();
+            row.put("ctime", 1500000000000L + i);
+            for (int j = 0; j < width; j ++) {
+                row.put("f" + j, j % 4 == 0 ? i + j : "字段 " + j + " 的取值, 一段不算太短的文本 " + i);
+            }
+            that.add(row);
+        }
+        that.commit();
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws IOException {
+        that.close();
+        Files.walk(path.toPath())
+             .sorted(Comparator.reverseOrder())
+             .map(Path::toFile)
+             .forEach(File::delete);
+    }
+
+    /**
+     * 列表仅取三个字段
+     */
+    @Benchmark
+    public Map few() throws HongsException {
+        Map rd = new HashMap();
+        rd.put(Cnst.OB_KEY, "-ctime");
+        rd.put(Cnst.RB_KEY, "id,ctime,f1");
+        rd.put(Cnst.RN_KEY, 20);
+        rd.put(Cnst.PN_KEY, 5 );
+        return that.search(rd);
+    }
+
+    /**
+     * 列表取全部字段
+     */
+    @Benchmark
+    public Map all() throws HongsException {
+        Map rd = new HashMap();
+        rd.put(Cnst.OB_KEY, "-ctime");
+        rd.put(Cnst.RB_KEY, most);
+        rd.put(Cnst.RN_KEY, 20);
+        rd.put(Cnst.PN_KEY, 5 );
+        return that.search(rd);
+    }
+
+    private static Map field(String name, Object... kvs) {
+        Map m = new HashMap();
+        if (name != null) {
+            m.put("__name__", name);
+        }
+        for (int i = 0; i < kvs.length; i += 2) {
+            m.put(kvs[i], kvs[i + 1]);
+        }
+        return m;
+    }
+
+}
@@ -36,6 +36,8 @@ public final class Cnst {
 
     public static final String RN_KEY =  "rn"; // 每页行数  (Rows num)
 
+    public static final String CS_KEY =  "cs"; // 分页游标  (Cursor)
+
     public static final String OB_KEY =  "ob"; // 排序字段  (Order by)
 
     public static final String RB_KEY =  "rb"; // 应答字段  (Reply with)
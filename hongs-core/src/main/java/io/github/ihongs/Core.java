@@ -1,13 +1,24 @@
 package io.github.ihongs;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.util.Map;
+import java.util.Set;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.TimeZone;
+import java.util.Collection;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 import java.util.function.Supplier;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ThreadLocalRandom;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 核心类
@@ -26,7 +37,7 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
  * 实例在单一线程内使用并没有什么问题,
  * 如果跨线程使用则可能有线程安全问题;
  * GLOBAL_CORE 用于存放全局对象和参数,
- * 对读写等过程有加锁, 但仍需小心对待.
+ * 读写无全局锁, 缺失时按键构建, 同键仅构建一次, 但仍需小心对待.
  * Cleanable,Singleton 类别放入非全局.
  * </p>
  *
@@ -50,6 +61,7 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
  * 0x826 禁止访问工厂方法
  * 0x827 无法执行工厂方法
  * 0x828 执行构造方法失败
+ * 0x829 循环构建全局实例
  * </pre>
  *
  * @author Hongs
@@ -198,71 +210,58 @@ abstract public class Core
 
   public static final <T>T newInstance(Class<T> clas)
   {
-    try
+    Maker maker = MAKERS.get(clas);
+    if (maker.error != null)
     {
-      // 获取工厂方法
-      java.lang.reflect.Method method;
-      method =  clas.getMethod("getInstance", new Class [] {});
-
-      // 获取工厂对象
-      try
-      {
-        return  ( T )   method.invoke( null , new Object[] {});
-      }
-      catch (IllegalAccessException ex)
-      {
-        throw new HongsExemption(0x827, "Can not build "+clas.getName(), ex);
-      }
-      catch (IllegalArgumentException ex)
-      {
-        throw new HongsExemption(0x827, "Can not build "+clas.getName(), ex);
-      }
-      catch (java.lang.reflect.InvocationTargetException  ex )
-      {
-        Throwable ta = ex.getCause();
-
-        // 调用层级过多, 最好直接抛出
-        if (ta instanceof StackOverflowError)
-        {
-            throw ( StackOverflowError ) ta ;
-        }
+        throw new HongsExemption(maker.errno, "Can not build "+clas.getName(), maker.error);
+    }
 
-        throw new HongsExemption(0x827, "Can not build "+clas.getName(), ta);
-      }
+    try
+    {
+      return (T) maker.maker.invoke();
     }
-    catch (NoSuchMethodException ez)
+    catch (StackOverflowError ta)
     {
-      // 获取标准对象
-      try
-      {
-        return clas.newInstance();
-      }
-      catch (IllegalAccessException ex)
-      {
-        throw new HongsExemption(0x828, "Can not build "+clas.getName(), ex);
-      }
-      catch (InstantiationException ex)
+      // 调用层级过多, 最好直接抛出
+      throw ta;
+    }
+    catch (Throwable ta)
+    {
+      // 构造方法抛出的非检查异常原样抛出, 同 Class.newInstance
+      if (maker.errno == 0x828)
       {
-        Throwable ta = ex.getCause();
-
-        // 调用层级过多, 最好直接抛出
-        if (ta instanceof StackOverflowError)
+        if (ta instanceof RuntimeException)
         {
-            throw ( StackOverflowError ) ta ;
+          throw ( RuntimeException ) ta ;
+        }
+        if (ta instanceof Error)
+        {
+          throw ( Error ) ta ;
         }
-
-        throw new HongsExemption(0x828, "Can not build "+clas.getName(), ex);
       }
-    }
-    catch (SecurityException se)
-    {
-        throw new HongsExemption(0x826, "Can not build "+clas.getName(), se);
+
+      throw new HongsExemption(maker.errno, "Can not build "+clas.getName(), ta);
     }
   }
 
   public static final Object newInstance(String name)
   {
-    Class klass;
+    return newInstance(forName(name));
+  }
+
+  /**
+   * 按名获取类
+   * 已加载的类会缓存, 避免重复调用 Class.forName
+   * @param name
+   * @return
+   */
+  private static Class<?> forName(String name)
+  {
+    Class<?> klass = CLASSES.get(name);
+    if (klass != null)
+    {
+      return klass;
+    }
 
     // 获取类
     try
@@ -274,7 +273,72 @@ abstract public class Core
       throw new HongsExemption(0x825, "Can not find class by name '" + name + "'.");
     }
 
-    return newInstance(klass);
+    CLASSES.put(name, klass);
+    return klass;
+  }
+
+  private static final Map<String, Class<?>> CLASSES = new ConcurrentHashMap<>();
+
+  /**
+   * 构建方法缓存
+   * 有公共静态 getInstance 方法则用之, 否则用无参构造方法
+   */
+  private static final ClassValue<Maker> MAKERS = new ClassValue<Maker>()
+  {
+    @Override
+    protected Maker computeValue(Class<?> clas)
+    {
+      MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+      try
+      {
+        // 获取工厂方法
+        Method method = clas.getMethod("getInstance", new Class [] {});
+        if (Modifier.isStatic(method.getModifiers()))
+        {
+          try
+          {
+            return new Maker(lookup.unreflect(method), 0x827, null);
+          }
+          catch (IllegalAccessException ex)
+          {
+            return new Maker(null, 0x827, ex);
+          }
+        }
+      }
+      catch (NoSuchMethodException ez)
+      {
+        // 无工厂方法
+      }
+      catch (SecurityException se)
+      {
+        return new Maker(null, 0x826, se);
+      }
+
+      // 获取构造方法
+      try
+      {
+        return new Maker(lookup.findConstructor(clas, MethodType.methodType(void.class)), 0x828, null);
+      }
+      catch (NoSuchMethodException | IllegalAccessException ex)
+      {
+        return new Maker(null, 0x828, ex);
+      }
+    }
+  };
+
+  private static final class Maker
+  {
+    final MethodHandle maker;
+    final Throwable    error;
+    final int          errno;
+
+    Maker(MethodHandle maker, int errno, Throwable error)
+    {
+      this.maker = maker;
+      this.errno = errno;
+      this.error = error;
+    }
   }
 
   /**
@@ -568,12 +632,21 @@ abstract public class Core
       {
         return    this.got(name);
       }
-      if (core.containsKey(name))
+      Object inst = core.got(name);
+      if (inst != null)
+      {
+        return    inst;
+      }
+
+      // 单例交由全局构建, 以免并发时重复构建
+      Class<?> clas = forName(name);
+      if (Singleton.class.isAssignableFrom(clas)
+      && !Soliloquy.class.isAssignableFrom(clas))
       {
-        return    core.got(name);
+        return    core.get(clas);
       }
 
-      Object inst = newInstance( name );
+      inst = newInstance( clas );
       if (inst instanceof Soliloquy)
       {
           // Do not keep it-self.
@@ -597,9 +670,17 @@ abstract public class Core
       {
         return (T)this.got(name);
       }
-      if (core.containsKey(name))
+      Object abj = core.got(name);
+      if (abj != null)
       {
-        return (T)core.got(name);
+        return (T)abj;
+      }
+
+      // 单例交由全局构建, 以免并发时重复构建
+      if (Singleton.class.isAssignableFrom(clas)
+      && !Soliloquy.class.isAssignableFrom(clas))
+      {
+        return    core.get(clas);
       }
 
       T   inst = newInstance( clas );
@@ -641,137 +722,355 @@ abstract public class Core
 
   /**
    * 全局容器
-   * 带锁的容器, 内部采用了读写锁, 并对写过程可包裹
+   * 内部为 ConcurrentHashMap, 不设全局锁;
+   * 缺失时按键构建, 同键的并发请求等待同一次构建, 不同键互不阻塞.
+   * 构建中再取同键实例, 或与其他线程互相等待对方构建(循环依赖), 将抛出 0x829 异常.
    */
   private static final class Global extends Core
   {
-  private final ReadWriteLock LOCK = new ReentrantReadWriteLock();
+  private final Map<String, Object> OBJS = new ConcurrentHashMap<>();
+  private final Map<String, Flight> FLYS = new ConcurrentHashMap<>();
 
     @Override
     public Object got(String key)
     {
-      LOCK.readLock( ).lock();
-      try {
-        return super.got(key);
-      } finally {
-        LOCK.readLock( ).unlock();
-      }
+      return OBJS.get(key);
     }
 
     @Override
     public Object get(String key)
     {
-      LOCK.readLock( ).lock();
-      try {
-      if  (super.containsKey(key)) {
-        return     super.got(key);
-      }
-      } finally {
-        LOCK.readLock( ).unlock();
-      }
-
-      LOCK.writeLock().lock();
-      try {
-        Object obj = newInstance(key);
-        super.put( key, obj );
+      Object obj = OBJS.get(key);
+      if (obj != null) {
         return obj;
-      } finally {
-        LOCK.writeLock().unlock();
       }
+      return build(key, () -> newInstance(key), false);
     }
 
     @Override
     public <T>T get(Class<T> cls)
     {
       String key = cls.getName( );
+      Object obj = OBJS.get(key);
+      if (obj != null) {
+        return cls.cast(obj);
+      }
+      return cls.cast(build(key, () -> newInstance(cls), false));
+    }
 
-      LOCK.readLock( ).lock();
-      try {
-      if  (super.containsKey(key)) {
-        return (T) super.got(key);
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T>T get(String key, Supplier<T> fun)
+    {
+      Object obj = OBJS.get(key);
+      if (obj != null) {
+        return (T) obj;
       }
-      } finally {
-        LOCK.readLock( ).unlock();
+      return (T) build(key, fun, false);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T>T set(String key, Supplier<T> fun)
+    {
+      return (T) build(key, fun, true );
+    }
+
+    /**
+     * 按键构建
+     * @param key
+     * @param fun
+     * @param fix 为 true 总是重建, 否则已有则直接返回
+     * @return
+     */
+    private Object build(String key, Supplier<?> fun, boolean fix)
+    {
+      Flight fly = new Flight();
+      Flight flo;
+      while ((flo = FLYS.putIfAbsent(key, fly)) != null) {
+        Object obj = flo.await(key);
+        if (! fix) {
+          return obj;
+        }
       }
 
-      LOCK.writeLock().lock();
+      Object    obj = null;
+      Throwable err = null;
       try {
-        T  obj = newInstance(cls);
-        super.put( key, obj );
+        // 可能在登记前刚构建完
+        if (! fix) {
+          obj = OBJS.get(key);
+          if (obj != null) {
+            return obj;
+          }
+        }
+
+        obj = fun.get();
+        if (obj != null) {
+          OBJS.put   (key, obj);
+        } else {
+          OBJS.remove(key);
+        }
         return obj;
+      } catch (RuntimeException | Error e) {
+        err = e;
+        throw e;
       } finally {
-        LOCK.writeLock().unlock();
+        fly.done(obj, err);
+        FLYS.remove(key, fly);
       }
     }
 
     @Override
-    public <T>T get(String key, Supplier<T> fun)
+    public Object put(String key, Object obj)
     {
-      LOCK.readLock( ).lock();
-      try {
-        Object obj=super.got(key);
-        if (null != obj)
-        return  (T) obj;
-      } finally {
-        LOCK.readLock( ).unlock();
+      if (obj == null) {
+        return OBJS.remove(key);
       }
+      return OBJS.put(key, obj);
+    }
 
-      LOCK.writeLock().lock();
-      try {
-        T obj = fun.get( );
-        super.put(key,obj);
-        return  obj;
-      } finally {
-        LOCK.writeLock().unlock();
+    @Override
+    public void putAll(Map<? extends String, ? extends Object> map)
+    {
+      for (Map.Entry<? extends String, ? extends Object> et : map.entrySet()) {
+        put(et.getKey(), et.getValue());
       }
     }
 
     @Override
-    public <T>T set(String key, Supplier<T> fun)
+    public Object putIfAbsent(String key, Object obj)
     {
-      LOCK.writeLock().lock();
-      try {
-        T obj = fun.get( );
-        super.put(key,obj);
-        return  obj;
-      } finally {
-        LOCK.writeLock().unlock();
-      }
+      return OBJS.putIfAbsent(key, obj);
     }
 
     @Override
-    public Object put(String key, Object obj)
+    public Object remove(Object key)
     {
-      LOCK.writeLock().lock();
-      try {
-        return super.put(key,obj);
-      } finally {
-        LOCK.writeLock().unlock();
-      }
+      return OBJS.remove(key);
+    }
+
+    @Override
+    public boolean remove(Object key, Object obj)
+    {
+      return OBJS.remove(key, obj);
+    }
+
+    @Override
+    public boolean replace(String key, Object old, Object obj)
+    {
+      return OBJS.replace(key, old, obj);
+    }
+
+    @Override
+    public Object replace(String key, Object obj)
+    {
+      return OBJS.replace(key, obj);
+    }
+
+    @Override
+    public Object getOrDefault(Object key, Object def)
+    {
+      return OBJS.getOrDefault(key, def);
+    }
+
+    @Override
+    public Object computeIfAbsent(String key, Function<? super String, ? extends Object> fun)
+    {
+      return OBJS.computeIfAbsent(key, fun);
+    }
+
+    @Override
+    public Object computeIfPresent(String key, BiFunction<? super String, ? super Object, ? extends Object> fun)
+    {
+      return OBJS.computeIfPresent(key, fun);
+    }
+
+    @Override
+    public Object compute(String key, BiFunction<? super String, ? super Object, ? extends Object> fun)
+    {
+      return OBJS.compute(key, fun);
+    }
+
+    @Override
+    public Object merge(String key, Object obj, BiFunction<? super Object, ? super Object, ? extends Object> fun)
+    {
+      return OBJS.merge(key, obj, fun);
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super String, ? super Object> fun)
+    {
+      OBJS.forEach(fun);
+    }
+
+    @Override
+    public void replaceAll(BiFunction<? super String, ? super Object, ? extends Object> fun)
+    {
+      OBJS.replaceAll(fun);
+    }
+
+    @Override
+    public boolean containsKey(Object key)
+    {
+      return OBJS.containsKey(key);
+    }
+
+    @Override
+    public boolean containsValue(Object obj)
+    {
+      return OBJS.containsValue(obj);
+    }
+
+    @Override
+    public int size()
+    {
+      return OBJS.size();
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+      return OBJS.isEmpty();
+    }
+
+    @Override
+    public Set<String> keySet()
+    {
+      return OBJS.keySet();
+    }
+
+    @Override
+    public Collection<Object> values()
+    {
+      return OBJS.values();
+    }
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet()
+    {
+      return OBJS.entrySet();
     }
 
+    /**
+     * 关闭后移除
+     * 仅移除关闭时的对象, 期间新构建的保留
+     */
     @Override
     public void clear()
     {
-      LOCK.writeLock().lock();
-      try {
-        super.clear();
-      } finally {
-        LOCK.writeLock().unlock();
+      for (Map.Entry<String, Object> et : OBJS.entrySet())
+      {
+        Object o = et.getValue();
+        try
+        {
+          if ( o instanceof AutoCloseable)
+          {
+             ((AutoCloseable) o ).close( );
+          }
+        }
+        catch ( Throwable x )
+        {
+          x.printStackTrace ( System.err );
+        }
+        OBJS.remove(et.getKey(), o);
       }
     }
 
     @Override
     public void clean()
     {
-      LOCK.writeLock().lock();
+      for (Map.Entry<String, Object> et : OBJS.entrySet())
+      {
+        Object o = et.getValue();
+        try
+        {
+          if ((o instanceof Cleanable/**/)
+          && ((Cleanable) o ).clean() > 0)
+          {
+             OBJS.remove(et.getKey(), o);
+          }
+        }
+        catch ( Throwable x )
+        {
+          x.printStackTrace ( System.err );
+        }
+      }
+    }
+
+  }
+
+  /**
+   * 构建中的实例
+   * 同键的其他线程等待其完成, 并共享结果或异常;
+   * 等待前及每秒检查等待链, 若回到当前线程即为循环依赖.
+   */
+  private static final class Flight
+  {
+    /**
+     * 线程正在等待的构建
+     */
+    static final Map<Thread, Flight> WAITS = new ConcurrentHashMap<>();
+
+    final Thread owner = Thread.currentThread();
+    final CountDownLatch latch = new CountDownLatch(1);
+    Object    obj;
+    Throwable err;
+
+    void done(Object obj, Throwable err)
+    {
+      this.obj = obj;
+      this.err = err;
+      latch.countDown();
+    }
+
+    Object await(String key)
+    {
+      Thread  thr = Thread.currentThread();
+      boolean itr = false;
+      WAITS.put(thr, this);
       try {
-        super.clean();
+        while (true) {
+          if (circle(thr)) {
+            throw new HongsExemption(0x829, "Circular building for '"+key+"'");
+          }
+          try {
+            if (latch.await(1, TimeUnit.SECONDS)) {
+              break;
+            }
+          } catch (InterruptedException e) {
+            itr = true;
+          }
+        }
       } finally {
-        LOCK.writeLock().unlock();
+        WAITS.remove(thr);
+        if (itr) {
+          thr.interrupt();
+        }
+      }
+      if (err instanceof RuntimeException) {
+        throw (RuntimeException) err;
       }
+      if (err instanceof Error) {
+        throw (Error) err;
+      }
+      return obj;
     }
 
+    /**
+     * 沿 构建者-等待的构建 追溯, 是否回到当前线程
+     */
+    boolean circle(Thread thr)
+    {
+      Flight fli = this;
+      for (int i = 0; fli != null && i < 256; i ++) {
+        if (fli.owner == thr) {
+          return true;
+        }
+        fli = WAITS.get(fli.owner);
+      }
+      return false;
+    }
   }
 
   //** 核心接口 **/
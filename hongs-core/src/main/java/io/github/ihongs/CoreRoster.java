@@ -2,12 +2,25 @@ package io.github.ihongs;
 
 import io.github.ihongs.action.ActionHelper;
 import io.github.ihongs.action.anno.Action;
+import io.github.ihongs.action.anno.Filter;
+import io.github.ihongs.action.anno.FilterInvoker;
 import io.github.ihongs.cmdlet.anno.Cmdlet;
 import io.github.ihongs.util.reflex.Classes;
+import io.github.ihongs.util.reflex.Indexer;
 import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.locks.Lock;
@@ -25,8 +38,53 @@ public class CoreRoster {
     private static Map<String, Mathod> ACTIONS = null;
 
     public  static final class Mathod {
-        private Method   method;
-        private Class<?> mclass;
+        private final Method   method;
+        private final Class<?> mclass;
+        private final Invoker  invoker;
+        private final Annotation[]    filters;
+        private final FilterInvoker[] handles;
+        private final Class<? extends FilterInvoker>[] classes;
+
+        /**
+         * 构建动作方法
+         * 预先提取过滤器链, compile 为 true 则用 LambdaMetafactory 绑定方法
+         * @param method
+         * @param mclass
+         * @param compile
+         */
+        public Mathod(Method method, Class<?> mclass, boolean compile) {
+            this.method  = method;
+            this.mclass  = mclass;
+            this.invoker = compile ? compile(method, mclass) : reflect(method);
+
+            // 仅保留过滤注解, 按声明顺序
+            List<Annotation> annl = new ArrayList();
+            List<Class     > clsl = new ArrayList();
+            for (Annotation anno : method.getAnnotations()) {
+                Filter actw;
+                if (anno instanceof Filter) {
+                    actw = (Filter) anno;
+                } else {
+                    actw = anno.annotationType()
+                    .getAnnotation(Filter.class);
+                }
+                if (actw != null) {
+                    annl.add(anno);
+                    clsl.add(actw.value());
+                }
+            }
+            this.filters = annl.toArray(new Annotation[annl.size()]);
+            this.classes = clsl.toArray(new Class     [clsl.size()]);
+
+            // 全局单例的执行器可预先获取
+            this.handles = new FilterInvoker[classes.length];
+            for (int i = 0; i < classes.length; i ++) {
+                if (Core.Singleton.class.isAssignableFrom(classes[i])) {
+                    handles[i] = Core.GLOBAL_CORE.get(classes[i]);
+                }
+            }
+        }
+
         @Override
         public String    toString() {
             return mclass.getName()+"."+method.getName();
@@ -37,6 +95,91 @@ public class CoreRoster {
         public Class<?> getMclass() {
             return mclass;
         }
+        public Invoker  getInvoker() {
+            return invoker;
+        }
+
+        /**
+         * 过滤注解
+         * @return
+         */
+        public Annotation[] getFilters() {
+            return filters;
+        }
+
+        /**
+         * 第 i 个过滤注解的执行器
+         * @param i
+         * @return
+         */
+        public FilterInvoker getHandle(int i) {
+            FilterInvoker h = handles[i];
+            if (h == null) {
+                h = Core.getInstance(classes[i]);
+            }
+            return h;
+        }
+
+        private static Invoker compile(Method method, Class<?> mclass) {
+            // 不同类加载器或非公共类无法绑定, 退回反射方式
+            if (! Modifier.isPublic(mclass.getModifiers())
+            ||  ! Modifier.isPublic(method.getDeclaringClass().getModifiers())
+            ||  Modifier.isStatic  (method.getModifiers())
+            ||  ! visible(mclass)) {
+                return reflect(method);
+            }
+            try {
+                MethodHandles.Lookup lookup = MethodHandles.lookup();
+                MethodHandle handle = lookup.unreflect(method);
+                CallSite site = LambdaMetafactory.metafactory(lookup, "invoke",
+                    MethodType.methodType(Invoker.class),
+                    MethodType.methodType(void.class, Object.class, ActionHelper.class),
+                    handle,
+                    MethodType.methodType(void.class, mclass, ActionHelper.class));
+                return (Invoker) site.getTarget().invoke();
+            } catch (Throwable ex) {
+                CoreLogger.debug("Can not compile action method {}.{}: {}", mclass.getName(), method.getName(), ex.toString());
+                return reflect(method);
+            }
+        }
+
+        private static Invoker reflect(Method method) {
+            return (Object object, ActionHelper helper) -> {
+                try {
+                    method.invoke(object, helper);
+                } catch (InvocationTargetException e) {
+                    Throwable ex = e.getCause();
+                    if (ex instanceof HongsExemption) {
+                        throw (HongsExemption) ex;
+                    }
+                    if (ex instanceof HongsException) {
+                        throw (HongsException) ex;
+                    }
+                    throw new HongsException(0x110e, ex);
+                } catch (   IllegalAccessException e) {
+                    throw new HongsException(0x110f, "Illegal access for method '"+method.getDeclaringClass().getName()+"."+method.getName()+"(ActionHelper).");
+                } catch ( IllegalArgumentException e) {
+                    throw new HongsException(0x110f, "Illegal params for method '"+method.getDeclaringClass().getName()+"."+method.getName()+"(ActionHelper).");
+                }
+            };
+        }
+
+        private static boolean visible(Class<?> mclass) {
+            try {
+                return mclass == Class.forName(mclass.getName(), false, CoreRoster.class.getClassLoader());
+            } catch (ClassNotFoundException | LinkageError ex) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * 动作调用
+     * 由 LambdaMetafactory 生成时不检查异常声明, 故调用方需捕获 Throwable
+     */
+    @FunctionalInterface
+    public  static interface Invoker {
+        public void invoke(Object object, ActionHelper helper) throws HongsException;
     }
 
     public static Map<String, Mathod> getActions() {
@@ -137,9 +280,7 @@ public class CoreRoster {
                 throw new HongsExemption(0x832, "Can not find action method '"+clsn+"."+mtdn+"(ActionHelper)'.");
             }
 
-            Mathod mtdx = new Mathod();
-            mtdx.method = mtdo;
-            mtdx.mclass = clso;
+            Mathod mtdx = new Mathod(mtdo, clso, true);
 
             if ("__main__".equals(actx)) {
                 acts.put(actn /*__main__*/ , mtdx );
@@ -189,7 +330,7 @@ public class CoreRoster {
         if (pkgn.endsWith(".**")) {
             pkgn = pkgn.substring(0, pkgn.length() - 3);
             try {
-                clss = Classes.getClassNames(pkgn, true );
+                clss = Classes.getClassNames(pkgn, true , Indexer.ACTIONS_IDX, Indexer.CMDLETS_IDX);
             } catch (IOException ex) {
                 throw new HongsExemption(0x830, "Can not load package '" + pkgn + "'.", ex);
             }
@@ -200,7 +341,7 @@ public class CoreRoster {
         if (pkgn.endsWith(".*" )) {
             pkgn = pkgn.substring(0, pkgn.length() - 2);
             try {
-                clss = Classes.getClassNames(pkgn, false);
+                clss = Classes.getClassNames(pkgn, false, Indexer.ACTIONS_IDX, Indexer.CMDLETS_IDX);
             } catch (IOException ex) {
                 throw new HongsExemption(0x830, "Can not load package '" + pkgn + "'.", ex);
             }
@@ -8,14 +8,13 @@ import io.github.ihongs.HongsException;
 import io.github.ihongs.HongsExemption;
 import io.github.ihongs.action.anno.Action;
 import io.github.ihongs.action.anno.Assign;
-import io.github.ihongs.action.anno.Filter;
 import io.github.ihongs.action.anno.FilterInvoker;
 import io.github.ihongs.dh.IActing;
 import io.github.ihongs.util.Dawn;
+import io.github.ihongs.util.Latency;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
-import java.lang.reflect.InvocationTargetException;
 import java.util.Map;
 
 /**
@@ -41,6 +40,7 @@ public class ActionRunner {
     private final Object   object;
     private final Method   method;
     private final Class<?> mclass;
+    private final Mathod   mathod;
     private final ActionHelper helper;
     private final Annotation[] annarr;
 
@@ -57,7 +57,8 @@ public class ActionRunner {
         // 从类里面获取方法
         try {
             this.method = this.mclass.getMethod(method, ActionHelper.class);
-            this.annarr = this.method.getAnnotations();
+            this.mathod = new Mathod(this.method, this.mclass, false);
+            this.annarr = this.mathod.getFilters();
             this.len    = this.annarr.length;
         } catch (NoSuchMethodException ex) {
             throw new HongsException(0x1104, "Can not find action '"+ mclass.getName() +"."+ method +"'");
@@ -95,8 +96,9 @@ public class ActionRunner {
         this.helper = helper;
         this.mclass = mt.getMclass();
         this.method = mt.getMethod();
+        this.mathod = mt;
         this.object = Core.getInstance(mclass);
-        this.annarr = method.getAnnotations( );
+        this.annarr = mt.getFilters();
         this.len    = annarr.length ;
     }
 
@@ -230,10 +232,16 @@ public class ActionRunner {
      * @throws HongsException
      */
     public void doAction() throws HongsException {
-        // 如果正处于链头, 则作初始化
+        // 如果正处于链头, 则作初始化, 并统计整条链的耗时
         if ( idx == low ) {
             doActing();
-        //  return;
+            long tm = Latency.start();
+            try {
+                doAction();
+            } finally {
+                Latency.record("action:" + action, tm);
+            }
+            return;
         }
 
         // 如果已到达链尾, 则执行动作
@@ -242,24 +250,10 @@ public class ActionRunner {
             return;
         }
 
-        Annotation anno = annarr[idx ++];
-        Filter     actw ;
-        if (anno instanceof Filter) {
-            actw = ( Filter ) anno;
-        } else {
-            actw = anno.annotationType()
-            .getAnnotation(Filter.class);
-        }
-
-        // 如果不是动作链, 则跳过注解
-        if (actw == null) {
-            doAction();
-            return;
-        }
-
-        // 执行注解过滤器
-        Class <? extends FilterInvoker> classo = actw.value();
-        Core.getInstance(classo).invoke(helper , this, anno );
+        // 执行注解过滤器, 非过滤注解在构建时已排除
+        Annotation    anno = annarr[idx];
+        FilterInvoker hand = mathod.getHandle(idx ++);
+        hand.invoke(helper, this, anno);
     }
 
     /**
@@ -274,22 +268,15 @@ public class ActionRunner {
             idx  =  0  ;
         }
 
+        // 编译的调用不检查异常声明, 需与反射一样统一包装
         try {
-            method.invoke(object, helper);
-        } catch (   IllegalAccessException e) {
-            throw new HongsException(0x110f, "Illegal access for method '"+mclass.getName()+"."+method.getName()+"(ActionHelper).");
-        } catch ( IllegalArgumentException e) {
-            throw new HongsException(0x110f, "Illegal params for method '"+mclass.getName()+"."+method.getName()+"(ActionHelper).");
-        } catch (InvocationTargetException e) {
-            Throwable  ex = e.getCause( );
-            if (ex instanceof HongsExemption) {
-                throw (HongsExemption) ex;
-            } else
-            if (ex instanceof HongsException) {
-                throw (HongsException) ex;
-            } else {
-                throw new HongsException(0x110e, ex);
-            }
+            mathod.getInvoker().invoke(object, helper);
+        } catch (HongsExemption ex) {
+            throw ex;
+        } catch (HongsException ex) {
+            throw ex;
+        } catch (Throwable ex) {
+            throw new HongsException(0x110e, ex);
         }
     }
 
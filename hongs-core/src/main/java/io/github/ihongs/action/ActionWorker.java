@@ -0,0 +1,110 @@
+package io.github.ihongs.action;
+
+import io.github.ihongs.Core;
+import io.github.ihongs.CoreConfig;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 动作工作线程
+ *
+ * <p>
+ * 用于将动作中的子过程放到其他线程并行执行,
+ * 任务在独立的 Core 中运行, 结束后即行关闭,
+ * 并带上发起线程的 ACTION_TIME,ACTION_LANG 等标识.
+ * </p>
+ *
+ * <h3>配置选项:</h3>
+ * <pre>
+ * core.action.worker.threads 线程数量, 默认为处理器数的两倍
+ * </pre>
+ *
+ * @author Hongs
+ */
+public final class ActionWorker {
+
+    private static ExecutorService EXECUTOR = null;
+
+    private static final ThreadLocal<Boolean> INSIDE = new ThreadLocal<>();
+
+    private ActionWorker() {}
+
+    /**
+     * 获取全局线程池
+     * 固定数量的守护线程, 空闲时回收
+     * @return
+     */
+    public static synchronized ExecutorService getExecutor() {
+        if (EXECUTOR == null) {
+            int n = CoreConfig.getInstance().getProperty("core.action.worker.threads",
+                    Runtime.getRuntime().availableProcessors() * 2);
+            final AtomicInteger i = new AtomicInteger();
+            ThreadPoolExecutor e = new ThreadPoolExecutor(n, n, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue(), (Runnable r) -> {
+                    Thread t = new Thread(r, "hongs-worker-" + i.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+            e.allowCoreThreadTimeOut(true);
+            EXECUTOR = e;
+        }
+        return EXECUTOR;
+    }
+
+    /**
+     * 当前是否在执行任务中
+     * 任务内再向线程池提交并等待, 可能占满线程而相互等待, 此时应直接在当前线程执行
+     * @return
+     */
+    public static boolean inside() {
+        return INSIDE.get() != null;
+    }
+
+    /**
+     * 包装任务
+     * 须在发起线程中调用, 以便获取当前环境标识
+     * @param <T>
+     * @param hlp 任务使用的动作助手, 将作为其 Core 中的 ActionHelper
+     * @param act 任务的动作名称, 为 null 则沿用当前的
+     * @param run 任务过程
+     * @return
+     */
+    public static <T> Callable<T> wrap(ActionHelper hlp, String act, Callable<T> run) {
+        final Long   stt = Core.ACTION_TIME.get();
+        final String lng = Core.ACTION_LANG.get();
+        final String zon = Core.ACTION_ZONE.get();
+        final String adr = Core.CLIENT_ADDR.get();
+        final String nam = act != null ? act : Core.ACTION_NAME.get();
+
+        return () -> {
+            // 线程池中的线程可能继承了创建者的标识, 故需全部重设
+            Core.THREAD_CORE.remove();
+            Core.ACTION_TIME.set(stt);
+            Core.ACTION_LANG.set(lng);
+            Core.ACTION_ZONE.set(zon);
+            Core.CLIENT_ADDR.set(adr);
+            Core.ACTION_NAME.set(nam);
+
+            Core core = Core.getInstance();
+            core.put(ActionHelper.class.getName(), hlp);
+            INSIDE.set(true);
+
+            try {
+                return run.call();
+            } finally {
+                INSIDE.remove();
+                Core.THREAD_CORE.remove();
+                Core.CLIENT_ADDR.remove();
+                Core.ACTION_TIME.remove();
+                Core.ACTION_ZONE.remove();
+                Core.ACTION_LANG.remove();
+                Core.ACTION_NAME.remove();
+            }
+        };
+    }
+
+}
@@ -0,0 +1,231 @@
+package io.github.ihongs.action;
+
+import io.github.ihongs.HongsExemption;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * 生成资源缓存
+ *
+ * <p>
+ * 用于缓存由配置等生成的 JS/JSON 内容, 线程安全.
+ * 每个条目记录生成时所依据的快照对象(如 CoreConfig 实例),
+ * 快照改变时重新生成, 内容未变则沿用原条目, 不会改变 ETag.
+ * 条目预先压缩为 gzip, 输出时按 Accept-Encoding 选择,
+ * 并按 If-None-Match/If-Modified-Since 返回 304.
+ * </p>
+ *
+ * @author Hongs
+ */
+public final class AssetsHelper {
+
+    private final Map<String, Asset> assets = new ConcurrentHashMap();
+
+    /**
+     * 获取条目
+     * @param key  条目名称, 需包含类型及语言等变体标识
+     * @param snap 快照对象, 与原条目的不是同一对象则重新生成
+     * @param make 生成方法, 可抛出 HongsExemption
+     * @return
+     */
+    public Asset get(String key, Object snap, Supplier<String> make) {
+        Asset asset = assets.get(key);
+        if (asset != null && asset.snap == snap) {
+            return asset;
+        }
+
+        String text = make.get();
+        if (asset != null && asset.text.equals(text)) {
+            asset  = new Asset(snap, asset);
+        } else {
+            asset  = new Asset(snap, text );
+        }
+
+        assets.put(key, asset);
+        return asset;
+    }
+
+    /**
+     * 清空条目
+     */
+    public void clear() {
+        assets.clear();
+    }
+
+    /**
+     * 输出条目
+     * @param req
+     * @param rsp
+     * @param asset
+     * @param type 内容类型, 如 text/javascript
+     * @throws IOException
+     */
+    public static void serve(HttpServletRequest req, HttpServletResponse rsp, Asset asset, String type)
+    throws IOException {
+        boolean gz = asset.gzip != null && accept(req.getHeader("Accept-Encoding"), "gzip");
+
+        rsp.setHeader("ETag", gz ? asset.gtag : asset.etag);
+        rsp.setHeader("Last-Modified", asset.time);
+        rsp.setHeader("Vary", "Accept-Encoding");
+
+        /**
+         * 优先使用 If-None-Match,
+         * 没有时才看 If-Modified-Since
+         */
+        String m = req.getHeader("If-None-Match");
+        if (m != null) {
+            if (matchs(m, asset)) {
+                rsp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+        } else {
+            m = req.getHeader("If-Modified-Since");
+            if (m != null && m.equals(asset.time)) {
+                rsp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+        }
+
+        byte[] data;
+        if (gz) {
+            data = asset.gzip;
+            rsp.setHeader("Content-Encoding", "gzip");
+        } else {
+            data = asset.data;
+        }
+
+        rsp.setCharacterEncoding("UTF-8");
+        rsp.setContentType(type);
+        rsp.setContentLength(data.length);
+
+        OutputStream out = rsp.getOutputStream();
+        out.write(data);
+        out.flush();
+    }
+
+    private static boolean matchs(String m, Asset asset) {
+        for (String t : m.split(",")) {
+            t = t.trim();
+            if (t.startsWith("W/")) {
+                t = t.substring(2);
+            }
+            if (t.equals("*")
+            ||  t.equals(asset.etag)
+            ||  t.equals(asset.gtag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean accept(String a, String e) {
+        if (a == null) {
+            return false;
+        }
+        for (String t : a.split(",")) {
+            String[] p = t.trim().split(";", 2);
+            if (! p[0].trim().equalsIgnoreCase(e)) {
+                continue;
+            }
+            // gzip;q=0 表示不接受
+            return p.length < 2 || ! p[1].replace(" ", "").matches("q=0(\\.0*)?");
+        }
+        return false;
+    }
+
+    /**
+     * 缓存条目
+     */
+    public static final class Asset {
+
+        final Object snap;
+        final String text;
+        final byte[] data;
+        final byte[] gzip;
+        final String etag;
+        final String gtag;
+        final String time;
+
+        private Asset(Object snap, String text) {
+            this.snap = snap;
+            this.text = text;
+            this.data = text.getBytes(StandardCharsets.UTF_8);
+            this.gzip = gzip(data);
+            this.etag = "\"" + hash(data) + "\"";
+            this.gtag = "\"" + hash(data) + "-gz\"";
+
+            SimpleDateFormat
+                sdf = new SimpleDateFormat("EEE, d MMM yyyy HH:mm:ss z",
+                                            Locale.ENGLISH );
+                sdf.setTimeZone(TimeZone.getTimeZone("GMT"));
+            this.time = sdf.format(new Date());
+        }
+
+        private Asset(Object snap, Asset asset) {
+            this.snap = snap;
+            this.text = asset.text;
+            this.data = asset.data;
+            this.gzip = asset.gzip;
+            this.etag = asset.etag;
+            this.gtag = asset.gtag;
+            this.time = asset.time;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public String getETag() {
+            return etag;
+        }
+
+        public String getTime() {
+            return time;
+        }
+
+        private static byte[] gzip(byte[] data) {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream(data.length / 3 + 32);
+            try (
+                GZIPOutputStream  gos = new GZIPOutputStream(bos);
+            ) {
+                gos.write(data);
+            } catch (IOException ex) {
+                throw new HongsExemption(ex);
+            }
+            // 压缩无益则不用
+            byte[] gzip = bos.toByteArray();
+            return gzip.length < data.length ? gzip : null;
+        }
+
+        private static String hash(byte[] data) {
+            byte[] a;
+            try {
+                a = MessageDigest.getInstance("MD5").digest(data);
+            } catch (NoSuchAlgorithmException ex) {
+                throw new HongsExemption(ex);
+            }
+            StringBuilder s = new StringBuilder(2 * a.length);
+            for (byte b : a) {
+                s.append(Character.forDigit(b >>> 4 & 0xf, 16));
+                s.append(Character.forDigit(b       & 0xf, 16));
+            }
+            return s.toString();
+        }
+
+    }
+
+}
@@ -0,0 +1,222 @@
+package io.github.ihongs.action;
+
+import io.github.ihongs.CoreConfig;
+import io.github.ihongs.CoreLogger;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.function.Function;
+
+/**
+ * 路由缓存
+ *
+ * <p>
+ * 过滤器按请求路径判断文件是否存在来决定如何转发, 每次请求都要访问文件系统;
+ * 此类缓存路径的解析结果, 不存在的也缓存, 由目录监听在文件增删时清空.
+ * 同一目录的多个缓存共用一个监听线程, 以 . 或 _ 开头的目录及 WEB-INF 不监听.
+ * 无法监听时不做缓存, 每次都调用解析方法.
+ * </p>
+ *
+ * <h3>配置选项:</h3>
+ * <pre>
+ * core.route.cache.limit 最多缓存路径数, 默认为 10000, 超出则清空, 为 0 不缓存
+ * </pre>
+ *
+ * @author Hongs
+ * @param <V> 解析结果类型
+ */
+public class RouteCache<V> {
+
+    private static final Map<String, Watcher> WATCHERS = new ConcurrentHashMap();
+
+    private final Map<String, V> routes = new ConcurrentHashMap();
+    private volatile long   serial = 0;
+    private final Runnable  change;
+    private final Watcher   watcher;
+    private final int       limit;
+
+    /**
+     * @param base   监听目录
+     * @param change 文件变更时的回调, 可为 null
+     */
+    public RouteCache(String base, Runnable change) {
+        this.change = change;
+        this.limit  = CoreConfig.getInstance().getProperty("core.route.cache.limit", 10000);
+
+        Watcher w = null;
+        if (limit > 0) {
+            try {
+                w = Watcher.get(new File(base).getAbsolutePath());
+                w.caches.add(this);
+            } catch (IOException ex) {
+                CoreLogger.error(ex);
+                w = null;
+            }
+        }
+        this.watcher = w;
+    }
+
+    public RouteCache(String base) {
+        this(base, null);
+    }
+
+    /**
+     * 获取路由
+     * @param url  请求路径
+     * @param load 解析方法, 结果不能为 null
+     * @return
+     */
+    public V get(String url, Function<String, V> load) {
+        if (watcher == null) {
+            return load.apply(url);
+        }
+
+        V route = routes.get(url);
+        if (route == null) {
+            long ser = serial;
+            route = load.apply(url);
+            if (routes.size() >= limit) {
+                routes.clear();
+            }
+            routes.put(url, route);
+            // 解析期间有变更则结果可能已过时
+            if (ser != serial) {
+                routes.remove(url, route);
+            }
+        }
+        return route;
+    }
+
+    /**
+     * 清空缓存
+     */
+    public void clear() {
+        serial ++;
+        routes.clear();
+        if (change != null) {
+            change.run();
+        }
+    }
+
+    /**
+     * 停止缓存, 最后一个停止时结束目录监听
+     */
+    public void close() {
+        if (watcher != null) {
+            watcher.remove(this);
+        }
+        routes.clear();
+    }
+
+    /**
+     * 目录监听
+     */
+    private static class Watcher extends Thread {
+
+        private final String path;
+        private final WatchService service;
+        private final Set<RouteCache> caches = new CopyOnWriteArraySet();
+
+        private Watcher(String path) throws IOException {
+            super("route-watch");
+            setDaemon(true);
+            this.path    = path;
+            this.service = FileSystems.getDefault().newWatchService();
+            watch(new File(path).toPath());
+        }
+
+        static Watcher get(String path) throws IOException {
+            synchronized (WATCHERS) {
+                Watcher w = WATCHERS.get(path);
+                if (w == null) {
+                    w = new Watcher(path);
+                    w.start();
+                    WATCHERS.put(path, w);
+                }
+                return w;
+            }
+        }
+
+        void remove(RouteCache cache) {
+            synchronized (WATCHERS) {
+                caches.remove(cache);
+                if (caches.isEmpty()) {
+                    WATCHERS.remove(path, this);
+                    try {
+                        service.close();
+                    } catch (IOException ex) {
+                        CoreLogger.error(ex);
+                    }
+                }
+            }
+        }
+
+        private void watch(Path dir) throws IOException {
+            Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path d, BasicFileAttributes a) throws IOException {
+                    if (!d.equals(dir) && skip(d)) {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    d.register(service,
+                        StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+
+        private static boolean skip(Path d) {
+            String n = d.getFileName().toString();
+            return n.startsWith(".") || n.startsWith("_") || n.equals("WEB-INF");
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                WatchKey key;
+                try {
+                    key = service.take();
+                } catch (InterruptedException | ClosedWatchServiceException ex) {
+                    return;
+                }
+
+                Path dir = (Path) key.watchable();
+                for (WatchEvent e : key.pollEvents()) {
+                    // 新建的目录也需监听
+                    if (e.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                        Path p = dir.resolve((Path) e.context());
+                        if (Files.isDirectory(p) && ! skip(p)) {
+                            try {
+                                watch(p);
+                            } catch (IOException | ClosedWatchServiceException ex) {
+                                CoreLogger.error(ex);
+                            }
+                        }
+                    }
+                }
+                key.reset();
+
+                for (RouteCache cache : caches) {
+                    cache.clear();
+                }
+            }
+        }
+
+    }
+
+}
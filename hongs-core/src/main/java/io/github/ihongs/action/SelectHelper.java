@@ -2,7 +2,9 @@ package io.github.ihongs.action;
 
 import io.github.ihongs.Cnst;
 import io.github.ihongs.Core;
+import io.github.ihongs.CoreConfig;
 import io.github.ihongs.HongsException;
+import io.github.ihongs.HongsExemption;
 import io.github.ihongs.dh.MergeMore;
 import io.github.ihongs.util.Dawn;
 import io.github.ihongs.util.Dict;
@@ -19,11 +21,28 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 
 /**
  * 选项补充助手
  * 可针对表单的 enum,form,fork,file,date 类字段进行数据补全和关联
+ *
+ * <h3>配置选项:</h3>
+ * <pre>
+ * core.select.fork.concurrent   多个关联并发获取, 默认 false, 已在工作线程中则仍逐个获取
+ * core.select.fork.timeout      并发获取的超时毫秒数, 默认 30000
+ * core.select.fork.cache.limit  关联缓存最多条目(关联值), 默认 1000
+ * </pre>
+ * 关联字段设置 data-ct 缓存秒数后, 关联结果按 目标动作+关联字段+rb+ab+用户 缓存,
+ * 读取时移除过期的条目, 超出上限先清理过期的, 仍超出则全部清除.
+ *
  * @author Hong
  */
 public class SelectHelper {
@@ -423,17 +442,10 @@ public class SelectHelper {
     }
 
     public void injectFork(List<Map> list, byte ad ) {
-        ActionHelper ah = ActionHelper.newInstance();
         MergeMore    mm = new MergeMore( list );
-        Map          rd = new HashMap();
-        Map          cd = new HashMap();
-        Set          rb = new HashSet();
+        List<Fork>   fs = new ArrayList();
         Set          ab = new HashSet();
 
-        ah.setRequestData(rd);
-        ah.setContextData(cd);
-        cd.put(Cnst.ORIGIN_ATTR, Core.ACTION_NAME.get());
-
         // 传递 ab 参数
         if (TEXT==(TEXT & ad)) {
             ab.add( "_text" );
@@ -464,6 +476,7 @@ public class SelectHelper {
             String ak = (String) mt.get("data-ak"); // 数据放入此下
             String vk = (String) mt.get("data-vk"); // 关联字段
             String tk = (String) mt.get("data-tk"); // 名称字段
+            long   tl = Synt.declare(mt.get("data-ct"), 0L); // 缓存秒数
 
             if (at == null || at.isEmpty()) {
                 String c = (String) mt.get("conf");
@@ -485,12 +498,13 @@ public class SelectHelper {
                 tk = "name";
             }
 
-            rd.clear();
-            rb.clear();
+            Map rd = new HashMap();
+            Set rb = new HashSet();
             rb.add(vk);
             rb.add(tk);
 
             // 附加参数
+            String ap = at;
             int ps = at.indexOf  ('?');
             if (ps > -1) {
               String aq;
@@ -505,61 +519,255 @@ public class SelectHelper {
 
             // 关联参数
             rd.put(Cnst.RN_KEY, 0);
-            rd.put(Cnst.ID_KEY, ms.keySet());
-            if (vk.equals(Cnst.ID_KEY) == false ) {
-                rd.put(vk, ms.keySet());
-            }
             Set xb;
             xb = Synt.toTerms(rd.get(Cnst.RB_KEY));
             if (xb == null) {
                 xb  = rb;
             }   rd.put(Cnst.RB_KEY, xb);
-            xb = Synt.toTerms(rd.get(Cnst.AB_KEY));
-            if (xb == null) {
-                xb  = ab;
-            }   rd.put(Cnst.AB_KEY, xb);
-
-            // 获取结果
-            // 关联出错应在测试期发现并解决
-            // 没有 ab 就没必要调用注解过滤
+            Set yb;
+            yb = Synt.toTerms(rd.get(Cnst.AB_KEY));
+            if (yb == null) {
+                yb  = ab;
+            }   rd.put(Cnst.AB_KEY, yb);
+
+            Fork fk = new Fork();
+            fk.ms = ms;
+            fk.mt = mt;
+            fk.rd = rd;
+            fk.at = at;
+            fk.ak = ak;
+            fk.vk = vk;
+            fk.tl = tl * 1000;
+            fk.ck = ap +"|"+ vk +"|"+ xb +"|"+ yb;
+            fs.add(fk);
+        }
+
+        if (fs.isEmpty()) {
+            return;
+        }
+
+        // 获取结果
+        // 多个关联可并发执行, 数据整合仍在当前线程
+        List<List<Map>> ls = new ArrayList(fs.size());
+        // 已在工作线程中则不再提交, 以免占满线程池而相互等待
+        CoreConfig cf = CoreConfig.getInstance();
+        if (fs.size() > 1 && ! ActionWorker.inside() && cf.getProperty("core.select.fork.concurrent", false)) {
+            List<Future<List<Map>>> fu = new ArrayList(fs.size());
+            ExecutorService es = ActionWorker.getExecutor( );
+            for (Fork fk : fs) {
+                ActionHelper ah = fk.helper();
+                fu.add(es.submit(ActionWorker.wrap(ah, null, () -> fk.fetch(ah))));
+            }
+            long dl = System.currentTimeMillis() + cf.getProperty("core.select.fork.timeout", 30000L);
             try {
-                ActionRunner ar = ActionRunner.newInstance( ah, at );
-                if (xb.isEmpty ()) {
-                    ar.doInvoke();
-                } else {
-                    ar.doAction();
+                for (Future<List<Map>> fx : fu) {
+                    ls.add(fx.get(Math.max(dl - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS));
                 }
-            } catch (HongsException e) {
-                throw e.toExemption( );
+            } catch (TimeoutException ex) {
+                for (Future fx : fu) {
+                    fx.cancel(true);
+                }
+                throw new HongsExemption(504, "Fork timeout", ex);
+            } catch (ExecutionException ex) {
+                Throwable ta = ex.getCause();
+                if (ta instanceof HongsExemption) {
+                    throw (HongsExemption) ta;
+                }
+                throw new HongsExemption(ta);
+            } catch (InterruptedException ex) {
+                for (Future fx : fu) {
+                    fx.cancel(true);
+                }
+                Thread.currentThread().interrupt();
+                throw new HongsExemption(ex);
             }
+        } else {
+            for (Fork fk : fs) {
+                ls.add(fk.fetch(fk.helper()));
+            }
+        }
 
-            // 整合数据
-            Map sd  = ah.getResponseData( /**/ );
-            List<Map> ls = (List) sd.get("list");
-            if (ls == null) {
+        // 整合数据
+        for (int i = 0; i < fs.size(); i ++) {
+            Fork fk = fs.get(i);
+            List<Map> lz = ls.get(i);
+            if (lz == null) {
                 continue;
             }
-            if (Synt.declare(mt.get("__repeated__"), false)) {
+            Map<Object, List> ms = fk.ms;
+            if (Synt.declare(fk.mt.get("__repeated__"), false)) {
                 // 预置数据
                 for (Map.Entry<Object, List> lr : ms.entrySet()) {
                     List<Map> lst = lr.getValue();
                     for (Map  row : lst) {
-                         row.put(ak, new ArrayList());
+                         row.put(fk.ak, new ArrayList());
                     }
                 }
 
-                mm.append(ls, ms, vk, ak);
+                mm.append(lz, ms, fk.vk, fk.ak);
             } else {
                 // 预置数据
                 for (Map.Entry<Object, List> lr : ms.entrySet()) {
                     List<Map> lst = lr.getValue();
                     for (Map  row : lst) {
-                         row.put(ak, new  HashMap ());
+                         row.put(fk.ak, new  HashMap ());
+                    }
+                }
+
+                mm.extend(lz, ms, fk.vk, fk.ak);
+            }
+        }
+    }
+
+    /**
+     * 清除关联缓存
+     * 在写入实体后调用, 清除以该实体为目标的关联缓存
+     * @param act 动作路径, 如 centra/data/demo/item/update, 去掉末级作为实体前缀
+     */
+    public static void evictFork(String act) {
+        int p  = act.lastIndexOf('/');
+        String pre = p >= 0 ? act.substring(0, p + 1) : act + "/";
+        FORK_STAMP.incrementAndGet();
+        FORK_CACHE.keySet().removeIf(k -> k.startsWith(pre));
+    }
+
+    /**
+     * 限制关联缓存数量
+     * 先清理过期的, 仍超出则全部清除
+     * @param max
+     */
+    private static void limitFork(int max) {
+        int z = 0;
+        for (Map cm : FORK_CACHE.values()) {
+            z += cm.size();
+        }
+        if (z <= max) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        z = 0;
+        for (Map<String, Object[]> cm : FORK_CACHE.values()) {
+            cm.values().removeIf(ce -> (long) ce[0] <= now);
+            z += cm.size();
+        }
+        FORK_CACHE.values().removeIf(Map::isEmpty);
+        if (z > max) {
+            FORK_CACHE.clear();
+        }
+    }
+
+    /**
+     * 关联缓存
+     * 键为 目标动作|关联字段|rb|ab|用户, 值为 关联值 到 [过期时间, 数据行] 的映射;
+     * 关联动作以当前用户的会话执行, 故缓存须区分用户, 以免越权看到他人可见的数据
+     */
+    private static final Map<String, Map<String, Object[]>> FORK_CACHE = new ConcurrentHashMap();
+    private static final AtomicLong FORK_STAMP = new AtomicLong();
+
+    /**
+     * 关联任务
+     */
+    private static class Fork {
+        Map<Object, List> ms;
+        Map    mt;
+        Map    rd;
+        String at;
+        String ak;
+        String vk;
+        String ck;
+        long   tl;
+
+        public ActionHelper helper() {
+            ActionHelper ah = ActionHelper.newInstance();
+            Map cd = new HashMap();
+            cd.put(Cnst.ORIGIN_ATTR, Core.ACTION_NAME.get());
+            ah.setContextData(cd);
+            return ah;
+        }
+
+        public List<Map> fetch(ActionHelper ah) {
+            if (tl <= 0) {
+                return fetch(ah, ms.keySet());
+            }
+
+            String    uk = ck +"|"+ Synt.declare(ah.getSessibute(Cnst.UID_SES), "");
+            Map<String, Object[]> cm = FORK_CACHE.computeIfAbsent(uk, k -> new ConcurrentHashMap());
+            List<Map> ls = new ArrayList();
+            Set       ns = new LinkedHashSet();
+            long      st = FORK_STAMP.get( );
+            long      now = System.currentTimeMillis();
+
+            // 先从缓存中取, 数据行需复制, 以免被下游改写
+            for(Object id : ms.keySet()) {
+                String   ik = Synt.asString(id);
+                Object[] ce = cm.get(ik);
+                if (ce != null && (long) ce[0] > now) {
+                    for(Map row : (List<Map>) ce[1]) {
+                        ls.add(new LinkedHashMap(row));
+                    }
+                } else {
+                    if (ce != null) {
+                        cm.remove(ik, ce);
+                    }
+                    ns.add(id);
+                }
+            }
+            if (ns.isEmpty()) {
+                return ls;
+            }
+
+            List<Map> lz = fetch(ah, ns);
+            if (lz == null) {
+                return ls;
+            }
+
+            // 获取期间有写入则不缓存
+            if (st == FORK_STAMP.get()) {
+                Map<String, List<Map>> gs = new HashMap();
+                for(Object id : ns) {
+                    gs.put(Synt.asString(id), new ArrayList());
+                }
+                for(Map row : lz) {
+                    List<Map> lst = gs.get(Synt.asString(row.get(vk)));
+                    if (lst != null) {
+                        lst.add(new LinkedHashMap(row));
                     }
                 }
+                long exp = now + tl;
+                for(Map.Entry<String, List<Map>> et : gs.entrySet()) {
+                    cm.put(et.getKey(), new Object[] {exp, et.getValue()});
+                }
+                limitFork(CoreConfig.getInstance().getProperty("core.select.fork.cache.limit", 1000));
+            }
 
-                mm.extend(ls, ms, vk, ak);
+            ls.addAll(lz);
+            return ls;
+        }
+
+        private List<Map> fetch(ActionHelper ah, Set ids) {
+            Map rq = new HashMap(rd);
+            rq.put(Cnst.ID_KEY, ids);
+            if (vk.equals(Cnst.ID_KEY) == false ) {
+                rq.put(vk, ids);
             }
+            ah.setRequestData(rq);
+
+            // 关联出错应在测试期发现并解决
+            // 没有 ab 就没必要调用注解过滤
+            try {
+                ActionRunner ar = ActionRunner.newInstance( ah, at );
+                if (((Set) rq.get(Cnst.AB_KEY)).isEmpty()) {
+                    ar.doInvoke();
+                } else {
+                    ar.doAction();
+                }
+            } catch (HongsException e) {
+                throw e.toExemption( );
+            }
+
+            Map sd  = ah.getResponseData( /**/ );
+            return (List) sd.get("list");
         }
     }
 
@@ -6,8 +6,6 @@ import io.github.ihongs.util.Dict;
 import io.github.ihongs.util.Syno;
 import io.github.ihongs.util.Synt;
 import io.github.ihongs.util.verify.Wrong;
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -15,7 +13,10 @@ import java.io.InputStream;
 import java.io.IOException;
 import java.net.URLConnection;
 import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.security.DigestInputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
@@ -39,9 +40,12 @@ public class UploadHelper {
     private String digestType = null;
     private String resultName = null;
     private String requestKey = null;
+    private long   allowBytes = 0;
     private Set<String> allowTypes = null;
     private Set<String> allowExtns = null;
 
+    private static final long  BLOCKS = 65536;
+
     private static final char[] DIGITS = {
         '0', '1', '2', '3', '4', '5', '6', '7',
         '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'
@@ -118,6 +122,35 @@ public class UploadHelper {
         return this;
     }
 
+    /**
+     * 设置许可的大小(字节数)
+     * 写入过程中即行检查, 超出则中止并删除已写入部分
+     * @param size 小于等于 0 不限制
+     * @return
+     */
+    public UploadHelper setAllowBytes(long size) {
+        this.allowBytes = size;
+        return this;
+    }
+
+    private void chkSize(String name, long size) throws Wrong {
+        if (this.allowBytes > 0
+        &&  this.allowBytes < size) {
+            // 文件太大, 提示按 KB 计
+            throw new Wrong("fore.file.invalid.size", name,
+                String.valueOf((size            + 1023) / 1024),
+                String.valueOf((this.allowBytes + 1023) / 1024));
+        }
+    }
+
+    /**
+     * 写入时超出限制即中止, 实际大小未知, 仅提示超出
+     */
+    private void outSize(String name) throws Wrong {
+        String max = String.valueOf((this.allowBytes + 1023) / 1024);
+        throw new Wrong("fore.file.invalid.size", name, ">" + max, max);
+    }
+
     private void chkTypeOrExtn(String type, String extn) throws Wrong {
         /**
          * 检查文件类型
@@ -227,6 +260,15 @@ public class UploadHelper {
         }
     }
 
+    private MessageDigest getDigestUtil() {
+        try {
+            return MessageDigest.getInstance(digestType);
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new HongsExemption(e);
+        }
+    }
+
     private String getDigestName(File file) {
         if (digestType == null) {
             return Core.newIdentity();
@@ -241,17 +283,18 @@ public class UploadHelper {
         ) {
             MappedByteBuffer bb = fc.map (FileChannel.MapMode.READ_ONLY, 0, l);
             MessageDigest m ;
-            m = MessageDigest.getInstance(digestType);
+            m = getDigestUtil();
                 m.update(bb);
             a = m.digest(  );
         }
         catch (IOException e) {
             throw new HongsExemption(e);
         }
-        catch (NoSuchAlgorithmException e) {
-            throw new HongsExemption(e);
-        }
 
+        return getDigestName(a);
+    }
+
+    private String getDigestName(byte[] a) {
         // 转为 16 进制
         int  i = 0 ;
         int  j = a . length;
@@ -267,15 +310,30 @@ public class UploadHelper {
     }
 
     private File getDigestFile(File file) {
+        String subn = getDigestName(file);
+        return getDigestFile(file, subn);
+    }
+
+    private File getDigestFile(File file, String subn) {
         String name = file. getName();
         String extn = getExtnByName(name);
-        String subn = getDigestName(file);
 
         setResultName ( subn , extn );
         String path = getResultPath();
 
-        // 移动文件
+        /**
+         * 按摘要命名即按内容寻址,
+         * 目标已存在则内容必相同,
+         * 丢弃临时文件即可.
+         */
         File dist = new  File  (  path  );
+        if ( dist.exists()
+        &&   dist.length() == file.length()) {
+            file.delete();
+            return  dist ;
+        }
+
+        // 移动文件
         File dirt = dist.getParentFile( );
         if (!dirt.isDirectory()) {
              dirt.mkdirs( );
@@ -285,6 +343,82 @@ public class UploadHelper {
         return dist;
     }
 
+    /**
+     * 将输入流写入文件
+     * 写入时检查大小, 可同时计算摘要
+     * @param xis 输入流
+     * @param dst 目标文件
+     * @param dig 摘要工具, 为 null 则不计算
+     * @param name 上传文件名称, 用于错误提示
+     * @throws Wrong
+     */
+    private void stream(InputStream xis, File dst, MessageDigest dig, String name) throws Wrong {
+        ReadableByteChannel xic;
+        if (dig != null) {
+            xic = Channels.newChannel(new DigestInputStream(xis, dig));
+        } else
+        if (xis instanceof FileInputStream) {
+            xic = ((FileInputStream) xis).getChannel();
+        } else {
+            xic = Channels.newChannel(xis);
+        }
+
+        // 限制大小时多读一个字节, 以便判断是否超出
+        long max = allowBytes > 0 ? allowBytes + 1 : Long.MAX_VALUE;
+        long pos = 0;
+        long cnt ;
+
+        try {
+            try (
+                FileOutputStream fos = new FileOutputStream(dst);
+                FileChannel      foc = fos.getChannel( );
+            ) {
+                while ((cnt = foc.transferFrom(xic, pos, Math.min(BLOCKS, max - pos))) > 0) {
+                    pos += cnt;
+                    if ( pos >= max) {
+                        break;
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            dst.delete();
+            throw new Wrong(ex, "fore.form.upload.failed");
+        }
+
+        if (pos >= max) {
+            dst.delete();
+            outSize(name);
+        }
+    }
+
+    /**
+     * 检查类型并准备目标文件
+     * @param type 上传文件类型
+     * @param extn 上传文件扩展
+     * @param subn 目标文件名称
+     * @return
+     * @throws Wrong
+     */
+    private File create(String type, String extn, String subn) throws Wrong {
+        if (type.contains( ";" )) {
+            type = type.substring(0 , type./**/indexOf(";"));
+        }
+        if (extn.contains( "." )) {
+            extn = extn.substring(1 + extn.lastIndexOf('.'));
+        }
+
+        chkTypeOrExtn(type, extn);
+        setResultName(subn, extn);
+
+        File file = new File(getResultPath());
+        File fdir = file.getParentFile();
+        if (!fdir.exists()) {
+             fdir.mkdirs();
+        }
+
+        return file;
+    }
+
     /**
      * 获取完整目标路径
      * @return
@@ -313,46 +447,25 @@ public class UploadHelper {
      * 检查文件流并写入目标目录
      * @param xis  上传文件输入流
      * @param type 上传文件类型
-     * @param extn 上传文件扩展
+     * @param extn 上传文件扩展, 或文件名称
      * @param subn 目标文件名称
      * @return
      * @throws Wrong
      */
     public File upload(InputStream xis, String type, String extn, String subn) throws Wrong {
-        if (type.contains( ";" )) {
-            type = type.substring(0 , type./**/indexOf(";"));
-        }
-        if (extn.contains( "." )) {
-            extn = extn.substring(1 + extn.lastIndexOf('.'));
-        }
-
-        chkTypeOrExtn(type, extn);
-        setResultName(subn, extn);
-
-        File file = new File(getResultPath());
-        File fdir = file.getParentFile();
-        if (!fdir.exists()) {
-             fdir.mkdirs();
-        }
-
-        // 拷贝数据
-        try {
-            try (
-                FileOutputStream     fos = new FileOutputStream    (file);
-                BufferedInputStream  bis = new BufferedInputStream (xis );
-                BufferedOutputStream bos = new BufferedOutputStream(fos );
-            ) {
-                byte[] buf = new byte[1024];
-                int    ovr ;
-                while((ovr = bis.read(buf )) != -1) {
-                    bos.write(buf, 0, ovr );
-                }
-            }
-        } catch (IOException ex) {
-            throw new Wrong(ex, "fore.form.upload.failed");
-        }
+        return upload(xis, type, extn, subn, extn);
+    }
 
-        return file;
+    /**
+     * 检查文件流并写入目标目录
+     * @param xis  上传文件输入流
+     * @param type 上传文件类型
+     * @param extn 上传文件扩展, 或文件名称
+     * @return
+     * @throws Wrong
+     */
+    public File upload(InputStream xis, String type, String extn) throws Wrong {
+        return upload(xis, type, extn, digestType == null ? Core.newIdentity() : null, extn);
     }
 
     /**
@@ -360,17 +473,29 @@ public class UploadHelper {
      * @param xis  上传文件输入流
      * @param type 上传文件类型
      * @param extn 上传文件扩展
+     * @param subn 目标文件名称, 为 null 则按摘要命名
+     * @param name 上传文件名称, 用于错误提示
      * @return
      * @throws Wrong
      */
-    public File upload(InputStream xis, String type, String extn) throws Wrong {
-        if (digestType == null) {
-            return upload(xis, type, extn, Core.newIdentity());
+    private File upload(InputStream xis, String type, String extn, String subn, String name) throws Wrong {
+        if (subn != null) {
+            File file = create(type, extn, subn);
+
+            // 拷贝数据
+            stream(xis, file, null, name);
+
+            return file;
         }
 
-        File tmp = upload(xis, type, extn, Core.newIdentity()+".tmp.");
+        File file = create(type, extn, Core.newIdentity()+".tmp.");
 
-        return getDigestFile(tmp);
+        // 边写边算摘要, 免去再次读取
+        MessageDigest dig = getDigestUtil();
+        stream(xis, file, dig, name);
+        subn = getDigestName(dig.digest());
+
+        return getDigestFile(file, subn);
     }
 
     /**
@@ -389,13 +514,15 @@ public class UploadHelper {
         /**
          * 从上传项中获取类型并提取扩展名
          */
+        String name = part.getSubmittedFileName();
         String type = part.getContentType( /**/ );
                type = getTypeByMime( type );
-        String extn = part.getSubmittedFileName();
-               extn = getExtnByName( extn );
+        String extn = getExtnByName( name );
+
+        chkSize(name, part.getSize());
 
         try {
-            return upload(part.getInputStream(), type, extn, subn);
+            return upload(part.getInputStream(), type, extn, subn, name);
         }
         catch ( IOException ex) {
             throw new Wrong(ex, "fore.form.upload.failed");
@@ -413,9 +540,27 @@ public class UploadHelper {
             return upload(part, Core.newIdentity());
         }
 
-        File tmp = upload(part, Core.newIdentity()+".tmp.");
+        if (part == null) {
+            setResultName("", null);
+            return  null;
+        }
 
-        return getDigestFile(tmp);
+        /**
+         * 从上传项中获取类型并提取扩展名
+         */
+        String name = part.getSubmittedFileName();
+        String type = part.getContentType( /**/ );
+               type = getTypeByMime( type );
+        String extn = getExtnByName( name );
+
+        chkSize(name, part.getSize());
+
+        try {
+            return upload(part.getInputStream(), type, extn, null, name);
+        }
+        catch ( IOException ex) {
+            throw new Wrong(ex, "fore.form.upload.failed");
+        }
     }
 
     /**
@@ -444,6 +589,7 @@ public class UploadHelper {
         String extn = getExtnByName(name);
 
         chkTypeOrExtn(type, extn);
+        chkSize(name, file.length());
         setResultName(subn, extn);
 
         /**
@@ -6,6 +6,7 @@ import io.github.ihongs.HongsException;
 import io.github.ihongs.HongsExemption;
 import io.github.ihongs.action.ActionHelper;
 import io.github.ihongs.action.ActionRunner;
+import io.github.ihongs.action.SelectHelper;
 import io.github.ihongs.dh.IReflux;
 import java.lang.annotation.Annotation;
 
@@ -16,7 +17,7 @@ import java.lang.annotation.Annotation;
  *
  * @author Hongs
  */
-public class CommitInvoker implements FilterInvoker {
+public class CommitInvoker implements FilterInvoker, Core.Singleton {
     @Override
     public void invoke(ActionHelper helper, ActionRunner chains, Annotation anno)
     throws HongsException {
@@ -45,6 +46,9 @@ public class CommitInvoker implements FilterInvoker {
                         ((IReflux) o).commit();
                     }
                 }
+
+                // 清除以此实体为目标的关联缓存
+                SelectHelper.evictFork(chains.getAction());
             } catch (Throwable ex) {
                 // 回滚
                 for(Object o : core.values().toArray()) {
@@ -1,5 +1,6 @@
 package io.github.ihongs.action.anno;
 
+import io.github.ihongs.Core;
 import io.github.ihongs.HongsException;
 import io.github.ihongs.action.ActionHelper;
 import io.github.ihongs.action.ActionRunner;
@@ -10,7 +11,7 @@ import java.lang.annotation.Annotation;
  * 权限过滤处理器
  * @author Hongs
  */
-public class PermitInvoker implements FilterInvoker {
+public class PermitInvoker implements FilterInvoker, Core.Singleton {
 
     @Override
     public void invoke(ActionHelper helper, ActionRunner chains, Annotation anno) throws HongsException {
@@ -27,7 +27,7 @@ import java.util.Set;
  * </p>
  * @author Hong
  */
-public class PresetInvoker implements FilterInvoker {
+public class PresetInvoker implements FilterInvoker, Core.Singleton {
 
     @Override
     public void invoke(ActionHelper helper, ActionRunner chains, Annotation anno)
@@ -1,6 +1,7 @@
 package io.github.ihongs.action.anno;
 
 import io.github.ihongs.Cnst;
+import io.github.ihongs.Core;
 import io.github.ihongs.HongsException;
 import io.github.ihongs.action.ActionHelper;
 import io.github.ihongs.action.ActionRunner;
@@ -26,7 +27,7 @@ import java.util.Set;
  * </pre>
  * @author Hong
  */
-public class SelectInvoker implements FilterInvoker {
+public class SelectInvoker implements FilterInvoker, Core.Singleton {
     @Override
     public void invoke(ActionHelper helper, ActionRunner chains, Annotation anno)
     throws HongsException {
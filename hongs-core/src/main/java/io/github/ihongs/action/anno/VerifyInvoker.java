@@ -1,6 +1,7 @@
 package io.github.ihongs.action.anno;
 
 import io.github.ihongs.Cnst;
+import io.github.ihongs.Core;
 import io.github.ihongs.HongsException;
 import io.github.ihongs.action.ActionHelper;
 import io.github.ihongs.action.ActionRunner;
@@ -28,7 +29,7 @@ import static javax.servlet.http.HttpServletResponse.SC_BAD_REQUEST;
  </p>
  * @author Hong
  */
-public class VerifyInvoker implements FilterInvoker {
+public class VerifyInvoker implements FilterInvoker, Core.Singleton {
 
     @Override
     public void invoke(ActionHelper helper, ActionRunner chains, Annotation anno)
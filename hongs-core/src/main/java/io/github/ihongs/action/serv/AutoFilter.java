@@ -7,6 +7,7 @@ import io.github.ihongs.action.ActionDriver;
 import io.github.ihongs.action.ActionHelper;
 import io.github.ihongs.action.ActionRunner;
 import io.github.ihongs.action.PasserHelper;
+import io.github.ihongs.action.RouteCache;
 import io.github.ihongs.action.anno.Action;
 import io.github.ihongs.action.anno.CustomReplies;
 import java.io.File;
@@ -48,7 +49,8 @@ public class AutoFilter extends ActionDriver {
     private String action;
     private String layout;
     private PasserHelper ignore = null;
-    private Set<String>  layset = null;
+    private RouteCache<Route> routes = null;
+    private volatile Set<String> layset = null;
     private Set<String>  actset = null;
     private Set<String>  cstset = null;
 //  private Map<String, String> cstmap = null; // 可 inlucde 的动作脚本
@@ -74,11 +76,18 @@ public class AutoFilter extends ActionDriver {
             cnf.getInitParameter("ignore-urls"),
             cnf.getInitParameter("attend-urls")
         );
+
+        // 路由缓存, 文件有增删则重读布局
+        this.routes = new RouteCache(Core.BASE_PATH, () -> layset = null);
     }
 
     @Override
     public void destroy() {
         super.destroy();
+        if (routes != null) {
+            routes.close();
+            routes = null;
+        }
         actset = null;
         layset = null;
     }
@@ -103,6 +112,26 @@ public class AutoFilter extends ActionDriver {
             return;
         }
 
+        Route route = routes.get(url, this::route);
+        switch (route.type) {
+            case Route.INCLUDE:
+                include(req, rsp, route.url, route.uri);
+                return;
+            case Route.FORWARD:
+                forward(req, rsp, route.url, route.uri);
+                return;
+        }
+
+        chain.doFilter(req, rsp);
+    }
+
+    /**
+     * 解析路由
+     * 结果仅与路径和文件有关, 故可缓存
+     * @param url
+     * @return
+     */
+    private Route route(String url) {
         if (url.endsWith(Cnst.API_EXT)) {
             /**
              * 为避免一个动作有多种路径,
@@ -127,15 +156,13 @@ public class AutoFilter extends ActionDriver {
 //              met = act.substring(1+pos);
             } catch (IndexOutOfBoundsException ex) {
                 // 如果无法拆分则直接跳过
-                chain.doFilter ( req, rsp);
-                return;
+                return Route.CHAIN_ROUTE;
             }
 
             // 检查是否有特定动作脚本
             uri = "/" + src + "/__main__.jsp";
             if (new File(Core.BASE_PATH+ uri).exists()) {
-                include ( req, rsp, url, uri);
-                return;
+                return new Route(Route.INCLUDE, url, uri);
             }
             // 废弃, 仅用以上方式处理
             /*
@@ -176,11 +203,10 @@ public class AutoFilter extends ActionDriver {
                 for(String axt: getacts()) {
                     if (act.endsWith(axt)) {
                         if (cstset.contains(axt)) {
-                            forward(req, rsp, url, action + axt + Cnst.ACT_EXT);
+                            return new Route(Route.FORWARD, url, action + axt + Cnst.ACT_EXT);
                         } else {
-                            include(req, rsp, url, action + axt + Cnst.ACT_EXT);
+                            return new Route(Route.INCLUDE, url, action + axt + Cnst.ACT_EXT);
                         }
-                        return;
                     }
                 }
             }
@@ -203,8 +229,7 @@ public class AutoFilter extends ActionDriver {
 
                 for(String uri: getlays()) {
                     if (url.endsWith(uri)) {
-                        forward(req, rsp, url, layout + uri);
-                        return;
+                        return new Route(Route.FORWARD, url, layout + uri);
                     }
                     if (jsp) {
                         continue;
@@ -212,21 +237,19 @@ public class AutoFilter extends ActionDriver {
                     if (htm) {
                         // xxx.htm => xxx.jsp
                         if ((uxl + ".jsp").endsWith(uri)) {
-                            forward(req, rsp, url, layout + uri);
-                            return;
+                            return new Route(Route.FORWARD, url, layout + uri);
                         }
                     } else {
                         // xxx.xxx => xxx.xxx.jsp
                         if ((url + ".jsp").endsWith(uri)) {
-                            forward(req, rsp, url, layout + uri);
-                            return;
+                            return new Route(Route.FORWARD, url, layout + uri);
                         }
                     }
                 }
             }
         }
 
-        chain.doFilter(req, rsp);
+        return Route.CHAIN_ROUTE;
     }
 
     private void include(ServletRequest req, ServletResponse rsp, String url, String uri)
@@ -306,6 +329,7 @@ public class AutoFilter extends ActionDriver {
     }
 
     private Set<String> getlays() {
+        Set<String> layset = this.layset;
         if (null != layset) {
             return  layset;
         }
@@ -331,6 +355,8 @@ public class AutoFilter extends ActionDriver {
         // 递归获取目录下所有文件
         getlays(layset, dir, "/");
 
+        // 填充完再发布, 文件变更时会被置空
+        this.layset = layset;
         return  layset;
     }
 
@@ -371,4 +397,26 @@ public class AutoFilter extends ActionDriver {
         }
     }
 
+    /**
+     * 路由结果
+     */
+    private static class Route {
+
+        static final byte CHAIN   = 0;
+        static final byte INCLUDE = 1;
+        static final byte FORWARD = 2;
+        static final Route CHAIN_ROUTE = new Route(CHAIN, null, null);
+
+        final byte   type;
+        final String url ;
+        final String uri ;
+
+        Route(byte type, String url, String uri) {
+            this.type = type;
+            this.url  = url ;
+            this.uri  = uri ;
+        }
+
+    }
+
 }
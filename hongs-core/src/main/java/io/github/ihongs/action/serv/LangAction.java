@@ -5,15 +5,10 @@ import io.github.ihongs.CoreLocale;
 import io.github.ihongs.HongsExemption;
 import io.github.ihongs.action.ActionDriver;
 import io.github.ihongs.action.ActionHelper;
+import io.github.ihongs.action.AssetsHelper;
 import io.github.ihongs.util.Syno;
 
 import java.io.IOException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.TimeZone;
-import java.util.Locale;
-import java.util.HashMap;
-import java.util.Map;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
@@ -39,8 +34,7 @@ import javax.servlet.http.HttpServletResponse;
 public class LangAction
   extends  ActionDriver
 {
-  private static final Map<String, String> CACHES = new HashMap();
-  private static final Map<String, String> MTIMES = new HashMap();
+  private static final AssetsHelper ASSETS = new AssetsHelper();
 
   /**
    * 服务方法
@@ -75,55 +69,32 @@ public class LangAction
     }
 
     /**
-     * 如果指定语言的数据并没有改变
-     * 则直接返回 304 Not modified
+     * 按名称及语言等区分条目
+     * 配置对象改变时重新生成
      */
-    String m;
-    m = helper.getRequest().getHeader("If-Modified-Since");
-    if (m != null && m.equals(LangAction.MTIMES.get(name)))
-    {
-      helper.getResponse().setStatus(HttpServletResponse.SC_NOT_MODIFIED);
-      return;
-    }
-
-    /**
-     * 如果没有语言
-     * 则调用工厂方法构造 JS 代码
-     */
-    String s;
-    if (!LangAction.CACHES.containsKey(name))
-    {
-      try
-      {
-        s = this.makeLang(name);
+    final String conf = name;
+    final String ckey = name +":"+ Core.ACTION_LANG.get() +":"+ Core.ACTION_ZONE.get();
+    final AssetsHelper.Asset json;
+    final AssetsHelper.Asset asst;
+    try {
+      CoreLocale snap = CoreLocale.getInstance(conf);
+      json = ASSETS.get(ckey + ".json", snap, () -> this.makeLang(conf));
+      if ("json".equals(type)) {
+        asst = json;
+      } else {
+        asst = ASSETS.get(ckey + ".js"  , snap, () ->
+          "if(!self.HsLANG)self.HsLANG={};Object.assign(self.HsLANG,"+json.getText()+");");
       }
-      catch (HongsExemption ex) {
-        helper.error500(ex.getMessage());
-        return;
-      }
-
-      SimpleDateFormat
-          sdf = new SimpleDateFormat("EEE, d MMM yyyy HH:mm:ss z",
-                                      Locale.ENGLISH );
-          sdf.setTimeZone(TimeZone.getTimeZone("GMT"));
-      m = sdf.format(new Date());
-
-      LangAction.CACHES.put(name , s);
-      LangAction.MTIMES.put(name , m);
     }
-    else
-    {
-      s = LangAction.CACHES.get(name);
-      m = LangAction.MTIMES.get(name);
+    catch (HongsExemption ex) {
+      helper.error500(ex.getMessage());
+      return;
     }
 
-    // 标明修改时间
-    helper.getResponse().setHeader("Last-Modified", m);
-
     // 输出语言信息
     if ("json".equals(type))
     {
-      helper.print(s, "application/json");
+      AssetsHelper.serve(req, rsp, asst, "application/json");
     }
     else
     {
@@ -135,11 +106,11 @@ public class LangAction
           helper.error400("Illegal callback function name!");
           return;
         }
-        helper.print(c+"("+s+");", "text/javascript" );
+        helper.print(c+"("+json.getText()+");", "text/javascript");
       }
       else
       {
-        helper.print("if(!self.HsLANG)self.HsLANG={};Object.assign(self.HsLANG,"+s+");", "text/javascript");
+        AssetsHelper.serve(req, rsp, asst, "text/javascript");
       }
     }
   }
@@ -154,8 +125,7 @@ public class LangAction
     super.destroy();
 
     // 销毁配置信息
-    LangAction.CACHES.clear();
-    LangAction.MTIMES.clear();
+    LangAction.ASSETS.clear();
   }
 
   /**
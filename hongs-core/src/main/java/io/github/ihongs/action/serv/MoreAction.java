@@ -8,6 +8,8 @@ import io.github.ihongs.HongsException;
 import io.github.ihongs.HongsExemption;
 import io.github.ihongs.action.ActionDriver;
 import io.github.ihongs.action.ActionHelper;
+import io.github.ihongs.action.ActionRunner;
+import io.github.ihongs.action.ActionWorker;
 import io.github.ihongs.action.anno.Action;
 import io.github.ihongs.cmdlet.CmdletHelper;
 import io.github.ihongs.cmdlet.CmdletRunner;
@@ -17,14 +19,29 @@ import io.github.ihongs.util.Synt;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.FilterRegistration;
+import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
+import javax.servlet.ServletRegistration;
+import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
 
 /**
  * 通用聚合动作
@@ -47,6 +64,18 @@ import javax.servlet.http.HttpServletResponse;
  * }
  * 下层用 on 关联上层, 缺省为层级名加 _id;
  * 当顶层 at 未给出时, 顶层资源平行无关联.
+ *
+ * 并发配置:
+ * core.more.concurrent.enable  启用并发执行, 默认 false
+ * core.more.concurrent.limit   单次请求并发数, 默认 4
+ * core.more.concurrent.timeout 单次请求超时(毫秒), 默认 30000
+ * 启用后, 无依赖的节点(平行的顶层资源, 同一上层下的兄弟节点)同时执行,
+ * 下层节点在其上层完成后立即执行; 各节点在 ActionWorker 线程中,
+ * 使用各自的 ActionHelper 经 ActionRunner 执行, 不经过 Servlet 过滤器;
+ * 故任一节点路径配有过滤器(如 AuthFilter, 不论何种 dispatcher)时,
+ * 退回逐个 include 执行, 以免绕过权限等过滤器.
+ * 节点的 ActionHelper 不持有原请求和响应, 会话和跟踪数据为其快照;
+ * 超时则未完成的节点均记为超时, 已在 ActionWorker 线程中则仍逐个执行.
  * @author Hongs
  */
 @Action("common/more")
@@ -64,6 +93,17 @@ public class MoreAction {
         Wrap  wrap = new Wrap( helper );
         String act = null;
 
+        CoreConfig cnf = CoreConfig.getInstance();
+        if (cnf.getProperty("core.more.concurrent.enable", false)
+        && ! ActionWorker.inside()
+        && ! filtered(req, re0)) {
+            int  max = cnf.getProperty("core.more.concurrent.limit"  ,     4);
+            long out = cnf.getProperty("core.more.concurrent.timeout", 30000L);
+            fork(helper, re0, rs0, max, out);
+            helper.reply(rs0);
+            return;
+        }
+
         try {
             act = Core.ACTION_NAME.get();
             core.put(ActionHelper.class.getName(),  wrap );
@@ -315,26 +355,397 @@ public class MoreAction {
         try {
             req.getRequestDispatcher("/" + act).include(req, rsp);
         } catch (ServletException | IOException ex ) {
-            if (ex.getCause() instanceof HongsCause) {
-                HongsCause  ez = ( HongsCause ) ex.getCause( );
-                String en = Integer.toHexString(ez.getErrno());
-                Map map = new HashMap();
-                map.put("ok" ,  false );
-                map.put("ern", "Ex"+en);
-                map.put("err", ez.getMessage());
-                map.put("msg", ez.getLocalizedMessage());
-                helper.reply(map);
+            helper.reply(fail(ex.getCause() instanceof HongsCause
+                       ? ex.getCause() : ex));
+        }
+    }
+
+    private static Map fail(Throwable ex) {
+        Map map = new HashMap();
+        if (ex instanceof HongsCause) {
+            HongsCause  ez = ( HongsCause ) ex;
+            String en = Integer.toHexString(ez.getErrno());
+            map.put("ok" ,  false );
+            map.put("ern", "Ex"+en);
+            map.put("err", ez.getMessage());
+            map.put("msg", ez.getLocalizedMessage());
+        } else {
+            map.put("ok" ,  false );
+            map.put("ern", "Er500");
+            map.put("err", ex.getMessage());
+            map.put("msg", ex.getLocalizedMessage());
+        }
+        return map;
+    }
+
+    /**
+     * 并发执行
+     * 由当前线程调度和合并数据, 工作线程仅执行动作
+     * @param helper
+     * @param re0 请求数据
+     * @param rs0 响应数据
+     * @param max 并发数量
+     * @param out 超时毫秒
+     */
+    private void fork(ActionHelper helper, Map re0, Map rs0, int max, long out) {
+        CompletionService<Map> cs = new ExecutorCompletionService(ActionWorker.getExecutor());
+        Map<Future, Node> fs = new HashMap();
+        Deque<Node> ns = new ArrayDeque();
+        long dl = System.currentTimeMillis() + out;
+
+        // 顶层节点
+        Node top = Node.parse(null, null, re0);
+        if (top == null) {
+            return;
+        }
+        if (top.uri != null) {
+            ns.add(top);
+        } else {
+            top.ready(ns);
+        }
+
+        try {
+            while (! ns.isEmpty() || ! fs.isEmpty()) {
+                // 填满并发
+                while (! ns.isEmpty() && fs.size() < max) {
+                    Node nd = ns.poll();
+                    Map  rd = nd.request();
+                    if ( rd == null ) {
+                        continue;
+                    }
+                    Wrap hp = new Wrap(helper, rd);
+                    String uri = nd.uri;
+                    fs.put(cs.submit(ActionWorker.wrap(hp, uri + Cnst.ACT_EXT, () -> call(hp, uri))), nd);
+                }
+                if (fs.isEmpty()) {
+                    break;
+                }
+
+                // 等待结果
+                long tt = dl - System.currentTimeMillis();
+                Future<Map> fu = tt > 0 ? cs.poll(tt, TimeUnit.MILLISECONDS) : null;
+                if (fu == null) {
+                    // 执行中的取消, 未执行的不再执行, 均记为超时
+                    for(Map.Entry<Future, Node> et : fs.entrySet()) {
+                        et.getKey(  ).cancel(true);
+                        et.getValue().merge (rs0 , timeout());
+                    }
+                    for(Node nd : ns) {
+                        nd.merge(rs0 , timeout());
+                    }
+                    fs.clear();
+                    ns.clear();
+
+                    // 下层节点的错误不上移, 需标记整体超时
+                    if (Synt.declare(rs0.get("ok"), true)) {
+                        rs0.putAll(timeout());
+                    }
+                    break;
+                }
+
+                Node nd = fs.remove(fu);
+                Map  rs ;
+                try {
+                    rs = fu.get();
+                } catch (ExecutionException ex) {
+                    rs = fail(ex.getCause());
+                }
+                if (nd.merge(rs0, rs)) {
+                    nd.ready(ns);
+                }
+            }
+        } catch (InterruptedException ex) {
+            for(Future fu : fs.keySet()) {
+                fu.cancel(true);
+            }
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Map timeout() {
+        Map map = new HashMap();
+        map.put("ok" ,  false );
+        map.put("ern", "Er504");
+        map.put("err", "Timeout");
+        map.put("msg", "Timeout");
+        return map;
+    }
+
+    /**
+     * 聚合节点
+     * 对应请求中的一层, 仅在调度线程中读写
+     */
+    private static class Node {
+
+        private final Node   sup;
+        private final String sub;
+        private final String uri;
+        private final String col;
+        private final String key;
+        private final Map    re0;
+        private final Map    re1;
+        private Map<Object, List> map = null;
+        private MergeMore meg = null;
+
+        private Node(Node sup, String sub, String uri, String key, String col, Map re0, Map re1) {
+            this.sup = sup;
+            this.sub = sub;
+            this.uri = uri;
+            this.key = key;
+            this.col = col;
+            this.re0 = re0;
+            this.re1 = re1;
+        }
+
+        public static Node parse(Node sup, String sub, Map re0) {
+            String uri;
+            String key;
+            String col;
+            Map    re1;
+
+            try {
+                uri = (String) re0.remove("at");
+                key = (String) re0.remove("on");
+                re1 = (Map   ) re0.remove("in");
+            }
+            catch (ClassCastException e) {
+                return null;
+            }
+
+            // 仅顶层可以没有 at
+            if (uri == null && (sup != null || sub != null)) {
+                return null;
+            }
+
+            // 有上层结果才关联
+            if (sup != null && sup.meg != null) {
+                if (key != null) {
+                    int  p  = key.indexOf  (':');
+                    if ( p >= 0) {
+                        col = key.substring(1+p);
+                        key = key.substring(0,p);
+                    } else {
+                        col = Cnst.ID_KEY;
+                    }
+                } else {
+                        col = Cnst.ID_KEY;
+                        key = sub +"_"+ Cnst.ID_KEY;
+                }
             } else {
-                Map map = new HashMap();
-                map.put("ok" ,  false );
-                map.put("ern", "Er500");
-                map.put("err", ex.getMessage());
-                map.put("msg", ex.getLocalizedMessage());
-                helper.reply(map);
+                sup = null;
+                key = null;
+                col = null;
             }
+
+            if (re1 == null) {
+                re1  = new  HashMap( );
+            }
+
+            return new Node(sup, sub, uri, key, col, re0, re1);
+        }
+
+        /**
+         * 构建请求数据
+         * @return 无需执行则为 null
+         */
+        public Map request() {
+            if (sup != null) {
+                map = sup.meg.mapped(key);
+                if (map.isEmpty()) {
+                    return null;
+                }
+                re1.put(col, new LinkedHashSet(map.keySet()));
+            }
+            return re1;
+        }
+
+        /**
+         * 合并响应数据
+         * @param rs0 顶层响应
+         * @param rs1 节点响应
+         * @return 有列表数据可供下层关联则为 true
+         */
+        public boolean merge(Map rs0, Map rs1) {
+            if (rs1 == null) {
+                return false;
+            }
+
+            if (sup == null) {
+                if (sub == null) {
+                    rs0.putAll ( rs1);
+                } else {
+                    rs0.put(sub, rs1);
+
+                    // 首个错误上移
+                    if (Synt.declare(rs0.get("ok"), true)
+                    && !Synt.declare(rs1.get("ok"), true)) {
+                        rs0.put("ok", false);
+                        if (rs1.containsKey("ern")) {
+                            rs0.put("ern", rs1.get("ern"));
+                        }
+                        if (rs1.containsKey("err")) {
+                            rs0.put("err", rs1.get("err"));
+                        }
+                        if (rs1.containsKey("msg")) {
+                            rs0.put("msg", rs1.get("msg"));
+                        }
+                    }
+                }
+            }
+
+            // 获取列表
+            List<Map> list = (List) rs1.get("list");
+            if (list == null) {
+                 Map  info = (Map ) rs1.get("info");
+            if (info != null) {
+                list  = Synt.listOf (info);
+            } else {
+                return false;
+            }}
+
+            if (sup != null) {
+                // 预设关联
+                for(Map.Entry<Object, List> lr : map.entrySet()) {
+                    List<Map> lst = lr . getValue( );
+                    for (Map  row : lst) {
+                      row.put(sub , new ArrayList());
+                    }
+                }
+
+                // 执行关联
+                sup.meg.append(list, map, col, sub);
+            }
+
+            // 下级关联
+            meg = new MergeMore(list);
+            return true;
+        }
+
+        /**
+         * 登记下级节点
+         * @param ns
+         */
+        public void ready(Deque<Node> ns) {
+            for(Object ot : re0.entrySet()) {
+                Map.Entry  et = (Map.Entry) ot;
+                Object k = et.getKey  ();
+                Object v = et.getValue();
+                if (v instanceof Map
+                &&  k instanceof String) {
+                    Node nd = parse(uri != null ? this : null, (String) k, (Map) v);
+                    if ( nd != null) {
+                        ns.add(nd);
+                    }
+                }
+            }
+        }
+
+    }
+
+    /**
+     * 节点任务
+     * 不经过滤器, 仅用于没有配过滤器的路径
+     * @param hlp
+     * @param uri
+     * @return
+     */
+    private static Map call(ActionHelper hlp, String uri) {
+        try {
+            ActionRunner.newInstance(hlp, uri).doAction();
+            return hlp.getResponseData();
+        } catch (HongsException | HongsExemption ex) {
+            return fail(ex);
         }
     }
 
+    /**
+     * 是否有节点路径配有过滤器
+     * 过滤器登记中无法获知 dispatcher, 配了即算
+     * @param req
+     * @param re0
+     * @return 无法获取过滤器登记也为 true
+     */
+    private static boolean filtered(HttpServletRequest req, Map re0) {
+        if (req == null) {
+            return false;
+        }
+
+        ServletContext sc = req.getServletContext();
+        Collection<? extends FilterRegistration> fs;
+        try {
+            fs = sc.getFilterRegistrations().values();
+        } catch (UnsupportedOperationException ex) {
+            return true ;
+        }
+        if (fs.isEmpty()) {
+            return false;
+        }
+
+        Deque<Map> ms = new ArrayDeque();
+        ms.add(re0);
+        while (! ms.isEmpty()) {
+            Map re1 = ms.poll();
+            Object at = re1.get("at");
+            if (at instanceof String
+            &&  filtered(sc, fs, "/" + at + Cnst.ACT_EXT)) {
+                return true;
+            }
+            for(Object ot : re1.entrySet()) {
+                Map.Entry  et = (Map.Entry) ot;
+                if (et.getValue() instanceof Map
+                && !"in".equals(et.getKey())) {
+                    ms.add((Map) et.getValue());
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean filtered(ServletContext sc, Collection<? extends FilterRegistration> fs, String uri) {
+        for(FilterRegistration fr : fs) {
+            for(String pat : fr.getUrlPatternMappings()) {
+                if (matches(pat, uri)) {
+                    return true;
+                }
+            }
+            for(String nam : fr.getServletNameMappings()) {
+                if ("*".equals(nam)) {
+                    return true;
+                }
+                ServletRegistration sr = sc.getServletRegistration(nam);
+                if (sr == null) {
+                    continue;
+                }
+                for(String pat : sr.getMappings()) {
+                    if (matches(pat, uri)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 按 Servlet 规范匹配路径
+     * @param pat 精确路径, /前缀/*, *.扩展名, / 或 /*
+     * @param uri
+     * @return
+     */
+    private static boolean matches(String pat, String uri) {
+        if (pat.equals("/") || pat.equals("/*")) {
+            return true;
+        }
+        if (pat.startsWith("*.")) {
+            return uri.endsWith(pat.substring(1));
+        }
+        if (pat.endsWith("/*")) {
+            String pre = pat.substring(0, pat.length() - 2);
+            return uri.equals(pre) || uri.startsWith(pre + "/");
+        }
+        return uri.equals(pat);
+    }
+
     private void exec(ActionHelper helper, String cmd,
             HttpServletRequest req, HttpServletResponse rsp) {
         // 组织参数
@@ -400,6 +811,47 @@ public class MoreAction {
             super(helper.getRequest(), helper.getResponse());
         }
 
+        /**
+         * 并发节点专用
+         * 不持有原请求和响应, 会话和跟踪数据为快照,
+         * 超时被取消后任务仍在执行也不会改动原请求
+         * @param helper
+         * @param req 节点请求数据
+         */
+        public Wrap(ActionHelper helper, Map req) {
+            super(req, new HashMap(), sessions(helper), cookies(helper));
+        }
+
+        private static Map sessions(ActionHelper helper) {
+            Map ses = new HashMap();
+            HttpServletRequest req = helper.getRequest();
+            if (req == null) {
+                return ses;
+            }
+            HttpSession hss = req.getSession(false);
+            if (hss == null) {
+                return ses;
+            }
+            Enumeration<String> ns = hss.getAttributeNames();
+            while (ns.hasMoreElements()) {
+                String n = ns.nextElement();
+                ses.put(n, hss.getAttribute(n));
+            }
+            return ses;
+        }
+
+        private static Map cookies(ActionHelper helper) {
+            Map cok = new HashMap();
+            HttpServletRequest req = helper.getRequest();
+            if (req == null || req.getCookies() == null) {
+                return cok;
+            }
+            for (Cookie ce : req.getCookies()) {
+                cok.put(ce.getName(), helper.getCookibute(ce.getName()));
+            }
+            return cok;
+        }
+
         @Override
         public void responed() {
             // Nothing to do
@@ -112,19 +112,11 @@ public class CmdletRunner implements Runnable
     }
     catch (Throwable e)
     {
-      if (e instanceof HongsCause)
+      c = getExitCode(e);
+      if (e instanceof HongsCause
+      && ((HongsCause) e).getErrno() == 0x844)
       {
-        switch (((HongsCause) e).getErrno())
-        {
-          case 0x842: c = 2; break;
-          case 0x843: c = 3; break;
-          case 0x844: e = e.getCause();
-          default   : c = 4;
-        }
-      }
-      else
-      {
-        c = 5;
+        e = e.getCause();
       }
       if (0 == Core.DEBUG || 8 == (8 & Core.DEBUG))
       {
@@ -147,6 +139,29 @@ public class CmdletRunner implements Runnable
     }
   }
 
+  /**
+   * 退出代码
+   * 2 命令不存在, 3 无法调用, 4 执行异常, 5 其他错误
+   * @param e
+   * @return
+   */
+  public static int getExitCode(Throwable e)
+  {
+    if (e instanceof HongsCause)
+    {
+      switch (((HongsCause) e).getErrno())
+      {
+        case 0x842: return 2;
+        case 0x843: return 3;
+        default   : return 4;
+      }
+    }
+    else
+    {
+        return 5;
+    }
+  }
+
   /**
    * 内部执行
    * @param args
@@ -8,6 +8,7 @@ import io.github.ihongs.cmdlet.CmdletRunner;
 import io.github.ihongs.cmdlet.anno.Cmdlet;
 import io.github.ihongs.CoreRoster.Mathod;
 import io.github.ihongs.HongsExemption;
+import io.github.ihongs.util.Latency;
 import java.io.File;
 import java.io.PrintStream;
 import java.io.FileInputStream;
@@ -167,6 +168,40 @@ public class Common {
         }
     }
 
+    @Cmdlet("show-stats")
+    public static void showStats(String[] args) {
+        // 可先执行给定的命令, 再输出其间的耗时统计
+        if (args.length > 0) {
+            CmdletRunner.exec(args);
+        }
+
+        Map<String, Map> a = Latency.stats(null);
+        int i = 0, j;
+
+        for (String k : a.keySet()) {
+            j = k.length();
+            if (i < j && j < 59) {
+                i = j;
+            }
+        }
+
+        PrintStream out = CmdletHelper.OUT.get ();
+
+        if (! Latency.isEnable()) {
+            out.println("Latency stats is disabled, see core.latency.enable");
+            return;
+        }
+
+        out.println(String.format("%-" + Math.max(i, 4) + "s\t%10s\t%10s\t%10s\t%10s\t%10s\t%10s",
+                "NAME", "COUNT", "MEAN(ms)", "P50(ms)", "P99(ms)", "P999(ms)", "MAX(ms)"));
+        for (Map.Entry<String, Map> n : a.entrySet()) {
+            Map v = n.getValue();
+            out.println(String.format("%-" + Math.max(i, 4) + "s\t%10d\t%10.3f\t%10.3f\t%10.3f\t%10.3f\t%10.3f",
+                n.getKey(), v.get("count"), v.get("mean"),
+                v.get("p50"), v.get("p99"), v.get("p999"), v.get("max")));
+        }
+    }
+
     @Cmdlet("view-serial")
     public static void viewSerial(String[] args) throws HongsException {
         if (args.length == 0) {
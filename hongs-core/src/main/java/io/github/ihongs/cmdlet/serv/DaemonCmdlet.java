@@ -0,0 +1,470 @@
+package io.github.ihongs.cmdlet.serv;
+
+import io.github.ihongs.Core;
+import io.github.ihongs.CoreConfig;
+import io.github.ihongs.CoreLocale;
+import io.github.ihongs.CoreLogger;
+import io.github.ihongs.HongsCause;
+import io.github.ihongs.HongsException;
+import io.github.ihongs.HongsExemption;
+import io.github.ihongs.action.ActionHelper;
+import io.github.ihongs.cmdlet.CmdletHelper;
+import io.github.ihongs.cmdlet.CmdletRunner;
+import io.github.ihongs.cmdlet.anno.Cmdlet;
+import io.github.ihongs.util.Synt;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 命令守护进程
+ *
+ * <p>
+ * 每次执行命令都要启动 JVM, 扫描类, 读取配置, 建立连接池, 打开索引等,
+ * 定时任务频繁调用时开销可观.
+ * daemon.start 常驻并监听本机回环端口, 在进程内执行客户端发来的命令,
+ * 每个命令使用独立的线程核心(Core.THREAD_CORE)和输入输出, 全局核心共享;
+ * 客户端(本类的 main, 即 bin/hdc)仅需 JDK 自带类, 将输出和退出代码原样返回.
+ * </p>
+ *
+ * <p>
+ * 启动时在 DATA_PATH/server/daemon-端口.key 写入随机口令, 仅属主可读,
+ * 客户端须读取并发送该口令, 以免本机其他用户借此执行命令.
+ * 命令中调用 System.exit 会终止守护进程, 此类命令(如 server.start)勿经守护进程执行.
+ * 命令可附加 --LANGUAGE, --TIMEZONE 选项, 其他核心选项以守护进程启动时为准.
+ * </p>
+ *
+ * <h3>配置选项:</h3>
+ * <pre>
+ * core.daemon.port     监听端口, 默认为 18080
+ * core.daemon.threads  同时执行的命令数, 默认为 8
+ * core.daemon.timeout  接收口令和参数的超时毫秒数, 默认为 10000
+ * </pre>
+ *
+ * <h3>客户端退出代码:</h3>
+ * <pre>
+ * 0-5 同 CmdletRunner
+ * 9   无法连接守护进程
+ * </pre>
+ *
+ * @author Hongs
+ */
+@Cmdlet("daemon")
+public class DaemonCmdlet {
+
+    /**
+     * 帧类型: 退出, 标准输出, 错误输出
+     */
+    private static final byte EXIT = 0;
+    private static final byte OUT  = 1;
+    private static final byte ERR  = 2;
+
+    /**
+     * 单个命令的参数个数上限
+     */
+    private static final int  MAX_ARGS = 1024;
+
+    @Cmdlet("start")
+    public static void start(String[] args) throws HongsException {
+        Map opts = CmdletHelper.getOpts(args,
+            "port:i", "threads:i"
+        );
+        CoreConfig cc = CoreConfig.getInstance();
+        int port = Synt.declare(opts.get("port"   ), cc.getProperty("core.daemon.port"   , 18080));
+        int thds = Synt.declare(opts.get("threads"), cc.getProperty("core.daemon.threads", 8    ));
+        int tout = cc.getProperty("core.daemon.timeout", 10000);
+
+        ServerSocket ss;
+        try {
+            ss = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        } catch (IOException e) {
+            throw new HongsException("Can not listen on port "+port, e);
+        }
+
+        // 写入口令, 仅属主可读写
+        String key = newKey();
+        File   kf  = getKeyFile(Core.DATA_PATH, port);
+        try {
+            kf.getParentFile().mkdirs();
+            kf.delete();
+            kf.createNewFile();
+            kf.setReadable(false, false);
+            kf.setWritable(false, false);
+            kf.setReadable(true , true );
+            kf.setWritable(true , true );
+            try (FileWriter fw = new FileWriter(kf)) {
+                fw.write(key);
+            }
+        } catch (IOException e) {
+            try {
+                ss.close();
+            } catch (IOException x) {
+                // Nothing to do
+            }
+            throw new HongsException(e);
+        }
+
+        AtomicInteger   ai = new AtomicInteger();
+        ExecutorService es = Executors.newFixedThreadPool(thds, r -> {
+            Thread t = new Thread(r, "daemon-" + ai.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+
+        Runtime.getRuntime().addShutdownHook(new Stoper(ss, es, kf));
+
+        CmdletHelper.ERR.get().println("Daemon is listening on " + ss.getLocalSocketAddress());
+
+        // 记下启动时的语言和时区, 供各命令缺省使用
+        String lang = Core.ACTION_LANG.get();
+        String zone = Core.ACTION_ZONE.get();
+
+        while (! ss.isClosed()) {
+            Socket so;
+            try {
+                so = ss.accept();
+            } catch (SocketException e) {
+                break; // 已关闭
+            } catch (IOException e) {
+                CoreLogger.error(e);
+                continue;
+            }
+            try {
+                es.execute(() -> serve(so, key, tout, lang, zone));
+            } catch (RuntimeException e) {
+                CoreLogger.error(e);
+                close(so);
+            }
+        }
+    }
+
+    /**
+     * 处理一个连接
+     * 请求: 口令, 参数个数, 各参数(均为 UTF)
+     * 响应: 若干帧 类型+长度+内容, 最后为退出帧 0+代码
+     * 口令和参数须在限时内发来, 以免空闲连接占满工作线程
+     */
+    private static void serve(Socket so, String key, int tout, String lang, String zone) {
+        try {
+            DataInputStream  in = new DataInputStream (new BufferedInputStream (so.getInputStream ()));
+            DataOutputStream ot = new DataOutputStream(new BufferedOutputStream(so.getOutputStream()));
+
+            so.setSoTimeout(tout);
+            if (! MessageDigest.isEqual(
+                key.getBytes(StandardCharsets.UTF_8),
+                in .readUTF ( ).getBytes(StandardCharsets.UTF_8)
+            )) {
+                CoreLogger.error("Daemon refused a client with wrong key");
+                return;
+            }
+            int n = in.readInt();
+            if (n < 0 || n > MAX_ARGS) {
+                return;
+            }
+            String[] args = new String[n];
+            for (int i = 0; i < n; i ++) {
+                args[i] = in.readUTF();
+            }
+            so.setSoTimeout(0); // 命令执行时长不限
+
+            PrintStream out = new PrintStream(new Frame(ot, OUT), true, "UTF-8");
+            PrintStream err = new PrintStream(new Frame(ot, ERR), true, "UTF-8");
+            int c = exec(args, out, err, lang, zone);
+            out.flush();
+            err.flush();
+
+            synchronized (ot) {
+                ot.writeByte(EXIT);
+                ot.writeInt (c   );
+                ot.flush();
+            }
+        } catch (IOException e) {
+            // 客户端已断开
+        } finally {
+            close(so);
+        }
+    }
+
+    /**
+     * 在当前线程执行命令
+     * 执行完后清理线程核心及相关线程变量
+     * @param args
+     * @param out
+     * @param err
+     * @param lang 缺省语言
+     * @param zone 缺省时区
+     * @return 退出代码, 同 CmdletRunner
+     */
+    public static int exec(String[] args, PrintStream out, PrintStream err, String lang, String zone) {
+        try {
+            // 先设缺省, 选项有误时也可按语言输出错误
+            Core.ACTION_LANG.set(lang);
+            Core.ACTION_ZONE.set(zone);
+
+            Map<String, Object> opts;
+            opts = CmdletHelper.getOpts(args,
+                "LANGUAGE:s", "TIMEZONE:s", "!U", "!A"
+            );
+            args = (String[]) opts.get("");
+
+            String l = (String) opts.get("LANGUAGE");
+            if (l != null && ! l.isEmpty()) {
+                String x = CoreLocale.getAcceptLanguage(l);
+                if (x == null) {
+                    throw new HongsExemption(0x842, "Unsupported language: "+l+".");
+                }
+                lang = x;
+            }
+            String z = (String) opts.get("TIMEZONE");
+            if (z != null && ! z.isEmpty()) {
+                zone = z;
+            }
+
+            Core.ACTION_NAME.set(args.length > 0 ? args[0] : null);
+            Core.ACTION_TIME.set(System.currentTimeMillis());
+            Core.ACTION_LANG.set(lang);
+            Core.ACTION_ZONE.set(zone);
+
+            CmdletHelper.ENV.set((byte) 0);
+            CmdletHelper.OUT.set(out);
+            CmdletHelper.ERR.set(err);
+            CmdletHelper.IN .set(new ByteArrayInputStream(new byte[0]));
+
+            if (args.length > 0 && args[0].startsWith("daemon.")) {
+                throw new HongsExemption(0x842, "Cmdlet "+args[0]+" can not run in daemon.");
+            }
+
+            ActionHelper hlpr = new ActionHelper(null, null, null, null);
+            Core.getInstance( ).put(ActionHelper.class.getName( ), hlpr);
+            hlpr.updateOutput (out, new PrintWriter(out));
+
+            CmdletRunner.exec(args);
+            return 0;
+        } catch (Throwable e) {
+            int c = CmdletRunner.getExitCode(e);
+            if (e instanceof HongsCause
+            && ((HongsCause) e).getErrno() == 0x844
+            &&  e.getCause() != null) {
+                e = e.getCause();
+            }
+            err.println(e.getLocalizedMessage());
+            if (0 != Core.DEBUG && 8 != (8 & Core.DEBUG)) {
+                CoreLogger.error(e);
+            }
+            return c;
+        } finally {
+            try {
+                Core.THREAD_CORE.remove();
+            } catch (Error e) {
+                CoreLogger.error(e);
+            }
+            Core.ACTION_NAME.remove();
+            Core.ACTION_TIME.remove();
+            Core.ACTION_LANG.remove();
+            Core.ACTION_ZONE.remove();
+            CmdletHelper.ENV.remove();
+            CmdletHelper.OUT.remove();
+            CmdletHelper.ERR.remove();
+            CmdletHelper.IN .remove();
+        }
+    }
+
+    /**
+     * 客户端
+     *
+     * <p>
+     * 用法: java -Dhongs.daemon.key=口令文件 [-Dhongs.daemon.port=端口] DaemonCmdlet 命令 参数...
+     * 仅依赖 JDK, 避免加载核心类.
+     * </p>
+     *
+     * @param args
+     */
+    public static void main(String[] args) {
+        int    port = Integer.getInteger("hongs.daemon.port", 18080);
+        String path = System.getProperty("hongs.daemon.key" );
+        if (path == null) {
+            System.err.println("Property hongs.daemon.key is required");
+            System.exit(9);
+            return;
+        }
+
+        String key;
+        try {
+            key = new String(Files.readAllBytes(new File(path).toPath()), StandardCharsets.UTF_8).trim();
+        } catch (IOException e) {
+            System.err.println("Daemon is not running, can not read "+path);
+            System.exit(9);
+            return;
+        }
+
+        Socket so;
+        try {
+            so = new Socket(InetAddress.getLoopbackAddress(), port);
+        } catch (IOException e) {
+            System.err.println("Daemon is not running on port "+port);
+            System.exit(9);
+            return;
+        }
+
+        int c = 5;
+        try {
+            DataOutputStream ot = new DataOutputStream(new BufferedOutputStream(so.getOutputStream()));
+            DataInputStream  in = new DataInputStream (new BufferedInputStream (so.getInputStream ()));
+            ot.writeUTF (key);
+            ot.writeInt (args.length);
+            for (String arg : args) {
+                ot.writeUTF(arg);
+            }
+            ot.flush();
+
+            byte[] buf = new byte[8192];
+            while (true) {
+                byte t = in.readByte();
+                if (t == EXIT) {
+                    c = in.readInt();
+                    break;
+                }
+                int n = in.readInt();
+                PrintStream ps = t == ERR ? System.err : System.out;
+                while (n > 0) {
+                    int r = in.read(buf, 0, Math.min(n, buf.length));
+                    if (r < 0) {
+                        throw new IOException("Unexpected end of stream");
+                    }
+                    ps.write(buf, 0, r);
+                    n -= r;
+                }
+                ps.flush();
+            }
+        } catch (EOFException e) {
+            System.err.println("Daemon closed the connection, the key may be wrong");
+        } catch (IOException e) {
+            System.err.println("Daemon connection broken: "+e.getMessage());
+        } finally {
+            close(so);
+        }
+        System.exit(c);
+    }
+
+    /**
+     * 获取口令文件
+     * @param dataPath
+     * @param port
+     * @return
+     */
+    public static File getKeyFile(String dataPath, int port) {
+        return new File(dataPath + File.separator + "server" + File.separator + "daemon-" + port + ".key");
+    }
+
+    private static String newKey() {
+        byte[] bs = new byte[24];
+        new SecureRandom().nextBytes(bs);
+        StringBuilder sb = new StringBuilder(48);
+        for (byte b : bs) {
+            sb.append(Character.forDigit((b >> 4) & 15, 16))
+              .append(Character.forDigit( b       & 15, 16));
+        }
+        return sb.toString();
+    }
+
+    private static void close(Socket so) {
+        try {
+            so.close();
+        } catch (IOException e) {
+            // Nothing to do
+        }
+    }
+
+    /**
+     * 输出帧
+     * 每次写入为一帧, 两路输出共用连接, 故需同步
+     */
+    private static class Frame extends OutputStream {
+
+        private final DataOutputStream ot;
+        private final byte             tp;
+
+        public Frame(DataOutputStream ot, byte tp) {
+            this.ot = ot;
+            this.tp = tp;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return;
+            }
+            synchronized (ot) {
+                ot.writeByte(tp );
+                ot.writeInt (len);
+                ot.write(b, off, len);
+                ot.flush();
+            }
+        }
+
+    }
+
+    /**
+     * 停止时不再接受连接, 等待执行中的命令结束后关闭全局核心
+     */
+    private static class Stoper extends Thread {
+
+        private final ServerSocket    ss;
+        private final ExecutorService es;
+        private final File            kf;
+
+        public Stoper(ServerSocket ss, ExecutorService es, File kf) {
+            this.ss = ss;
+            this.es = es;
+            this.kf = kf;
+        }
+
+        @Override
+        public void run() {
+            kf.delete();
+            try {
+                ss.close();
+            } catch (IOException e) {
+                // Nothing to do
+            }
+            es.shutdown();
+            try {
+                if (! es.awaitTermination(30, TimeUnit.SECONDS)) {
+                    System.err.println("Daemon commands are still running, forced to stop");
+                }
+            } catch (InterruptedException e) {
+                // Nothing to do
+            }
+            Core.GLOBAL_CORE.close();
+        }
+
+    }
+
+}
@@ -8,10 +8,12 @@ import io.github.ihongs.db.link.Link;
 import io.github.ihongs.db.link.Loop;
 import io.github.ihongs.db.link.Origin;
 import io.github.ihongs.db.link.Source;
+import io.github.ihongs.db.util.FetchCache;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.Properties;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -115,6 +117,11 @@ public class DB
   private   final  Map source;
   private   final  Map origin;
 
+  /**
+   * 事务中写过的表
+   */
+  private   final  Set<String> dirty = new LinkedHashSet();
+
   public DB(  String name)
     throws HongsException
   {
@@ -354,6 +361,111 @@ public class DB
     return fetchCase().from(tableInst.tableName, tableInst.name);
   }
 
+  //** 写入方法 **/
+
+  @Override
+  public int insert(String table, Map<String, Object> values)
+    throws HongsException
+  {
+    try {
+      return super.insert(table, values);
+    } finally {
+      touch(table);
+    }
+  }
+
+  @Override
+  public int update(String table, Map<String, Object> values, String where, Object... params)
+    throws HongsException
+  {
+    try {
+      return super.update(table, values, where, params);
+    } finally {
+      touch(table);
+    }
+  }
+
+  @Override
+  public int delete(String table, String where, Object... params)
+    throws HongsException
+  {
+    try {
+      return super.delete(table, where, params);
+    } finally {
+      touch(table);
+    }
+  }
+
+  @Override
+  public void commit()
+  {
+    try {
+      super.commit();
+    } finally {
+      clean();
+    }
+  }
+
+  @Override
+  public void revert()
+  {
+    try {
+      super.revert();
+    } finally {
+      clean();
+    }
+  }
+
+  @Override
+  public void close()
+  {
+    try {
+      super.close();
+    } finally {
+      clean();
+    }
+  }
+
+  /**
+   * 标记表已写入
+   * 使该表的查询缓存作废, 事务中的写入在提交时会再作废一次,
+   * 因为提交之前其他连接读到的仍是旧数据, 可能被重新缓存.
+   * 通过 insert,update,delete 写入时会自动调用, 直接执行语句的需自行调用.
+   * @param table 真实表名
+   */
+  public void touch(String table)
+  {
+    FetchCache.touch(name, table);
+    if (REFLUX_MODE)
+    {
+      dirty.add(table);
+    }
+  }
+
+  /**
+   * 是否有未提交的写入
+   * 有则本连接读到的可能是未提交的数据, 不得使用或写入缓存
+   * @param table 真实表名
+   * @return
+   */
+  public boolean isDirty(String table)
+  {
+    return dirty.contains(table);
+  }
+
+  private void clean()
+  {
+    if (dirty.isEmpty())
+    {
+      return;
+    }
+    for(String table : dirty)
+    {
+      FetchCache.touch(name, table);
+    }
+    dirty.clear();
+  }
+
   //** 模型方法 **/
 
   /**
@@ -797,6 +797,12 @@ implements IEntity
       fp.setPugs(Math.abs(pugs));
       fp.setRows(Math.abs(rows));
 
+      // 有游标则按排序字段定位
+      if (rd.containsKey(Cnst.CS_KEY))
+      {
+        fp.setCursor(Synt.declare(rd.get(Cnst.CS_KEY), ""));
+      }
+
       // 页码等于 0 则不要列表数据
       if (page != 0)
       {
@@ -6,6 +6,7 @@ import io.github.ihongs.CoreLocale;
 import io.github.ihongs.HongsException;
 import io.github.ihongs.db.util.FetchCase;
 import io.github.ihongs.db.util.AssocMore;
+import io.github.ihongs.db.util.FetchCache;
 import io.github.ihongs.util.Synt;
 import java.sql.Types;
 import java.sql.Date;
@@ -18,6 +19,7 @@ import java.util.Iterator;
 import java.util.Arrays;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -196,6 +198,26 @@ public class Table
       }
     }
 
+    // 开启缓存且本连接未写过相关表时才走缓存
+    long ttl = Synt.declare(params.get("cache.ttl"), 0L);
+    if ( ttl > 0 )
+    {
+      Set<String> tabs = getCacheTabs(caze);
+      boolean     dirt = false;
+      for(String  tn   : tabs)
+      {
+        if (db.isDirty(tn))
+        {
+          dirt = true;
+          break;
+        }
+      }
+      if (! dirt)
+      {
+        return FetchCache.get(db.name, caze, ttl, tabs, () -> AssocMore.fetchMore(this, caze, assocs));
+      }
+    }
+
     return AssocMore.fetchMore(this, caze, assocs);
   }
 
@@ -359,6 +381,61 @@ public class Table
 
   //** 工具方法 **/
 
+  /**
+   * 获取查询涉及的表, 含关联配置中的表和查询结构中的关联表
+   * @param caze
+   * @return
+   * @throws HongsException
+   */
+  protected Set<String> getCacheTabs(FetchCase caze)
+    throws HongsException
+  {
+    Set<String> tabs = new LinkedHashSet();
+    tabs.add(tableName);
+    getCacheTabs(tabs, assocs);
+    for(FetchCase  caze2 : caze.getJoinSet())
+    {
+      getCacheTabs(tabs, caze2);
+    }
+    return tabs;
+  }
+
+  private void getCacheTabs(Set<String> tabs, Map assocs)
+    throws HongsException
+  {
+    if (assocs == null)
+    {
+      return;
+    }
+    for(Object o : assocs.values())
+    {
+      Map    assoc = (Map) o;
+      String tn = (String) assoc.get("tableName");
+      if (tn == null || tn.length() == 0)
+      {
+          tn = (String) assoc.get("name");
+      }
+      Table  tb = db.getTable(tn);
+      if (tabs.add(tb.tableName))
+      {
+        getCacheTabs(tabs, (Map) assoc.get("assocs"));
+      }
+    }
+  }
+
+  private void getCacheTabs(Set<String> tabs, FetchCase caze)
+  {
+    String tn = caze.getTableName();
+    if (tn != null)
+    {
+      tabs.add(tn);
+    }
+    for(FetchCase  caze2 : caze.getJoinSet())
+    {
+      getCacheTabs(tabs, caze2);
+    }
+  }
+
   public Map getParams()
   {
     return this.params;
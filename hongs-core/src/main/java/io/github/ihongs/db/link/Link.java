@@ -7,6 +7,7 @@ import io.github.ihongs.CoreLogger;
 import io.github.ihongs.HongsException;
 import io.github.ihongs.HongsExemption;
 import io.github.ihongs.dh.IReflux;
+import io.github.ihongs.util.Latency;
 import io.github.ihongs.util.Syno;
 import io.github.ihongs.util.Synt;
 import java.sql.Connection;
@@ -426,6 +427,7 @@ abstract public class Link
   {
     List<Map<String, Object>> rows = new ArrayList();
          Map<String, Object>  row  ;
+    long tm = Latency.start();
 
     try (Loop rs = query(sql, start, limit, params))
     {
@@ -434,6 +436,10 @@ abstract public class Link
           rows.add(row);
         }
     }
+    finally
+    {
+      record(sql, "fetch", tm);
+    }
 
     return rows;
   }
@@ -450,6 +456,7 @@ abstract public class Link
   {
     List<Map<String, Object>> rows = new ArrayList();
          Map<String, Object>  row  ;
+    long tm = Latency.start();
 
     try (Loop rs = query(sql, 0, 0, params))
     {
@@ -458,6 +465,10 @@ abstract public class Link
           rows.add(row);
         }
     }
+    finally
+    {
+      record(sql, "fetch", tm);
+    }
 
     return rows;
   }
@@ -472,12 +483,17 @@ abstract public class Link
   public Map  fetchOne(String sql, Object... params)
     throws HongsException
   {
+    long tm = Latency.start();
     try (Loop rs = query(sql, 0, 1, params))
     {
         Map<String , Object> row = rs.next();
         if (row == null) row = new LinkedHashMap( );
         return row;
     }
+    finally
+    {
+      record(sql, "fetch", tm);
+    }
   }
 
   /** 执行语句 **/
@@ -504,6 +520,7 @@ abstract public class Link
     }
 
     PreparedStatement ps = this.prepareStatement(sql, params);
+    long tm = Latency.start();
 
     try
     {
@@ -516,6 +533,7 @@ abstract public class Link
     finally
     {
       this.closeStatement( ps );
+      record(sql, "update", tm);
     }
   }
 
@@ -541,6 +559,7 @@ abstract public class Link
     }
 
     PreparedStatement ps = this.prepareStatement(sql, params);
+    long tm = Latency.start();
 
     try
     {
@@ -553,6 +572,7 @@ abstract public class Link
     finally
     {
       this.closeStatement( ps );
+      record(sql, "update", tm);
     }
   }
 
@@ -682,6 +702,78 @@ abstract public class Link
 
   //** 静态工具 **/
 
+  /**
+   * 记录耗时
+   * 按 库名.表名:操作 归类, 表名取语句中首个 FROM/INTO/UPDATE 之后的名称
+   * @param sql
+   * @param act
+   * @param tm
+   */
+  private void record(String sql, String act, long tm)
+  {
+    if (tm != 0L)
+    {
+      Latency.record("db:" + name + "." + tableOf(sql) + ":" + act, tm);
+    }
+  }
+
+  private static String tableOf(String sql)
+  {
+    int l = sql.length();
+    for (int i = 0; i < l; i ++)
+    {
+      char c = sql.charAt(i);
+      if (c != 'F' && c != 'f'
+      &&  c != 'I' && c != 'i'
+      &&  c != 'U' && c != 'u')
+      {
+        continue;
+      }
+      if (i > 0 && Character.isLetterOrDigit(sql.charAt(i - 1)))
+      {
+        continue;
+      }
+      int j;
+      if (sql.regionMatches(true, i, "FROM "  , 0, 5))
+      {
+        j = i + 5;
+      } else
+      if (sql.regionMatches(true, i, "INTO "  , 0, 5))
+      {
+        j = i + 5;
+      } else
+      if (sql.regionMatches(true, i, "UPDATE ", 0, 7))
+      {
+        j = i + 7;
+      } else
+      {
+        continue;
+      }
+      while (j < l && Character.isWhitespace(sql.charAt(j)))
+      {
+        j ++;
+      }
+      int k = j;
+      while (k < l)
+      {
+        c = sql.charAt(k);
+        if (Character.isLetterOrDigit(c) || c == '_' || c == '.' || c == '`' || c == '"')
+        {
+          k ++;
+        } else
+        {
+          break;
+        }
+      }
+      if (k > j)
+      {
+        return sql.substring(j, k).replace("`", "").replace("\"", "");
+      }
+      break;
+    }
+    return "?";
+  }
+
   /**
    * 引用字段名
    * @param field
@@ -85,9 +85,12 @@ public class AssocCase {
     private static final Pattern ANPT = Pattern.compile("^[\\w\\.]+\\s*(:|$)");
     private static final Pattern CNPT = Pattern.compile("^[\\w]+$");
 
+    private static final AssocText LIKE = new AssocText.Like();
+
     private final FetchCase        that;
     private final Map<String, Map> opts;
     private final Map<String, Map> bufs;
+    private       AssocText        text;
 
     /**
      * 构造方法
@@ -229,6 +232,17 @@ public class AssocCase {
         return this;
     }
 
+    /**
+     * 设置关键词搜索方式
+     * 默认为 LIKE, 可用全文索引替代, 见 AssocText
+     * @param ts
+     * @return
+     */
+    public AssocCase text(AssocText ts) {
+        text = ts;
+        return this;
+    }
+
     /**
      * 解析查询数据
      * @param rd
@@ -392,32 +406,7 @@ public class AssocCase {
         Map<String, String> af = allow(RSCHABLE);
         if (af == null || af.isEmpty()) return;
 
-        int  i = 0;
-        int  l = wd.size( ) * af.size( );
-        Object[]      ab = new Object[l];
-        Set<String>   xd = new HashSet();
-        StringBuilder sb = new StringBuilder();
-
-        // 转义待查词, 避开通配符, 以防止歧义
-        for(String  wb : wd) {
-            xd.add("%" + Syno.escape(wb , "/%_[]" , "/") + "%");
-        }
-
-        for(String  fn : af.values()) {
-            sb.append("(");
-            for(String wb : xd) {
-                ab[ i++ ] = wb;
-                sb.append(fn).append(" LIKE ? ESCAPE '/' AND ");
-            }
-            sb.setLength(sb.length() - 5);
-            sb.append(") OR " );
-        }   sb.setLength(sb.length() - 4);
-
-        if (af.size( ) > 1 ) {
-            caze.filter ("("+sb.toString()+")", ab);
-        } else {
-            caze.filter (    sb.toString()    , ab);
-        }
+        (text != null ? text : LIKE).query(caze, af, wd);
     }
 
     private void where(FetchCase caze, Map rd) {
@@ -875,6 +864,15 @@ public class AssocCase {
             bufs.put(LISTABLE, af);
         }
 
+        // 全文搜索方式
+        if (text == null) {
+            try {
+                text = AssocText.getInstance(table);
+            } catch (HongsException e ) {
+                throw e.toExemption(  );
+            }
+        }
+
         return this;
     }
 
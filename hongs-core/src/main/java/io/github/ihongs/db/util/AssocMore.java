@@ -34,6 +34,12 @@ import java.util.regex.Pattern;
  */
 public class AssocMore {
 
+  /**
+   * 过滤条件中的 字段 = 值
+   */
+  private static final Pattern FILTER_EQ = Pattern
+          .compile("(?:`(.*?)`|(\\w+))\\s*=\\s*(?:'(.*?)'|(\\d+(?:\\.\\d+)?))");
+
   /**
    * 检查查询
    * 根据配置设置查询参数
@@ -429,8 +435,7 @@ public class AssocMore {
       String wh = (String) config.get("filter");
       if (wh != null && wh.length() != 0)
       {
-        Pattern pat = Pattern.compile("(?:`(.*?)`|(\\w+))\\s*=\\s*(?:'(.*?)'|(\\d+(?:\\.\\d+)?))");
-        Matcher mat = pat.matcher(wh);
+        Matcher mat = FILTER_EQ.matcher(wh);
         Map     map = new HashMap();
         while ( mat.find()) {
             String n = mat.group(1);
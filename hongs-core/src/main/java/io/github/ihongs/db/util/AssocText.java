@@ -0,0 +1,297 @@
+package io.github.ihongs.db.util;
+
+import io.github.ihongs.HongsException;
+import io.github.ihongs.db.DB;
+import io.github.ihongs.db.Table;
+import io.github.ihongs.util.Syno;
+import io.github.ihongs.util.Synt;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 关键词搜索
+ *
+ * <p>
+ * 供 AssocCase 处理 wd 参数, 默认为 LIKE 方式, 需全表扫描;
+ * 表参数 fulltext 为 yes 时按库类型选用全文索引:
+ * SQLite 用 FTS5 影子表, MySQL/MariaDB 用 MATCH AGAINST;
+ * 也可设为 like, match, fts5 或实现本接口的类名.
+ * </p>
+ *
+ * <p>
+ * 注意: 全文索引按词匹配, LIKE 按字串匹配, 对于不分词的语言结果可能不同.
+ * MySQL 需对 rschable 的全部字段建一个 FULLTEXT 索引, 各词可分布在不同字段;
+ * SQLite 的影子表默认为 表名_fts, 可用表参数 fulltext.table 指定,
+ * 可调用 Fts5.setup 建立影子表及同步触发器.
+ * </p>
+ *
+ * @author Hongs
+ */
+public interface AssocText {
+
+    /**
+     * 添加搜索条件
+     * @param caze 查询用例
+     * @param af   搜索字段, 名称 => 字段语句
+     * @param wd   搜索词
+     */
+    public void query(FetchCase caze, Map<String, String> af, Set<String> wd);
+
+    /**
+     * 按表参数 fulltext 获取搜索方式
+     * @param table
+     * @return 未设置或为 no 则为 null
+     * @throws HongsException
+     */
+    public static AssocText getInstance(Table table) throws HongsException {
+        String mode = (String) table.getParams().get("fulltext");
+        if (mode == null || mode.isEmpty()) {
+            return null;
+        }
+
+        // 自定义类
+        if (mode.contains(".")) {
+            try {
+                Class cls = Class.forName(mode);
+                return (AssocText) cls.getConstructor(Table.class).newInstance(table);
+            } catch (ReflectiveOperationException | ClassCastException ex) {
+                throw new HongsException(0x10bc, "Can not create text search " + mode, ex)
+                    .setLocalizedOptions(mode);
+            }
+        }
+
+        // 关闭
+        if (Synt.FAKE.matcher(mode).matches()) {
+            return null;
+        }
+
+        // 按库类型, 其他取值不是布尔量, 不可用 Synt.declare
+        if (Synt.TRUE.matcher(mode).matches()) {
+            try {
+                mode = table.db.open()
+                    .getMetaData()
+                    .getDatabaseProductName()
+                    .toUpperCase();
+            } catch (SQLException ex) {
+                throw new HongsException(ex);
+            }
+            switch (mode) {
+                case "SQLITE" : mode = "fts5" ; break;
+                case "MYSQL"  :
+                case "MARIADB": mode = "match"; break;
+                default       : mode = "like" ;
+            }
+        }
+
+        switch (mode) {
+            case "fts5" : return new Fts5 (table);
+            case "match": return new Match(table);
+            case "like" : return new Like (     );
+            default:
+                throw new HongsException(0x10bc, "Unsupported text search " + mode)
+                    .setLocalizedOptions(mode);
+        }
+    }
+
+    /**
+     * LIKE 方式
+     * 各字段间为 OR, 字段内各词间为 AND
+     */
+    public static class Like implements AssocText {
+
+        @Override
+        public void query(FetchCase caze, Map<String, String> af, Set<String> wd) {
+            int  i = 0;
+            int  l = wd.size( ) * af.size( );
+            Object[]      ab = new Object[l];
+            Set<String>   xd = new LinkedHashSet();
+            StringBuilder sb = new StringBuilder();
+
+            // 转义待查词, 避开通配符, 以防止歧义
+            for(String  wb : wd) {
+                xd.add("%" + Syno.escape(wb , "/%_[]" , "/") + "%");
+            }
+
+            for(String  fn : af.values()) {
+                sb.append("(");
+                for(String wb : xd) {
+                    ab[ i++ ] = wb;
+                    sb.append(fn).append(" LIKE ? ESCAPE '/' AND ");
+                }
+                sb.setLength(sb.length() - 5);
+                sb.append(") OR " );
+            }   sb.setLength(sb.length() - 4);
+
+            if (af.size( ) > 1 ) {
+                caze.filter ("("+sb.toString()+")", ab);
+            } else {
+                caze.filter (    sb.toString()    , ab);
+            }
+        }
+
+    }
+
+    /**
+     * MySQL 全文索引
+     * 布尔模式, 每个词都必须出现
+     */
+    public static class Match implements AssocText {
+
+        protected final Table table;
+
+        public Match(Table table) {
+            this.table = table;
+        }
+
+        @Override
+        public void query(FetchCase caze, Map<String, String> af, Set<String> wd) {
+            List<String> cs = Fts5.columns(caze, af.values());
+            if (cs == null) {
+                new Like().query(caze, af, wd);
+                return;
+            }
+
+            StringBuilder sb = new StringBuilder();
+            for(String  fn : cs) {
+                sb.append(",`").append(caze.getName()).append("`.`").append(fn).append("`");
+            }
+            StringBuilder sw = new StringBuilder();
+            for(String  wb : wd) {
+                // 布尔模式下引号内仍按词切分, 去掉引号即可避免语法错误
+                sw.append(" +\"").append(wb.replace("\"", " ")).append("\"");
+            }
+
+            // 聪明模式下关键词前加 ! 以免被当作字段补全表名
+            String x = caze.getOption("CLEVER_MODE", false) ? "!" : "";
+            caze.filter("MATCH (" + sb.substring(1) + ") AGAINST (? IN "+x+"BOOLEAN "+x+"MODE)", sw.substring(1));
+        }
+
+    }
+
+    /**
+     * SQLite FTS5 影子表
+     * 以 rowid 关联, 各字段间为 OR, 字段内各词间为 AND, 与 LIKE 方式一致
+     */
+    public static class Fts5 implements AssocText {
+
+        private static final Pattern COL = Pattern.compile("^(?:`?(\\w+)`?\\s*\\.\\s*)?`?(\\w+)`?$");
+
+        protected final Table  table;
+        protected final String ftsName;
+
+        public Fts5(Table table) {
+            this.table   = table;
+            this.ftsName = Synt.defoult(
+                (String) table.getParams().get("fulltext.table"),
+                table.tableName + "_fts");
+        }
+
+        @Override
+        public void query(FetchCase caze, Map<String, String> af, Set<String> wd) {
+            List<String> cs = columns(caze, af.values());
+            if (cs == null) {
+                new Like().query(caze, af, wd);
+                return;
+            }
+
+            StringBuilder sb = new StringBuilder();
+            for(String  fn : cs) {
+                for(String wb : wd) {
+                    sb.append(fn).append(" : \"")
+                      .append(wb.replace("\"", "\"\""))
+                      .append("\" AND ");
+                }
+                sb.setLength(sb.length() - 5);
+                sb.append(" OR ");
+            }   sb.setLength(sb.length() - 4);
+
+            // 聪明模式下关键词前加 ! 以免被当作字段补全表名
+            String x = caze.getOption("CLEVER_MODE", false) ? "!" : "";
+            caze.filter("`" + caze.getName() + "`.rowid IN ("+x+"SELECT "+x+"rowid "+x+"FROM "+x+"`" + ftsName + "` "+x+"WHERE "+x+"`" + ftsName + "` "+x+"MATCH ?)", sb.toString());
+        }
+
+        /**
+         * 建立影子表及同步触发器, 已存在则跳过, 并重建索引
+         * @param db
+         * @param tableName 真实表名
+         * @param ftsName   影子表名
+         * @param cols      搜索字段
+         * @throws HongsException
+         */
+        public static void setup(DB db, String tableName, String ftsName, String... cols) throws HongsException {
+            StringBuilder cn = new StringBuilder();
+            StringBuilder nv = new StringBuilder();
+            StringBuilder ov = new StringBuilder();
+            for(String  fn : cols) {
+                cn.append(", `"    ).append(fn).append("`");
+                nv.append(", new.`").append(fn).append("`");
+                ov.append(", old.`").append(fn).append("`");
+            }
+
+            String add = "INSERT INTO `"+ftsName+"` (rowid"  + cn +") VALUES (new.rowid" + nv +");";
+            String del = "INSERT INTO `"+ftsName+"` (`"+ftsName+"`, rowid" + cn +") VALUES ('delete', old.rowid" + ov +");";
+
+            db.execute("CREATE VIRTUAL TABLE IF NOT EXISTS `"+ftsName+"` USING fts5("+cn.substring(2)+", content='"+tableName+"', content_rowid='rowid')");
+            db.execute("CREATE TRIGGER IF NOT EXISTS `"+ftsName+"_ai` AFTER INSERT ON `"+tableName+"` BEGIN "+add+" END");
+            db.execute("CREATE TRIGGER IF NOT EXISTS `"+ftsName+"_ad` AFTER DELETE ON `"+tableName+"` BEGIN "+del+" END");
+            db.execute("CREATE TRIGGER IF NOT EXISTS `"+ftsName+"_au` AFTER UPDATE ON `"+tableName+"` BEGIN "+del+" "+add+" END");
+            db.execute("INSERT INTO `"+ftsName+"` (`"+ftsName+"`) VALUES ('rebuild')");
+        }
+
+        /**
+         * 按表参数 rschable 或 srchable 建立影子表
+         * @param table
+         * @throws HongsException
+         */
+        public static void setup(Table table) throws HongsException {
+            Map ps = table.getParams();
+            String cs = Synt.defoult((String) ps.get("rschable"), (String) ps.get("srchable"));
+            if (cs == null || cs.isEmpty()) {
+                throw new HongsException(0x10be, "Param rschable or srchable is required for " + table.name)
+                    .setLocalizedOptions(table.name);
+            }
+            String[] fs = cs.trim().split("\\s*,\\s*");
+            for(int i = 0; i < fs.length; i ++) {
+                // 别名:字段
+                int p = fs[i].indexOf(':');
+                if (p > -1) {
+                    fs[i] = fs[i].substring(p + 1).trim();
+                }
+            }
+            String fn = Synt.defoult((String) ps.get("fulltext.table"), table.tableName + "_fts");
+            setup(table.db, table.tableName, fn, fs);
+        }
+
+        /**
+         * 提取当前表的字段名
+         * @param caze
+         * @param fs 字段语句
+         * @return 有非当前表的字段或表达式则为 null
+         */
+        static List<String> columns(FetchCase caze, Collection<String> fs) {
+            String tn = caze.getName();
+            List<String> cs = new ArrayList(fs.size());
+            for(String fn : fs) {
+                Matcher m = COL.matcher(fn.trim());
+                if (! m.matches()) {
+                    return null;
+                }
+                String qn = m.group(1);
+                if (qn != null && ! qn.equals(tn)) {
+                    return null;
+                }
+                cs.add(m.group(2));
+            }
+            return cs;
+        }
+
+    }
+
+}
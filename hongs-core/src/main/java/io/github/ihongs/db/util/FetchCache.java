@@ -0,0 +1,225 @@
+package io.github.ihongs.db.util;
+
+import io.github.ihongs.CoreConfig;
+import io.github.ihongs.HongsException;
+import io.github.ihongs.util.Dawn;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 查询结果缓存
+ *
+ * <p>
+ * 用于字典类读多写少的表, 以最终语句和参数为键缓存查询结果;
+ * 每张表有一个版本号, 写入时递增, 缓存时记下所涉表的版本,
+ * 取出时版本不一致即作废, 故而无需逐个清理缓存条目.
+ * 事务中的写入在提交或回滚时会再递增一次版本, 见 DB.commit.
+ * </p>
+ *
+ * <p>
+ * 表配置中设置 param cache.ttl 为毫秒数即可开启, 见 Table.fetchMore.
+ * </p>
+ *
+ * <h3>配置选项:</h3>
+ * <pre>
+ * core.fetch.cache.limit 最多缓存条目, 默认为 1000
+ * </pre>
+ *
+ * @author Hongs
+ */
+public final class FetchCache {
+
+    private static final Map<String, AtomicLong> VERSIONS = new ConcurrentHashMap();
+    private static final Map<String, Entry     > ENTRIES  = new ConcurrentHashMap();
+
+    private static final LongAdder HITS   = new LongAdder();
+    private static final LongAdder MISSES = new LongAdder();
+    private static final LongAdder STALES = new LongAdder();
+    private static final LongAdder EVICTS = new LongAdder();
+
+    private FetchCache() {}
+
+    /**
+     * 查询加载器
+     */
+    @FunctionalInterface
+    public static interface Loader {
+        public List load() throws HongsException;
+    }
+
+    /**
+     * 获取缓存结果, 没有或已失效则加载
+     * @param db   库名
+     * @param caze 查询结构, 需已设好表和条件
+     * @param ttl  缓存毫秒数
+     * @param tabs 所涉及的表名
+     * @param load 加载方法
+     * @return 结果副本, 可随意修改
+     * @throws HongsException
+     */
+    public static List get(String db, FetchCase caze, long ttl, Collection<String> tabs, Loader load)
+    throws HongsException {
+        String   key  = key(db, caze);
+        String[] tbs  = new String[tabs.size()];
+        int i = 0;
+        for (String tn : tabs) {
+            tbs[i ++] = db + "." + tn;
+        }
+
+        long now = System.currentTimeMillis();
+        Entry ent = ENTRIES.get(key);
+        if (ent != null) {
+            if (ent.time >= now && ent.same()) {
+                HITS.increment();
+                return (List) copy(ent.list);
+            }
+            STALES.increment();
+            ENTRIES.remove(key, ent);
+        } else {
+            MISSES.increment();
+        }
+
+        // 版本须在查询之前获取, 查询期间有写入则下次即作废
+        long[] vers = vers(tbs);
+        List   list = load.load();
+
+        ent = new Entry();
+        ent.tabs = tbs ;
+        ent.vers = vers;
+        ent.list = (List) copy(list);
+        ent.time = now + ttl;
+        put(key, ent);
+
+        return list;
+    }
+
+    /**
+     * 递增表版本, 使相关缓存作废
+     * @param db 库名
+     * @param tn 表名
+     */
+    public static void touch(String db, String tn) {
+        AtomicLong ver = VERSIONS.get(db + "." + tn);
+        if (ver != null) {
+            ver.incrementAndGet();
+        }
+    }
+
+    /**
+     * 清空缓存
+     */
+    public static void clear() {
+        ENTRIES.clear();
+    }
+
+    /**
+     * 命中统计
+     * @return
+     */
+    public static Map getStats() {
+        long hits = HITS  .sum();
+        long miss = MISSES.sum();
+        long stal = STALES.sum();
+        long tota = hits + miss + stal;
+        Map  map  = new LinkedHashMap();
+        map.put("size"  , ENTRIES.size());
+        map.put("tables", VERSIONS.size());
+        map.put("hits"  , hits);
+        map.put("misses", miss);
+        map.put("stales", stal);
+        map.put("evicts", EVICTS.sum());
+        map.put("ratio" , tota > 0 ? (double) hits / tota : 0D);
+        return map;
+    }
+
+    private static String key(String db, FetchCase caze) {
+        StringBuilder sb = new StringBuilder(db);
+        sb.append('\n').append(caze.getSQL());
+        sb.append('\n').append(Dawn.toString(caze.getParams(), true));
+        sb.append('\n').append(caze.getStart()).append(',').append(caze.getLimit());
+        sb.append('\n').append(new TreeMap(caze.getOptions()));
+        return sb.toString();
+    }
+
+    private static long[] vers(String[] tbs) {
+        long[] vers = new long[tbs.length];
+        for (int i = 0; i < tbs.length; i ++) {
+            vers[i] = VERSIONS.computeIfAbsent(tbs[i], k -> new AtomicLong()).get();
+        }
+        return vers;
+    }
+
+    private static void put(String key, Entry ent) {
+        int max = CoreConfig.getInstance().getProperty("core.fetch.cache.limit", 1000);
+        if (ENTRIES.size() >= max) {
+            long now = System.currentTimeMillis();
+            Iterator<Entry> it = ENTRIES.values().iterator();
+            while (it.hasNext()) {
+                Entry et = it.next();
+                if (et.time < now || ! et.same()) {
+                    it.remove();
+                    EVICTS.increment();
+                }
+            }
+            // 仍然超出则随机清掉四分之一
+            if (ENTRIES.size() >= max) {
+                int n = ENTRIES.size() / 4 + 1;
+                it = ENTRIES.values().iterator();
+                while (it.hasNext() && n -- > 0) {
+                    it.next();
+                    it.remove();
+                    EVICTS.increment();
+                }
+            }
+        }
+        ENTRIES.put(key, ent);
+    }
+
+    /**
+     * 深度拷贝, 避免调用方修改结果影响缓存
+     */
+    private static Object copy(Object obj) {
+        if (obj instanceof Map) {
+            Map m = new LinkedHashMap();
+            for (Object o : ((Map) obj).entrySet()) {
+                Map.Entry e = (Map.Entry) o;
+                m.put(e.getKey(), copy(e.getValue()));
+            }
+            return m;
+        }
+        if (obj instanceof List) {
+            List l = new ArrayList(((List) obj).size());
+            for (Object o : (List) obj) {
+                l.add(copy(o));
+            }
+            return l;
+        }
+        return obj;
+    }
+
+    private static class Entry {
+        String[] tabs;
+        long  [] vers;
+        List     list;
+        long     time;
+
+        boolean same() {
+            for (int i = 0; i < tabs.length; i ++) {
+                AtomicLong ver = VERSIONS.get(tabs[i]);
+                if (ver == null || ver.get() != vers[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+}
@@ -1,5 +1,6 @@
 package io.github.ihongs.db.util;
 
+import io.github.ihongs.CoreConfig;
 import io.github.ihongs.HongsException;
 import io.github.ihongs.db.link.Link;
 import io.github.ihongs.db.link.Loop;
@@ -12,6 +13,7 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -50,6 +52,15 @@ import java.util.regex.Pattern;
  * pn           : int         分页页码; 作用域: FetchPage
  * gn           : int         链接数量; 作用域: FetchPage
  * rn           : int         分页行数; 作用域: FetchPage
+ * cs           : String      分页游标; 作用域: FetchPage, 有设则按排序字段定位, 空串为首页
+ * COUNT_CACHE  : long        计数缓存毫秒; 作用域: FetchPage
+ * COUNT_APPROX : int         超此数用估值; 作用域: FetchPage
+ * </pre>
+ *
+ * <h3>配置选项:</h3>
+ * <pre>
+ * core.fetch.sql.cache 语句模板缓存数量, 默认为 1000, 为 0 则不缓存;
+ * 结构相同仅参数不同的查询无需重复补全字段, 以表,字段,条件,排序等为键缓存最终语句.
  * </pre>
  *
  * <h3>异常代码:</h3>
@@ -59,6 +70,10 @@ import java.util.regex.Pattern;
  * 0x10b2 必须指定关联条件
  * 0x10b4 没有指定查询表名
  * 0x10b6 没有指定查询的库
+ * 0x10b8 分页游标无效或排序已变
+ * 0x10ba 游标分页需按字段排序
+ * 0x10bc 无法识别全文搜索方式
+ * 0x10be 全文搜索需设置搜索字段
  * </pre>
  *
  * @author Hongs
@@ -143,6 +158,17 @@ public class FetchCase
           .compile("IS|IN|ON|OR|AND|NOT|TOP|CASE|WHEN|THEN|ELSE|LIKE|ESCAPE|BETWEEN|DISTINCT"
                          , Pattern.CASE_INSENSITIVE);
 
+  /**
+   * 语句模板缓存
+   */
+  private static final Map<String, String > SQLS = new ConcurrentHashMap();
+  private static volatile int SQLS_LIMIT = -1;
+
+  /**
+   * 删除表名的正则缓存
+   */
+  private static final Map<String, Pattern> DELS = new ConcurrentHashMap();
+
   //** 构造 **/
 
   /**
@@ -554,7 +580,66 @@ public class FetchCase
    */
   public String getSQL()
   {
-    return this.getSQLStrs().toString();
+    int max = SQLS_LIMIT;
+    if (max < 0)
+    {
+      max = SQLS_LIMIT = CoreConfig.getInstance()
+          .getProperty("core.fetch.sql.cache", 1000);
+    }
+    if (max == 0)
+    {
+      return this.getSQLStrs().toString();
+    }
+
+    StringBuilder k = new StringBuilder();
+    k.append(getOption("CLEVER_MODE", false) ? '1' : '0');
+    getSQLKeys(k);
+    String key = k.toString();
+
+    String sql = SQLS.get(key);
+    if (sql == null)
+    {
+      sql = this.getSQLStrs().toString();
+      if (SQLS.size() >= max)
+      {
+        SQLS.clear();
+      }
+      SQLS.put(key, sql);
+    }
+    return sql;
+  }
+
+  /**
+   * 清空语句模板缓存
+   */
+  public static void clearSQL()
+  {
+    SQLS.clear();
+  }
+
+  /**
+   * 获取结构键
+   * 仅含影响语句的部分, 不含参数值, 各段以 \0 分隔, 空值记为 \1
+   * @param k
+   */
+  private void getSQLKeys(StringBuilder k)
+  {
+    k.append('\0').append(joinType);
+    k.append('\0').append(tableName != null ? tableName : "\1");
+    k.append('\0').append(name      != null ? name      : "\1");
+    k.append('\0').append(joinName  != null ? joinName  : "\1");
+    k.append('\0').append(joinExpr  != null ? joinExpr  : "\1");
+    k.append('\0').append(fields);
+    k.append('\0').append(wheres);
+    k.append('\0').append(groups);
+    k.append('\0').append(havins);
+    k.append('\0').append(orders);
+    for (FetchCase caze : joinSet)
+    {
+      k.append('\0').append('(');
+      caze.getSQLKeys(k);
+      k.append('\0').append(')');
+    }
   }
 
   /**
@@ -1035,9 +1120,11 @@ public class FetchCase
       if (getOption("CLEVER_MODE", false)) {
              s = fixSQLPoint(s, "", "NaT");
       }
-      String n = Pattern.quote( getName());
-      String p = "('.*?')|(?:`"+ n +"`|"+ n +")\\s*\\.\\s*";
-      return Pattern.compile(p).matcher(s).replaceAll("$1");
+      Pattern p = DELS.computeIfAbsent(getName(), k -> {
+          String n = Pattern.quote(k);
+          return Pattern.compile("('.*?')|(?:`"+ n +"`|"+ n +")\\s*\\.\\s*");
+      });
+      return p.matcher(s).replaceAll("$1");
   }
 
   public int getStart() {
@@ -1249,6 +1336,15 @@ public class FetchCase
     return tableName;
   }
 
+  /**
+   * 获取查询的表名
+   * @return
+   */
+  public String getTableName()
+  {
+    return tableName;
+  }
+
   //** 探查 **/
 
   /**
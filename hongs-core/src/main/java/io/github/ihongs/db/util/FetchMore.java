@@ -28,6 +28,11 @@ import java.util.regex.Pattern;
 public class FetchMore
 {
 
+  private static final Pattern COL_ALIAS = Pattern
+          .compile("^(.+?)(?:\\s+AS)?\\s+`?(.+?)`?$", Pattern.CASE_INSENSITIVE);
+  private static final Pattern COL_POINT = Pattern
+          .compile("^(.+?)\\.\\s*`?(.+?)`?$");
+
   protected List<Map> rows;
 
   public FetchMore(List<Map> rows)
@@ -160,14 +165,10 @@ public class FetchMore
     }
     else
     {
-      Pattern pattern;
       Matcher matcher;
       do
       {
-        pattern = Pattern.compile(
-            "^(.+?)(?:\\s+AS)?\\s+`?(.+?)`?$",
-            Pattern.CASE_INSENSITIVE );
-        matcher = pattern.matcher(col);
+        matcher = COL_ALIAS.matcher(col);
         if (matcher.find())
         {
           col = matcher.group(1);
@@ -175,9 +176,7 @@ public class FetchMore
           break;
         }
 
-        pattern = Pattern.compile(
-            "^(.+?)\\.\\s*`?(.+?)`?$");
-        matcher = pattern.matcher(col);
+        matcher = COL_POINT.matcher(col);
         if (matcher.find())
         {
           col = matcher.group(0);
@@ -1,21 +1,63 @@
 package io.github.ihongs.db.util;
 
 import io.github.ihongs.Cnst;
+import io.github.ihongs.CoreConfig;
 import io.github.ihongs.HongsException;
+import io.github.ihongs.HongsExemption;
 import io.github.ihongs.db.DB;
 import io.github.ihongs.db.Table;
 import io.github.ihongs.db.link.Link;
+import io.github.ihongs.util.Dawn;
+import io.github.ihongs.util.Synt;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * 分页查询
+ *
+ * <p>
+ * 默认按页码用 LIMIT/OFFSET 分页, 越往后越慢;
+ * 设置游标(setCursor 或 cs 选项)后改为按排序字段定位,
+ * 取下一页时以上页最后一行的排序字段值为起点查询,
+ * 页信息中的 cs 即为下一页游标, 为 null 表示没有更多.
+ * 游标分页的排序字段需是结果中的列, 且不能为空值,
+ * 最后一个排序字段应当唯一, 有 Table 时会补上主键.
+ * </p>
+ *
+ * <p>
+ * 计数查询可缓存一小段时间, 以规范化的语句和参数为键;
+ * 也可在估算行数较多时直接采用数据库的估值(MySQL, PostgreSQL),
+ * 估值时 page.state 为 2, 与限定链数时的含义相同, 即数量不精确.
+ * </p>
+ *
+ * <h3>配置选项:</h3>
+ * <pre>
+ * core.fetch.count.cache   计数缓存毫秒数, 默认为 0 即不缓存
+ * core.fetch.count.approx  估值超过此数量则不再精确计数, 默认为 0 即不估算
+ * core.fetch.count.limit   计数缓存最多条目, 默认为 1000
+ * </pre>
+ *
  * @author Hongs
  */
 public final class FetchPage
 {
 
+  private static final Map<String, Count> COUNTS = new ConcurrentHashMap();
+
+  private static final Pattern SPACES = Pattern.compile("\\s+");
+
+  private static final Pattern PGROWS = Pattern.compile("\\brows=(\\d+)");
+
   private final DB db;
 
   private final Table tb;
@@ -30,6 +72,12 @@ public final class FetchPage
 
   private int rows = Cnst.RN_DEF;
 
+  private String cursor = null;
+
+  private long cache  = 0;
+
+  private int  approx = 0;
+
   public FetchPage(FetchCase caze) throws HongsException
   {
     this.db   = null;
@@ -91,6 +139,36 @@ public final class FetchPage
     this.rows = rows;
   }
 
+  /**
+   * 设置游标
+   * 设置后按排序字段定位, 而不按页码跳过
+   * 空串表示首页, null 则取消游标模式
+   * @param cursor 上页返回的 cs
+   */
+  public void setCursor(String cursor)
+  {
+    this.cursor = cursor;
+  }
+
+  /**
+   * 设置计数缓存时间
+   * @param cache 毫秒, 0 为不缓存
+   */
+  public void setCache(long cache)
+  {
+    this.cache  = cache ;
+  }
+
+  /**
+   * 设置估值起点
+   * 数据库估算的行数不低于此数时直接采用
+   * @param approx 0 为不估算
+   */
+  public void setApprox(int approx)
+  {
+    this.approx = approx;
+  }
+
   private void chkInit()
     throws HongsException
   {
@@ -116,6 +194,16 @@ public final class FetchPage
     {
       this.setRows(Integer.parseInt(rows2.toString()));
     }
+
+    Object curs2 = caze.getOption(Cnst.CS_KEY);
+    if (curs2 != null)
+    {
+      this.setCursor(curs2.toString());
+    }
+
+    CoreConfig conf = CoreConfig.getInstance();
+    this.cache  = Synt.declare(caze.getOption("COUNT_CACHE" ), conf.getProperty("core.fetch.count.cache" , 0L));
+    this.approx = Synt.declare(caze.getOption("COUNT_APPROX"), conf.getProperty("core.fetch.count.approx", 0 ));
   }
 
   private Link gotLink()
@@ -136,7 +224,7 @@ public final class FetchPage
     }
   }
 
-  private List gotList()
+  private List gotList(FetchCase caze)
     throws HongsException
   {
     if (this.tb != null)
@@ -148,18 +236,24 @@ public final class FetchPage
       return this.db.fetchMore(caze);
     } else
     {
-      return this.caze.getAll (    );
+      return /**/ caze.getAll (    );
     }
   }
 
   public List getList()
     throws HongsException
   {
+    // 游标分页
+    if (this.cursor != null)
+    {
+      return this.getSeek();
+    }
+
     // 设置分页
     caze.limit((this.page - 1) * this.rows, this.rows);
 
     // 获取行数
-    List list = this.gotList();
+    List list = this.gotList(caze);
     if (!list.isEmpty())
     {
       this.info.put("state",1); // 没有异常
@@ -225,16 +319,31 @@ public final class FetchPage
     }
 
     // 计算总行数及总页数
-    Map row  = gotLink().fetchOne(sql, params);
-    if (row != null && ! row.isEmpty())
+    Link   link = gotLink();
+    String ckey = null;
+    Count  cnt  = null;
+    if (this.cache > 0)
     {
-      int rc, pc;
-      Object  cc = row.get("__count__");
-      if (cc instanceof Number) {
-          rc = ((Number) cc).intValue();
-      } else {
-          rc = Integer.valueOf(cc.toString( ));
+      ckey = link.name + "\n" + SPACES.matcher(sql).replaceAll(" ").trim() + "\n" + Dawn.toString(params, true);
+      cnt  = COUNTS.get(ckey);
+      if (cnt != null && cnt.time < System.currentTimeMillis())
+      {
+        COUNTS.remove(ckey, cnt);
+        cnt  = null;
       }
+    }
+    if (cnt == null)
+    {
+      cnt  = getCount(link, sql, params, limit);
+      if (cnt != null && ckey != null)
+      {
+        cnt.time = System.currentTimeMillis() + this.cache;
+        putCount(ckey, cnt);
+      }
+    }
+    if (cnt != null)
+    {
+      int rc = cnt.rc, pc;
       pc = (int) Math.ceil((double) rc / rows);
 
       /**
@@ -243,8 +352,11 @@ public final class FetchPage
        * 那么只能作估值
        * 反之为精确数量
        */
-      if (limit == 0 || limit != rc) {
+      if (!cnt.estimated && (limit == 0 || limit != rc)) {
           this.info.put("state", 1 );
+      } else
+      if ( cnt.estimated ) {
+          this.info.put("state", 2 );
       } else {
           this.info.put("state", 2 );
           rc -= 1;
@@ -258,6 +370,324 @@ public final class FetchPage
     return this.info;
   }
 
+  private Count getCount(Link link, String sql, Object[] params, int limit)
+    throws HongsException
+  {
+    // 行数较多时采用数据库的估值
+    if (this.approx > 0 && limit == 0)
+    {
+      FetchCase caze2 = this.caze.clone().limit(0);
+      caze2.order(null);
+      long rc = getGuess(link, caze2.getSQL(), caze2.getParams());
+      if ( rc >= this.approx )
+      {
+        Count cnt = new Count();
+        cnt.rc = rc > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) rc;
+        cnt.estimated = true;
+        return cnt;
+      }
+    }
+
+    Map row  = link.fetchOne(sql, params);
+    if (row == null || row.isEmpty())
+    {
+      return null;
+    }
+
+    Count cnt = new Count();
+    Object cc = row.get("__count__");
+    if (cc instanceof Number) {
+        cnt.rc = ((Number) cc).intValue();
+    } else {
+        cnt.rc = Integer.valueOf(cc.toString( ));
+    }
+    return cnt;
+  }
+
+  /**
+   * 获取数据库估算的行数
+   * @return 不支持则为 -1
+   */
+  private long getGuess(Link link, String sql, Object[] params)
+    throws HongsException
+  {
+    String dpn;
+    try {
+      dpn = link.open()
+        .getMetaData()
+        .getDatabaseProductName()
+        .toUpperCase();
+    } catch (SQLException ex) {
+      throw new HongsException(ex);
+    }
+
+    if ("MYSQL".equals(dpn) || "MARIADB".equals(dpn))
+    {
+      Map row = link.fetchOne("EXPLAIN " + sql, params);
+      Object rn = row.get("rows");
+      if (rn == null) {
+        return -1;
+      }
+      double rc = Synt.declare(rn, 0D);
+      Object fp = row.get("filtered");
+      if (fp != null) {
+        rc = rc * Synt.declare(fp, 100D) / 100;
+      }
+      return (long) rc;
+    }
+
+    if ("POSTGRESQL".equals(dpn))
+    {
+      Map row = link.fetchOne("EXPLAIN " + sql, params);
+      Iterator it = row.values().iterator();
+      if (it.hasNext()) {
+        Matcher ma = PGROWS.matcher(String.valueOf(it.next()));
+        if (ma.find()) {
+          return Long.parseLong(ma.group(1));
+        }
+      }
+      return -1;
+    }
+
+    return -1;
+  }
+
+  private static void putCount(String ckey, Count cnt)
+  {
+    int max = CoreConfig.getInstance().getProperty("core.fetch.count.limit", 1000);
+    if (COUNTS.size() >= max)
+    {
+      long now = System.currentTimeMillis();
+      COUNTS.values().removeIf(c -> c.time < now);
+      if (COUNTS.size() >= max)
+      {
+        COUNTS.clear();
+      }
+    }
+    COUNTS.put(ckey, cnt);
+  }
+
+  /**
+   * 清除计数缓存
+   * 对应的库有写入后可调用此方法, 以免列表的总数滞后
+   * @param name 库名, 为 null 则清除全部
+   */
+  public static void clearCount(String name)
+  {
+    if (name == null)
+    {
+      COUNTS.clear();
+    }
+    else
+    {
+      String pre = name + "\n";
+      COUNTS.keySet().removeIf(k -> k.startsWith(pre));
+    }
+  }
+
+  /**
+   * 按游标获取列表
+   * 多取一行以判断是否还有下一页
+   */
+  private List getSeek()
+    throws HongsException
+  {
+    List<Seek> seks = getSeeks();
+    String     mark = getSign (seks);
+
+    FetchCase caze2 = this.caze.clone();
+    caze2.order(null);
+    for(Seek sek : seks)
+    {
+      caze2.assort(sek.expr + (sek.desc ? " DESC" : ""));
+    }
+
+    // 按上页末行定位, 即 (a > ?) OR (a = ? AND b > ?) ...
+    if (! this.cursor.isEmpty())
+    {
+      List vals = decode(this.cursor, mark, seks.size());
+      StringBuilder wh = new StringBuilder();
+      List params = new ArrayList();
+      for(int i = 0; i < seks.size(); i ++)
+      {
+        if (i > 0)
+        {
+          wh.append(" OR ");
+        }
+        wh.append("(");
+        for(int j = 0; j < i; j ++)
+        {
+          Seek sek = seks.get(j);
+          wh.append(sek.expr).append(" = ? AND ");
+          params.add(vals.get(j));
+        }
+        Seek sek = seks.get(i);
+        wh.append(sek.expr).append(sek.desc ? " < ?" : " > ?");
+        params.add(vals.get(i));
+        wh.append(")");
+      }
+      caze2.filter("(" + wh + ")", params.toArray());
+    }
+
+    caze2.limit(this.rows + 1);
+    List<Map> list = this.gotList(caze2);
+
+    String next = null;
+    if (list.size() > this.rows)
+    {
+      list.remove(this.rows);
+      Map  row  = list.get(this.rows - 1);
+      List vals = new ArrayList(seks.size() + 1);
+      vals.add(mark);
+      for(Seek sek : seks)
+      {
+        Object v = row.get(sek.name);
+        if (v == null)
+        {
+          throw new HongsException(0x10ba, "Sort field " + sek.name + " is null or not in result")
+              .setLocalizedOptions(sek.name);
+        }
+        if (v instanceof Long
+        ||  v instanceof Integer
+        ||  v instanceof Short
+        ||  v instanceof Byte
+        || (v instanceof BigInteger && ((BigInteger) v).bitLength() < 64))
+        {
+          vals.add(((Number) v).longValue());
+        }
+        else
+        {
+          vals.add(v.toString());
+        }
+      }
+      next = Base64.getUrlEncoder().withoutPadding()
+          .encodeToString(Dawn.toString(vals, true).getBytes(StandardCharsets.UTF_8));
+    }
+
+    this.info.put(Cnst.CS_KEY, next);
+    this.info.put("state", list.isEmpty() ? 0 : 1);
+
+    return list;
+  }
+
+  /**
+   * 解析排序字段
+   */
+  private List<Seek> getSeeks()
+    throws HongsException
+  {
+    List<Seek> seks = new ArrayList();
+    boolean    hasp = false;
+    String     pkey = this.tb != null ? this.tb.primaryKey : null;
+
+    for(String item : this.caze.orders.toString().split(","))
+    {
+      item = item.trim();
+      if (item.isEmpty())
+      {
+        continue;
+      }
+
+      Seek sek = new Seek();
+      String up = item.toUpperCase();
+      if (up.endsWith(" DESC"))
+      {
+        sek.desc = true ;
+        item = item.substring(0, item.length() - 5).trim();
+      } else
+      if (up.endsWith(" ASC" ))
+      {
+        sek.desc = false;
+        item = item.substring(0, item.length() - 4).trim();
+      }
+
+      // 表达式或别名无法用于条件
+      if (item.startsWith("!") || item.indexOf('(') >= 0 || item.indexOf(' ') >= 0)
+      {
+        throw new HongsException(0x10ba, "Can not seek by " + item)
+            .setLocalizedOptions(item);
+      }
+
+      sek.expr = item;
+      sek.name = item.substring(item.lastIndexOf('.') + 1).replace("`", "");
+      seks.add(sek);
+
+      if (sek.name.equals(pkey))
+      {
+        hasp = true;
+      }
+    }
+
+    // 补上主键确保顺序唯一
+    if (! hasp && pkey != null && pkey.length() != 0)
+    {
+      Seek sek = new Seek();
+      String n = this.caze.getName();
+      sek.expr = n != null && n.length() != 0
+               ? "`" + n + "`.`" + pkey + "`"
+               : "`" + pkey + "`";
+      sek.name = pkey;
+      sek.desc = !seks.isEmpty() && seks.get(seks.size() - 1).desc;
+      seks.add(sek);
+    }
+
+    if (seks.isEmpty())
+    {
+      throw new HongsException(0x10ba, "Cursor paging needs sort fields")
+          .setLocalizedOptions("");
+    }
+
+    return seks;
+  }
+
+  /**
+   * 排序签名, 排序改变则游标失效
+   */
+  private static String getSign(List<Seek> seks)
+  {
+    StringBuilder sb = new StringBuilder();
+    for(Seek sek : seks)
+    {
+      sb.append(sek.expr).append(sek.desc ? "-" : "+");
+    }
+    return Integer.toHexString(sb.toString().hashCode());
+  }
+
+  private static List decode(String cs, String mark, int size)
+    throws HongsException
+  {
+    Object  obj;
+    try
+    {
+      obj = Dawn.toObject(new String(Base64.getUrlDecoder().decode(cs), StandardCharsets.UTF_8));
+    }
+    catch (IllegalArgumentException | HongsExemption ex)
+    {
+      throw new HongsException(0x10b8, "Invalid cursor", ex);
+    }
+    if (!(obj instanceof List)
+    ||  ((List) obj).size() != size + 1
+    ||  ! mark.equals(((List) obj).get(0)))
+    {
+      throw new HongsException(0x10b8, "Invalid cursor");
+    }
+    return ((List) obj).subList(1, size + 1);
+  }
+
+  private static class Seek
+  {
+    String  expr;
+    String  name;
+    boolean desc;
+  }
+
+  private static class Count
+  {
+    int     rc;
+    boolean estimated; // 估值
+    long    time;
+  }
+
   /**
    * 检查是否有启用分组
    * 同时清空排序和查询
@@ -0,0 +1,176 @@
+package io.github.ihongs.db.util;
+
+import io.github.ihongs.CoreLogger;
+import io.github.ihongs.HongsException;
+import io.github.ihongs.db.Table;
+import io.github.ihongs.util.Latency;
+import io.github.ihongs.util.Synt;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 发件箱
+ *
+ * <p>
+ * 用于关系库与其他存储(如索引库)的双写:
+ * 业务写入时在同一事务中调用 put 记下 名称+标识,
+ * 另由后台调用 drain 取出并交给处理器同步到其他存储, 成功后删除.
+ * 同一条目多次写入只保留最后一次, 处理器需是幂等的, 即按标识重读最新数据;
+ * 删除时比对写入时间, 处理期间再次写入的条目会保留到下一轮.
+ * </p>
+ *
+ * <p>
+ * 表结构需有字段: name 名称, ref 标识, mtime 写入时间(毫秒), 主键为 name,ref.
+ * 积压时长计入 Latency 的 outbox:表名:lag, 处理耗时计入 outbox:表名:drain.
+ * </p>
+ *
+ * @author Hongs
+ */
+public class Outbox {
+
+    /**
+     * 写入时间, 本进程内单调递增, 避免同一毫秒的写入被误删
+     */
+    private static final AtomicLong MTIME = new AtomicLong();
+
+    protected final Table table;
+
+    public Outbox(Table table) {
+        this.table = table;
+    }
+
+    /**
+     * 处理器
+     */
+    @FunctionalInterface
+    public static interface Drain {
+        /**
+         * 同步一批条目
+         * @param name 名称
+         * @param refs 标识
+         * @throws HongsException
+         */
+        public void apply(String name, Set<String> refs) throws HongsException;
+    }
+
+    /**
+     * 写入条目
+     * 应在业务数据的同一事务中调用
+     * @param name
+     * @param ref
+     * @throws HongsException
+     */
+    public void put(String name, String ref) throws HongsException {
+        Map row = new HashMap();
+        long now = System.currentTimeMillis();
+        row.put("mtime", MTIME.updateAndGet(t -> Math.max(t + 1, now)));
+
+        // 已有则更新, 行锁使同一条目的并发写入依次覆盖, 没有才插入
+        if (table.update(row, "`name` = ? AND `ref` = ?", name, ref) > 0) {
+            return;
+        }
+
+        row.put("name" , name);
+        row.put("ref"  , ref );
+        table.insert(row);
+    }
+
+    /**
+     * 处理一批条目
+     * 处理失败的条目保留待下次重试
+     * @param limit 最多取出条数
+     * @param drain 处理器
+     * @return 成功处理的条数
+     * @throws HongsException 读取或删除条目失败
+     */
+    public int drain(int limit, Drain drain) throws HongsException {
+        List<Map> rows = table.fetchCase()
+            .select("`name`, `ref`, `mtime`")
+            .assort("`mtime`")
+            .limit (limit)
+            .getAll();
+        if (rows.isEmpty()) {
+            return 0;
+        }
+
+        long now = System.currentTimeMillis();
+        Map<String, List<Map>> grps = new LinkedHashMap();
+        for(Map row : rows) {
+            grps.computeIfAbsent((String) row.get("name"), k -> new ArrayList()).add(row);
+        }
+
+        int c = 0;
+        for(Map.Entry<String, List<Map>> et : grps.entrySet()) {
+            String    name = et.getKey  ();
+            List<Map> list = et.getValue();
+            Set<String> refs = new LinkedHashSet();
+            for(Map row : list) {
+                refs.add((String) row.get("ref"));
+            }
+
+            long tm = Latency.start();
+            try {
+                drain.apply(name, refs);
+            } catch (HongsException | RuntimeException ex) {
+                CoreLogger.error(ex);
+                continue;
+            } finally {
+                Latency.record("outbox:" + table.name + ":drain", tm);
+            }
+
+            // 仅删除取出时的版本
+            for(Map row : list) {
+                table.delete("`name` = ? AND `ref` = ? AND `mtime` = ?",
+                    name, row.get("ref"), row.get("mtime"));
+                if (Latency.isEnable()) {
+                    Latency.get("outbox:" + table.name + ":lag")
+                           .record((now - Synt.declare(row.get("mtime"), now)) * 1000000L);
+                }
+            }
+            c += list.size();
+        }
+        return c;
+    }
+
+    /**
+     * 处理全部条目
+     * 直到没有或一批都失败为止, 失败的条目排在前面, 超过一批则会阻塞后续条目
+     * @param limit 每批条数
+     * @param drain 处理器
+     * @return 成功处理的条数
+     * @throws HongsException
+     */
+    public int drainAll(int limit, Drain drain) throws HongsException {
+        int c = 0;
+        int n ;
+        do {
+            n  = drain(limit, drain);
+            c += n;
+        } while (n > 0);
+        return c;
+    }
+
+    /**
+     * 积压情况
+     * @return {pending: 条数, lag: 最早条目积压的毫秒数}
+     * @throws HongsException
+     */
+    public Map getStats() throws HongsException {
+        Map row = table.fetchCase()
+            .select("COUNT(*) AS `cnt`, MIN(`mtime`) AS `min`")
+            .getOne();
+        long cnt = Synt.declare(row.get("cnt"), 0L);
+        long min = Synt.declare(row.get("min"), 0L);
+        Map map = new LinkedHashMap();
+        map.put("pending", cnt);
+        map.put("lag", cnt > 0 ? System.currentTimeMillis() - min : 0L);
+        return map;
+    }
+
+}
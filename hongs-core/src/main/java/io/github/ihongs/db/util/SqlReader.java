@@ -0,0 +1,354 @@
+package io.github.ihongs.db.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PushbackReader;
+import java.io.Reader;
+
+/**
+ * SQL 脚本读取器
+ *
+ * <p>
+ * 从流中逐条读取 SQL 语句, 无需将整个脚本载入内存.
+ * 可识别单双引号和反引号(含 '' 和 \ 转义)、PostgreSQL 的 $$ 或 $tag$ 定界串,
+ * 其内的分号不会切分语句; "--" 单行注释会被去除, "/* *&#47;" 块注释原样保留;
+ * 以 CREATE 开头的语句中 BEGIN ... END 块(含内嵌的 BEGIN/CASE ... END)内的分号也不切分,
+ * END IF, END LOOP, END WHILE, END REPEAT 不作为块结束.
+ * 另支持 MySQL 客户端的 "DELIMITER //" 指令, 改换定界符后不再计算块层级.
+ * </p>
+ *
+ * <p>
+ * 用法:
+ * <code>
+ * while ((sql = rd.next()) != null) { rd.getLine(); ... }
+ * </code>
+ * </p>
+ *
+ * @author Hongs
+ */
+public class SqlReader implements Closeable {
+
+    private final PushbackReader reader;
+    private final StringBuilder  buffer = new StringBuilder();
+
+    private String delimiter = ";";
+    private String firstWord = null;
+    private int    depth = 0;
+    private int    line  = 1;
+    private int    from  = 1;
+    private boolean ended = false;
+
+    public SqlReader(Reader reader) {
+        this.reader = new PushbackReader(reader, 128);
+    }
+
+    /**
+     * 最近一条语句的起始行号
+     * @return 从 1 开始
+     */
+    public int getLine() {
+        return from;
+    }
+
+    /**
+     * 当前读到的行号
+     * @return 从 1 开始
+     */
+    public int getLineNow() {
+        return line;
+    }
+
+    /**
+     * 读取下一条语句
+     * @return 去除首尾空白和末尾定界符的语句, 读完为 null
+     * @throws IOException
+     */
+    public String next() throws IOException {
+        buffer.setLength(0);
+        firstWord = null;
+        depth = 0;
+        ended = false;
+
+        int c;
+        while ((c = read()) != -1) {
+            // 定界符, 非默认时无视块层级
+            if (c == delimiter.charAt(0)
+            && (depth <= 0 || ! ";".equals(delimiter))
+            &&  ahead(delimiter, 1)) {
+                String sql = buffer.toString().trim();
+                if (! sql.isEmpty()) {
+                    return sql;
+                }
+                buffer.setLength(0);
+                firstWord = null;
+                depth = 0;
+                continue;
+            }
+
+            switch (c) {
+                case '\'':
+                case '"' :
+                case '`' :
+                    mark  ( );
+                    quoted(c);
+                    continue;
+                case '-' :
+                    if (ahead("-", 0)) {
+                        comment();
+                        continue;
+                    }
+                    break;
+                case '/' :
+                    if (ahead("*", 0)) {
+                        mark ( );
+                        buffer.append("/*");
+                        blocked();
+                        continue;
+                    }
+                    break;
+                case '$' :
+                    if (! isWord(last())) {
+                        String tag = dollar();
+                        if (tag != null) {
+                            mark  ( );
+                            buffer.append(tag);
+                            dollared(tag);
+                            continue;
+                        }
+                    }
+                    break;
+            }
+
+            if (isWord(c) && ! isWord(last())) {
+                mark  ( );
+                worded(c);
+                continue;
+            }
+
+            if (! Character.isWhitespace(c)) {
+                mark ( );
+            }
+            buffer.append((char) c);
+        }
+
+        String sql = buffer.toString().trim();
+        buffer.setLength(0);
+        if (! sql.isEmpty()) {
+            return sql;
+        }
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * 语句的首个非空字符, 记下行号
+     */
+    private void mark() {
+        for (int i = 0; i < buffer.length(); i ++) {
+            if (! Character.isWhitespace(buffer.charAt(i))) {
+                return;
+            }
+        }
+        from = line;
+    }
+
+    private int last() {
+        int l = buffer.length();
+        return l > 0 ? buffer.charAt(l - 1) : -1;
+    }
+
+    private static boolean isWord(int c) {
+        return c == '_' || (c >= 0 && Character.isLetterOrDigit(c));
+    }
+
+    private int read() throws IOException {
+        int c = reader.read();
+        if (c == '\n') {
+            line ++;
+        }
+        return c;
+    }
+
+    private void unread(int c) throws IOException {
+        if (c == '\n') {
+            line --;
+        }
+        reader.unread(c);
+    }
+
+    /**
+     * 后续是否为给定的串, 是则跳过
+     * @param s
+     * @param i 从第几个字符开始比对
+     * @return
+     */
+    private boolean ahead(String s, int i) throws IOException {
+        int[] r = new int[s.length()];
+        for (int j = i; j < r.length; j ++) {
+            r[j] = read();
+            if (r[j] != s.charAt(j)) {
+                // 退回
+                for (; j >= i; j --) {
+                    if (r[j] != -1) {
+                        unread(r[j]);
+                    }
+                }
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 引号串
+     */
+    private void quoted(int q) throws IOException {
+        buffer.append((char) q);
+        int c;
+        while ((c = read()) != -1) {
+            buffer.append((char) c);
+            if (c == '\\' && q == '\'') {
+                c = read();
+                if (c == -1) {
+                    break;
+                }
+                buffer.append((char) c);
+                continue;
+            }
+            if (c == q) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * 单行注释, 保留换行
+     */
+    private void comment() throws IOException {
+        int c;
+        while ((c = read()) != -1) {
+            if (c == '\n' || c == '\r') {
+                buffer.append((char) c);
+                break;
+            }
+        }
+    }
+
+    /**
+     * 块注释
+     */
+    private void blocked() throws IOException {
+        int c;
+        int p = -1;
+        while ((c = read()) != -1) {
+            buffer.append((char) c);
+            if (c == '/' && p == '*') {
+                break;
+            }
+            p = c;
+        }
+    }
+
+    /**
+     * 定界串开头, 如 $$ 或 $tag$
+     * @return 不是则退回并返回 null
+     */
+    private String dollar() throws IOException {
+        StringBuilder sb = new StringBuilder("$");
+        int c;
+        while ((c = read()) != -1) {
+            if (c == '$') {
+                sb.append('$');
+                return sb.toString();
+            }
+            if (! isWord(c) || (sb.length() == 1 && Character.isDigit(c)) || sb.length() > 64) {
+                unread(c);
+                break;
+            }
+            sb.append((char) c);
+        }
+        for (int i = sb.length() - 1; i > 0; i --) {
+            unread(sb.charAt(i));
+        }
+        return null;
+    }
+
+    /**
+     * 定界串
+     */
+    private void dollared(String tag) throws IOException {
+        int c;
+        while ((c = read()) != -1) {
+            buffer.append((char) c);
+            if (c == '$' && ahead(tag, 1)) {
+                buffer.append(tag, 1, tag.length());
+                break;
+            }
+        }
+    }
+
+    /**
+     * 单词, 计算块层级及处理 DELIMITER 指令
+     */
+    private void worded(int c) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        sb.append((char) c);
+        while ((c = read()) != -1) {
+            if (! isWord(c)) {
+                unread(c);
+                break;
+            }
+            sb.append((char) c);
+        }
+        String w = sb.toString().toUpperCase();
+
+        if (firstWord == null) {
+            firstWord  = w;
+            if ("DELIMITER".equals(w)) {
+                StringBuilder sd = new StringBuilder();
+                while ((c = read()) != -1) {
+                    if (c == '\n' || c == '\r') {
+                        break;
+                    }
+                    sd.append((char) c);
+                }
+                String d = sd.toString().trim();
+                if (! d.isEmpty()) {
+                    delimiter = d;
+                }
+                buffer.setLength(0);
+                firstWord = null;
+                return;
+            }
+        } else
+        if (ended) {
+            // END IF 等非块结束
+            if ("IF".equals(w) || "LOOP".equals(w) || "WHILE".equals(w) || "REPEAT".equals(w)) {
+                depth ++;
+            }
+        } else
+        if ("BEGIN".equals(w)) {
+            if (depth > 0 || "CREATE".equals(firstWord)) {
+                depth ++;
+            }
+        } else
+        if ("CASE".equals(w)) {
+            if (depth > 0) {
+                depth ++;
+            }
+        }
+
+        ended = false;
+        if ("END".equals(w) && depth > 0) {
+            depth --;
+            ended = true;
+        }
+
+        buffer.append(sb);
+    }
+
+}
@@ -0,0 +1,167 @@
+package io.github.ihongs.util;
+
+import io.github.ihongs.HongsExemption;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 差异工具
+ *
+ * <p>
+ * 计算两个 Map 的差异, 格式参照 JSON Patch (RFC 6902),
+ * 仅用 add, remove, replace 三种操作, 逐层比较 Map, 其他值整体替换;
+ * 路径中的 ~ 和 / 分别转义为 ~0 和 ~1.
+ * 另提供 Deflate 压缩的 JSON 编码, 供存储快照和差异.
+ * </p>
+ *
+ * <h3>异常代码</h3>
+ * <pre>
+ * 0x1152 解压数据失败
+ * </pre>
+ *
+ * @author Hongs
+ */
+public final class Delta {
+
+    private Delta() {}
+
+    /**
+     * 计算差异
+     * @param from 原始数据
+     * @param to   目标数据
+     * @return 将 from 变为 to 的操作列表
+     */
+    public static List<Map> diff(Map from, Map to) {
+        List<Map> ops = new ArrayList();
+        diff(ops, "", from, to);
+        return ops;
+    }
+
+    private static void diff(List<Map> ops, String path, Map from, Map to) {
+        Set ks = new HashSet(from.keySet());
+        for(Object ot : to.entrySet()) {
+            Map.Entry et = (Map.Entry) ot;
+            Object k  = et.getKey  ();
+            Object tv = et.getValue();
+            String p  = path + "/" + escape(String.valueOf(k));
+            if (! ks.remove(k)) {
+                ops.add(op("add", p, tv));
+                continue;
+            }
+            Object fv = from.get(k);
+            if (fv instanceof Map && tv instanceof Map) {
+                diff(ops, p, (Map) fv, (Map) tv);
+            } else
+            if (! Objects.equals(fv, tv)) {
+                ops.add(op("replace", p, tv));
+            }
+        }
+        for(Object k : ks) {
+            String p  = path + "/" + escape(String.valueOf(k));
+            ops.add(op("remove", p, null));
+        }
+    }
+
+    /**
+     * 应用差异
+     * 注意: 会直接修改 data, 如需保留原始数据请先行复制
+     * @param data 原始数据
+     * @param ops  操作列表
+     * @return data
+     */
+    public static Map patch(Map data, List<Map> ops) {
+        for(Map op : ops) {
+            String[] ps = ((String) op.get("path")).split("/", -1);
+            Map node = data;
+            for(int i = 1; i < ps.length - 1; i ++) {
+                node = (Map) node.get(unescape(ps[i]));
+            }
+            String k = unescape(ps[ps.length - 1]);
+            if ("remove".equals(op.get("op"))) {
+                node.remove(k);
+            } else {
+                node.put(k, op.get("value"));
+            }
+        }
+        return data;
+    }
+
+    /**
+     * 压缩编码
+     * @param obj 基础类型, 集合框架
+     * @return JSON 经 Deflate 压缩后的 Base64 (URL 安全) 串
+     */
+    public static String pack(Object obj) {
+        byte[] src = Dawn.toString(obj, true).getBytes(StandardCharsets.UTF_8);
+        Deflater def = new Deflater(Deflater.BEST_COMPRESSION, true);
+        try {
+            def.setInput(src);
+            def.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(src.length / 2 + 16);
+            byte[] buf = new byte[1024];
+            while (! def.finished()) {
+                out.write(buf, 0, def.deflate(buf));
+            }
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(out.toByteArray());
+        } finally {
+            def.end();
+        }
+    }
+
+    /**
+     * 解压解码
+     * @param str pack 的结果
+     * @return 基础类型, 集合框架
+     */
+    public static Object unpack(String str) {
+        byte[] src = Base64.getUrlDecoder().decode(str);
+        Inflater inf = new Inflater(true);
+        try {
+            inf.setInput(src);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(src.length * 4 + 16);
+            byte[] buf = new byte[1024];
+            while (! inf.finished()) {
+                int n = inf.inflate(buf);
+                if (n == 0 && (inf.needsInput() || inf.needsDictionary())) {
+                    throw new DataFormatException("Unexpected end of data");
+                }
+                out.write(buf, 0, n);
+            }
+            return Dawn.toObject(new String(out.toByteArray(), StandardCharsets.UTF_8));
+        } catch (DataFormatException ex) {
+            throw new HongsExemption(0x1152, "Can not unpack data", ex);
+        } finally {
+            inf.end();
+        }
+    }
+
+    private static Map op(String op, String path, Object value) {
+        Map m = new LinkedHashMap(4);
+        m.put("op"  , op  );
+        m.put("path", path);
+        if (! "remove".equals(op)) {
+            m.put("value", value);
+        }
+        return m;
+    }
+
+    private static String escape(String k) {
+        return k.replace("~", "~0").replace("/", "~1");
+    }
+
+    private static String unescape(String k) {
+        return k.replace("~1", "/").replace("~0", "~");
+    }
+
+}
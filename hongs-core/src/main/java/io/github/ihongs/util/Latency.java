@@ -0,0 +1,220 @@
+package io.github.ihongs.util;
+
+import io.github.ihongs.CoreConfig;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 耗时统计
+ *
+ * <p>
+ * 按名称记录耗时分布, 用于查看动作, 数据库, 索引库等的 p50/p99/p999.
+ * 仿 HdrHistogram 的对数线性分桶, 以微秒计, 相对误差约 6%;
+ * 记录过程无锁, 仅为原子计数, 可在热点路径上调用.
+ * </p>
+ *
+ * <p>
+ * 名称约定: action:动作路径, db:库名.表名:操作, lucene:库名:操作
+ * </p>
+ *
+ * <h3>配置选项:</h3>
+ * <pre>
+ * core.latency.enable 启用耗时统计, 默认为 true
+ * core.latency.limit  最多记录的名称数量, 默认为 4096, 超出后的并入 "..."
+ * </pre>
+ *
+ * @author Hongs
+ */
+public final class Latency {
+
+    private static final Map<String, Recorder> RECORDS = new ConcurrentHashMap();
+    private static volatile Boolean ENABLE = null;
+    private static volatile int     LIMIT  = 4096;
+
+    private Latency() {}
+
+    /**
+     * 是否启用
+     * @return
+     */
+    public static boolean isEnable() {
+        Boolean e = ENABLE;
+        if (e == null) {
+            CoreConfig c = CoreConfig.getInstance();
+            LIMIT  = c.getProperty("core.latency.limit" , 4096);
+            ENABLE = e = c.getProperty("core.latency.enable", true);
+        }
+        return e;
+    }
+
+    /**
+     * 开始计时
+     * @return 未启用时为 0
+     */
+    public static long start() {
+        return isEnable() ? System.nanoTime() : 0L;
+    }
+
+    /**
+     * 结束计时并记录
+     * @param name
+     * @param start 由 start() 返回
+     */
+    public static void record(String name, long start) {
+        if (start != 0L) {
+            get(name).record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * 获取记录器
+     * @param name
+     * @return
+     */
+    public static Recorder get(String name) {
+        Recorder r = RECORDS.get(name);
+        if (r == null) {
+            if (RECORDS.size() >= LIMIT) {
+                name = "...";
+            }
+            r = RECORDS.computeIfAbsent(name, k -> new Recorder());
+        }
+        return r;
+    }
+
+    /**
+     * 全部统计
+     * @param prefix 名称前缀, 为 null 则不限
+     * @return 名称 => {count,mean,max,p50,p90,p99,p999}, 单位毫秒
+     */
+    public static Map<String, Map> stats(String prefix) {
+        Map<String, Map> map = new TreeMap();
+        for (Map.Entry<String, Recorder> et : RECORDS.entrySet()) {
+            if (prefix == null || et.getKey().startsWith(prefix)) {
+                map.put(et.getKey(), et.getValue().toMap());
+            }
+        }
+        return map;
+    }
+
+    /**
+     * 清空统计
+     */
+    public static void reset() {
+        RECORDS.clear();
+    }
+
+    /**
+     * 耗时记录器
+     */
+    public static final class Recorder {
+
+        // 每个 2 的幂区间分为 16 个子桶, 最大约 2^40 微秒
+        private static final int  SUB  = 4;
+        private static final int  HALF = 1 << SUB;
+        private static final long MAXV = (1L << 40) - 1;
+        private static final int  SIZE = index(MAXV) + 1;
+
+        private final AtomicLongArray counts = new AtomicLongArray(SIZE);
+        private final LongAdder  count = new LongAdder();
+        private final LongAdder  total = new LongAdder();
+        private final AtomicLong maxim = new AtomicLong();
+
+        /**
+         * 记录一次
+         * @param nanos 纳秒
+         */
+        public void record(long nanos) {
+            long v = nanos / 1000;
+            if (v < 0   ) v = 0   ;
+            if (v > MAXV) v = MAXV;
+
+            counts.incrementAndGet(index(v));
+            count.increment();
+            total.add(v);
+
+            long m;
+            while ((m = maxim.get()) < v) {
+                if (maxim.compareAndSet(m, v)) {
+                    break;
+                }
+            }
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        /**
+         * 百分位值
+         * @param p 0~100
+         * @return 微秒
+         */
+        public long getValue(double p) {
+            long n = 0;
+            long[] c = new long[SIZE];
+            for (int i = 0; i < SIZE; i ++) {
+                n += c[i] = counts.get(i);
+            }
+            if (n == 0) {
+                return 0;
+            }
+            long k = (long) Math.ceil(n * p / 100);
+            if (k < 1) {
+                k = 1;
+            }
+            long s = 0;
+            for (int i = 0; i < SIZE; i ++) {
+                s += c[i];
+                if (s >= k) {
+                    return Math.min(value(i), maxim.get());
+                }
+            }
+            return maxim.get();
+        }
+
+        public Map toMap() {
+            long n = count.sum();
+            Map  m = new LinkedHashMap();
+            m.put("count", n);
+            m.put("mean" , n > 0 ? total.sum() / n / 1000D : 0D);
+            m.put("max"  , maxim.get() / 1000D);
+            m.put("p50"  , getValue(50  ) / 1000D);
+            m.put("p90"  , getValue(90  ) / 1000D);
+            m.put("p99"  , getValue(99  ) / 1000D);
+            m.put("p999" , getValue(99.9) / 1000D);
+            return m;
+        }
+
+        /**
+         * 值到桶
+         * 小于 2*HALF 的一值一桶, 之后每翻一倍用 HALF 个桶
+         */
+        static int index(long v) {
+            if (v < HALF << 1) {
+                return (int) v;
+            }
+            int e = 63 - Long.numberOfLeadingZeros(v) - SUB;
+            return (e << SUB) + (int) (v >>> e);
+        }
+
+        /**
+         * 桶到值, 取桶内上限
+         */
+        static long value(int i) {
+            if (i < HALF << 1) {
+                return i;
+            }
+            int e = (i >>> SUB) - 1;
+            long m = i - (e << SUB);
+            return ((m + 1) << e) - 1;
+        }
+
+    }
+
+}
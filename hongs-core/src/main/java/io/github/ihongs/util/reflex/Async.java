@@ -1,56 +1,59 @@
 package io.github.ihongs.util.reflex;
 
 import io.github.ihongs.Core;
-import io.github.ihongs.CoreLogger;
 import io.github.ihongs.CoreSerial;
 import io.github.ihongs.HongsException;
 
 import java.io.File;
-import java.io.PrintStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
 
 /**
  * 异步任务
  * 将任务放入后台, 当前线程可以继续去做其它事情
  * 适合那些不需要立即返回的操作, 如邮件发送程序
+ * 有名称的任务集在入队前写入预写日志, 完成后确认,
+ * 进程异常退出后再次启动时会重新执行未确认的任务.
  * @author Hongs
  * @param <T> 任务的数据类型
  */
 public abstract class Async<T> extends CoreSerial implements AutoCloseable {
 
-    private transient File back = null;
-    public  transient ExecutorService  servs;
-    public            BlockingQueue<T> tasks;
+    private final transient Spool<T> spool;
 
     /**
-     * @param name      任务集名称, 退出时保存现有任务待下次启动时执行, 为 null 则不保存
+     * @param name      任务集名称, 未完成的任务待下次启动时执行, 为 null 则不保存
      * @param maxTasks  最多容纳的任务数量
      * @param maxServs  最多可用的线程数量
      * @throws io.github.ihongs.HongsException
      */
     protected Async(String name, int maxTasks, int maxServs) throws HongsException {
-        servs = Executors.newCachedThreadPool(  );
-        tasks = new LinkedBlockingQueue(maxTasks);
+        this(name, maxTasks, maxServs, Spool.Policy.ABORT);
+    }
 
+    /**
+     * @param name      任务集名称, 未完成的任务待下次启动时执行, 为 null 则不保存
+     * @param maxTasks  最多容纳的任务数量
+     * @param maxServs  最多可用的线程数量
+     * @param policy    队满策略
+     * @throws io.github.ihongs.HongsException
+     */
+    protected Async(String name, int maxTasks, int maxServs, Spool.Policy policy) throws HongsException {
+        File back = null;
         if (name != null) {
             back  = new File(Core.DATA_PATH
                   + File.separator + "serial"
-                  + File.separator + name + ".async.ser");
-            if (back.exists()) {
-                load ( back );
-            }
+                  + File.separator + name + ".async");
         }
 
-        for(int i = 0; i < maxServs; i ++) {
-            servs.execute(new Atask(this, "async:"+name+"["+i+"]"));
+        spool = new Spool<>("async:"+ name, back, maxTasks, maxServs, policy, this::run);
+
+        if (back != null) {
+            spool.migrate(new File(back.getPath() + ".ser"), "tasks");
         }
 
-        //tasks.offer(null); // 放一个空对象促使其执行终止时未执行完的任务
+        for(int i = 0; i < maxServs; i ++) {
+            spool.execute(new Atask(this, "async:"+name+"["+i+"]"));
+        }
     }
 
     @Override
@@ -60,32 +63,7 @@ public abstract class Async<T> extends CoreSerial implements AutoCloseable {
 
     @Override
     public void close() {
-        if (!servs.isShutdown( )) {
-            servs.shutdownNow( );
-        }
-
-        if (back == null) {
-            if (!tasks.isEmpty()) {
-                CoreLogger.error("There has "+ tasks.size() +" task(s) not run.");
-            }
-            return;
-        }
-
-        File   file;
-        file = back;
-        back = null;
-
-        if (!tasks.isEmpty()) {
-            try {
-                save( file );
-                CoreLogger.trace("There has "+ tasks.size() +" task(s) not run, save to '"+file.getPath()+"'.");
-            } catch (HongsException ex) {
-                CoreLogger.error(   ex);
-            }
-        } else
-        if (file.exists()) {
-            file.delete();
-        }
+        spool.close();
     }
 
     @Override
@@ -100,10 +78,18 @@ public abstract class Async<T> extends CoreSerial implements AutoCloseable {
     /**
      * 添加一个任务
      * @param data
-     * @throws IllegalStateException 当队列满时
+     * @throws IllegalStateException 当队列满且策略为 ABORT 时
      */
     public void add(T data) {
-          tasks.add(  data);
+          spool.add(  data);
+    }
+
+    /**
+     * 获取队列统计
+     * @return
+     */
+    public Spool.Stats getStats() {
+        return spool.getStats();
     }
 
     /**
@@ -127,32 +113,24 @@ public abstract class Async<T> extends CoreSerial implements AutoCloseable {
             // 方便日志中识别是哪个队列
             Core.ACTION_NAME.set(name);
 
-            Object  data;
+            Spool     spool = async.spool;
+            Spool.Entry  en ;
             while ( true) {
                 try {
-                    data = async.tasks.take();
+                    en = spool.take();
                 } catch (InterruptedException e) {
                     Thread.currentThread().interrupt();
                     break;
                 }
 
-                if (null  ==  data) {
-                    continue;
-                }
-
+                boolean ok = true;
                 try {
-                    async.run(data);
+                    async.run(en.data);
                 } catch (Throwable e) {
-                    String n = async.getClass().getName();
-                    if (0 != Core.DEBUG && 8 != (8 & Core.DEBUG)) {
-                        ByteArrayOutputStream b;
-                           b = new  ByteArrayOutputStream(  );
-                        e.printStackTrace(new PrintStream(b));
-                        CoreLogger.getLogger(n).error(b. toString ());
-                    } else {
-                        CoreLogger.getLogger(n).error(e.getMessage());
-                    }
+                    ok = false;
+                    spool.fail(e);
                 }
+                spool.done(en, ok);
             }
         }
 
@@ -187,7 +165,7 @@ public abstract class Async<T> extends CoreSerial implements AutoCloseable {
             }
             a.add( x );
         }
-        int m = a.tasks.size();
+        int m = a.getStats().getDepth();
         System.out.println("end!!!"+(m>0?m:""));
     }
 
@@ -1,41 +1,34 @@
 package io.github.ihongs.util.reflex;
 
 import io.github.ihongs.Core;
-import io.github.ihongs.CoreLogger;
 import io.github.ihongs.CoreSerial;
 import io.github.ihongs.HongsException;
 
 import java.io.File;
-import java.io.PrintStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
 
 /**
  * 批量任务
  * 此类用于批量执行一些操作, 应用场景同异步任务
  * 但需要间隔一段时间, 或累积到一定数量才会执行
  * 注意: 数量按工作线程计算, 如: 工作线程数2, 缓冲区容量5, 首次执行需要累积到10个才会处理.
+ * 有名称的任务集在入队前写入预写日志, 整批执行完后确认,
+ * 进程异常退出后再次启动时会重新执行未确认的任务.
  * @author Hongs
  * @param <T> 任务的数据类型
  */
 public abstract class Batch<T> extends CoreSerial implements AutoCloseable {
 
-    private transient File back = null;
-    public  transient ExecutorService     servs;
-    public            BlockingQueue  <T>  tasks;
-    public            List<Collection<T>> cache;
+    private final transient Spool<T> spool;
+    private final transient List<Collection<T>> cache;
 
     /**
-     * @param name      任务集名称, 退出时保存现有任务待下次启动时执行, 为 null 则不保存
+     * @param name      任务集名称, 未完成的任务待下次启动时执行, 为 null 则不保存
      * @param maxTasks  最多容纳的任务数量
      * @param maxServs  最多可用的线程数量
      * @param timeout   间隔此毫秒时间后开始执行
@@ -44,28 +37,43 @@ public abstract class Batch<T> extends CoreSerial implements AutoCloseable {
      * @throws io.github.ihongs.HongsException
      */
     protected Batch(String name, int maxTasks, int maxServs, int timeout, int sizeout, boolean diverse) throws HongsException {
-        servs = Executors.newCachedThreadPool(  );
-        tasks = new LinkedBlockingQueue(maxTasks);
+        this(name, maxTasks, maxServs, timeout, sizeout, diverse, Spool.Policy.ABORT);
+    }
+
+    /**
+     * @param name      任务集名称, 未完成的任务待下次启动时执行, 为 null 则不保存
+     * @param maxTasks  最多容纳的任务数量(含缓冲区中的)
+     * @param maxServs  最多可用的线程数量
+     * @param timeout   缓冲区首个任务等待此毫秒时间后开始执行
+     * @param sizeout   缓冲区长度达此数量后执行
+     * @param diverse   是否去重(缓冲类型): true 为 Set, false 为 List
+     * @param policy    队满策略
+     * @throws io.github.ihongs.HongsException
+     */
+    protected Batch(String name, int maxTasks, int maxServs, int timeout, int sizeout, boolean diverse, Spool.Policy policy) throws HongsException {
         cache = new ArrayList();
 
         for(int i = 0; i < maxServs; i ++) {
             cache.add(diverse ? new LinkedHashSet() : new ArrayList());
         }
 
+        File back = null;
         if (name != null) {
             back  = new File(Core.DATA_PATH
                   + File.separator + "serial"
-                  + File.separator + name + ".batch.ser");
-            if (back.exists()) {
-                load ( back );
-            }
+                  + File.separator + name + ".batch");
         }
 
-        for(int i = 0; i < maxServs; i ++) {
-            servs.execute(new Btask(this, "batch:"+name+"["+i+"]", cache.get(i), timeout, sizeout));
+        spool = new Spool<>("batch:"+ name, back, maxTasks, maxServs, policy,
+                (T data) -> run(Collections.singletonList(data)));
+
+        if (back != null) {
+            spool.migrate(new File(back.getPath() + ".ser"), "tasks", "cache");
         }
 
-        //tasks.offer(null); // 放一个空对象促使其执行终止时未执行完的任务
+        for(int i = 0; i < maxServs; i ++) {
+            spool.execute(new Btask(this, "batch:"+name+"["+i+"]", cache.get(i), timeout, sizeout));
+        }
     }
 
     @Override
@@ -73,47 +81,14 @@ public abstract class Batch<T> extends CoreSerial implements AutoCloseable {
         // Nothing to do.
     }
 
+    /**
+     * 关闭
+     * 缓冲区滞留的任务尚未确认, 下次启动时会重新执行,
+     * 即使重启后 servs 数量改变也没有关系
+     */
     @Override
     public void close() {
-        if (!servs.isShutdown( )) {
-            servs.shutdownNow( );
-        }
-
-        if (back == null) {
-            if (!tasks.isEmpty()) {
-                CoreLogger.error("There has "+ tasks.size() +" task(s) not run.");
-            }
-            return;
-        }
-
-        /**
-         * 将缓冲区滞留的任务写回 tasks
-         * 即使重启后 servs 数量改变也没有关系
-         */
-        Collection<T> c = new ArrayList();
-        for (Collection<T> taskz : cache) {
-            c.addAll(taskz);
-            taskz.clear ( );
-        }
-        c.addAll(tasks);
-        tasks.clear ( );
-        tasks.addAll(c);
-
-        File   file;
-        file = back;
-        back = null;
-
-        if (!tasks.isEmpty()) {
-            try {
-                save( file );
-                CoreLogger.trace("There has "+ tasks.size() +" task(s) not run, save to '"+back.getPath()+"'.");
-            } catch (HongsException ex) {
-                CoreLogger.error(   ex);
-            }
-        } else
-        if (file.exists()) {
-            file.delete();
-        }
+        spool.close();
     }
 
     @Override
@@ -128,10 +103,18 @@ public abstract class Batch<T> extends CoreSerial implements AutoCloseable {
     /**
      * 添加一个任务
      * @param data
-     * @throws IllegalStateException 当队列满时
+     * @throws IllegalStateException 当队列满且策略为 ABORT 时
      */
     public void add(T data) {
-          tasks.add(  data);
+          spool.add(  data);
+    }
+
+    /**
+     * 获取队列统计
+     * @return
+     */
+    public Spool.Stats getStats() {
+        return spool.getStats();
     }
 
     /**
@@ -170,6 +153,7 @@ public abstract class Batch<T> extends CoreSerial implements AutoCloseable {
         private final Batch batch;
         private final String name;
         private final Collection cache;
+        private final List<Spool.Entry> entries;
         private final int timeout;
         private final int sizeout;
 
@@ -177,6 +161,7 @@ public abstract class Batch<T> extends CoreSerial implements AutoCloseable {
             this.batch = batch;
             this.name  = name ;
             this.cache = cache;
+            this.entries = new ArrayList();
             this.timeout = timeout;
             this.sizeout = sizeout;
         }
@@ -186,51 +171,44 @@ public abstract class Batch<T> extends CoreSerial implements AutoCloseable {
             // 方便日志中识别是哪个队列
             Core.ACTION_NAME.set(name);
 
-            Object  data;
+            Spool     spool = batch.spool;
+            Spool.Entry  en ;
+            long  due = 0;
             while ( true) {
                 try {
-                    data = batch.tasks.poll(timeout, TimeUnit.MICROSECONDS);
+                    // 缓冲区为空时一直等待, 否则等到首个任务的期限
+                    if (entries.isEmpty()) {
+                        en  = spool.take();
+                        due = System.currentTimeMillis() + timeout;
+                    } else {
+                        long w = due - System.currentTimeMillis();
+                        en  = w > 0 ? spool.poll(w) : null;
+                    }
                 } catch (InterruptedException e) {
                     Thread.currentThread().interrupt();
                     break;
                 }
 
-                if (null  !=  data) {
-                    cache.add(data);
-                    if (cache.size( ) >= sizeout) {
-                        try {
-                            batch.run(cache);
-                        } catch (Throwable e) {
-                            String n = batch.getClass().getName();
-                            if (0 != Core.DEBUG && 8 != (8 & Core.DEBUG)) {
-                                ByteArrayOutputStream b;
-                                   b = new  ByteArrayOutputStream(  );
-                                e.printStackTrace(new PrintStream(b));
-                                CoreLogger.getLogger(n).error(b. toString ());
-                            } else {
-                                CoreLogger.getLogger(n).error(e.getMessage());
-                            }
-                        }
-                        cache.clear();
-                    }
-                } else {
-                    if (cache.isEmpty() == false) {
-                        try {
-                            batch.run(cache);
-                        } catch (Throwable e) {
-                            String n = batch.getClass().getName();
-                            if (0 != Core.DEBUG && 8 != (8 & Core.DEBUG)) {
-                                ByteArrayOutputStream b;
-                                   b = new  ByteArrayOutputStream(  );
-                                e.printStackTrace(new PrintStream(b));
-                                CoreLogger.getLogger(n).error(b. toString ());
-                            } else {
-                                CoreLogger.getLogger(n).error(e.getMessage());
-                            }
-                        }
-                        cache.clear();
+                if (null != en) {
+                    entries.add(en);
+                    cache.add(en.data);
+                    if (cache.size() < sizeout) {
+                        continue;
                     }
                 }
+
+                boolean ok = true;
+                try {
+                    batch.run(cache);
+                } catch (Throwable e) {
+                    ok = false;
+                    spool.fail(e);
+                }
+                for(Spool.Entry ex : entries) {
+                    spool.done(ex, ok);
+                }
+                entries.clear();
+                cache.clear();
             }
         }
 
@@ -265,7 +243,7 @@ public abstract class Batch<T> extends CoreSerial implements AutoCloseable {
             }
             a.add( x );
         }
-        int m = a.tasks.size()+a.getCacheSize();
+        int m = a.getStats().getDepth();
         System.out.println("end!!!"+(m>0?m:""));
     }
 
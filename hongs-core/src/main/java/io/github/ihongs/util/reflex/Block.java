@@ -2,10 +2,12 @@ package io.github.ihongs.util.reflex;
 
 import io.github.ihongs.Core;
 import io.github.ihongs.CoreLogger;
-import java.util.Iterator;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
@@ -16,16 +18,19 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
  * 全局资源锁
  *
  * 每隔一段时间自动清理锁, 以及释放可以关闭的对象;
- * 注意: 以下锁均不支持 tryLock/lockInterruptibly.
+ * 锁对象按键存放于 ConcurrentHashMap, 获取时无全局锁,
+ * 获取时在 compute 内原子地刷新时间并登记引用, 首次加锁时转为持有, 解锁时释放,
+ * 清理仅移除无引用、无人持有且闲置超过一分钟的, 且与获取互斥;
+ * 故锁对象应在使用前获取, 勿长期存放.
+ * 另有等待时长和加锁次数等统计, 可通过 stats 方法查看.
+ * 注意: 以下锁均不支持 newCondition.
  *
  * @author Hongs
  */
 public final class Block {
 
-    private static final ReadWriteLock ST_LOCKR = new ReentrantReadWriteLock();
-    private static final ReadWriteLock RW_LOCKR = new ReentrantReadWriteLock();
-    private static final Map<String, Locker> ST_LOCKS = new HashMap();
-    private static final Map<String, Larder> RW_LOCKS = new HashMap();
+    private static final Map<String, Locker> ST_LOCKS = new ConcurrentHashMap();
+    private static final Map<String, Larder> RW_LOCKS = new ConcurrentHashMap();
 
     /**
      * 加入全局定时清理
@@ -41,38 +46,21 @@ public final class Block {
     public static int cleans() {
         long tt = System.currentTimeMillis() - 60000;
         int  ct = 0;
-        Lock loxk  ;
-
-        loxk = ST_LOCKR.writeLock();
-        loxk.lock();
-        try {
-            Iterator<Map.Entry<String,Locker>> it = ST_LOCKS.entrySet().iterator();
-            while (it.hasNext()) {
-                Map.Entry<String, Locker> et = it.next();
-                Locker lock = et.getValue();
-                if (lock.cite <= 0 && lock.time <= tt) {
-                    it.remove( );
-                    ct ++;
-                }
+
+        // computeIfPresent 与获取时的 compute 对同一键互斥,
+        // 获取即登记引用(pins), 加锁前不会被移除.
+        for (String key : ST_LOCKS.keySet()) {
+            if (null == ST_LOCKS.computeIfPresent(key, (k, lock) ->
+                lock.cite.get() <= 0 && lock.pins.get() <= 0 && lock.time <= tt ? null : lock)) {
+                ct ++;
             }
-        } finally {
-            loxk.unlock();
-        }
-
-        loxk = RW_LOCKR.writeLock();
-        loxk.lock();
-        try {
-            Iterator<Map.Entry<String,Larder>> it = RW_LOCKS.entrySet().iterator();
-            while (it.hasNext()) {
-                Map.Entry<String, Larder> et = it.next();
-                Larder lock = et.getValue();
-                if (lock.cite <= 0 && lock.time <= tt) {
-                    it.remove( );
-                    ct ++;
-                }
+        }
+
+        for (String key : RW_LOCKS.keySet()) {
+            if (null == RW_LOCKS.computeIfPresent(key, (k, lock) ->
+                lock.cite.get() <= 0 && lock.pins.get() <= 0 && lock.time <= tt ? null : lock)) {
+                ct ++;
             }
-        } finally {
-            loxk.unlock();
         }
 
         return ct;
@@ -88,55 +76,56 @@ public final class Block {
         Map rw = new HashMap();
 
         rs.put("Locker", st);
-        Iterator<Map.Entry<String, Locker>> it = ST_LOCKS.entrySet().iterator();
-        while (it.hasNext()) {
-            Map.Entry<String , Locker> et = it.next();
-            Locker lock = et.getValue();
-            String key = et.getKey();
-            st.put(key , lock.cite );
+        for (Map.Entry<String, Locker> et : ST_LOCKS.entrySet()) {
+            st.put(et.getKey(), et.getValue().cite.get());
         }
 
         rs.put("Larder", rw);
-        Iterator<Map.Entry<String, Larder>> jt = RW_LOCKS.entrySet().iterator();
-        while (it.hasNext()) {
-            Map.Entry<String , Larder> et = jt.next();
-            Larder lock = et.getValue();
-            String key = et.getKey();
-            rw.put(key , lock.cite );
+        for (Map.Entry<String, Larder> et : RW_LOCKS.entrySet()) {
+            rw.put(et.getKey(), et.getValue().cite.get());
         }
 
         return rs;
     }
 
     /**
-     * 获取基础锁
-     * @param key
-     * @return
+     * 统计
+     * 每个键给出 cite 当前持有及等待数, count 累计加锁次数,
+     * waits 累计等待毫秒, maxes 最长等待毫秒
+     * @return 争用情况
      */
-    public static Locker getLocker(String key) {
-        Lock loxk;
-        Locker lock = null;
+    public static Map stats() {
+        Map rs = new HashMap();
+        Map st = new HashMap();
+        Map rw = new HashMap();
 
-        loxk = ST_LOCKR. readLock( );
-        loxk.lock();
-        try {
-            lock = ST_LOCKS.get(key);
-        } finally {
-            loxk.unlock();
-        }
-        if (null != lock) {
-            return  lock ;
+        rs.put("Locker", st);
+        for (Map.Entry<String, Locker> et : ST_LOCKS.entrySet()) {
+            st.put(et.getKey(), et.getValue().stat.toMap(et.getValue().cite));
         }
 
-        loxk = ST_LOCKR.writeLock( );
-        loxk.lock();
-        try {
-            lock = new Locker(/***/);
-            ST_LOCKS.put(key , lock);
-        } finally {
-            loxk.unlock();
+        rs.put("Larder", rw);
+        for (Map.Entry<String, Larder> et : RW_LOCKS.entrySet()) {
+            rw.put(et.getKey(), et.getValue().stat.toMap(et.getValue().cite));
         }
-        return lock;
+
+        return rs;
+    }
+
+    /**
+     * 获取基础锁
+     * @param key
+     * @return
+     */
+    public static Locker getLocker(String key) {
+        return ST_LOCKS.compute(key, (k, lock) -> {
+            if (lock == null) {
+                lock = new Locker();
+            }
+            lock.time = System.currentTimeMillis();
+            lock.pins.incrementAndGet();
+            return lock;
+        });
     }
 
     /**
@@ -145,29 +134,14 @@ public final class Block {
      * @return
      */
     public static Larder getLarder(String key) {
-        Lock loxk;
-        Larder lock = null;
-
-        loxk = RW_LOCKR. readLock( );
-        loxk.lock();
-        try {
-            lock = RW_LOCKS.get(key);
-        } finally {
-            loxk.unlock();
-        }
-        if (null != lock) {
-            return  lock ;
-        }
-
-        loxk = RW_LOCKR.writeLock( );
-        loxk.lock();
-        try {
-            lock = new Larder(/***/);
-            RW_LOCKS.put(key , lock);
-        } finally {
-            loxk.unlock();
-        }
-        return lock;
+        return RW_LOCKS.compute(key, (k, lock) -> {
+            if (lock == null) {
+                lock = new Larder();
+            }
+            lock.time = System.currentTimeMillis();
+            lock.pins.incrementAndGet();
+            return lock;
+        });
     }
 
     /**
@@ -188,45 +162,121 @@ public final class Block {
         return new Writer(getLarder(key));
     }
 
+    /**
+     * 争用统计
+     */
+    private static final class Stat {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder waits = new LongAdder();
+        private volatile long   maxes = 0;
+
+        private void add(long wait) {
+            count.increment( );
+            waits.add   (wait);
+            if (maxes < wait) {
+                maxes = wait; // 不求精确, 免去加锁
+            }
+        }
+
+        private Map toMap(AtomicInteger cite) {
+            Map map = new HashMap();
+            map.put("cite" , cite.get());
+            map.put("count", count.sum());
+            map.put("waits", TimeUnit.NANOSECONDS.toMillis(waits.sum()));
+            map.put("maxes", TimeUnit.NANOSECONDS.toMillis(maxes));
+            return map;
+        }
+    }
+
     /**
      * 读写锁
      * 对 ReadWriteLock 的封装
      */
     public static final class Larder implements ReadWriteLock {
         private final ReadWriteLock lock = new ReentrantReadWriteLock();
-        private long  time = 0;
-        private  int  cite = 0;
+        private final AtomicInteger cite = new AtomicInteger();
+        private final AtomicInteger pins = new AtomicInteger();
+        private final Stat stat = new Stat();
+        private volatile long time = System.currentTimeMillis();
 
         private Larder() {} // 避免外部 new
 
+        /**
+         * 持有, 获取时登记的引用转为持有
+         */
+        private void hold() {
+            cite.incrementAndGet();
+            pins.getAndUpdate(n -> n > 0 ? n - 1 : 0);
+        }
+
         public void lockr() {
-            synchronized (this) {
-                cite ++;
-            }
+            hold();
+            long t = System.nanoTime();
             lock.readLock().lock();
+            stat.add(System.nanoTime() - t);
         }
 
         public void unlockr() {
-            synchronized (this) {
-                cite --;
-                time = System.currentTimeMillis();
-            }
             lock.readLock().unlock();
+            time = System.currentTimeMillis();
+            cite.decrementAndGet();
         }
 
         public void lockw() {
-            synchronized (this) {
-                cite ++;
-            }
+            hold();
+            long t = System.nanoTime();
             lock.writeLock().lock();
+            stat.add(System.nanoTime() - t);
         }
 
         public void unlockw() {
-            synchronized (this) {
-                cite --;
-                time = System.currentTimeMillis();
-            }
             lock.writeLock().unlock();
+            time = System.currentTimeMillis();
+            cite.decrementAndGet();
+        }
+
+        public boolean trylockr(long time, TimeUnit unit) throws InterruptedException {
+            return trylock(lock.readLock(), time, unit);
+        }
+
+        public boolean trylockw(long time, TimeUnit unit) throws InterruptedException {
+            return trylock(lock.writeLock(), time, unit);
+        }
+
+        public void lockrInterruptibly() throws InterruptedException {
+            lockInterruptibly(lock.readLock());
+        }
+
+        public void lockwInterruptibly() throws InterruptedException {
+            lockInterruptibly(lock.writeLock());
+        }
+
+        private boolean trylock(Lock loxk, long time, TimeUnit unit) throws InterruptedException {
+            hold();
+            long t = System.nanoTime();
+            boolean b = false;
+            try {
+                b = time < 0 ? loxk.tryLock() : loxk.tryLock(time, unit);
+            } finally {
+                if (b) {
+                    stat.add(System.nanoTime() - t);
+                } else {
+                    cite.decrementAndGet();
+                }
+            }
+            return b;
+        }
+
+        private void lockInterruptibly(Lock loxk) throws InterruptedException {
+            hold();
+            long t = System.nanoTime();
+            try {
+                loxk.lockInterruptibly();
+            } catch (InterruptedException ex) {
+                cite.decrementAndGet();
+                throw ex;
+            }
+            stat.add(System.nanoTime() - t);
         }
 
         @Override
@@ -246,41 +296,75 @@ public final class Block {
      */
     public static final class Locker implements Lock {
         private final ReentrantLock lock = new ReentrantLock();
-        private long  time = 0;
-        private  int  cite = 0;
+        private final AtomicInteger cite = new AtomicInteger();
+        private final AtomicInteger pins = new AtomicInteger();
+        private final Stat stat = new Stat();
+        private volatile long time = System.currentTimeMillis();
 
         private Locker(){} // 避免外部 new
 
+        /**
+         * 持有, 获取时登记的引用转为持有
+         */
+        private void hold() {
+            cite.incrementAndGet();
+            pins.getAndUpdate(n -> n > 0 ? n - 1 : 0);
+        }
+
         @Override
         public void lock() {
-            synchronized(this) {
-                cite ++;
-            }
+            hold();
+            long t = System.nanoTime();
             lock.lock();
+            stat.add(System.nanoTime() - t);
         }
 
         @Override
         public void unlock() {
-            synchronized(this) {
-                cite --;
-                time = System.currentTimeMillis();
-            }
             lock.unlock();
+            time = System.currentTimeMillis();
+            cite.decrementAndGet();
         }
 
         @Override
         public boolean tryLock() {
-            throw new UnsupportedOperationException("Not supported.");
+            hold();
+            if (lock.tryLock()) {
+                stat.add(0);
+                return true;
+            }
+            cite.decrementAndGet();
+            return false;
         }
 
         @Override
-        public boolean tryLock(long time, TimeUnit unit) {
-            throw new UnsupportedOperationException("Not supported.");
+        public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+            hold();
+            long t = System.nanoTime();
+            boolean b = false;
+            try {
+                b = lock.tryLock(time, unit);
+            } finally {
+                if (b) {
+                    stat.add(System.nanoTime() - t);
+                } else {
+                    cite.decrementAndGet();
+                }
+            }
+            return b;
         }
 
         @Override
-        public void lockInterruptibly() {
-            throw new UnsupportedOperationException("Not supported.");
+        public void lockInterruptibly() throws InterruptedException {
+            hold();
+            long t = System.nanoTime();
+            try {
+                lock.lockInterruptibly();
+            } catch (InterruptedException ex) {
+                cite.decrementAndGet();
+                throw ex;
+            }
+            stat.add(System.nanoTime() - t);
         }
 
         @Override
@@ -312,17 +396,22 @@ public final class Block {
 
         @Override
         public boolean tryLock() {
-            throw new UnsupportedOperationException("Not supported.");
+            try {
+                return lock.trylockr(-1, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
         }
 
         @Override
-        public boolean tryLock(long time, TimeUnit unit) {
-            throw new UnsupportedOperationException("Not supported.");
+        public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+            return lock.trylockr(time, unit);
         }
 
         @Override
-        public void lockInterruptibly() {
-            throw new UnsupportedOperationException("Not supported.");
+        public void lockInterruptibly() throws InterruptedException {
+            lock.lockrInterruptibly();
         }
 
         @Override
@@ -354,17 +443,22 @@ public final class Block {
 
         @Override
         public boolean tryLock() {
-            throw new UnsupportedOperationException("Not supported.");
+            try {
+                return lock.trylockw(-1, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
         }
 
         @Override
-        public boolean tryLock(long time, TimeUnit unit) {
-            throw new UnsupportedOperationException("Not supported.");
+        public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+            return lock.trylockw(time, unit);
         }
 
         @Override
-        public void lockInterruptibly() {
-            throw new UnsupportedOperationException("Not supported.");
+        public void lockInterruptibly() throws InterruptedException {
+            lock.lockwInterruptibly();
         }
 
         @Override
@@ -1,8 +1,13 @@
 package io.github.ihongs.util.reflex;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.net.URLClassLoader;
 import java.util.Enumeration;
 import java.util.HashSet;
@@ -27,6 +32,22 @@ public final class Classes {
      * @throws IOException
      */
     public static Set<String> getClassNames(String pkgn, boolean recu) throws IOException {
+        return getClassNames(pkgn, recu, (String[]) null);
+    }
+
+    /**
+     * 通过包名获取类名集合
+     * <p>
+     * 对每个 jar 包或目录, 如果其下存在任一索引文件(由 Indexer 在编译时生成),
+     * 则仅从索引读取类名, 否则逐个扫描; 索引只含特定的类, 如带 Action 注解的类.
+     * </p>
+     * @param pkgn 包名
+     * @param recu 递归
+     * @param idxs 索引文件路径, 如 Indexer.ACTIONS_IDX
+     * @return
+     * @throws IOException
+     */
+    public static Set<String> getClassNames(String pkgn, boolean recu, String... idxs) throws IOException {
         ClassLoader      pload = Thread.currentThread().getContextClassLoader();
         String           ppath = pkgn.replace( "." , "/" );
         Enumeration<URL> links = pload.getResources(ppath);
@@ -36,6 +57,18 @@ public final class Classes {
         while ( links.hasMoreElements(  )  ) {
             URL plink = links.nextElement( );
 
+            if (idxs != null && idxs.length > 0) {
+                String pbase = plink.toString( );
+                int    pindx = pbase.lastIndexOf(ppath);
+                if (pindx > 0) {
+                    Set<String> index = getClassNamesByIdx(pbase.substring(0, pindx), ppath, recu, idxs);
+                    if (index != null) {
+                        names.addAll(index);
+                        continue;
+                    }
+                }
+            }
+
             String  proto = plink.getProtocol();
             String  proot = plink.getPath( ).replaceFirst( "/$" , "")  // 去掉结尾的 /
                                             .replaceFirst("^.+:", ""); // 去掉开头的 file:
@@ -76,6 +109,43 @@ public final class Classes {
         return  names;
     }
 
+    private static Set<String> getClassNamesByIdx(String base, String path, boolean recu, String... idxs)
+            throws IOException {
+        Set<String> names = null;
+        int         pathl = 1 + path.length();
+        for (String idx : idxs) {
+            InputStream ins;
+            try {
+                ins = new URL(base + idx).openStream();
+            } catch (FileNotFoundException ex) {
+                continue;
+            }
+            if (names == null) {
+                names = new HashSet();
+            }
+            try (
+                BufferedReader rd = new BufferedReader(new InputStreamReader(ins, StandardCharsets.UTF_8));
+            ) {
+                String line;
+                while ((line = rd.readLine()) != null) {
+                    line = line.trim();
+                    if (line.isEmpty() || line.startsWith("#")) {
+                        continue;
+                    }
+                    String name = line.replace(".", "/");
+                    if (!name.startsWith(path + "/")) {
+                        continue;
+                    }
+                    if (!recu && name.indexOf("/", pathl ) > 0) {
+                        continue;
+                    }
+                    names.add(line);
+                }
+            }
+        }
+        return  names;
+    }
+
     private static Set<String> getClassNamesByDir(String root, String path, boolean recu) {
         Set<String> names = new HashSet();
         File[]      files = new File(root + path).listFiles();
@@ -0,0 +1,126 @@
+package io.github.ihongs.util.reflex;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Set;
+import java.util.TreeSet;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * 动作和命令索引
+ *
+ * <p>
+ * 编译时的注解处理器, 将带 Action,Cmdlet 注解的类名写入
+ * META-INF/hongs/actions.idx 和 META-INF/hongs/cmdlets.idx,
+ * 启动时 Classes 读取索引而不用逐个扫描 jar 包或目录.
+ * 即使没有相关的类也会写入空索引, 以表明该处已编入索引.
+ * 增量编译时只处理部分源码, 故会并入原索引中仍带注解的类.
+ * </p>
+ *
+ * <p>
+ * 注意: 此类不可引用本项目的其他类, 因其在编译本项目时被单独先行编译.
+ * </p>
+ *
+ * @author Hongs
+ */
+@SupportedAnnotationTypes("*")
+public class Indexer extends AbstractProcessor {
+
+    public static final String ACTIONS_IDX = "META-INF/hongs/actions.idx";
+    public static final String CMDLETS_IDX = "META-INF/hongs/cmdlets.idx";
+
+    private static final String ACTION = "io.github.ihongs.action.anno.Action";
+    private static final String CMDLET = "io.github.ihongs.cmdlet.anno.Cmdlet";
+
+    private final Set<String> acts = new TreeSet<>();
+    private final Set<String> cmds = new TreeSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment env) {
+        if (env.processingOver()) {
+            merge(ACTIONS_IDX, ACTION, acts);
+            merge(CMDLETS_IDX, CMDLET, cmds);
+            write(ACTIONS_IDX, acts);
+            write(CMDLETS_IDX, cmds);
+            return false;
+        }
+
+        collect(env, ACTION, acts);
+        collect(env, CMDLET, cmds);
+        return false;
+    }
+
+    private void collect(RoundEnvironment env, String anno, Set<String> names) {
+        TypeElement type = processingEnv.getElementUtils().getTypeElement(anno);
+        if (type == null) {
+            return;
+        }
+        for(Element elem : env.getElementsAnnotatedWith(type)) {
+            // 仅类上的注解, 方法上的由 CoreRoster 自行提取
+            if (elem.getKind().isClass()) {
+                names.add(processingEnv.getElementUtils()
+                     .getBinaryName((TypeElement) elem)
+                     .toString());
+            }
+        }
+    }
+
+    private void merge(String path, String anno, Set<String> names) {
+        CharSequence text;
+        try {
+            text = processingEnv.getFiler()
+                .getResource(StandardLocation.CLASS_OUTPUT, "", path)
+                .getCharContent(true);
+        } catch (IOException | IllegalArgumentException ex) {
+            return; // 尚无索引
+        }
+        for(String name : text.toString().split("\n")) {
+            name = name.trim();
+            if (name.isEmpty() || names.contains(name)) {
+                continue;
+            }
+            // 类已删除或去掉了注解则不再保留
+            TypeElement type = processingEnv.getElementUtils().getTypeElement(name.replace('$', '.'));
+            if (type == null) {
+                continue;
+            }
+            for(AnnotationMirror am : type.getAnnotationMirrors()) {
+                if (anno.contentEquals(((TypeElement) am.getAnnotationType().asElement()).getQualifiedName())) {
+                    names.add(name);
+                    break;
+                }
+            }
+        }
+    }
+
+    private void write(String path, Set<String> names) {
+        try {
+            FileObject fo = processingEnv.getFiler()
+                .createResource(StandardLocation.CLASS_OUTPUT, "", path);
+            try (Writer wr = fo.openWriter()) {
+                for(String name : names) {
+                    wr.write(name);
+                    wr.write('\n');
+                }
+            }
+        } catch (IOException ex) {
+            processingEnv.getMessager()
+                .printMessage(Diagnostic.Kind.WARNING, "Can not write " + path + ": " + ex.getMessage());
+        }
+    }
+
+}
@@ -0,0 +1,350 @@
+package io.github.ihongs.util.reflex;
+
+import io.github.ihongs.HongsException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * 预写日志
+ *
+ * <p>
+ * 任务在入队前追加写入日志段, 完成后在对应的确认文件追加其序号;
+ * 日志段写满后换新段, 旧段内任务全部确认后即删除.
+ * 进程异常退出后重新打开, 可取回所有未确认的任务, 保证至少执行一次.
+ * </p>
+ *
+ * <p>
+ * 日志段文件名为首条序号, 记录格式为: 长度(int) 序号(long) 数据 校验(int);
+ * 确认文件为连续的序号(long). 尾部写入不完整的记录在恢复时丢弃.
+ * </p>
+ *
+ * @author Hongs
+ */
+final class Journal implements AutoCloseable {
+
+    private final File    dir ;
+    private final long    size;
+    private final boolean sync;
+    private final TreeMap<Long, Segment> segs = new TreeMap();
+    private       Segment curr;
+    private       long    next;
+
+    /**
+     * @param dir  日志目录
+     * @param size 日志段大小, 超过后换新段
+     * @param sync 每次写入均强制落盘
+     * @throws HongsException
+     */
+    public Journal(File dir, long size, boolean sync) throws HongsException {
+        this.dir  = dir ;
+        this.size = size;
+        this.sync = sync;
+
+        if (! dir.exists()) {
+              dir.mkdirs();
+        }
+    }
+
+    /**
+     * 恢复未确认的任务
+     * 须在 append 之前调用且仅调用一次
+     * @return 序号及数据, 按序号排列
+     * @throws HongsException
+     */
+    public synchronized List<Map.Entry<Long, Object>> recover() throws HongsException {
+        List<Map.Entry<Long, Object>> list = new ArrayList();
+
+        File[] fs = dir.listFiles((d, n) -> n.endsWith(".log"));
+        if (fs != null) {
+            Arrays.sort(fs);
+            for (File f : fs) {
+                long   first;
+                try {
+                    first = Long.parseLong(f.getName().substring(0, f.getName().length() - 4));
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                Segment seg = new Segment(first);
+                segs.put(first, seg);
+
+                Set<Long> acks = seg.readAcks();
+                for(Map.Entry<Long, Object> et : seg.readLogs()) {
+                    long seq = et.getKey();
+                    seg.total ++;
+                    if (next <= seq) {
+                        next  = seq + 1;
+                    }
+                    if (acks.contains(seq)) {
+                        seg.acked ++;
+                    } else {
+                        list.add(et);
+                    }
+                }
+
+                seg.closed = true;
+                seg.purge();
+            }
+        }
+
+        return list;
+    }
+
+    /**
+     * 追加任务
+     * @param data 可序列化的数据
+     * @return 序号
+     * @throws HongsException
+     */
+    public synchronized long append(Object data) throws HongsException {
+        byte[] b;
+        try (
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            ObjectOutputStream    oos = new ObjectOutputStream (bos);
+        ) {
+            oos.writeObject(data);
+            oos.flush();
+            b = bos.toByteArray();
+        } catch (IOException e) {
+            throw new HongsException(e);
+        }
+
+        if (curr == null || curr.bytes >= size) {
+            if (curr != null) {
+                curr.closed = true;
+                curr.purge();
+            }
+            curr = new Segment(next);
+            segs.put(next, curr);
+        }
+
+        long  seq = next ++;
+        CRC32 crc = new CRC32();
+        crc.update(b);
+        ByteBuffer buf = ByteBuffer.allocate(16 + b.length);
+        buf.putInt ( b.length );
+        buf.putLong( seq );
+        buf.put    ( b   );
+        buf.putInt ((int) crc.getValue());
+
+        curr.write(buf.array());
+        curr.total ++  ;
+        return seq;
+    }
+
+    /**
+     * 确认任务
+     * @param seq 序号
+     * @throws HongsException
+     */
+    public synchronized void commit(long seq) throws HongsException {
+        Map.Entry<Long, Segment> et = segs.floorEntry(seq);
+        if (et == null) {
+            return;
+        }
+        Segment seg = et.getValue();
+
+        ByteBuffer buf = ByteBuffer.allocate(8);
+        buf.putLong(seq);
+
+        seg.ack(buf.array());
+        seg.acked ++;
+        seg.purge( );
+    }
+
+    @Override
+    public synchronized void close() {
+        for (Segment seg : segs.values()) {
+            seg.close();
+        }
+        segs.clear();
+        curr = null ;
+    }
+
+    private final class Segment {
+
+        final long first;
+        final File log;
+        final File ack;
+        FileOutputStream logc;
+        FileOutputStream ackc;
+        long    bytes  = 0;
+        int     total  = 0;
+        int     acked  = 0;
+        boolean closed = false;
+
+        Segment(long first) {
+            this.first = first;
+            String n = String.format("%020d", first);
+            log = new File(dir, n + ".log");
+            ack = new File(dir, n + ".ack");
+        }
+
+        /**
+         * 写入不用 FileChannel, 因其在线程中断时会被关闭
+         */
+        void write(byte[] buf) throws HongsException {
+            try {
+                if (logc == null) {
+                    logc = new FileOutputStream(log, true);
+                }
+                logc.write(buf);
+                bytes += buf.length;
+                if (sync) {
+                    logc.getFD().sync();
+                }
+            } catch (IOException e) {
+                throw new HongsException(e);
+            }
+        }
+
+        void ack(byte[] buf) throws HongsException {
+            try {
+                if (ackc == null) {
+                    ackc = new FileOutputStream(ack, true);
+                }
+                ackc.write(buf);
+                if (sync) {
+                    ackc.getFD().sync();
+                }
+            } catch (IOException e) {
+                throw new HongsException(e);
+            }
+        }
+
+        /**
+         * 已写满且全部确认则删除
+         */
+        void purge() {
+            if (closed && acked >= total) {
+                close();
+                log.delete();
+                ack.delete();
+                segs.remove(first);
+            } else
+            if (closed && logc != null) {
+                try {
+                    logc.close();
+                } catch (IOException e) {
+                    // Ignore.
+                }
+                logc  = null;
+            }
+        }
+
+        void close() {
+            try {
+                if (logc != null) {
+                    logc.close();
+                    logc  = null;
+                }
+                if (ackc != null) {
+                    ackc.close();
+                    ackc  = null;
+                }
+            } catch (IOException e) {
+                // Ignore.
+            }
+        }
+
+        Set<Long> readAcks() throws HongsException {
+            Set<Long> set = new HashSet();
+            if (! ack.exists()) {
+                return set;
+            }
+            try (
+                FileChannel fc = FileChannel.open(ack.toPath(), StandardOpenOption.READ);
+            ) {
+                ByteBuffer buf = ByteBuffer.allocate((int) (fc.size() / 8 * 8));
+                while (buf.hasRemaining() && fc.read(buf) > 0) {}
+                buf.flip();
+                while (buf.remaining() >= 8) {
+                    set.add(buf.getLong());
+                }
+            } catch (IOException e) {
+                throw new HongsException(e);
+            }
+            return set;
+        }
+
+        List<Map.Entry<Long, Object>> readLogs() throws HongsException {
+            List<Map.Entry<Long, Object>> list = new ArrayList();
+            long good = 0;
+            try (
+                FileChannel fc = FileChannel.open(log.toPath(),
+                                 StandardOpenOption.READ,
+                                 StandardOpenOption.WRITE);
+            ) {
+                ByteBuffer head = ByteBuffer.allocate(12);
+                ByteBuffer tail = ByteBuffer.allocate( 4);
+                while (true) {
+                    head.clear();
+                    if (! fill(fc, head)) break;
+                    head.flip ();
+                    int  len = head.getInt ();
+                    long seq = head.getLong();
+                    if (len < 0 || len > fc.size() - fc.position()) break;
+
+                    ByteBuffer body = ByteBuffer.allocate(len);
+                    if (! fill(fc, body)) break;
+                    tail.clear();
+                    if (! fill(fc, tail)) break;
+                    tail.flip ();
+
+                    byte[] b = body.array();
+                    CRC32  c = new CRC32( );
+                    c.update(b);
+                    if ((int) c.getValue() != tail.getInt()) break;
+
+                    Object o;
+                    try (
+                        ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(b));
+                    ) {
+                        o = ois.readObject();
+                    } catch (ClassNotFoundException e) {
+                        throw new HongsException(e);
+                    }
+
+                    list.add(new SimpleImmutableEntry(seq, o));
+                    good = fc.position();
+                }
+
+                // 丢弃尾部残缺的记录
+                if (good < fc.size()) {
+                    fc.truncate(good);
+                }
+                bytes = good;
+            } catch (IOException e) {
+                throw new HongsException(e);
+            }
+            return list;
+        }
+
+        private boolean fill(FileChannel fc, ByteBuffer buf) throws IOException {
+            while (buf.hasRemaining()) {
+                if (fc.read(buf) < 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+    }
+
+}
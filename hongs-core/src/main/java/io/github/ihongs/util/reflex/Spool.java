@@ -0,0 +1,436 @@
+package io.github.ihongs.util.reflex;
+
+import io.github.ihongs.Core;
+import io.github.ihongs.CoreConfig;
+import io.github.ihongs.CoreLogger;
+import io.github.ihongs.HongsException;
+import io.github.ihongs.HongsExemption;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.PrintStream;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 任务队列
+ *
+ * <p>
+ * Async 和 Batch 的公共部分: 固定数量的工作线程, 有界的待办数量, 队满策略,
+ * 以及可选的预写日志(Journal), 任务完成才确认, 异常退出后重启可重新执行.
+ * </p>
+ *
+ * <h3>配置选项:</h3>
+ * <pre>
+ * core.spool.segment.size 日志段大小, 默认为 4M
+ * core.spool.sync         每次写入均强制落盘, 默认为 false
+ * </pre>
+ *
+ * @author Hongs
+ * @param <T> 任务的数据类型
+ */
+public final class Spool<T> implements AutoCloseable {
+
+    /**
+     * 队满策略
+     */
+    public static enum Policy {
+        /** 抛出 IllegalStateException */
+        ABORT,
+        /** 阻塞直到有空位 */
+        BLOCK,
+        /** 丢弃新任务 */
+        DROP,
+        /** 在调用线程执行 */
+        CALLER_RUNS
+    };
+
+    private final String  name;
+    private final Policy  policy;
+    private final Journal journal;
+    private final Room    room;
+    private final Consumer<T> direct;
+    private final AtomicLong  seqs = new AtomicLong();
+    private final BlockingQueue<Entry<T>>     queue = new LinkedBlockingQueue();
+    private final ConcurrentSkipListMap<Long, Long> pend = new ConcurrentSkipListMap();
+    private final ExecutorService servs;
+    private final Stats stats;
+
+    /**
+     * @param name     队列名称, 用于线程名和日志
+     * @param path     预写日志目录, 为 null 则不写
+     * @param maxTasks 最多容纳的任务数量(含工作线程缓冲和执行中的)
+     * @param maxServs 工作线程数量
+     * @param policy   队满策略
+     * @param direct   CALLER_RUNS 时在调用线程执行的过程
+     * @throws HongsException
+     */
+    Spool(String name, File path, int maxTasks, int maxServs, Policy policy, Consumer<T> direct)
+    throws HongsException {
+        this.name   = name  ;
+        this.policy = policy;
+        this.direct = direct;
+        this.stats  = new Stats();
+
+        int n = maxTasks;
+        if (path != null) {
+            CoreConfig conf = CoreConfig.getInstance();
+            journal = new Journal(path,
+                    conf.getProperty("core.spool.segment.size", 4L * 1024 * 1024),
+                    conf.getProperty("core.spool.sync", false));
+
+            long now = System.currentTimeMillis();
+            for(Map.Entry<Long, Object> et : journal.recover()) {
+                queue.offer(new Entry(et.getKey(), now, et.getValue()));
+                pend .put  (et.getKey(), now);
+                n --;
+            }
+            if (! queue.isEmpty()) {
+                CoreLogger.trace("Recovered "+queue.size()+" task(s) for "+name);
+            }
+        } else {
+            journal = null;
+        }
+
+        // 恢复的任务可能超过容量, 许可数可为负
+        room  = new Room(n);
+
+        final AtomicInteger i = new AtomicInteger();
+        servs = Executors.newFixedThreadPool(maxServs, (Runnable r) -> {
+            return new Thread(r, name + "[" + i.getAndIncrement() + "]");
+        });
+    }
+
+    /**
+     * 导入旧版退出时保存的任务
+     * 旧版在 close 时将 tasks 等字段序列化到 .ser 文件
+     * @param file 旧版的文件
+     * @param keys 存放任务的字段
+     */
+    void migrate(File file, String... keys) {
+        if (! file.exists()) {
+            return;
+        }
+        try (
+            ObjectInputStream ois = new ObjectInputStream(new FileInputStream(file));
+        ) {
+            Map map = (Map) ois.readObject();
+            for(String key : keys) {
+                Object val = map.get(key);
+                if (val instanceof Collection) for (Object obj : (Collection) val) {
+                    if (obj instanceof Collection) for (Object one : (Collection) obj) {
+                        push((T) one);
+                    } else {
+                        push((T) obj);
+                    }
+                }
+            }
+        } catch (IOException | ClassNotFoundException | ClassCastException | HongsException ex) {
+            CoreLogger.error(ex);
+            return;
+        }
+        file.delete();
+    }
+
+    /**
+     * 无视容量放入任务
+     */
+    private void push(T data) throws HongsException {
+        long now = System.currentTimeMillis();
+        long seq = journal != null
+                 ? journal.append(data)
+                 : seqs.getAndIncrement();
+        room .reduce(1);
+        pend .put  (seq, now);
+        queue.offer(new Entry(seq, now, data));
+        stats.accepted.increment();
+    }
+
+    /**
+     * 启动工作线程
+     * @param task
+     */
+    void execute(Runnable task) {
+        servs.execute(task);
+    }
+
+    /**
+     * 添加一个任务
+     * @param data
+     * @throws IllegalStateException 当队列满且策略为 ABORT 时
+     * @throws HongsExemption 写日志失败或阻塞时被中断
+     */
+    public void add(T data) {
+        switch (policy) {
+            case BLOCK:
+                try {
+                    room.acquire();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new HongsExemption(ex);
+                }
+                break;
+            case DROP:
+                if (! room.tryAcquire()) {
+                    stats.dropped.increment();
+                    CoreLogger.getLogger(name).warn("Queue is full, drop task: {}", data);
+                    return;
+                }
+                break;
+            case CALLER_RUNS:
+                if (! room.tryAcquire()) {
+                    stats.direct .increment();
+                    direct.accept(data);
+                    return;
+                }
+                break;
+            default:
+                if (! room.tryAcquire()) {
+                    throw new IllegalStateException("Queue full");
+                }
+        }
+
+        long seq;
+        long now = System.currentTimeMillis();
+        try {
+            seq = journal != null
+                ? journal.append(data)
+                : seqs.getAndIncrement();
+        } catch (HongsException ex) {
+            room.release();
+            throw ex.toExemption();
+        }
+
+        pend .put  (seq, now);
+        queue.offer(new Entry(seq, now, data));
+        stats.accepted.increment();
+    }
+
+    /**
+     * 取出任务, 无则等待
+     * @return
+     * @throws InterruptedException
+     */
+    Entry<T> take() throws InterruptedException {
+        return queue.take();
+    }
+
+    /**
+     * 取出任务, 超时返回 null
+     * @param timeout 毫秒
+     * @return
+     * @throws InterruptedException
+     */
+    Entry<T> poll(long timeout) throws InterruptedException {
+        return queue.poll(timeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 任务已完成
+     * 出错的任务也需确认, 重试应由 run 方法自行处理;
+     * 但因关闭而中断的不确认, 留待下次启动时再执行.
+     * @param entry
+     * @param ok 是否成功
+     */
+    void done(Entry<T> entry, boolean ok) {
+        if (!ok && Thread.currentThread().isInterrupted()) {
+            return;
+        }
+        if (journal != null) {
+            try {
+                journal.commit(entry.seq);
+            } catch (HongsException ex) {
+                CoreLogger.error(ex);
+            }
+        }
+        pend.remove(entry.seq);
+        room.release();
+        if (ok) {
+            stats.completed.increment();
+        } else {
+            stats.failed   .increment();
+        }
+    }
+
+    /**
+     * 记录异常
+     * @param e
+     */
+    void fail(Throwable e) {
+        if (0 != Core.DEBUG && 8 != (8 & Core.DEBUG)) {
+            ByteArrayOutputStream b;
+               b = new  ByteArrayOutputStream(  );
+            e.printStackTrace(new PrintStream(b));
+            CoreLogger.getLogger(name).error(b. toString ());
+        } else {
+            CoreLogger.getLogger(name).error(e.getMessage());
+        }
+    }
+
+    /**
+     * 获取统计
+     * @return
+     */
+    public Stats getStats() {
+        return stats;
+    }
+
+    /**
+     * 关闭
+     * 未完成的任务保留在日志中, 下次启动时执行
+     */
+    @Override
+    public void close() {
+        if (!servs.isShutdown( )) {
+            servs.shutdownNow( );
+        }
+
+        if (journal == null) {
+            if (!pend.isEmpty()) {
+                CoreLogger.error("There has "+ pend.size() +" task(s) not run.");
+            }
+            return;
+        }
+
+        try {
+            servs.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        if (!pend.isEmpty()) {
+            CoreLogger.trace("There has "+ pend.size() +" task(s) not run, keep for "+name);
+        }
+        journal.close();
+    }
+
+    /**
+     * 待办许可
+     * 许可数可为负, 以容纳恢复和导入的任务
+     */
+    private static final class Room extends Semaphore {
+        Room(int permits) {
+            super(permits);
+        }
+        void reduce(int n) {
+            reducePermits(n);
+        }
+    }
+
+    /**
+     * 任务条目
+     * @param <T>
+     */
+    static final class Entry<T> {
+        final long seq ;
+        final long time;
+        final T    data;
+
+        Entry(long seq, long time, T data) {
+            this.seq  = seq ;
+            this.time = time;
+            this.data = data;
+        }
+    }
+
+    /**
+     * 队列统计
+     */
+    public final class Stats {
+        private final long      start    = System.currentTimeMillis();
+        private final LongAdder accepted = new LongAdder();
+        private final LongAdder completed= new LongAdder();
+        private final LongAdder failed   = new LongAdder();
+        private final LongAdder dropped  = new LongAdder();
+        private final LongAdder direct   = new LongAdder();
+
+        private Stats() {}
+
+        /**
+         * 未完成的任务数(含排队, 缓冲和执行中的)
+         * @return
+         */
+        public int  getDepth() {
+            return pend.size();
+        }
+
+        /**
+         * 排队中的任务数
+         * @return
+         */
+        public int  getQueued() {
+            return queue.size();
+        }
+
+        public long getAccepted() {
+            return accepted.sum();
+        }
+
+        public long getCompleted() {
+            return completed.sum();
+        }
+
+        public long getFailed() {
+            return failed.sum();
+        }
+
+        public long getDropped() {
+            return dropped.sum();
+        }
+
+        /**
+         * 队满时在调用线程执行的数量
+         * @return
+         */
+        public long getDirect() {
+            return direct.sum();
+        }
+
+        /**
+         * 吞吐量, 启动以来平均每秒完成数
+         * @return
+         */
+        public double getThroughput() {
+            long t = System.currentTimeMillis() - start;
+            long n = completed.sum() + failed.sum();
+            return t > 0 ? n * 1000D / t : 0D;
+        }
+
+        /**
+         * 延迟, 最早未完成任务已等待的毫秒数
+         * @return
+         */
+        public long getLag() {
+            Map.Entry<Long, Long> et = pend.firstEntry();
+            return et != null ? System.currentTimeMillis() - et.getValue() : 0L;
+        }
+
+        public Map toMap() {
+            Map map = new HashMap();
+            map.put("depth"     , getDepth());
+            map.put("queued"    , getQueued());
+            map.put("accepted"  , getAccepted());
+            map.put("completed" , getCompleted());
+            map.put("failed"    , getFailed());
+            map.put("dropped"   , getDropped());
+            map.put("direct"    , getDirect());
+            map.put("throughput", getThroughput());
+            map.put("lag"       , getLag());
+            return map;
+        }
+    }
+
+}
@@ -37,6 +37,7 @@ import javax.servlet.http.Part;
  *  href 上传文件链接, 可用变量 $BASE_HREF, $SERV_HREF 等, 后者包含域名
  *  type 文件类型限制, 逗号分隔 (Mime-Type)
  *  extn 扩展名称限制, 逗号分隔
+ *  size 文件大小限制, 单位为字节
  * </pre>
  * @author Hongs
  */
@@ -122,6 +123,8 @@ public class IsFile extends Rule {
         if (para != null && !"".equals(para)) hlpr.setAllowTypes(Synt.toArray(para, String.class));
         para = getParam("extn");
         if (para != null && !"".equals(para)) hlpr.setAllowExtns(Synt.toArray(para, String.class));
+        para = getParam("size");
+        if (para != null && !"".equals(para)) hlpr.setAllowBytes(Synt.declare(para, 0L));
         para = getParam("name-digest");
         if (para != null && !"".equals(para)) hlpr.setDigestType(Synt.declare(para, String.class));
 
@@ -0,0 +1,171 @@
+package io.github.ihongs.test;
+
+import io.github.ihongs.Cnst;
+import io.github.ihongs.Core;
+import io.github.ihongs.HongsException;
+import io.github.ihongs.db.DB;
+import io.github.ihongs.db.Table;
+import io.github.ihongs.db.util.AssocCase;
+import io.github.ihongs.db.util.AssocText;
+import io.github.ihongs.db.util.FetchCase;
+import io.github.ihongs.util.Synt;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import junit.framework.TestCase;
+import org.junit.Test;
+
+/**
+ * 全文搜索与 LIKE 结果一致
+ * @author Hongs
+ */
+public class TestAssocText extends TestCase {
+
+    private static final String[] WORDS = {
+        "apple", "banana", "cherry", "grape", "lemon", "mango", "melon", "peach", "plum", "kiwi"
+    };
+
+    private static final String[] QUERY = {
+        "apple", "APPLE", "banana cherry", "lemon kiwi", "plum", "grape mango peach", "durian", "kiwi"
+    };
+
+    private String confPath;
+    private String dataPath;
+    private DB     db;
+    private Table  tb;
+
+    @Override
+    protected void setUp() throws IOException, HongsException {
+        confPath = Core.CONF_PATH;
+        dataPath = Core.DATA_PATH;
+        File tmp = Files.createTempDirectory("text").toFile();
+        Core.CONF_PATH = tmp.getAbsolutePath();
+        Core.DATA_PATH = tmp.getAbsolutePath();
+
+        String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<db>\n"
+            + "  <source jdbc=\"org.sqlite.JDBC\" name=\"jdbc:sqlite:text.db\"/>\n"
+            + "  <tables>\n"
+            + "    <table name=\"doc\" primaryKey=\"id\">\n"
+            + "      <param name=\"srchable\">title,body</param>\n"
+            + "      <param name=\"fulltext\">yes</param>\n"
+            + "    </table>\n"
+            + "    <table name=\"tag\" primaryKey=\"id\"/>\n"
+            + "  </tables>\n"
+            + "</db>\n";
+        Files.write(new File(tmp, "texttest.db.xml").toPath(), xml.getBytes(StandardCharsets.UTF_8));
+
+        db = new DB("texttest");
+        db.execute("DROP TABLE IF EXISTS `doc`");
+        db.execute("DROP TABLE IF EXISTS `doc_fts`");
+        db.execute("DROP TABLE IF EXISTS `tag`");
+        db.execute("CREATE TABLE `doc` (`id` TEXT PRIMARY KEY, `title` TEXT, `body` TEXT)");
+        db.execute("CREATE TABLE `tag` (`id` TEXT PRIMARY KEY, `doc_id` TEXT, `name` TEXT)");
+        tb = db.getTable("doc");
+
+        // 先有数据再建索引, 重建时需纳入已有数据
+        for (int i = 0; i < 100; i ++) {
+            tb.insert(row(i));
+        }
+        AssocText.Fts5.setup(tb);
+        for (int i = 100; i < 200; i ++) {
+            tb.insert(row(i));
+        }
+    }
+
+    @Override
+    protected void tearDown() {
+        db.close();
+        Core.CONF_PATH = confPath;
+        Core.DATA_PATH = dataPath;
+    }
+
+    @Test
+    public void testEquals() throws HongsException {
+        for (String wd : QUERY) {
+            assertEquals(wd, search(wd, new AssocText.Like(), false), search(wd, null, false));
+        }
+
+        // 更新和删除后, 触发器需同步影子表
+        Map vals = new HashMap();
+        vals.put("title", "durian");
+        tb.update(vals, "`id` IN (?)", Synt.setOf("3", "33", "133"));
+        tb.delete("`id` IN (?)", Synt.setOf("7", "77", "177"));
+        for (String wd : QUERY) {
+            assertEquals(wd, search(wd, new AssocText.Like(), false), search(wd, null, false));
+        }
+        assertEquals(3, search("durian", null, false).size());
+
+        // 有关联时需避免关键词被补全表名
+        for (String wd : QUERY) {
+            assertEquals(wd, search(wd, new AssocText.Like(), true), search(wd, null, true));
+        }
+    }
+
+    @Test
+    public void testModes() throws HongsException {
+        Map pa = tb.getParams();
+        try {
+            pa.put("fulltext", "yes");
+            assertTrue(AssocText.getInstance(tb) instanceof AssocText.Fts5 );
+            pa.put("fulltext", "fts5");
+            assertTrue(AssocText.getInstance(tb) instanceof AssocText.Fts5 );
+            pa.put("fulltext", "match");
+            assertTrue(AssocText.getInstance(tb) instanceof AssocText.Match);
+            pa.put("fulltext", "like");
+            assertTrue(AssocText.getInstance(tb) instanceof AssocText.Like );
+            pa.put("fulltext", AssocText.Match.class.getName());
+            assertTrue(AssocText.getInstance(tb) instanceof AssocText.Match);
+            pa.put("fulltext", "no");
+            assertNull(AssocText.getInstance(tb));
+
+            pa.put("fulltext", "other");
+            try {
+                AssocText.getInstance(tb);
+                fail("Must throw");
+            } catch (HongsException ex) {
+                assertEquals(0x10bc, ex.getErrno());
+            }
+        } finally {
+            pa.put("fulltext", "yes");
+        }
+    }
+
+    private Set<String> search(String wd, AssocText ts, boolean join) throws HongsException {
+        FetchCase fc = tb.fetchCase();
+        if (join) {
+            fc.join("tag", "tag", "`doc_id` = :`id`", FetchCase.LEFT);
+        }
+        AssocCase ac = new AssocCase(fc).allow(tb);
+        if (ts != null) {
+            ac.text(ts);
+        }
+        Map rd = new HashMap();
+        rd.put(Cnst.WD_KEY, wd);
+        ac.parse(rd);
+        if (ts == null) {
+            assertTrue(fc.getSQL(), fc.getSQL().contains("`doc_fts` MATCH ?"));
+        }
+
+        Set<String> ids = new TreeSet();
+        for (Map row : (List<Map>) tb.fetchMore(fc)) {
+            ids.add((String) row.get("id"));
+        }
+        return ids;
+    }
+
+    private static Map row(int i) {
+        Map row = new HashMap();
+        row.put("id"   , String.valueOf(i));
+        row.put("title", WORDS[i % 10] + " " + WORDS[i / 10 % 10]);
+        row.put("body" , WORDS[(i * 7) % 10] + " and " + WORDS[(i * 3 + 1) % 10]);
+        return row;
+    }
+
+}
@@ -0,0 +1,179 @@
+package io.github.ihongs.test;
+
+import io.github.ihongs.Core;
+import io.github.ihongs.HongsExemption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import junit.framework.TestCase;
+import org.junit.Test;
+
+/**
+ * 全局容器的并发构建
+ * @author Hongs
+ */
+public class TestCore extends TestCase {
+
+    public static final AtomicInteger BUILT = new AtomicInteger();
+
+    /**
+     * 构建较慢的单例
+     */
+    public static class Slow implements Core.Singleton {
+        public Slow() {
+            BUILT.incrementAndGet();
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * 构建时嵌套获取另一个单例
+     */
+    public static class Nest implements Core.Singleton {
+        public final Slow slow;
+        public Nest() {
+            slow = Core.GLOBAL_CORE.get(Slow.class);
+        }
+    }
+
+    @Override
+    protected void tearDown() {
+        Core.GLOBAL_CORE.remove(Slow.class.getName());
+        Core.GLOBAL_CORE.remove(Nest.class.getName());
+        Core.GLOBAL_CORE.remove("test.core.slow");
+        Core.GLOBAL_CORE.remove("test.core.fast");
+        Core.GLOBAL_CORE.remove("test.core.fail");
+        Core.GLOBAL_CORE.remove("test.core.loop");
+        Core.GLOBAL_CORE.remove("test.core.ping");
+        Core.GLOBAL_CORE.remove("test.core.pong");
+    }
+
+    @Test
+    public void testOnce() throws InterruptedException {
+        BUILT.set(0);
+        int n = 32;
+        Object[] rs = new Object[n];
+        CountDownLatch go = new CountDownLatch(1);
+        List<Thread> ts = new ArrayList();
+        for (int i = 0; i < n; i ++) {
+            final int j = i;
+            Thread t = new Thread(() -> {
+                try {
+                    go.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                rs[j] = Core.GLOBAL_CORE.get(Slow.class);
+            });
+            ts.add(t);
+            t.start();
+        }
+        go.countDown();
+        for (Thread t : ts) {
+            t.join();
+        }
+
+        assertEquals(1, BUILT.get());
+        for (int i = 0; i < n; i ++) {
+            assertNotNull(rs[i]);
+            assertSame(rs[0], rs[i]);
+        }
+    }
+
+    @Test
+    public void testApart() throws InterruptedException {
+        CountDownLatch in = new CountDownLatch(1);
+        CountDownLatch up = new CountDownLatch(1);
+        Thread t = new Thread(() -> {
+            Core.GLOBAL_CORE.get("test.core.slow", () -> {
+                in.countDown();
+                try {
+                    up.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "slow";
+            });
+        });
+        t.start();
+        assertTrue(in.await(5, TimeUnit.SECONDS));
+
+        // 慢的键构建中, 其他键不受阻塞
+        assertEquals("fast", Core.GLOBAL_CORE.get("test.core.fast", () -> "fast"));
+        assertEquals("fast", Core.GLOBAL_CORE.got("test.core.fast"));
+        assertNull(Core.GLOBAL_CORE.got("test.core.slow"));
+
+        up.countDown();
+        t.join();
+        assertEquals("slow", Core.GLOBAL_CORE.got("test.core.slow"));
+    }
+
+    @Test
+    public void testFail() {
+        try {
+            Core.GLOBAL_CORE.get("test.core.fail", () -> {
+                throw new IllegalStateException("fail");
+            });
+            fail("Must throw");
+        } catch (IllegalStateException e) {
+            assertEquals("fail", e.getMessage());
+        }
+
+        // 失败后不留痕迹, 可再次构建
+        assertEquals("ok", Core.GLOBAL_CORE.get("test.core.fail", () -> "ok"));
+    }
+
+    @Test
+    public void testNest() {
+        Nest nest = Core.GLOBAL_CORE.get(Nest.class);
+        assertSame(nest.slow, Core.GLOBAL_CORE.get(Slow.class));
+        assertSame(nest, Core.getInstance(Nest.class));
+
+        try {
+            Core.GLOBAL_CORE.get("test.core.loop", () -> Core.GLOBAL_CORE.get("test.core.loop", () -> "x"));
+            fail("Must throw");
+        } catch (HongsExemption e) {
+            assertEquals(0x829, e.getErrno());
+        }
+    }
+
+    @Test
+    public void testCross() throws InterruptedException {
+        // 两个线程互相等待对方构建, 不能一直挂起
+        CountDownLatch in = new CountDownLatch(2);
+        Object[] rs = new Object[2];
+        Thread a = new Thread(() -> rs[0] = cross("test.core.ping", "test.core.pong", in));
+        Thread b = new Thread(() -> rs[1] = cross("test.core.pong", "test.core.ping", in));
+        a.start();
+        b.start();
+        a.join(10000);
+        b.join(10000);
+        assertFalse(a.isAlive());
+        assertFalse(b.isAlive());
+        assertTrue(rs[0] instanceof HongsExemption || rs[1] instanceof HongsExemption);
+    }
+
+    private static Object cross(String k1, String k2, CountDownLatch in) {
+        try {
+            return Core.GLOBAL_CORE.get(k1, () -> {
+                in.countDown();
+                try {
+                    in.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return Core.GLOBAL_CORE.get(k2, () -> k2);
+            });
+        } catch (HongsExemption e) {
+            assertEquals(0x829, e.getErrno());
+            return e;
+        }
+    }
+
+}
@@ -99,4 +99,49 @@ public class TestDB {
         }
     }
 
+    @Test
+    public void testSQLCache() throws HongsException {
+        // 结构相同参数不同, 语句须与不走缓存时一致
+        FetchCase.clearSQL();
+        String sql1 = sqlCase(1, "abc").getSQL();
+        String sql2 = sqlCase(2, "xyz").getSQL();
+        if (! sql1.equals(sql2)) {
+            fail("缓存语句不一致\r\n\t目标: "+sql1+"\r\n\t实际: "+sql2);
+        }
+        String vali = "SELECT `t1`.f1, `t1`.`f2` , `t2`.`f3` AS `t2.f3` FROM `table1` AS `t1` LEFT JOIN `table2` AS `t2` ON `t2`.`t1_id` = `t1`.`id` WHERE `t1`.f1 = 2 AND `t2`.f3 LIKE 'xyz' ORDER BY `t1`.f2 DESC";
+        if (! vali.equals(sqlCase(2, "xyz").toString())) {
+            fail("缓存参数错误\r\n\t目标: "+vali+"\r\n\t实际: "+sqlCase(2, "xyz").toString());
+        }
+
+        // 结构有变则不得命中
+        FetchCase caze = sqlCase(1, "abc");
+        caze.gotJoin("t2").by(FetchCase.NONE);
+        vali = "SELECT `t1`.f1, `t1`.`f2` FROM `table1` AS `t1` WHERE `t1`.f1 = ? ORDER BY `t1`.f2 DESC";
+        if (! vali.equals(caze.getSQL())) {
+            fail("结构变更未生效\r\n\t目标: "+vali+"\r\n\t实际: "+caze.getSQL());
+        }
+        caze = sqlCase(1, "abc");
+        caze.gotJoin("t2").in(null);
+        vali = "SELECT `t1`.f1, `t1`.`f2` , `t2`.f3 FROM `table1` AS `t1` LEFT JOIN `table2` AS `t2` ON `t2`.`t1_id` = `t1`.`id` WHERE `t1`.f1 = ? AND `t2`.f3 LIKE ? ORDER BY `t1`.f2 DESC";
+        if (! vali.equals(caze.getSQL())) {
+            fail("层名变更未生效\r\n\t目标: "+vali+"\r\n\t实际: "+caze.getSQL());
+        }
+        caze = sqlCase(1, "abc").filter("f4 IS NULL");
+        if (caze.getSQL().equals(sql1)) {
+            fail("条件变更未生效");
+        }
+    }
+
+    private static FetchCase sqlCase(int f1, String f3) {
+        FetchCase caze = new FetchCase(FetchCase.CLEVER);
+        caze.from   ("table1", "t1")
+            .select ("f1, `f2`")
+            .filter ("f1 = ?", f1)
+            .assort ("f2 DESC")
+            .join   ("table2", "t2").on("`t1_id` = :`id`").by(FetchCase.LEFT)
+            .select ("f3")
+            .filter ("f3 LIKE ?", f3);
+        return caze;
+    }
+
 }
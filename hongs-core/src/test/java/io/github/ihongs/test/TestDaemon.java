@@ -0,0 +1,68 @@
+package io.github.ihongs.test;
+
+import io.github.ihongs.Core;
+import io.github.ihongs.cmdlet.serv.DaemonCmdlet;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+import junit.framework.TestCase;
+import org.junit.Test;
+
+/**
+ * 守护进程内执行命令的隔离
+ * @author Hongs
+ */
+public class TestDaemon extends TestCase {
+
+    @Test
+    public void testExec() throws Exception {
+        ByteArrayOutputStream bo = new ByteArrayOutputStream();
+        ByteArrayOutputStream be = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(bo, true, "UTF-8");
+        PrintStream err = new PrintStream(be, true, "UTF-8");
+
+        assertEquals(0, DaemonCmdlet.exec(new String[] {"common.echo", "a", "b"}, out, err, "zh_CN", "GMT+8"));
+        assertEquals("a b", bo.toString("UTF-8").trim());
+        assertEquals(2, DaemonCmdlet.exec(new String[] {"common.none"}, out, err, "zh_CN", "GMT+8"));
+        assertTrue(be.toString("UTF-8").contains("common.none"));
+        assertEquals(2, DaemonCmdlet.exec(new String[] {"daemon.start"}, out, err, "zh_CN", "GMT+8"));
+        assertNull(Core.ACTION_NAME.get());
+    }
+
+    @Test
+    public void testConcurrent() throws Exception {
+        List<Thread> ts = new ArrayList();
+        List<String> rs = new ArrayList();
+        for (int i = 0; i < 8; i ++) {
+            final int j = i;
+            rs.add(null);
+            Thread t = new Thread(() -> {
+                try {
+                    StringBuilder sb = new StringBuilder();
+                    for (int k = 0; k < 50; k ++) {
+                        ByteArrayOutputStream bo = new ByteArrayOutputStream();
+                        PrintStream out = new PrintStream(bo, true, "UTF-8");
+                        DaemonCmdlet.exec(new String[] {"common.echo", "t" + j, "n" + k}, out, out, "zh_CN", "GMT+8");
+                        if (! bo.toString("UTF-8").trim().equals("t" + j + " n" + k)) {
+                            sb.append(bo.toString("UTF-8"));
+                        }
+                    }
+                    rs.set(j, sb.toString());
+                } catch (UnsupportedEncodingException e) {
+                    rs.set(j, e.toString());
+                }
+            });
+            ts.add(t);
+            t.start();
+        }
+        for (Thread t : ts) {
+            t.join();
+        }
+        for (String r : rs) {
+            assertEquals("", r);
+        }
+    }
+
+}
@@ -0,0 +1,80 @@
+package io.github.ihongs.test;
+
+import io.github.ihongs.util.Dawn;
+import io.github.ihongs.util.Delta;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import junit.framework.TestCase;
+import org.junit.Test;
+
+/**
+ * 差异计算与压缩
+ * @author Hongs
+ */
+public class TestDelta extends TestCase {
+
+    @Test
+    public void testPatch() {
+        Map a = (Map) Dawn.toObject("{\"x\":1,\"y\":\"b\",\"a/b\":{\"c~d\":1,\"e\":[1,2]},\"z\":null}");
+        Map b = (Map) Dawn.toObject("{\"x\":2,\"w\":[3],\"a/b\":{\"c~d\":2,\"e\":[1,2],\"f\":{}},\"z\":null}");
+
+        List<Map> ops = Delta.diff(a, b);
+        assertEquals(b, Delta.patch(copy(a), ops));
+        assertEquals(a, Delta.patch(copy(b), Delta.diff(b, a)));
+
+        // 仅含变化的字段
+        for(Map op : ops) {
+            assertFalse(((String) op.get("path")).startsWith("/z"));
+        }
+        assertTrue(Delta.diff(a, copy(a)).isEmpty());
+    }
+
+    @Test
+    public void testPack() {
+        Map a = record(0);
+        String s = Delta.pack(a);
+        assertEquals(a, Delta.unpack(s));
+        assertTrue(s.length() < Dawn.toString(a, true).length());
+
+        // 逆向差异链, 自最新版本逐级还原
+        int n = 16;
+        List<Map> rs = new ArrayList();
+        for(int i = 0; i < n; i ++) {
+            rs.add(record(i));
+        }
+        List<String> ds = new ArrayList();
+        long full = 0, diff = 0;
+        for(int i = 0; i < n - 1; i ++) {
+            full += Dawn.toString(rs.get(i), true).length();
+            String d = Delta.pack(Delta.diff(rs.get(i + 1), rs.get(i)));
+            diff += d.length();
+            ds.add(d);
+        }
+        Map dd = copy(rs.get(n - 1));
+        for(int i = n - 2; i > -1; i --) {
+            Delta.patch(dd, (List) Delta.unpack(ds.get(i)));
+            assertEquals(rs.get(i), dd);
+        }
+        assertTrue(diff * 5 < full);
+    }
+
+    private static Map copy(Map m) {
+        return (Map) Dawn.toObject(Dawn.toString(m, true));
+    }
+
+    /**
+     * 宽表单, 每个版本改动两个字段
+     */
+    private static Map record(int v) {
+        Map m = new LinkedHashMap();
+        for(int i = 0; i < 60; i ++) {
+            m.put("field" + i, "value " + i + " of a fairly wide form record");
+        }
+        m.put("field" + (v % 60), "changed in version " + v);
+        m.put("mtime", 1500000000L + v);
+        return copy(m);
+    }
+
+}
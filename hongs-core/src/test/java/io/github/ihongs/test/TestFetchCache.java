@@ -0,0 +1,126 @@
+package io.github.ihongs.test;
+
+import io.github.ihongs.Core;
+import io.github.ihongs.HongsException;
+import io.github.ihongs.db.DB;
+import io.github.ihongs.db.Table;
+import io.github.ihongs.db.util.FetchCache;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import junit.framework.TestCase;
+import org.junit.Test;
+
+/**
+ * 查询结果缓存
+ * @author Hongs
+ */
+public class TestFetchCache extends TestCase {
+
+    private String confPath;
+    private String dataPath;
+    private File   tempPath;
+
+    @Override
+    protected void setUp() throws IOException, HongsException {
+        confPath = Core.CONF_PATH;
+        dataPath = Core.DATA_PATH;
+        tempPath = Files.createTempDirectory("cache").toFile();
+        Core.CONF_PATH = tempPath.getAbsolutePath();
+        Core.DATA_PATH = tempPath.getAbsolutePath();
+
+        String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<db>\n"
+            + "  <source jdbc=\"org.sqlite.JDBC\" name=\"jdbc:sqlite:cache.db\"/>\n"
+            + "  <tables>\n"
+            + "    <table name=\"dict\" primaryKey=\"id\">\n"
+            + "      <param name=\"cache.ttl\">60000</param>\n"
+            + "    </table>\n"
+            + "  </tables>\n"
+            + "</db>\n";
+        Files.write(new File(tempPath, "cachetest.db.xml").toPath(), xml.getBytes(StandardCharsets.UTF_8));
+
+        DB db = new DB("cachetest");
+        db.execute("CREATE TABLE IF NOT EXISTS `dict` (`id` TEXT PRIMARY KEY, `name` TEXT)");
+        db.execute("REPLACE INTO `dict` VALUES ('1', 'a')");
+        db.close();
+
+        FetchCache.clear();
+    }
+
+    @Override
+    protected void tearDown() {
+        Core.CONF_PATH = confPath;
+        Core.DATA_PATH = dataPath;
+        FetchCache.clear();
+    }
+
+    @Test
+    public void testCache() throws HongsException {
+        DB    db = new DB("cachetest");
+        Table tb = db.getTable("dict");
+
+        assertEquals("a", name(tb));
+        long hits = hits();
+        assertEquals("a", name(tb));
+        assertEquals(hits + 1, hits());
+
+        // 返回的是副本, 修改不影响缓存
+        tb.fetchMore(tb.fetchCase()).clear();
+        assertEquals("a", name(tb));
+
+        // 写入后作废
+        Map vals = new HashMap();
+        vals.put("name", "b");
+        tb.update(vals, "`id` = ?", "1");
+        assertEquals("b", name(tb));
+
+        db.close();
+    }
+
+    @Test
+    public void testTransaction() throws HongsException {
+        DB    db1 = new DB("cachetest");
+        DB    db2 = new DB("cachetest");
+        Table tb1 = db1.getTable("dict");
+        Table tb2 = db2.getTable("dict");
+
+        assertEquals("a", name(tb2));
+
+        db1.begin();
+        Map vals = new HashMap();
+        vals.put("name", "c");
+        tb1.update(vals, "`id` = ?", "1");
+
+        // 事务中本连接需读到自己的写入, 不走缓存
+        assertEquals("c", name(tb1));
+        assertEquals("c", name(tb1));
+
+        // 其他连接在提交前读到并缓存旧值
+        assertEquals("a", name(tb2));
+        assertEquals("a", name(tb2));
+
+        db1.commit();
+
+        // 提交后旧值不得再被取出
+        assertEquals("c", name(tb2));
+        assertEquals("c", name(tb1));
+
+        db1.close();
+        db2.close();
+    }
+
+    private static String name(Table tb) throws HongsException {
+        List<Map> list = tb.fetchMore(tb.fetchCase().filter("`id` = ?", "1"));
+        return (String) list.get(0).get("name");
+    }
+
+    private static long hits() {
+        return ((Number) FetchCache.getStats().get("hits")).longValue();
+    }
+
+}
@@ -0,0 +1,133 @@
+package io.github.ihongs.test;
+
+import io.github.ihongs.Cnst;
+import io.github.ihongs.HongsException;
+import io.github.ihongs.db.link.Link;
+import io.github.ihongs.db.link.Simple;
+import io.github.ihongs.db.util.FetchCase;
+import io.github.ihongs.db.util.FetchPage;
+import io.github.ihongs.util.Synt;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import junit.framework.TestCase;
+import org.junit.Test;
+
+/**
+ * 游标分页及计数缓存
+ * @author Hongs
+ */
+public class TestFetchPage extends TestCase {
+
+    private static final int COUNT = 95;
+    private static final int ROWS  = 10;
+
+    private File file;
+    private Link link;
+
+    @Override
+    protected void setUp() throws IOException, HongsException {
+        file = Files.createTempFile("fetch", ".db").toFile();
+        link = new Simple("org.sqlite.JDBC", "jdbc:sqlite:" + file.getAbsolutePath());
+        link.execute("CREATE TABLE `item` (`id` INTEGER PRIMARY KEY, `ctime` INTEGER NOT NULL)");
+        link.execute("BEGIN");
+        for (int i = 1; i <= COUNT; i ++) {
+            // 每 3 条时间相同, 需靠 id 区分先后
+            link.execute("INSERT INTO `item` VALUES (?, ?)", i * 10, 1000 + i / 3);
+        }
+        link.execute("COMMIT");
+    }
+
+    @Override
+    protected void tearDown() {
+        link.close();
+        file.delete();
+    }
+
+    @Test
+    public void testCursor() throws HongsException {
+        Set<Integer> seen = new HashSet();
+        List<Object> order = new ArrayList();
+        String cs = "";
+        int    pn = 0 ;
+        while (cs != null) {
+            FetchPage fp = new FetchPage(fetchCase());
+            fp.setRows  (ROWS);
+            fp.setCursor(cs  );
+            List<Map> list = fp.getList();
+            cs = (String) fp.getPage().get(Cnst.CS_KEY);
+
+            for (Map row : list) {
+                assertTrue("Duplicate " + row, seen.add(Synt.asInt(row.get("id"))));
+                order.add(row.get("id"));
+            }
+
+            // 翻页期间在前面和已翻过的位置插入新行, 不应影响后续页
+            if (pn ++ == 1) {
+                link.execute("INSERT INTO `item` VALUES (?, ?)", 5 , 9999);
+                link.execute("INSERT INTO `item` VALUES (?, ?)", 1 , 1031);
+            }
+        }
+
+        assertEquals(COUNT, seen.size());
+        assertFalse (seen.contains(5));
+        assertFalse (seen.contains(1));
+        assertTrue  (seen.contains(10));
+
+        // 顺序需与普通分页一致: ctime DESC, id DESC
+        FetchCase  fc = fetchCase();
+        fc.filter("`id` % 10 = 0");
+        List<Map> all = fc.getAll();
+        assertEquals(COUNT, all.size());
+        for (int i = 0; i < COUNT; i ++) {
+            assertEquals(all.get(i).get("id"), order.get(i));
+        }
+
+        // 改变排序后旧游标失效
+        FetchPage fp = new FetchPage(fetchCase());
+        fp.setRows(ROWS);
+        fp.setCursor("");
+        fp.getList();
+        cs = (String) fp.getPage().get(Cnst.CS_KEY);
+        fp = new FetchPage(fetchCase().order("`ctime`"));
+        fp.setCursor(cs);
+        try {
+            fp.getList();
+            fail("Expect HongsException 0x10b8");
+        } catch (HongsException ex) {
+            assertEquals(0x10b8, ex.getErrno());
+        }
+    }
+
+    @Test
+    public void testCountCache() throws HongsException {
+        assertEquals(COUNT, count(60000));
+
+        link.execute("INSERT INTO `item` VALUES (?, ?)", 5, 9999);
+        assertEquals(COUNT, count(60000)); // 缓存中
+        assertEquals(COUNT + 1, count(0)); // 不缓存
+
+        FetchPage.clearCount(link.name);
+        assertEquals(COUNT + 1, count(60000));
+    }
+
+    private int count(long cache) throws HongsException {
+        FetchPage fp = new FetchPage(fetchCase());
+        fp.setCache(cache);
+        return (Integer) fp.getPage().get("count");
+    }
+
+    private FetchCase fetchCase() {
+        return new FetchCase(FetchCase.STRICT)
+            .use   (link  )
+            .from  ("item")
+            .select("`id`, `ctime`")
+            .order ("`ctime` DESC, `id` DESC");
+    }
+
+}
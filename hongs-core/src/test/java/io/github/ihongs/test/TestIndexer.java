@@ -0,0 +1,104 @@
+package io.github.ihongs.test;
+
+import io.github.ihongs.util.reflex.Classes;
+import io.github.ihongs.util.reflex.Indexer;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import junit.framework.TestCase;
+import org.junit.Test;
+
+/**
+ * 有索引的包只读索引, 没有的仍需扫描
+ * @author Hongs
+ */
+public class TestIndexer extends TestCase {
+
+    private static final int JARS = 60;
+    private static final int CLSS = 500;
+
+    @Test
+    public void testIndex() throws IOException {
+        File dir = Files.createTempDirectory("roster").toFile();
+
+        // 一半有索引, 一半没有
+        URL[] scan = new URL[JARS];
+        URL[] indx = new URL[JARS];
+        URL[] both = new URL[JARS];
+        Set<String> want = new HashSet();
+        Set<String> full = new HashSet();
+        for (int i = 0; i < JARS; i ++) {
+            scan[i] = make(new File(dir, "s" + i + ".jar"), "test.scan.p" + i, false, null).toURI().toURL();
+            indx[i] = make(new File(dir, "i" + i + ".jar"), "test.indx.p" + i, true , want).toURI().toURL();
+            both[i] = i % 2 == 0 ? indx[i] : make(new File(dir, "b" + i + ".jar"), "test.indx.q" + i, false, full).toURI().toURL();
+            if (i % 2 == 0) {
+                full.add("test.indx.p" + i + ".Act0");
+            }
+        }
+
+        // 耗时对比见 hongs-bench 的 IndexerBench
+        check(scan, "test.scan", JARS * CLSS);
+        check(indx, "test.indx", want.size());
+
+        // 没有索引的仍需扫描
+        ClassLoader cl = Thread.currentThread().getContextClassLoader();
+        try (URLClassLoader ld = new URLClassLoader(both, null)) {
+            Thread.currentThread().setContextClassLoader(ld);
+            Set<String> names = Classes.getClassNames("test.indx", true, Indexer.ACTIONS_IDX, Indexer.CMDLETS_IDX);
+            assertTrue(names.containsAll(full));
+            assertEquals(full.size(), names.size());
+        } finally {
+            Thread.currentThread().setContextClassLoader(cl);
+        }
+    }
+
+    private static void check(URL[] urls, String pkgn, int size) throws IOException {
+        ClassLoader cl = Thread.currentThread().getContextClassLoader();
+        try (URLClassLoader ld = new URLClassLoader(urls, null)) {
+            Thread.currentThread().setContextClassLoader(ld);
+            Set<String> names = Classes.getClassNames(pkgn, true, Indexer.ACTIONS_IDX, Indexer.CMDLETS_IDX);
+            assertEquals(size, names.size());
+        } finally {
+            Thread.currentThread().setContextClassLoader(cl);
+        }
+    }
+
+    /**
+     * 构建仅含空类文件的 jar, 扫描只看条目名, 无需真实的类
+     */
+    private static File make(File file, String pkgn, boolean index, Set<String> names) throws IOException {
+        String path = pkgn.replace('.', '/');
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(file))) {
+            // 目录条目, 类加载器据此才能找到包
+            for (int i = path.indexOf('/'); i > 0; i = path.indexOf('/', i + 1)) {
+                out.putNextEntry(new JarEntry(path.substring(0, i) + "/"));
+            }
+            out.putNextEntry(new JarEntry(path + "/"));
+            for (int i = 0; i < CLSS; i ++) {
+                out.putNextEntry(new JarEntry(path + "/Act" + i + ".class"));
+                out.write(new byte[] {(byte) 0xca, (byte) 0xfe, (byte) 0xba, (byte) 0xbe});
+                if (names != null && !index) {
+                    names.add(pkgn + ".Act" + i);
+                }
+            }
+            if (index) {
+                out.putNextEntry(new JarEntry(Indexer.ACTIONS_IDX));
+                out.write((pkgn + ".Act0\n").getBytes(StandardCharsets.UTF_8));
+                out.putNextEntry(new JarEntry(Indexer.CMDLETS_IDX));
+                if (names != null) {
+                    names.add(pkgn + ".Act0");
+                }
+            }
+        }
+        return file;
+    }
+
+}
@@ -0,0 +1,67 @@
+package io.github.ihongs.test;
+
+import io.github.ihongs.CoreRoster.Mathod;
+import io.github.ihongs.HongsException;
+import io.github.ihongs.action.ActionHelper;
+import io.github.ihongs.action.anno.Action;
+import io.github.ihongs.action.anno.CommitSuccess;
+import java.lang.reflect.Method;
+import junit.framework.TestCase;
+import org.junit.Test;
+
+/**
+ * 动作调用方式
+ * 耗时对比见 hongs-bench 的 InvokerBench
+ * @author Hongs
+ */
+public class TestInvoker extends TestCase {
+
+    @Test
+    public void testInvoke() throws Exception {
+        Method m1 = Acts.class.getMethod("count", ActionHelper.class);
+        Method m2 = Acts.class.getMethod("error", ActionHelper.class);
+        Acts   ao = new Acts();
+
+        Mathod c1 = new Mathod(m1, Acts.class, true );
+        Mathod r1 = new Mathod(m1, Acts.class, false);
+        Mathod c2 = new Mathod(m2, Acts.class, true );
+
+        // 可编译的不应退回反射方式
+        assertNotSame(r1.getInvoker().getClass(), c1.getInvoker().getClass());
+
+        // 过滤注解需被提取, 非过滤注解(Action)需被排除
+        assertEquals(1, c1.getFilters().length);
+        assertTrue  (c1.getFilters()[0] instanceof CommitSuccess);
+
+        c1.getInvoker().invoke(ao, null);
+        assertEquals(1, ao.count);
+
+        try {
+            c2.getInvoker().invoke(ao, null);
+            fail("Expect HongsException");
+        } catch (HongsException ex) {
+            assertEquals(0x10, ex.getErrno());
+        }
+
+        // 反射方式结果一致
+        r1.getInvoker().invoke(ao, null);
+        assertEquals(2, ao.count);
+    }
+
+    @Action("test")
+    public static class Acts {
+        public int count = 0;
+
+        @Action("count")
+        @CommitSuccess
+        public void count(ActionHelper helper) {
+            count ++;
+        }
+
+        @Action("error")
+        public void error(ActionHelper helper) throws HongsException {
+            throw new HongsException(0x10, "Error");
+        }
+    }
+
+}
@@ -0,0 +1,36 @@
+package io.github.ihongs.test;
+
+import io.github.ihongs.util.Latency;
+import java.util.Arrays;
+import java.util.Random;
+import junit.framework.TestCase;
+import org.junit.Test;
+
+/**
+ * 耗时分布的百分位精度
+ * @author Hongs
+ */
+public class TestLatency extends TestCase {
+
+    @Test
+    public void testPercentile() {
+        Latency.Recorder r = new Latency.Recorder();
+        Random  rd = new Random(1);
+        long [] vs = new long[100000];
+        for (int i = 0; i < vs.length; i ++) {
+            // 对数分布, 从 1 微秒到约 1 秒
+            vs[i] = (long) Math.exp(rd.nextDouble() * Math.log(1000000));
+            r.record(vs[i] * 1000);
+        }
+        Arrays.sort(vs);
+
+        assertEquals(vs.length, r.getCount());
+        for (double p : new double[] {50, 90, 99, 99.9, 100}) {
+            long e = vs[(int) Math.ceil(vs.length * p / 100) - 1];
+            long v = r.getValue(p);
+            assertTrue(p + ": " + v + " vs " + e, v >= e && v <= e + e / 16 + 1);
+        }
+        assertEquals(vs[vs.length - 1], r.getValue(100));
+    }
+
+}
@@ -0,0 +1,156 @@
+package io.github.ihongs.test;
+
+import io.github.ihongs.Core;
+import io.github.ihongs.HongsException;
+import io.github.ihongs.db.DB;
+import io.github.ihongs.db.Table;
+import io.github.ihongs.db.util.Outbox;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import junit.framework.TestCase;
+import org.junit.Test;
+
+/**
+ * 发件箱在故障下最终一致
+ * @author Hongs
+ */
+public class TestOutbox extends TestCase {
+
+    private String confPath;
+    private String dataPath;
+    private DB     db;
+    private Table  item;
+    private Outbox box;
+    private final Map<String, String> index = new HashMap();
+    private final Random rand = new Random(43);
+
+    @Override
+    protected void setUp() throws IOException, HongsException {
+        confPath = Core.CONF_PATH;
+        dataPath = Core.DATA_PATH;
+        File tmp = Files.createTempDirectory("outbox").toFile();
+        Core.CONF_PATH = tmp.getAbsolutePath();
+        Core.DATA_PATH = tmp.getAbsolutePath();
+
+        String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<db>\n"
+            + "  <source jdbc=\"org.sqlite.JDBC\" name=\"jdbc:sqlite:outbox.db\"/>\n"
+            + "  <tables>\n"
+            + "    <table name=\"item\" primaryKey=\"id\"/>\n"
+            + "    <table name=\"outbox\"/>\n"
+            + "  </tables>\n"
+            + "</db>\n";
+        Files.write(new File(tmp, "outboxtest.db.xml").toPath(), xml.getBytes(StandardCharsets.UTF_8));
+
+        db = new DB("outboxtest");
+        db.execute("DROP TABLE IF EXISTS `item`");
+        db.execute("DROP TABLE IF EXISTS `outbox`");
+        db.execute("CREATE TABLE `item` (`id` TEXT PRIMARY KEY, `val` TEXT)");
+        db.execute("CREATE TABLE `outbox` (`name` TEXT, `ref` TEXT, `mtime` INTEGER, PRIMARY KEY (`name`, `ref`))");
+        item = db.getTable("item");
+        box  = new Outbox(db.getTable("outbox"));
+    }
+
+    @Override
+    protected void tearDown() {
+        db.close();
+        Core.CONF_PATH = confPath;
+        Core.DATA_PATH = dataPath;
+    }
+
+    @Test
+    public void testConverge() throws HongsException {
+        for(int i = 0; i < 300; i ++) {
+            String id = "r" + rand.nextInt(50);
+            String vl = "v" + i;
+            boolean rollback = rand.nextInt(10) == 0;
+
+            db.begin();
+            if (rand.nextInt(5) == 0) {
+                item.delete("`id` = ?", id);
+            } else {
+                db.execute("REPLACE INTO `item` VALUES (?, ?)", id, vl);
+            }
+            box.put("item", id);
+            if (rollback) {
+                db.revert();
+                continue;
+            }
+            db.commit();
+
+            // 提交后同步写索引, 一半模拟中途崩溃
+            if (rand.nextBoolean()) {
+                sync(id);
+            }
+        }
+        assertFalse(same());
+
+        // 处理时三成失败, 多轮后须一致
+        for(int i = 0; i < 100 && pending() > 0; i ++) {
+            box.drainAll(20, (name, refs) -> {
+                assertEquals("item", name);
+                if (rand.nextInt(10) < 3) {
+                    throw new HongsException("Injected fault");
+                }
+                for(String id : refs) {
+                    sync(id);
+                }
+            });
+        }
+        assertEquals(0, pending());
+        assertTrue(same());
+    }
+
+    @Test
+    public void testRewrite() throws HongsException {
+        db.execute("REPLACE INTO `item` VALUES ('a', '1')");
+        box.put("item", "a");
+
+        // 处理期间又有写入, 新的条目需保留
+        box.drain(10, (name, refs) -> {
+            for(String id : refs) {
+                sync(id);
+            }
+            db.execute("REPLACE INTO `item` VALUES ('a', '2')");
+            box.put("item", "a");
+        });
+        assertEquals("1", index.get("a"));
+        assertEquals(1, pending());
+
+        box.drain(10, (name, refs) -> {
+            for(String id : refs) {
+                sync(id);
+            }
+        });
+        assertEquals("2", index.get("a"));
+        assertEquals(0, pending());
+    }
+
+    private void sync(String id) throws HongsException {
+        Map row = item.fetchCase().filter("`id` = ?", id).getOne();
+        if (row.isEmpty()) {
+            index.remove(id);
+        } else {
+            index.put(id, (String) row.get("val"));
+        }
+    }
+
+    private boolean same() throws HongsException {
+        Map<String, String> dat = new HashMap();
+        for(Map row : (List<Map>) item.fetchMore(item.fetchCase())) {
+            dat.put((String) row.get("id"), (String) row.get("val"));
+        }
+        return dat.equals(index);
+    }
+
+    private long pending() throws HongsException {
+        return ((Number) box.getStats().get("pending")).longValue();
+    }
+
+}
@@ -0,0 +1,80 @@
+package io.github.ihongs.test;
+
+import io.github.ihongs.action.RouteCache;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicInteger;
+import junit.framework.TestCase;
+import org.junit.Test;
+
+/**
+ * 路由缓存随文件增删而更新
+ * @author Hongs
+ */
+public class TestRouteCache extends TestCase {
+
+    private File base;
+    private RouteCache<Boolean> cache;
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Override
+    protected void setUp() throws IOException {
+        base  = Files.createTempDirectory("route").toFile();
+        cache = new RouteCache(base.getPath());
+    }
+
+    @Override
+    protected void tearDown() {
+        cache.close();
+    }
+
+    @Test
+    public void testWatch() throws IOException, InterruptedException {
+        // 不存在的也缓存
+        assertFalse(exists("/a.html"));
+        int n = loads.get();
+        assertFalse(exists("/a.html"));
+        assertEquals(n, loads.get());
+
+        // 新增文件
+        File a = new File(base, "a.html");
+        a.createNewFile();
+        assertTrue(await("/a.html", true));
+        n = loads.get();
+        assertTrue(exists("/a.html"));
+        assertEquals(n, loads.get());
+
+        // 新建目录及其下的文件
+        File d = new File(base, "sub");
+        d.mkdir();
+        assertFalse(await("/sub/b.html", false));
+        new File(d, "b.html").createNewFile();
+        assertTrue(await("/sub/b.html", true));
+
+        // 删除文件
+        a.delete();
+        assertFalse(await("/a.html", false));
+    }
+
+    private boolean exists(String url) {
+        return cache.get(url, u -> {
+            loads.incrementAndGet();
+            return new File(base, u).exists();
+        });
+    }
+
+    /**
+     * 目录监听是异步的, 最多等待 5 秒
+     */
+    private boolean await(String url, boolean want) throws InterruptedException {
+        for (int i = 0; i < 100; i ++) {
+            if (exists(url) == want) {
+                return want;
+            }
+            Thread.sleep(50);
+        }
+        return exists(url);
+    }
+
+}
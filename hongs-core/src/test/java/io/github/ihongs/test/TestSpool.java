@@ -0,0 +1,95 @@
+package io.github.ihongs.test;
+
+import io.github.ihongs.Core;
+import io.github.ihongs.HongsException;
+import io.github.ihongs.util.reflex.Batch;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import junit.framework.TestCase;
+import org.junit.Test;
+
+/**
+ * 批量任务异常退出后的恢复
+ * @author Hongs
+ */
+public class TestSpool extends TestCase {
+
+    private static final int COUNT = 50;
+
+    @Test
+    public void testCrash() throws IOException, InterruptedException, HongsException {
+        File dir = Files.createTempDirectory("spool").toFile();
+
+        // 子进程添加任务后卡在执行中, 然后强行杀掉
+        Process pro = new ProcessBuilder(
+            new File(System.getProperty("java.home"), "bin/java").getPath(),
+            "-cp", System.getProperty("java.class.path"),
+            TestSpool.class.getName(), dir.getPath()
+        ).redirectErrorStream(true).start();
+        BufferedReader in = new BufferedReader(new InputStreamReader(pro.getInputStream()));
+        String ln;
+        while ((ln = in.readLine()) != null && !ln.equals("ready")) {
+            System.out.println(ln);
+        }
+        pro.destroyForcibly().waitFor();
+        assertEquals("ready", ln);
+
+        // 模拟写了一半的记录
+        File[] fs = new File(dir, "serial/crash.batch").listFiles((d, n) -> n.endsWith(".log"));
+        assertNotNull(fs);
+        Arrays.sort(fs);
+        try (FileOutputStream out = new FileOutputStream(fs[fs.length - 1], true)) {
+            out.write(new byte[] {0, 0, 0, 9, 0, 0});
+        }
+
+        Core.DATA_PATH = dir.getPath();
+        Set<String> got = ConcurrentHashMap.newKeySet();
+        Batch<String> b = new Batch<String>("crash", COUNT, 2, 50, 10, false) {
+            @Override
+            public void run(Collection<String> list) {
+                got.addAll(list);
+            }
+        };
+        try {
+            for (int i = 0; i < 100 && got.size() < COUNT; i ++) {
+                Thread.sleep(100);
+            }
+            assertEquals(COUNT, got.size());
+            for (int i = 0; i < 100 && b.getStats().getDepth() > 0; i ++) {
+                Thread.sleep(100);
+            }
+            assertEquals(0, b.getStats().getDepth());
+        } finally {
+            b.close();
+        }
+    }
+
+    public static void main(String[] args) throws HongsException, InterruptedException {
+        Core.DATA_PATH = args[0];
+        Batch<String> b = new Batch<String>("crash", COUNT, 2, 50, 10, false) {
+            @Override
+            public void run(Collection<String> list) {
+                try {
+                    Thread.sleep(Long.MAX_VALUE);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        for (int i = 0; i < COUNT; i ++) {
+            b.add("task-" + i);
+        }
+        System.out.println("ready");
+        System.out.flush();
+        Thread.sleep(Long.MAX_VALUE);
+    }
+
+}
@@ -0,0 +1,120 @@
+package io.github.ihongs.test;
+
+import io.github.ihongs.db.util.SqlReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import junit.framework.TestCase;
+import org.junit.Test;
+
+/**
+ * SQL 脚本切分
+ * @author Hongs
+ */
+public class TestSqlReader extends TestCase {
+
+    @Test
+    public void testQuote() throws IOException {
+        List<String> a = split(
+              "-- DB: test\n"
+            + "INSERT INTO `a;b` VALUES ('x;y', \"m;n\");\n"
+            + "INSERT INTO a VALUES ('it''s;', 'c:\\'; d'); -- tail; comment\n"
+            + "\n"
+            + "SELECT 1 /* a; b */ ;;\n"
+            + "UPDATE a SET b = b--1\n"
+            + " WHERE c = 2"
+        );
+        assertEquals(4, a.size());
+        assertEquals("INSERT INTO `a;b` VALUES ('x;y', \"m;n\")", a.get(0));
+        assertEquals("INSERT INTO a VALUES ('it''s;', 'c:\\'; d')", a.get(1));
+        assertEquals("SELECT 1 /* a; b */", a.get(2));
+        assertEquals("UPDATE a SET b = b\n WHERE c = 2", a.get(3));
+    }
+
+    @Test
+    public void testLine() throws IOException {
+        SqlReader rd = new SqlReader(new StringReader(
+              "-- head\n"
+            + "\n"
+            + "CREATE TABLE a (\n"
+            + "  id INT\n"
+            + ");\n"
+            + "INSERT INTO a VALUES (1); INSERT INTO a VALUES (2);\n"
+            + "-- only comment\n"
+            + "DELETE FROM a\n"
+        ));
+        assertNotNull(rd.next());
+        assertEquals(3, rd.getLine());
+        assertNotNull(rd.next());
+        assertEquals(6, rd.getLine());
+        assertNotNull(rd.next());
+        assertEquals(6, rd.getLine());
+        assertEquals("DELETE FROM a", rd.next());
+        assertEquals(8, rd.getLine());
+        assertNull(rd.next());
+    }
+
+    @Test
+    public void testBlock() throws IOException {
+        List<String> a = split(
+              "BEGIN;\n"
+            + "CREATE TRIGGER t AFTER INSERT ON a BEGIN\n"
+            + "  UPDATE b SET n = CASE WHEN n > 0 THEN n + 1 ELSE 1 END;\n"
+            + "  INSERT INTO c VALUES (1);\n"
+            + "END;\n"
+            + "CREATE PROCEDURE p() BEGIN\n"
+            + "  IF 1 THEN SELECT 1; END IF;\n"
+            + "  WHILE 0 DO SELECT 2; END WHILE;\n"
+            + "  BEGIN SELECT 3; END;\n"
+            + "END;\n"
+            + "COMMIT;\n"
+        );
+        assertEquals(4, a.size());
+        assertEquals("BEGIN", a.get(0));
+        assertTrue(a.get(1).startsWith("CREATE TRIGGER"));
+        assertTrue(a.get(1).endsWith("END"));
+        assertTrue(a.get(2).startsWith("CREATE PROCEDURE"));
+        assertTrue(a.get(2).endsWith("END;\nEND"));
+        assertEquals("COMMIT", a.get(3));
+    }
+
+    @Test
+    public void testDollar() throws IOException {
+        List<String> a = split(
+              "CREATE FUNCTION f() RETURNS int AS $$ SELECT 1; $$ LANGUAGE sql;\n"
+            + "CREATE FUNCTION g() RETURNS int AS $body$ BEGIN RETURN $1; END; $body$ LANGUAGE plpgsql;\n"
+            + "SELECT $1, a$b FROM t;\n"
+        );
+        assertEquals(3, a.size());
+        assertTrue(a.get(0).endsWith("$$ SELECT 1; $$ LANGUAGE sql"));
+        assertTrue(a.get(1).endsWith("$body$ LANGUAGE plpgsql"));
+        assertEquals("SELECT $1, a$b FROM t", a.get(2));
+    }
+
+    @Test
+    public void testDelimiter() throws IOException {
+        List<String> a = split(
+              "DELIMITER //\n"
+            + "CREATE PROCEDURE p()\n"
+            + "BEGIN SELECT 1; SELECT 2; END//\n"
+            + "DELIMITER ;\n"
+            + "CALL p();\n"
+        );
+        assertEquals(2, a.size());
+        assertEquals("CREATE PROCEDURE p()\nBEGIN SELECT 1; SELECT 2; END", a.get(0));
+        assertEquals("CALL p()", a.get(1));
+    }
+
+    private static List<String> split(String sql) throws IOException {
+        List<String> a = new ArrayList();
+        try (SqlReader rd = new SqlReader(new StringReader(sql))) {
+            String s;
+            while ((s = rd.next()) != null) {
+                a.add(s);
+            }
+        }
+        return a;
+    }
+
+}
@@ -0,0 +1,93 @@
+package io.github.ihongs.test;
+
+import io.github.ihongs.action.UploadHelper;
+import io.github.ihongs.util.Syno;
+import io.github.ihongs.util.verify.Wrong;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import junit.framework.TestCase;
+import org.junit.Test;
+
+/**
+ * 上传文件的摘要命名及大小限制
+ * @author Hongs
+ */
+public class TestUpload extends TestCase {
+
+    @Test
+    public void testDigest() throws IOException, Wrong, NoSuchAlgorithmException {
+        File dir = Files.createTempDirectory("upload").toFile();
+        byte[] dat = "Hello, upload!".getBytes(StandardCharsets.UTF_8);
+
+        StringBuilder hex = new StringBuilder();
+        for (byte b : MessageDigest.getInstance("MD5").digest(dat)) {
+            hex.append(String.format("%02x", b));
+        }
+
+        UploadHelper uh = new UploadHelper()
+            .setUploadPath(dir.getPath())
+            .setDigestType("MD5");
+
+        // 边写边算摘要, 文件以内容摘要命名
+        File f1 = uh.upload(new ByteArrayInputStream(dat), "text/plain; charset=utf-8", "a.txt");
+        assertEquals(new File(dir, Syno.splitPath(hex.toString()) + ".txt"), f1);
+        assertTrue(Arrays.equals(dat, Files.readAllBytes(f1.toPath())));
+
+        // 相同内容指向同一文件, 不留临时文件
+        File f2 = uh.upload(new ByteArrayInputStream(dat), "text/plain", "txt");
+        assertEquals(f1, f2);
+        assertEquals(1, count(dir));
+    }
+
+    @Test
+    public void testBytes() throws IOException, Wrong {
+        File dir = Files.createTempDirectory("upload").toFile();
+
+        UploadHelper uh = new UploadHelper()
+            .setUploadPath(dir.getPath())
+            .setAllowBytes(10);
+
+        // 恰好等于限制可以写入
+        File f1 = uh.upload(new ByteArrayInputStream(new byte[10]), "application/octet-stream", "bin");
+        assertEquals(10, f1.length());
+
+        // 超出则中止并删除已写入部分
+        try {
+            uh.upload(new ByteArrayInputStream(new byte[4096]), "application/octet-stream", "a.bin");
+            fail("Must throw");
+        } catch (Wrong e) {
+            // 提示上传的文件名, 大小仅知超出限制
+            assertEquals("fore.file.invalid.size", e.getError());
+            assertTrue(Arrays.equals(new String[] {"a.bin", ">1", "1"}, e.getLocalizedOptions()));
+        }
+        assertEquals(1, count(dir));
+
+        // 摘要命名时同样限制
+        uh.setDigestType("SHA-1");
+        try {
+            uh.upload(new ByteArrayInputStream(new byte[11]), "application/octet-stream", "bin");
+            fail("Must throw");
+        } catch (Wrong e) {
+            assertEquals("fore.file.invalid.size", e.getError());
+        }
+        assertEquals(1, count(dir));
+    }
+
+    private static int count(File dir) {
+        int n = 0;
+        File[] fs = dir.listFiles();
+        if (fs != null) {
+            for (File f : fs) {
+                n += f.isDirectory() ? count(f) : 1;
+            }
+        }
+        return n;
+    }
+
+}
@@ -12,7 +12,6 @@ import io.github.ihongs.action.anno.CommitSuccess;
 import io.github.ihongs.dh.IEntity;
 import io.github.ihongs.dh.search.SearchAction;
 import io.github.ihongs.serv.matrix.Data;
-import io.github.ihongs.util.Dawn;
 import io.github.ihongs.util.Synt;
 import java.lang.reflect.Method;
 import java.util.Map;
@@ -122,9 +121,8 @@ public class DataAction extends SearchAction {
         // 详情数据转换
         if (rsp.containsKey("info")) {
             Map df = (Map) rsp.remove("info");
-            Map dt = (Map) Dawn.toObject(
-                  (String)  df.remove("data")
-            );
+            Map dt = ett.getSnap(df);
+            df.remove("data");
             rsp.put("snap", df);
             rsp.put("info", dt);
 
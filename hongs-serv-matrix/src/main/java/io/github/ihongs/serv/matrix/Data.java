@@ -2,6 +2,7 @@ package io.github.ihongs.serv.matrix;
 
 import io.github.ihongs.Cnst;
 import io.github.ihongs.Core;
+import io.github.ihongs.CoreConfig;
 import io.github.ihongs.HongsException;
 import io.github.ihongs.HongsExemption;
 import io.github.ihongs.action.ActionHelper;
@@ -9,20 +10,25 @@ import io.github.ihongs.action.FormSet;
 import io.github.ihongs.db.DB;
 import io.github.ihongs.db.Model;
 import io.github.ihongs.db.Table;
+import io.github.ihongs.db.util.Outbox;
 import io.github.ihongs.dh.search.SearchEntity;
 import io.github.ihongs.util.Dawn;
+import io.github.ihongs.util.Delta;
 import io.github.ihongs.util.Dict;
 import io.github.ihongs.util.Syno;
 import io.github.ihongs.util.Synt;
 
 import java.io.File;
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
@@ -46,6 +52,30 @@ import org.apache.lucene.search.BooleanClause;
  * matrix.rev.unsupported=资源不支持恢复
  * </pre>
  *
+ * <p>
+ * 当前记录的快照为完整 JSON; 被取代的历史记录存为相对下一版本的差异,
+ * 每隔若干版本存一个完整快照, 读取历史需经 getSnap 还原.
+ * 差异指向较新的版本, 按时间清理最早的记录不影响其余记录的还原.
+ * </p>
+ *
+ * <h3>配置选项:</h3>
+ * <pre>
+ * core.matrix.delta.keyframe 连续差异的最多个数, 超出则存完整快照, 默认为 16, 为 0 不存差异
+ * core.matrix.outbox 发件箱表, 如 matrix.outbox, 需与数据表同库, 默认为空即不启用
+ * </pre>
+ *
+ * <p>
+ * 启用发件箱后, 写入记录时在同一事务中记下 ID,
+ * 即使写入索引失败, 也可由 matrix.data.outbox 命令补齐.
+ * </p>
+ *
+ * <p>
+ * 表单参数 db-shards 为 part 时按分区分片, 索引存于 db-path 下的分区目录;
+ * 指定了 part_id 的表单直接读写本分区, 未指定的则合并全部分区并行检索;
+ * 共用 db-path 的表单需设相同的 db-name, 以便共用写入器.
+ * 为数字时按 ID 哈希分片, 同 LuceneRecord.
+ * </p>
+ *
  * @author Hongs
  */
 public class Data extends SearchEntity {
@@ -166,6 +196,21 @@ public class Data extends SearchEntity {
         return DB.getInstance("matrix").getTable(tn);
     }
 
+    /**
+     * 获取发件箱
+     * 表单参数 db-outbox 可覆盖 core.matrix.outbox
+     * @return 未启用为 null
+     * @throws HongsException
+     */
+    public Outbox getOutbox() throws HongsException {
+        String tn = Synt.declare(getParams().get("db-outbox"),
+            CoreConfig.getInstance("matrix").getProperty("core.matrix.outbox", ""));
+        if ("".equals(tn) || "none".equals(tn)) {
+            return null;
+        }
+        return new Outbox(DB.getInstance("matrix").getTable(tn));
+    }
+
     /**
      * 获取参数
      * 另一方法非常可能需要覆盖,
@@ -332,6 +377,12 @@ public class Data extends SearchEntity {
         if ( ! new File(path).isAbsolute())
         path = Core.DATA_PATH +"/lucene/"+ path;
 
+        // 按分区分片
+        String pd = getPartId();
+        if (null != pd && ! pd.isEmpty() && isPartShard()) {
+            path = path +"/"+ pd;
+        }
+
         setDbPath(path);
 
         return path;
@@ -358,6 +409,12 @@ public class Data extends SearchEntity {
             }
         }
 
+        // 按分区分片
+        String pd = getPartId();
+        if (null != pd && ! pd.isEmpty() && isPartShard()) {
+            name = name +"/"+ pd;
+        }
+
         setDbName(name);
 
         return name;
@@ -380,6 +437,63 @@ public class Data extends SearchEntity {
         return code;
     }
 
+    private boolean isPartShard() {
+        return "part".equals(getParams().get("db-shards"));
+    }
+
+    /**
+     * 全部分区
+     * 未指定分区时取存储目录下已有的分区
+     * @return
+     * @throws HongsException
+     */
+    @Override
+    protected Set<String> getShardNames() throws HongsException {
+        if (! isPartShard()) {
+            return super.getShardNames();
+        }
+        String pd = getPartId();
+        if (null != pd && ! pd.isEmpty()) {
+            return null;
+        }
+
+        Set<String> ns = new TreeSet();
+        File[] fs = new File(getDbPath()).listFiles();
+        if (fs != null) {
+            for (File f : fs) {
+                if (f.isDirectory()) {
+                    ns.add(f.getName());
+                }
+            }
+        }
+        return ns;
+    }
+
+    /**
+     * 记录所在分区
+     * 未指定分区时需逐个查找, 找不到则写入 _ 分区
+     * @param id
+     * @return
+     * @throws HongsException
+     */
+    @Override
+    protected String getShardName(String id) throws HongsException {
+        if (! isPartShard()) {
+            return super.getShardName(id);
+        }
+        String pd = getPartId();
+        if (null != pd && ! pd.isEmpty()) {
+            return null;
+        }
+
+        for (String sn : getShardNames()) {
+            if (getShard(sn).getDoc(id) != null) {
+                return sn;
+            }
+        }
+        return "_";
+    }
+
     public String getUserId() {
         if ( null == userId ) {
             try {
@@ -477,6 +591,7 @@ public class Data extends SearchEntity {
             }
 
             table.insert(nd);
+            putOutbox(id);
         }
 
         // 保存到索引库
@@ -542,7 +657,7 @@ public class Data extends SearchEntity {
              */
             Map nd = table.fetchCase()
                 .filter( where,param )
-                .select("ctime,state")
+                .select("ctime,state,data")
                 .getOne( );
             if (nd.isEmpty()) {
                 nd.put("ctime", ctime);
@@ -558,6 +673,7 @@ public class Data extends SearchEntity {
                         .setLocalizedContext("matrix");
                 }
             }
+            String od = (String) nd.get("data");
 
             // 数据快照和日志标题
             nd.put("data", Dawn.toString(dd, true));
@@ -572,10 +688,13 @@ public class Data extends SearchEntity {
             }
 
             if (nd.containsKey("etime") == false ) {
+                // 上一版本是相对本记录的差异, 原地修改后需重新计算
+                rebase(id, Synt.declare(nd.get("ctime"), 0L), od, (String) nd.get("data"));
                 table.update(nd, where, param);
             } else {
                 table.insert(nd);
             }
+            putOutbox(id);
         }
 
         // 保存到索引库
@@ -637,10 +756,11 @@ public class Data extends SearchEntity {
 
             //** 检查记录状态 **/
 
+            Map od;
             if (t == 2) {
-                Map od = table.fetchCase()
+                od = table.fetchCase()
                     .filter( where,param )
-                    .select("ctime,state")
+                    .select("ctime,state,data")
                     .getOne( );
                 if (! od.isEmpty()) {
                     if (Synt.declare(od.get("state"), 0  ) ==  0   ) {
@@ -655,7 +775,7 @@ public class Data extends SearchEntity {
                     }
                 }
             } else {
-                Map od = table.fetchCase()
+                od = table.fetchCase()
                     .filter( where,param )
                     .select("ctime,state,data")
                     .getOne( );
@@ -709,8 +829,14 @@ public class Data extends SearchEntity {
                 nd.put("meno", cutText(rd, "meno"));
             }
 
+            // 旧快照存为差异
+            if (! od.isEmpty()) {
+                ud.put("data", packSnap(id, Synt.declare(od.get("ctime"), 0L), (String) od.get("data"), (String) nd.get("data")));
+            }
+
             table.update(ud, where, param);
             table.insert(nd);
+            putOutbox(id);
         }
 
         // 保存到索引库
@@ -796,8 +922,12 @@ public class Data extends SearchEntity {
             nd.put("meno", cutText(rd, "meno"));
         }
 
+        // 旧快照存为差异
+        ud.put("data", packSnap(id, Synt.declare(od.get("ctime"), 0L), (String) od.get("data"), (String) nd.get("data")));
+
         table.update(ud, where, param);
         table.insert(nd);
+        putOutbox(id);
 
         //** 从索引库删除 **/
 
@@ -833,7 +963,7 @@ public class Data extends SearchEntity {
 
         Map od = table.fetchCase()
             .filter( where, param)
-            .select("ctime")
+            .select("ctime,data")
             .getOne( );
         if (od.isEmpty()) {
         //  throw new HongsException(404, "Can not find current '"+id+"' in "+getDbName())
@@ -864,6 +994,10 @@ public class Data extends SearchEntity {
 
         //** 保存到数据库 **/
 
+        // 历史快照可能是差异, 需还原
+        Map dd = getSnap(nd);
+        nd.put("data", Dawn.toString(dd, true));
+
         Map ud = new HashMap();
         ud.put("etime", ctime);
         nd.put("ctime", ctime);
@@ -881,13 +1015,17 @@ public class Data extends SearchEntity {
             nd.put("meno", cutText(rd, "meno"));
         }
 
+        // 旧快照存为差异
+        if (! od.isEmpty()) {
+            ud.put("data", packSnap(id, Synt.declare(od.get("ctime"), 0L), (String) od.get("data"), (String) nd.get("data")));
+        }
+
         table.update(ud, where, param);
         table.insert(nd);
+        putOutbox(id);
 
         //** 保存到索引库 **/
 
-        Map dd = (Map) Dawn.toObject((String) nd.get("data"));
-
         dd.put(Cnst.ID_KEY , id);
         Document dc = padDoc(dd);
 
@@ -895,6 +1033,149 @@ public class Data extends SearchEntity {
         return 1;
     }
 
+    /**
+     * 记入发件箱
+     * @param id
+     * @throws HongsException
+     */
+    protected void putOutbox(String id) throws HongsException {
+        Outbox ob = getOutbox();
+        if (ob != null) {
+            ob.put(conf + "." + form, id);
+        }
+    }
+
+    /**
+     * 获取快照
+     * 历史记录可能是相对下一版本的差异, 需沿版本链取到完整快照再逐级还原
+     * @param row 记录, 需含 id, etime, data
+     * @return
+     * @throws HongsException
+     */
+    public Map getSnap(Map row) throws HongsException {
+        String data = (String) row.get("data");
+        if (data == null || ! data.startsWith("~")) {
+            return toSnap(data);
+        }
+
+        Table  table = getTable();
+        String fid   = getFormId();
+        String id    = (String) row.get( "id" );
+        long   etime = Synt.declare(row.get("etime"), 0L);
+        List<List<Map>> ps = new ArrayList();
+
+        while (data.startsWith("~")) {
+            ps.add((List) Delta.unpack(data.substring(data.indexOf(':') + 1)));
+            Map nd = table.fetchCase()
+                .filter("`id`=? AND `form_id`=? AND `ctime`=?", id, fid, etime)
+                .select("etime,data")
+                .getOne( );
+            if (nd.isEmpty() || etime == 0L) {
+                throw new HongsException(404, "Empty '"+id+"' at '"+etime+"' in "+getDbName())
+                    .setLocalizedContent("matrix.node.not.exists")
+                    .setLocalizedContext("matrix");
+            }
+            etime = Synt.declare(nd.get("etime"), 0L);
+            data  = (String) nd.get("data");
+        }
+
+        Map dd = toSnap(data);
+        for(int i = ps.size() - 1; i > -1; i --) {
+            Delta.patch(dd, ps.get(i));
+        }
+        return dd;
+    }
+
+    /**
+     * 打包快照
+     * 被取代的记录存为相对新版本的差异, 连续差异过多则存为压缩的完整快照
+     * @param id
+     * @param ctime 被取代记录的创建时间
+     * @param od 被取代记录的快照
+     * @param nd 新版本的快照
+     * @return
+     * @throws HongsException
+     */
+    protected String packSnap(String id, long ctime, String od, String nd) throws HongsException {
+        int kf = CoreConfig.getInstance("matrix").getProperty("core.matrix.delta.keyframe", 16);
+        if (kf <= 0 || od == null || nd == null) {
+            return od;
+        }
+
+        // 前一版本的差异深度
+        int dp = 1;
+        Map pd = getTable().fetchCase()
+            .filter("`id`=? AND `form_id`=? AND `etime`=?", id, getFormId(), ctime)
+            .select("data")
+            .getOne( );
+        String ps = (String) pd.get("data");
+        if (ps != null && ps.startsWith("~")) {
+            dp += Integer.parseInt(ps.substring(1, ps.indexOf(':')));
+        }
+
+        return packSnap(toSnap(od), toSnap(nd), dp, kf);
+    }
+
+    /**
+     * 打包快照
+     * @param od 旧版本
+     * @param nd 新版本
+     * @param dp 差异深度
+     * @param kf 最大深度
+     * @return 超出最大深度为 =压缩快照, 否则为 ~深度:压缩差异
+     */
+    static String packSnap(Map od, Map nd, int dp, int kf) {
+        if (dp > kf) {
+            return "=" + Delta.pack(od);
+        } else {
+            return "~" + dp + ":" + Delta.pack(Delta.diff(nd, od));
+        }
+    }
+
+    /**
+     * 解析完整快照
+     * @param data JSON 或 =压缩快照
+     * @return
+     */
+    static Map toSnap(String data) {
+        if (data == null || data.isEmpty()) {
+            return new HashMap();
+        }
+        if (data.startsWith("=")) {
+            return (Map) Delta.unpack(data.substring(1));
+        } else {
+            return (Map) Dawn.toObject(data);
+        }
+    }
+
+    /**
+     * 重算差异
+     * 当前记录原地修改后, 上一版本的差异需改为相对新的快照
+     * @param id
+     * @param ctime 当前记录的创建时间
+     * @param od 修改前的快照
+     * @param nd 修改后的快照
+     * @throws HongsException
+     */
+    private void rebase(String id, long ctime, String od, String nd) throws HongsException {
+        Table  table = getTable();
+        String fid   = getFormId();
+        Map pd = table.fetchCase()
+            .filter("`id`=? AND `form_id`=? AND `etime`=?", id, fid, ctime)
+            .select("ctime,data")
+            .getOne( );
+        String ps = (String) pd.get("data");
+        if (ps == null || ! ps.startsWith("~")) {
+            return;
+        }
+
+        int  dp = Integer.parseInt(ps.substring(1, ps.indexOf(':')));
+        Map  dd = Delta.patch(toSnap(od), (List) Delta.unpack(ps.substring(ps.indexOf(':') + 1)));
+        Map  ud = new HashMap();
+        ud.put("data", packSnap(dd, toSnap(nd), dp, dp));
+        table.update(ud, "`id`=? AND `form_id`=? AND `ctime`=?", id, fid, pd.get("ctime"));
+    }
+
     @Override
     protected void padQry(BooleanQuery.Builder qr, Map rd) throws HongsException {
         // 限定分区范围
@@ -11,8 +11,15 @@ import io.github.ihongs.cmdlet.anno.Cmdlet;
 import io.github.ihongs.db.DB;
 import io.github.ihongs.db.Table;
 import io.github.ihongs.db.link.Loop;
+import io.github.ihongs.db.util.Outbox;
 import io.github.ihongs.util.Dawn;
+import io.github.ihongs.util.Delta;
 import io.github.ihongs.util.Synt;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedHashSet;
 import java.util.HashMap;
@@ -20,6 +27,12 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
 
 /**
  * 数据操作命令
@@ -28,6 +41,20 @@ import java.util.Set;
 @Cmdlet("matrix.data")
 public class DataCmdlet {
 
+    /**
+     * 恢复命令
+     *
+     * <p>
+     * 不指定时间则按当前记录重建索引, 由读取线程逐条取出记录,
+     * 多个线程构建文档, 按批写入共用的 IndexWriter, 最后提交一次;
+     * 未指定 ID 时每隔若干条提交并记录检查点, 中断后可用 --resume 接续.
+     * 指定时间需恢复历史记录, 涉及数据库写入, 仍逐条执行.
+     * </p>
+     *
+     * @param args
+     * @throws HongsException
+     * @throws InterruptedException
+     */
     @Cmdlet("revert")
     public static void revert(String[] args)
     throws HongsException, InterruptedException {
@@ -41,8 +68,11 @@ public class DataCmdlet {
             "user:s",
             "memo:s",
             "time:i",
+            "threads:i",
+            "commit:i",
+            "resume:b",
             "!A",
-            "?Usage: revert --conf CONF_NAME --form FORM_NAME [--time TIMESTAMP] ID0 ID1 ..."
+            "?Usage: revert --conf CONF_NAME --form FORM_NAME [--time TIMESTAMP] [--threads NUM] [--commit NUM] [--resume] ID0 ID1 ..."
         });
 
         String conf = (String) opts.get("conf");
@@ -50,6 +80,9 @@ public class DataCmdlet {
         String user = (String) opts.get("user");
         String memo = (String) opts.get("memo");
         long ct = Synt.declare(opts.get("time"), 0L);
+        int  th = Synt.declare(opts.get("threads"), Runtime.getRuntime().availableProcessors());
+        int  cn = Synt.declare(opts.get("commit" ), 10000);
+        boolean rs = Synt.declare(opts.get("resume"), false);
         Set<String> ds = Synt.asSet ( opts.get("") );
 
         Data dr = df.getInstance (conf, form);
@@ -60,6 +93,23 @@ public class DataCmdlet {
         Map sd = new HashMap();
         sd.put( "memo", memo );
 
+        // 检查点, 仅重建全部索引时可用
+        File   cf = null;
+        String ck = null;
+        if (ct == 0 && ds.isEmpty()) {
+            cf = new File(Core.DATA_PATH
+               + File.separator + "serial"
+               + File.separator + "matrix.data.revert." + form + ".ckpt");
+            if (rs && cf.exists()) {
+                try {
+                    ck = new String(Files.readAllBytes(cf.toPath()), StandardCharsets.UTF_8).trim();
+                } catch (IOException ex) {
+                    throw new HongsException(ex);
+                }
+                CmdletHelper.println("Resume after "+ck);
+            }
+        }
+
         Table  tb = dr.getTable();
         String tn = tb.tableName ;
         Loop   lp   ; // 查询迭代
@@ -74,7 +124,16 @@ public class DataCmdlet {
                 c  = ds.size();
                 qa = qa + " AND a.id IN (?)";
                 lp = tb.db.query(qa, 0, 0, form,  0, ds);
+            } else
+            if (ck != null) {
+                qa = qa + " AND a.id > ? ORDER BY a.id";
+                qc = qc + " AND a.id > ?";
+                lp = tb.db.query(qa, 0, 0, form,  0, ck);
+                c  = Synt .declare (
+                     tb.db.fetchOne(   qc, form,  0, ck)
+                          .get("_cnt_"), 0 );
             } else {
+                qa = qa + " ORDER BY a.id";
                 lp = tb.db.query(qa, 0, 0, form,  0    );
                 c  = Synt .declare (
                      tb.db.fetchOne(   qc, form,  0    )
@@ -110,44 +169,336 @@ public class DataCmdlet {
 
         dr.begin( );
 
-        for(Map od : lp ) {
-            String id = ( String ) od.get( Cnst.ID_KEY );
-            if (Synt.declare(od.get("etime"), 0L) != 0L) {
-            if (Synt.declare(od.get("state"), 1 ) >= 1 ) {
-                sd.put("rtime", od.get("ctime") );
-                dr.rev(id,sd);
-            }  else  {
-                dr.del(id,sd);
-            }} else  {
-            if (Synt.declare(od.get("state"), 1 ) >= 1 ) {
-                od = Synt.toMap(od.get( "data") );
-                od.putAll(sd);
-                dr.setDoc(id,dr.padDoc( od ));
-            }  else  {
+        try (Bulk bk = new Bulk(dr, new HashMap(sd), th)) {
+            for(Map od : lp ) {
+                String id = ( String ) od.get( Cnst.ID_KEY );
+                if (Synt.declare(od.get("etime"), 0L) != 0L) {
+                if (Synt.declare(od.get("state"), 1 ) >= 1 ) {
+                    sd.put("rtime", od.get("ctime") );
+                    dr.rev(id,sd);
+                }  else  {
+                    dr.del(id,sd);
+                }} else  {
+                    bk.add(od);
+                }
+                    ds.remove(id);
+                    i ++;
+                if (pr) CmdletHelper.progres(tm, c,i);
+
+                // 提交并记录检查点
+                if (cf != null && i % cn == 0) {
+                    bk.commit();
+                    try {
+                        cf.getParentFile().mkdirs();
+                        Files.write(cf.toPath(), id.getBytes(StandardCharsets.UTF_8));
+                    } catch (IOException ex) {
+                        throw new HongsException(ex);
+                    }
+                }
+            }
+
+            // 不存在的直接删掉
+            for(String id:ds) {
                 dr.delDoc(id);
-            }}
-                ds.remove(id);
-                i ++;
-            if (pr) CmdletHelper.progres(tm, c,i);
-//          if (i % 500 == 0) {
-//              dr.commit(  );
-//          }
+                    i ++;
+                if (pr) CmdletHelper.progres(tm, c,i);
+            }
+
+            bk.commit();
+        }
+
+        dr.commit();
+
+        if (cf != null) {
+            cf.delete();
         }
 
-        // 不存在的直接删掉
-        for(String id:ds) {
-            dr.delDoc(id);
+        if (pr) CmdletHelper.progres();
+        CmdletHelper.println("Revert "+i+" item(s) for "+form+" to "+dr.getDbName());
+    }
+
+    /**
+     * 压缩命令
+     * 将历史快照重写为相对下一版本的差异, 并按间隔存完整快照;
+     * 指定 --expand 则全部还原为完整快照.
+     * @param args
+     * @throws HongsException
+     * @throws InterruptedException
+     */
+    @Cmdlet("compact")
+    public static void compact(String[] args)
+    throws HongsException, InterruptedException {
+        compact(args, new Inst());
+    }
+    public static void compact(String[] args, Inst df)
+    throws HongsException, InterruptedException {
+        Map opts = CmdletHelper.getOpts(args, new String[] {
+            "conf=s",
+            "form=s",
+            "keyframe:i",
+            "expand:b",
+            "!A",
+            "?Usage: compact --conf CONF_NAME --form FORM_NAME [--keyframe NUM] [--expand] [ID0 ID1 ...]"
+        });
+
+        String conf = (String) opts.get("conf");
+        String form = (String) opts.get("form");
+        boolean ex = Synt.declare(opts.get("expand"), false);
+        int kf = Synt.declare(opts.get("keyframe"),
+            CoreConfig.getInstance("matrix")
+                      .getProperty("core.matrix.delta.keyframe", 16));
+        Set<String> ds = Synt.asSet ( opts.get("") );
+
+        Data dr = df.getInstance (conf, form);
+        form = dr.getFormId( );
+
+        Table  tb = dr.getTable();
+        String tn = tb.tableName ;
+
+        // 先取出全部 ID, 避免边查边改
+        if (ds.isEmpty()) {
+            ds = new LinkedHashSet();
+            Loop lp = tb.db.query("SELECT DISTINCT `id` FROM `"+tn+"` WHERE `form_id` = ?", 0, 0, form);
+            for(Map ro : lp) {
+                ds.add((String) ro.get("id"));
+            }
+        }
+
+        int  c  = ds.size(); // 操作总数
+        int  i  = 0 ; // 变更计数
+        long sb = 0 ; // 原始字节
+        long sa = 0 ; // 压缩字节
+        boolean pr = 0 == Core.DEBUG;
+        long tm = System.currentTimeMillis();
+        if (pr) CmdletHelper.progres(tm,c,i);
+
+        dr.begin( );
+
+        for(String id : ds) {
+            List<Map> rs = tb.fetchCase()
+                .filter("`id` = ? AND `form_id` = ?", id, form)
+                .select("id,ctime,etime,data")
+                .assort("ctime DESC")
+                .getAll();
+            int n = rs.size();
+
+            // 由新到旧还原完整快照
+            Map[] ss = new Map[n];
+            for(int j = 0; j < n; j ++) {
+                Map    ro = rs.get(j);
+                String dt = (String) ro.get("data");
+                if (dt != null && dt.startsWith("~") && j > 0 && chain(rs, j)) {
+                    List ps = (List) Delta.unpack(dt.substring(dt.indexOf(':') + 1));
+                    ss[j] = Delta.patch(Data.toSnap(Dawn.toString(ss[j - 1], true)), ps);
+                } else {
+                    ss[j] = dr.getSnap(ro);
+                }
+            }
+
+            // 由旧到新重新编码
+            int dp = 0;
+            for(int j = n - 1; j > -1; j --) {
+                Map    ro = rs.get(j);
+                String dt = (String) ro.get("data");
+                String da ;
+                if (ex || Synt.declare(ro.get("etime"), 0L) == 0L) {
+                    da = Dawn.toString(ss[j], true);
+                    dp = 0;
+                } else
+                if (j == 0 || ! chain(rs, j)) {
+                    da = "=" + Delta.pack(ss[j]);
+                    dp = 0;
+                } else {
+                    da = Data.packSnap(ss[j], ss[j - 1], ++ dp, kf);
+                    if (da.startsWith("=")) {
+                        dp = 0;
+                    }
+                }
+                if (dt != null) {
+                    sb += dt.length();
+                }
+                    sa += da.length();
+                if (! da.equals(dt)) {
+                    Map ud = new HashMap();
+                    ud.put("data", da);
+                    tb.update(ud, "`id` = ? AND `form_id` = ? AND `ctime` = ?", id, form, ro.get("ctime"));
+                }
+            }
+
                 i ++;
             if (pr) CmdletHelper.progres(tm, c,i);
- //         if (i % 500 == 0) {
- //             dr.commit(  );
- //         }
         }
 
         dr.commit();
 
         if (pr) CmdletHelper.progres();
-        CmdletHelper.println("Revert "+i+" item(s) for "+form+" to "+dr.getDbName());
+        CmdletHelper.println("Compact "+i+" item(s) for "+form+" in "+dr.getDbName()+", "+sb+" to "+sa+" chars");
+    }
+
+    /**
+     * 发件箱命令
+     * 将发件箱中记下的记录同步到索引库, 可放入定时任务, 或用 --loop 持续运行
+     * 用法: outbox [--table DB.TABLE] [--batch NUM] [--loop SECONDS] [--stats]
+     * @param args
+     * @throws HongsException
+     * @throws InterruptedException
+     */
+    @Cmdlet("outbox")
+    public static void outbox(String[] args)
+    throws HongsException, InterruptedException {
+        outbox(args, new Inst());
+    }
+    public static void outbox(String[] args, Inst df)
+    throws HongsException, InterruptedException {
+        Map opts = CmdletHelper.getOpts(args, new String[] {
+            "table:s",
+            "batch:i",
+            "loop:i",
+            "stats:b"
+        });
+
+        String tn = Synt.declare(opts.get("table"),
+            CoreConfig.getInstance("matrix")
+                      .getProperty("core.matrix.outbox", "matrix.outbox"));
+        int  bn = Synt.declare(opts.get("batch"), 500);
+        long lt = Synt.declare(opts.get("loop" ), 0L ) * 1000L;
+        Outbox ob = new Outbox(DB.getInstance("matrix").getTable(tn));
+
+        if (Synt.declare(opts.get("stats"), false)) {
+            CmdletHelper.preview(ob.getStats());
+            return;
+        }
+
+        do {
+            int n = ob.drainAll(bn, (name, refs) -> {
+                int    p = name.lastIndexOf(".");
+                String c = name.substring(0 , p);
+                String f = name.substring(1 + p);
+                reindex(df.getInstance(c, f), refs);
+            });
+            if (n > 0) {
+                CmdletHelper.println("Outbox "+n+" item(s) from "+tn);
+            }
+            if (lt > 0) {
+                Thread.sleep(lt);
+            }
+        } while (lt > 0);
+    }
+
+    /**
+     * 核对命令
+     * 比对数据表的当前记录和索引库, 找出缺失和多余的, 指定 --repair 则重建这些索引
+     * @param args
+     * @throws HongsException
+     */
+    @Cmdlet("reconcile")
+    public static void reconcile(String[] args)
+    throws HongsException {
+        reconcile(args, new Inst());
+    }
+    public static void reconcile(String[] args, Inst df)
+    throws HongsException {
+        Map opts = CmdletHelper.getOpts(args, new String[] {
+            "conf=s",
+            "form=s",
+            "repair:b",
+            "?Usage: reconcile --conf CONF_NAME --form FORM_NAME [--repair]"
+        });
+
+        String conf = (String) opts.get("conf");
+        String form = (String) opts.get("form");
+        boolean rp  = Synt.declare(opts.get("repair"), false);
+
+        Data dr = df.getInstance (conf, form);
+        form = dr.getFormId( );
+
+        Table  tb = dr.getTable();
+        String tn = tb.tableName ;
+
+        // 数据表中有效的
+        Set<String> da = new HashSet();
+        Loop lp = tb.db.query("SELECT `id` FROM `"+tn+"` WHERE `form_id` = ? AND `etime` = ? AND `state` > ?", 0, 0, form, 0, 0);
+        for(Map ro : lp) {
+            da.add((String) ro.get("id"));
+        }
+
+        // 索引库中现有的, 先刷新以读到最新提交
+        Set<String> ia = new HashSet();
+        dr.getReader();
+        for(Map ro : dr.search(Synt.mapOf(Cnst.RB_KEY, Synt.setOf(Cnst.ID_KEY)), 0, 0)) {
+            ia.add((String) ro.get(Cnst.ID_KEY));
+        }
+
+        Set<String> ms = new LinkedHashSet(da);
+        Set<String> ex = new LinkedHashSet(ia);
+        ms.removeAll(ia);
+        ex.removeAll(da);
+        CmdletHelper.println("Reconcile "+form+" in "+dr.getDbName()+": "+da.size()+" in table, "+ia.size()+" in index, "+ms.size()+" missing, "+ex.size()+" extra");
+
+        if (rp && ! (ms.isEmpty() && ex.isEmpty())) {
+            Set<String> rs = new LinkedHashSet();
+            rs.addAll(ms);
+            rs.addAll(ex);
+            Set<String> bs = new LinkedHashSet();
+            for(String id : rs) {
+                bs.add(id);
+                if (bs.size() >= 500) {
+                    reindex(dr, bs);
+                    bs.clear();
+                }
+            }
+            if (! bs.isEmpty()) {
+                reindex(dr, bs);
+            }
+            CmdletHelper.println("Repair "+rs.size()+" item(s) in "+dr.getDbName());
+        }
+    }
+
+    /**
+     * 按数据表的当前记录重建索引
+     * 已删除或不存在的则从索引库删除, 可重复执行
+     * @param dr
+     * @param ids
+     * @throws HongsException
+     */
+    public static void reindex(Data dr, Set<String> ids) throws HongsException {
+        Set<String> ds = new HashSet(ids);
+        List<Map>   rs = dr.getTable()
+            .fetchCase()
+            .filter("`id` IN (?) AND `form_id` = ? AND `etime` = ?", ids, dr.getFormId(), 0)
+            .select("id,state,data")
+            .getAll();
+
+        dr.begin();
+        try {
+            for(Map od : rs) {
+                String id = (String) od.get(Cnst.ID_KEY);
+                ds.remove(id);
+                if (Synt.declare(od.get("state"), 1) >= 1) {
+                    dr.setDoc(id, dr.padDoc(Synt.toMap(od.get("data"))));
+                } else {
+                    dr.delDoc(id);
+                }
+            }
+            for(String id : ds) {
+                dr.delDoc(id);
+            }
+            dr.commit();
+        } catch (HongsException | RuntimeException ex) {
+            dr.revert();
+            throw ex;
+        }
+    }
+
+    /**
+     * 是否紧接下一版本
+     * @param rs 按创建时间倒序的记录
+     * @param j
+     * @return
+     */
+    private static boolean chain(List<Map> rs, int j) {
+        return Synt.declare(rs.get(j    ).get("etime"), 0L)
+            == Synt.declare(rs.get(j - 1).get("ctime"), 0L);
     }
 
     @Cmdlet("import")
@@ -496,6 +847,165 @@ public class DataCmdlet {
         }
     }
 
+    /**
+     * 批量索引
+     * 读取线程放入记录, 工作线程构建文档并按批写入 IndexWriter,
+     * 写入时先删除该批的旧文档再整批添加, 提交前须等待已放入的全部写完.
+     */
+    private static class Bulk implements AutoCloseable {
+
+        private static final int  SIZE = 500;
+        private static final List<Map> END = new ArrayList(0);
+
+        private final Data dr;
+        private final Map  sd;
+        private final Set<IndexWriter> ws = ConcurrentHashMap.newKeySet();
+        private final Thread[] ts;
+        private final BlockingQueue<List<Map>> bq;
+        private List<Map> rs  ;
+        private long  sent = 0;
+        private long  done = 0;
+        private volatile Throwable fail = null;
+
+        /**
+         * @param dr 数据实体
+         * @param sd 补充数据
+         * @param tn 线程数量
+         */
+        public Bulk(Data dr, Map sd, int tn) throws HongsException {
+            tn = Math.max(1 , tn);
+            this.dr = dr;
+            this.sd = sd;
+            this.bq = new ArrayBlockingQueue(tn * 2);
+            this.rs = new ArrayList(SIZE);
+            this.ts = new Thread[tn];
+
+            // 预先构建一次, 以免多线程初始化字段缓存
+            dr.padDoc(new HashMap());
+
+            for(int i = 0; i < tn; i ++) {
+                ts[i] = new Thread(this::work, "matrix-bulk-" + i);
+                ts[i].setDaemon(true);
+                ts[i].start();
+            }
+        }
+
+        /**
+         * 放入当前记录
+         * @param od
+         * @throws HongsException
+         * @throws InterruptedException
+         */
+        public void add(Map od) throws HongsException, InterruptedException {
+            rs.add(od);
+            if (rs.size() >= SIZE) {
+                send();
+            }
+        }
+
+        /**
+         * 等待写完并提交
+         * @throws HongsException
+         * @throws InterruptedException
+         */
+        public void commit() throws HongsException, InterruptedException {
+            send();
+            synchronized (this) {
+                while (done < sent && fail == null) {
+                    wait();
+                }
+            }
+            check();
+            try {
+                for(IndexWriter iw : ws) {
+                    synchronized (iw) {
+                        iw.commit();
+                    }
+                }
+            } catch (IOException ex) {
+                throw new HongsException(0x102c, ex);
+            }
+        }
+
+        @Override
+        public void close() throws InterruptedException {
+            for(Thread t : ts) {
+                bq.put(END);
+            }
+            for(Thread t : ts) {
+                t.join();
+            }
+        }
+
+        private void send() throws HongsException, InterruptedException {
+            check();
+            if (rs.isEmpty()) {
+                return;
+            }
+            synchronized (this) {
+                sent += rs.size();
+            }
+            bq.put(rs);
+            rs = new ArrayList(SIZE);
+        }
+
+        private void check() throws HongsException {
+            if (fail != null) {
+                throw new HongsException(fail);
+            }
+        }
+
+        private void work() {
+            while (true) {
+                List<Map> rl;
+                try {
+                    rl = bq.take();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                if (rl == END) {
+                    return;
+                }
+
+                try {
+                    // 分片时按所在分片分组写入
+                    Map<IndexWriter, List<Term    >> tm = new HashMap(1);
+                    Map<IndexWriter, List<Document>> dm = new HashMap(1);
+                    for(Map od : rl) {
+                        String id = (String) od.get(Cnst.ID_KEY);
+                        IndexWriter iw;
+                        synchronized (dr) {
+                            iw = dr.getWriter(id);
+                        }
+                        tm.computeIfAbsent(iw, k -> new ArrayList()).add(new Term("@" + Cnst.ID_KEY, id));
+                        if (Synt.declare(od.get("state"), 1) >= 1) {
+                            od = Synt.toMap(od.get("data"));
+                            od.putAll(sd);
+                            dm.computeIfAbsent(iw, k -> new ArrayList()).add(dr.padDoc(od));
+                        }
+                    }
+                    for(Map.Entry<IndexWriter, List<Term>> et : tm.entrySet()) {
+                        IndexWriter iw = et.getKey();
+                        ws.add(iw);
+                        iw.deleteDocuments(et.getValue().toArray(new Term[0]));
+                        if (dm.containsKey(iw)) {
+                            iw.addDocuments(dm.get(iw));
+                        }
+                    }
+                } catch (Throwable ex) {
+                    fail = ex;
+                }
+
+                synchronized (this) {
+                    done += rl.size();
+                    notifyAll();
+                }
+            }
+        }
+
+    }
+
     /**
      * 数据实体工厂类,
      * 供扩展实体时用.
@@ -1,5 +1,6 @@
 package io.github.ihongs.serv.matrix.byname;
 
+import io.github.ihongs.Core;
 import io.github.ihongs.HongsException;
 import io.github.ihongs.action.ActionHelper;
 import io.github.ihongs.action.ActionRunner;
@@ -12,7 +13,7 @@ import java.util.Map;
  * 字段映射处理
  * @author Hongs
  */
-public class BynameDriver implements FilterInvoker {
+public class BynameDriver implements FilterInvoker, Core.Singleton {
 
     @Override
     public void invoke(ActionHelper helper, ActionRunner chains, Annotation anno)
@@ -0,0 +1,191 @@
+package io.github.ihongs.dh.lucene;
+
+import io.github.ihongs.CoreConfig;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.TopDocs;
+
+/**
+ * 命中结果缓存
+ *
+ * <p>
+ * 列表页常以相同的条件和排序反复查询, 此类缓存分页查询的命中文档号和命中总数;
+ * 键为 库名+查询+排序+条数, 并带上读取器的版本(generation), 查询和排序按其 equals 比较,
+ * 同一版本的索引文档号一致, 故不同实例间也可共用;
+ * 索引有变化时读取器重开, 版本随之改变, 旧的条目不会再命中, 并会整库清除.
+ * 文档内容仍需按文档号读取, 不在缓存之列.
+ * </p>
+ *
+ * <h3>配置选项:</h3>
+ * <pre>
+ * core.lucene.cache.limit 最多缓存条目, 默认为 1000, 为 0 不缓存
+ * core.lucene.cache.depth 最多缓存的命中条数, 默认为 1000, 翻页更深的不缓存
+ * </pre>
+ *
+ * @author Hongs
+ */
+public final class HitsCache {
+
+    private static final Map<String, Map<Key, TopDocs>> ENTRIES = new ConcurrentHashMap();
+
+    private static final LongAdder HITS   = new LongAdder();
+    private static final LongAdder MISSES = new LongAdder();
+    private static final LongAdder EVICTS = new LongAdder();
+
+    private HitsCache() {}
+
+    /**
+     * 查询加载器
+     */
+    @FunctionalInterface
+    public static interface Loader {
+        public TopDocs load() throws IOException;
+    }
+
+    /**
+     * 获取缓存结果, 没有则加载
+     * @param db  库名
+     * @param gen 读取器版本, 为 null 不缓存
+     * @param q   查询
+     * @param s   排序, 可为 null
+     * @param n   条数
+     * @param load 加载方法
+     * @return 命中结果, 勿修改
+     * @throws IOException
+     */
+    public static TopDocs get(String db, String gen, Query q, Sort s, int n, Loader load)
+    throws IOException {
+        CoreConfig cf = CoreConfig.getInstance();
+        if (gen == null
+        ||  n > cf.getProperty("core.lucene.cache.depth", 1000)
+        ||  0 >=cf.getProperty("core.lucene.cache.limit", 1000)) {
+            return load.load();
+        }
+
+        Key key = new Key(gen, n, q, s);
+        Map<Key, TopDocs> ents = ENTRIES.computeIfAbsent(db, k -> new ConcurrentHashMap());
+        TopDocs tops = ents.get(key);
+        if (tops != null) {
+            HITS.increment();
+            return tops;
+        }
+        MISSES.increment();
+
+        tops = load.load();
+        put(db, ents, key, tops, cf.getProperty("core.lucene.cache.limit", 1000));
+        return tops;
+    }
+
+    /**
+     * 清除库的缓存
+     * 读取器重开时调用
+     * @param db 库名
+     */
+    public static void clear(String db) {
+        ENTRIES.remove(db);
+    }
+
+    /**
+     * 清空缓存
+     */
+    public static void clear() {
+        ENTRIES.clear();
+    }
+
+    /**
+     * 命中统计
+     * @return
+     */
+    public static Map getStats() {
+        long hits = HITS  .sum();
+        long miss = MISSES.sum();
+        long tota = hits + miss;
+        Map  map  = new LinkedHashMap();
+        map.put("size"  , size());
+        map.put("dbs"   , ENTRIES.size());
+        map.put("hits"  , hits);
+        map.put("misses", miss);
+        map.put("evicts", EVICTS.sum());
+        map.put("ratio" , tota > 0 ? (double) hits / tota : 0D);
+        return map;
+    }
+
+    private static int size() {
+        int n = 0;
+        for (Map ents : ENTRIES.values()) {
+            n += ents.size();
+        }
+        return n;
+    }
+
+    private static void put(String db, Map<Key, TopDocs> ents, Key key, TopDocs tops, int max) {
+        int z = size();
+        if (z >= max) {
+            // 超出则清掉当前库四分之一, 当前库为空则清掉全部
+            if (ents.isEmpty()) {
+                EVICTS.add(z);
+                ENTRIES.clear();
+                ENTRIES.put(db, ents);
+            } else {
+                int n = ents.size() / 4 + 1;
+                Iterator it = ents.values().iterator();
+                while (it.hasNext() && n -- > 0) {
+                    it.next();
+                    it.remove();
+                    EVICTS.increment();
+                }
+            }
+        }
+        ents.put(key, tops);
+    }
+
+    /**
+     * 缓存键
+     * 查询的 toString 不保证唯一, 故直接用 Query 和 Sort 的 equals/hashCode
+     */
+    private static final class Key {
+
+        private final String gen;
+        private final int    n;
+        private final Query  q;
+        private final Sort   s;
+        private final int    h;
+
+        Key(String gen, int n, Query q, Sort s) {
+            this.gen = gen;
+            this.n = n;
+            this.q = q;
+            this.s = s;
+            this.h = Objects.hash(gen, n, q, s);
+        }
+
+        @Override
+        public int hashCode() {
+            return h;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (! (o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return n == k.n
+                && gen.equals(k.gen)
+                && q.equals(k.q)
+                && Objects.equals(s, k.s);
+        }
+
+    }
+
+}
@@ -15,6 +15,7 @@ import io.github.ihongs.dh.lucene.value.*;
 import io.github.ihongs.dh.lucene.query.*;
 import io.github.ihongs.util.Dawn;
 import io.github.ihongs.util.Dict;
+import io.github.ihongs.util.Latency;
 import io.github.ihongs.util.Syno;
 import io.github.ihongs.util.Synt;
 
@@ -31,8 +32,14 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.DocumentStoredFieldVisitor;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.custom.CustomAnalyzer;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
@@ -55,6 +62,7 @@ import org.apache.lucene.index.IndexableField;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.MultiReader;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.queryparser.classic.QueryParser;
 import org.apache.lucene.queryparser.classic.ParseException;
@@ -69,6 +77,13 @@ import org.apache.lucene.queryparser.classic.ParseException;
  *  lucene-find-filter  查询时使用的 CharFilter  类
  *  lucene-query-filter 查询时使用的 TokenFilter 类
  *
+ * 可选表单配置参数:
+ *  db-shards           分片数量, 按 ID 哈希写入 db-path 下的 0..N-1 目录,
+ *                      查询时合并全部分片并行检索; 变更数量需重建索引
+ *
+ * 配置选项:
+ *  core.lucene.search.threads 分片并行检索的线程数, 默认为处理器数
+ *
  * @author Hongs
  */
 public class LuceneRecord extends JFigure implements IEntity, IReflux, AutoCloseable {
@@ -83,6 +98,17 @@ public class LuceneRecord extends JFigure implements IEntity, IReflux, AutoClose
     private String        dbpath  = null ;
     private String        dbname  = null ;
 
+    private String []     datNames = null;
+    private IValue []     datCodes = null;
+    private boolean[]     datMulti = null;
+    private boolean       datsMode = false;
+
+    private LuceneRecord  holder  = null ;
+    private Map<String, LuceneRecord> shards = null;
+    private List<IndexReader>        readers = null;
+
+    private static ExecutorService EXECUTOR = null;
+
     /**
      * 构造方法
      *
@@ -580,6 +606,12 @@ public class LuceneRecord extends JFigure implements IEntity, IReflux, AutoClose
     //** 组件方法 **/
 
     public void addDoc(Document doc) throws HongsException {
+        String sn = getShardName(doc.get(Cnst.ID_KEY));
+        if (sn != null) {
+            getShard(sn).addDoc(doc);
+            return;
+        }
+
         IndexWriter iw = getWriter();
         try {
             iw.addDocument (doc);
@@ -592,6 +624,12 @@ public class LuceneRecord extends JFigure implements IEntity, IReflux, AutoClose
     }
 
     public void setDoc(String id, Document doc) throws HongsException {
+        String sn = getShardName(id);
+        if (sn != null) {
+            getShard(sn).setDoc(id, doc);
+            return;
+        }
+
         IndexWriter iw = getWriter();
         try {
             iw.updateDocument (new Term("@"+Cnst.ID_KEY, id), doc);
@@ -604,6 +642,12 @@ public class LuceneRecord extends JFigure implements IEntity, IReflux, AutoClose
     }
 
     public void delDoc(String id) throws HongsException {
+        String sn = getShardName(id);
+        if (sn != null) {
+            getShard(sn).delDoc(id);
+            return;
+        }
+
         IndexWriter iw = getWriter();
         try {
             iw.deleteDocuments(new Term("@"+Cnst.ID_KEY, id) /**/);
@@ -882,16 +926,57 @@ public class LuceneRecord extends JFigure implements IEntity, IReflux, AutoClose
             rep  = null;
         }
 
-        Map<String, Map> fields = getFields();
-        for(Map.Entry<String, Map> e : fields.entrySet()) {
-            Map    m = e.getValue();
-            String k = e.getKey  ();
+        // 解码器依字段配置预先构建, 各文档共用
+        if (datCodes == null || datsMode != OBJECT_MODE) {
+            padDec();
+        }
+        String [] ks = datNames;
+        IValue [] vs = datCodes;
+        boolean[] rs = datMulti;
+
+        for(int i = 0; i < ks.length; i ++) {
+            String k = ks[i];
 
             if (rep != null
             && !rep.contains(k)) {
                 continue;
             }
 
+            IValue  v = vs[i];
+            boolean r = rs[i];
+            IndexableField[] fs = doc.getFields(k);
+
+            if (r) {
+                if (fs.length > 0) {
+                    for(IndexableField f : fs ) {
+                        Dict.put(map , v.get(f), k, null);
+                    }
+                } else {
+                    map.put(k , new ArrayList());
+                }
+            } else {
+                if (fs.length > 0) {
+                    map.put(k , v.get ( fs[0] ));
+                } else {
+                    map.put(k , null);
+                }
+            }
+        }
+    }
+
+    /**
+     * 构建字段解码器
+     */
+    private void padDec() {
+        List<String > ks = new ArrayList();
+        List<IValue > vs = new ArrayList();
+        List<Boolean> rs = new ArrayList();
+
+        Map<String, Map> fields = getFields();
+        for(Map.Entry<String, Map> e : fields.entrySet()) {
+            Map    m = e.getValue();
+            String k = e.getKey  ();
+
             if (k == null
             ||  k.equals("@")
             ||  unstated( m )
@@ -901,8 +986,6 @@ public class LuceneRecord extends JFigure implements IEntity, IReflux, AutoClose
 
             IValue  v ;
             String  t = datatype(m);
-            boolean r = repeated(m);
-            IndexableField[] fs = doc.getFields(k);
 
             if (t != null) switch (t) {
             case "search":
@@ -945,22 +1028,19 @@ public class LuceneRecord extends JFigure implements IEntity, IReflux, AutoClose
                 v = new StringValue();
             }
 
-            if (r) {
-                if (fs.length > 0) {
-                    for(IndexableField f : fs ) {
-                        Dict.put(map , v.get(f), k, null);
-                    }
-                } else {
-                    map.put(k , new ArrayList());
-                }
-            } else {
-                if (fs.length > 0) {
-                    map.put(k , v.get ( fs[0] ));
-                } else {
-                    map.put(k , null);
-                }
-            }
+            ks.add(k);
+            vs.add(v);
+            rs.add(repeated(m));
+        }
+
+        boolean[] rz = new boolean[rs.size()];
+        for(int i = 0; i < rz.length; i ++) {
+            rz[i] = rs.get(i);
         }
+        datNames = ks.toArray(new String[ks.size()]);
+        datCodes = vs.toArray(new IValue[vs.size()]);
+        datMulti = rz;
+        datsMode = OBJECT_MODE;
     }
 
     /**
@@ -1543,6 +1623,14 @@ public class LuceneRecord extends JFigure implements IEntity, IReflux, AutoClose
             /**/writer = null ;
         }
         }
+
+        if (shards != null ) {
+            for (LuceneRecord sr : shards.values()) {
+                sr.close();
+            }
+            shards  = null ;
+            readers = null ;
+        }
     }
 
     /**
@@ -1551,6 +1639,11 @@ public class LuceneRecord extends JFigure implements IEntity, IReflux, AutoClose
     @Override
     public void begin() {
         REFLUX_MODE = true;
+        if (shards != null) {
+            for (LuceneRecord sr : shards.values()) {
+                sr.begin();
+            }
+        }
     }
 
     /**
@@ -1559,13 +1652,21 @@ public class LuceneRecord extends JFigure implements IEntity, IReflux, AutoClose
     @Override
     public void commit() {
         REFLUX_MODE = REFLUX_BASE;
+        if (shards != null) {
+            for (LuceneRecord sr : shards.values()) {
+                sr.commit();
+            }
+        }
         if (writer == null) {
             return;
         }
+        long tm = Latency.start();
         try {
             writer.commit ( );
         } catch (IOException ex) {
             throw new HongsExemption(0x102c, ex);
+        } finally {
+            Latency.record("lucene:" + getDbName() + ":commit", tm);
         }
     }
 
@@ -1575,6 +1676,11 @@ public class LuceneRecord extends JFigure implements IEntity, IReflux, AutoClose
     @Override
     public void revert() {
         REFLUX_MODE = REFLUX_BASE;
+        if (shards != null) {
+            for (LuceneRecord sr : shards.values()) {
+                sr.revert();
+            }
+        }
         if (writer == null) {
             return;
         }
@@ -1630,12 +1736,21 @@ public class LuceneRecord extends JFigure implements IEntity, IReflux, AutoClose
         if (reader == null) {
             getReader(/**/);
         }
+        if (readers == null) {
             finder  = new IndexSearcher(reader);
+        } else {
+            finder  = new IndexSearcher(reader, getExecutor());
+        }
         }
         return finder;
     }
 
     public IndexReader getReader() throws HongsException {
+        Set<String> ns = getShardNames();
+        if (ns != null) {
+            return getReader(ns);
+        }
+
         if (reader != null) {
             try {
                 // 如果有更新数据则会重新打开查询接口
@@ -1645,6 +1760,7 @@ public class LuceneRecord extends JFigure implements IEntity, IReflux, AutoClose
                     reader.close();
                     reader = nred ;
                     finder = null ;
+                    HitsCache.clear(getDbName());
                 }
             } catch (IOException x) {
                 throw new HongsException(x);
@@ -1673,6 +1789,10 @@ public class LuceneRecord extends JFigure implements IEntity, IReflux, AutoClose
     }
 
     public IndexWriter getWriter() throws HongsException {
+        if (getShardNames() != null) {
+            throw new UnsupportedOperationException("Use getWriter(id) for sharded "+getDbName());
+        }
+
         if (writer == null || writer.isOpen() == false ) {
             String path = getDbPath();
 
@@ -1694,6 +1814,172 @@ public class LuceneRecord extends JFigure implements IEntity, IReflux, AutoClose
         return writer;
     }
 
+    /**
+     * 获取写入器
+     * 分片时取 id 所在分片的
+     * @param id
+     * @return
+     * @throws HongsException
+     */
+    public IndexWriter getWriter(String id) throws HongsException {
+        String sn = getShardName(id);
+        if (sn != null) {
+            return getShard(sn).getWriter();
+        }
+        return getWriter();
+    }
+
+    //** 分片方法 **/
+
+    /**
+     * 全部分片名称
+     * 分片存储于 getDbPath() 下的同名目录
+     * @return 不分片为 null
+     * @throws HongsException
+     */
+    protected Set<String> getShardNames() throws HongsException {
+        if (holder != null) {
+            return null;
+        }
+        int n = Synt.declare(getParams().get("db-shards"), 0);
+        if (n < 2) {
+            return null;
+        }
+        Set<String> ns = new LinkedHashSet(n);
+        for(int i = 0; i < n; i ++) {
+            ns.add(String.valueOf(i));
+        }
+        return ns;
+    }
+
+    /**
+     * 记录所在分片
+     * @param id
+     * @return 不分片为 null
+     * @throws HongsException
+     */
+    protected String getShardName(String id) throws HongsException {
+        if (holder != null) {
+            return null;
+        }
+        int n = Synt.declare(getParams().get("db-shards"), 0);
+        if (n < 2) {
+            return null;
+        }
+        return String.valueOf(Math.floorMod(id.hashCode(), n));
+    }
+
+    /**
+     * 获取分片
+     * 分片的读写连接和事务跟随当前实例
+     * @param name
+     * @return
+     */
+    protected synchronized LuceneRecord getShard(String name) {
+        if (shards == null) {
+            shards  = new LinkedHashMap();
+        }
+        LuceneRecord sr = shards.get(name);
+        if (sr == null) {
+            sr = newShard(getDbPath() + "/" + name, getDbName() + "/" + name);
+            sr.holder = this;
+            if (REFLUX_MODE) {
+                sr.begin();
+            }
+            shards.put(name, sr);
+        }
+        return sr;
+    }
+
+    /**
+     * 构建分片
+     * 仅用于读写文档, 子类可改用其他读写方式
+     * @param path
+     * @param name
+     * @return
+     */
+    protected LuceneRecord newShard(String path, String name) {
+        return new LuceneRecord(getFields(), path, name);
+    }
+
+    /**
+     * 合并分片读取
+     * 任一分片有变化则重建
+     */
+    private IndexReader getReader(Set<String> ns) throws HongsException {
+        List<IndexReader> rs = new ArrayList(ns.size());
+        for(String sn : ns) {
+            rs.add(getShard(sn).getReader());
+        }
+        if (reader != null && rs.equals(readers)) {
+            return reader;
+        }
+        if (reader != null) {
+            HitsCache.clear(getDbName());
+        }
+
+        // 子读取器由各分片管理
+        IndexReader mred;
+        try {
+            mred = new MultiReader(rs.toArray(new IndexReader[rs.size()]), false);
+            if (reader != null) {
+                reader.close();
+            }
+        } catch (IOException x) {
+            throw new HongsException(x);
+        }
+        reader  = mred;
+        readers = rs  ;
+        finder  = null;
+        return reader;
+    }
+
+    /**
+     * 读取器版本
+     * 同一版本的索引文档号一致, 用于缓存命中结果
+     * @return 无法确定为 null
+     */
+    private String getGeneration() {
+        List<IndexReader> rs = readers;
+        if (rs == null) {
+            if (reader instanceof DirectoryReader) {
+                return String.valueOf(((DirectoryReader) reader).getVersion());
+            }
+            return null;
+        }
+        StringBuilder sb = new StringBuilder();
+        for(IndexReader r : rs) {
+            if (r instanceof DirectoryReader) {
+                sb.append(((DirectoryReader) r).getVersion()).append(',');
+            } else {
+                return null;
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 分片检索线程池
+     * 仅执行检索片段, 不会再提交任务, 故与其他线程池分开
+     * @return
+     */
+    protected static synchronized ExecutorService getExecutor() {
+        if (EXECUTOR == null) {
+            int n = CoreConfig.getInstance().getProperty("core.lucene.search.threads",
+                    Runtime.getRuntime().availableProcessors());
+            final AtomicInteger i = new AtomicInteger();
+            ThreadPoolExecutor e = new ThreadPoolExecutor(n, n, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue(), (Runnable r) -> {
+                    Thread t = new Thread(r, "lucene-search-" + i.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+            e.allowCoreThreadTimeOut(true);
+            EXECUTOR = e;
+        }
+        return EXECUTOR;
+    }
+
     //** 底层工具 **/
 
     /**
@@ -1980,12 +2266,14 @@ public class LuceneRecord extends JFigure implements IEntity, IReflux, AutoClose
     public static class Loop implements Iterable<Map>, Iterator<Map> {
         private final IndexSearcher finder;
         private final LuceneRecord  that;
+        private final String        gen ;
         private       ScoreDoc[]    docs;
         private       ScoreDoc      doc ;
         private final boolean t; // 有限查询
         private final Query   q;
         private final Sort    s;
         private final Set     r;
+        private final Set<String> f; // 读取字段
         private final int     b; // 起始位置
         private final int     l; // 数量限制
         private       int     i; // 提取游标
@@ -2023,9 +2311,17 @@ public class LuceneRecord extends JFigure implements IEntity, IReflux, AutoClose
             this.b =  b;
             this.l =  l;
 
+            // 仅读取需返回的字段
+            if (r != null && ! r.isEmpty()) {
+                this.f = new HashSet(r);
+            } else {
+                this.f = null;
+            }
+
             // 获取查读对象
             try {
                 finder = that.getFinder();
+                gen    = that.getGeneration();
             } catch ( HongsException ex ) {
                 throw ex.toExemption(   );
             }
@@ -2038,10 +2334,18 @@ public class LuceneRecord extends JFigure implements IEntity, IReflux, AutoClose
 
         @Override
         public boolean hasNext() {
+            long tm = 0L;
             try {
                 if ( docs == null) {
+                    tm = Latency.start();
                     int L  = l+b ;
                      TopDocs tops;
+                    if (t) {
+                        // 分页查询的命中结果可缓存
+                        tops = HitsCache.get(that.getDbName(), gen, q, s, L, () -> s != null
+                             ? finder.searchAfter(null, q, L, s)
+                             : finder.searchAfter(null, q, L));
+                    } else
                     if (s != null) {
                         tops = finder.searchAfter(doc, q, L, s);
                     } else {
@@ -2053,6 +2357,7 @@ public class LuceneRecord extends JFigure implements IEntity, IReflux, AutoClose
                     i    = b;
                 } else
                 if (! t && i >= h) {
+                    tm = Latency.start();
                      TopDocs tops;
                     if (s != null) {
                         tops = finder.searchAfter(doc, q, l, s);
@@ -2066,6 +2371,10 @@ public class LuceneRecord extends JFigure implements IEntity, IReflux, AutoClose
                 return i < h;
             } catch (IOException e) {
                 throw new HongsExemption(e);
+            } finally {
+                if (tm != 0L) {
+                    Latency.record("lucene:" + that.getDbName() + ":search", tm);
+                }
             }
         }
 
@@ -2077,8 +2386,15 @@ public class LuceneRecord extends JFigure implements IEntity, IReflux, AutoClose
             try {
                 Document dox;
                 doc = docs[i ++];
-                dox = finder.doc( doc.doc );
-                        that.preDoc(dox   );
+                if (f == null) {
+                    dox = finder.doc( doc.doc );
+                    that.preDoc(dox);
+                } else {
+                    // 部分文档不可用于更新, 故不经 preDoc
+                    DocumentStoredFieldVisitor dv = new DocumentStoredFieldVisitor(f);
+                    finder.doc(doc.doc, dv);
+                    dox = dv.getDocument( );
+                }
                 return  that.padDat(dox, r);
             } catch (IOException e) {
                 throw new HongsExemption(e);
@@ -99,6 +99,10 @@ public class SearchEntity extends LuceneRecord {
          * 计数归零可被回收.
          */
 
+        if (getShardNames() != null) {
+            throw new UnsupportedOperationException("Use getWriter(id) for sharded "+getDbName());
+        }
+
         if (WRITER != null) {
             return  WRITER.conn( );
         }
@@ -224,6 +228,11 @@ public class SearchEntity extends LuceneRecord {
     public void addDoc(Document doc)
     throws HongsException {
         String  id  =  doc . get( Cnst.ID_KEY );
+        String  sn  =  getShardName(id);
+        if (sn != null) {
+            getShard(sn).addDoc(doc);
+            return;
+        }
         WRITES.put(id, doc);
         if (!REFLUX_MODE) {
             commit();
@@ -233,6 +242,11 @@ public class SearchEntity extends LuceneRecord {
     @Override
     public void setDoc(String id, Document doc)
     throws HongsException {
+        String  sn  =  getShardName(id);
+        if (sn != null) {
+            getShard(sn).setDoc(id, doc);
+            return;
+        }
         WRITES.put(id, doc);
         if (!REFLUX_MODE) {
             commit();
@@ -242,6 +256,11 @@ public class SearchEntity extends LuceneRecord {
     @Override
     public void delDoc(String id)
     throws HongsException {
+        String  sn  =  getShardName(id);
+        if (sn != null) {
+            getShard(sn).delDoc(id);
+            return;
+        }
         WRITES.put(id,null);
         if (!REFLUX_MODE) {
             commit();
@@ -270,6 +289,11 @@ public class SearchEntity extends LuceneRecord {
         DOCK = doc;
     }
 
+    @Override
+    protected LuceneRecord newShard(String path, String name) {
+        return new SearchEntity(getFields(), path, name);
+    }
+
     private static class Writer implements AutoCloseable, Core.Cleanable, Core.Singleton {
 
         private final IndexWriter writer;
@@ -0,0 +1,194 @@
+package io.github.ihongs.test;
+
+import io.github.ihongs.Cnst;
+import io.github.ihongs.Core;
+import io.github.ihongs.HongsException;
+import io.github.ihongs.dh.lucene.LuceneRecord;
+import io.github.ihongs.dh.search.StatisHelper;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import junit.framework.TestCase;
+import org.junit.Test;
+
+/**
+ * 分片索引与不分片的查询结果一致
+ * @author Hongs
+ */
+public class TestShards extends TestCase {
+
+    private static final int COUNT = 300;
+
+    private File path;
+    private LuceneRecord plain;
+    private LuceneRecord shard;
+
+    @Override
+    protected void setUp() throws IOException, HongsException {
+        // 表单类型配置会缓存到数据目录, 避免写到当前目录下
+        path = Files.createTempDirectory("shards").toFile();
+        Core.DATA_PATH = path.getAbsolutePath();
+
+        plain = open(0);
+        shard = open(4);
+
+        plain.begin();
+        shard.begin();
+        for (int i = 0; i < COUNT; i ++) {
+            String id = "ID" + i;
+            plain.set(id, row(i));
+            shard.set(id, row(i));
+        }
+        plain.commit();
+        shard.commit();
+
+        // 写入时已打开的查询器不会刷新, 同请求结束后重新打开
+        plain.close();
+        shard.close();
+        plain = open(0);
+        shard = open(4);
+    }
+
+    @Override
+    protected void tearDown() throws IOException {
+        plain.close();
+        shard.close();
+        Files.walk(path.toPath())
+             .sorted(Comparator.reverseOrder())
+             .map(Path::toFile)
+             .forEach(File::delete);
+    }
+
+    @Test
+    public void testSearch() throws HongsException {
+        // 按 ID 哈希分布到各分片目录
+        for (int i = 0; i < 4; i ++) {
+            assertTrue(new File(path, "lucene/shard/" + i).isDirectory());
+        }
+
+        // 排序并分页
+        for (int pn = 1; pn <= 4; pn ++) {
+            Map rd = new HashMap();
+            rd.put(Cnst.OB_KEY, Arrays.asList("state", "-ctime"));
+            rd.put(Cnst.RN_KEY, 25);
+            rd.put(Cnst.PN_KEY, pn);
+            assertPage(plain.search(rd), shard.search(rd));
+        }
+
+        // 过滤后排序, 末页不满
+        Map rd = new HashMap();
+        rd.put("state", 1);
+        rd.put(Cnst.OB_KEY, "ctime");
+        rd.put(Cnst.RN_KEY, 30);
+        rd.put(Cnst.PN_KEY, 4);
+        assertPage(plain.search(rd), shard.search(rd));
+
+        // 按 ID 获取
+        rd = new HashMap();
+        rd.put(Cnst.ID_KEY, "ID123");
+        assertEquals(plain.search(rd).get("info"), shard.search(rd).get("info"));
+    }
+
+    @Test
+    public void testStatis() throws HongsException {
+        Map rd = new HashMap();
+        rd.put(Cnst.RB_KEY, Arrays.asList("state", "name"));
+        Map c1 = new StatisHelper(plain).acount(rd);
+        Map c2 = new StatisHelper(shard).acount(rd);
+        assertFalse(c1.isEmpty());
+        assertEquals(flat(c1), flat(c2));
+
+        // 带过滤条件
+        rd.put("state", 2);
+        c1 = new StatisHelper(plain).acount(rd);
+        c2 = new StatisHelper(shard).acount(rd);
+        assertEquals(flat(c1), flat(c2));
+    }
+
+    private static void assertPage(Map r1, Map r2) {
+        assertEquals(ids(r1), ids(r2));
+        assertFalse (ids(r1).isEmpty());
+        assertEquals(((Map) r1.get("page")).get("pages"), ((Map) r2.get("page")).get("pages"));
+        assertEquals(((Map) r1.get("page")).get("count"), ((Map) r2.get("page")).get("count"));
+    }
+
+    private static List ids(Map rs) {
+        List ids = new ArrayList();
+        for (Object o : (List) rs.get("list")) {
+            ids.add(((Map) o).get(Cnst.ID_KEY));
+        }
+        return ids;
+    }
+
+    /**
+     * 统计结果中的数组转为列表, 以便比较
+     */
+    private static Object flat(Object o) {
+        if (o instanceof Object[]) {
+            o = Arrays.asList((Object[]) o);
+        }
+        if (o instanceof Map) {
+            Map m = new HashMap();
+            for (Object x : ((Map) o).entrySet()) {
+                Map.Entry e = (Map.Entry) x;
+                m.put(e.getKey(), flat(e.getValue()));
+            }
+            return m;
+        }
+        if (o instanceof List) {
+            List l = new ArrayList();
+            for (Object x : (List) o) {
+                l.add(flat(x));
+            }
+            return l;
+        }
+        return o;
+    }
+
+    private LuceneRecord open(int shards) {
+        String name = shards > 0 ? "shard" : "plain";
+        return new LuceneRecord(form(shards), path.getAbsolutePath() + "/lucene/" + name, name);
+    }
+
+    private static Map row(int i) {
+        Map row = new HashMap();
+        row.put("name" , "Name " + (i % 7));
+        row.put("state", i % 3);
+        row.put("ctime", 1500000000000L + i);
+        return row;
+    }
+
+    private static Map form(int shards) {
+        Map form = new LinkedHashMap();
+        Map conf = field(null, "listable", "@all");
+        if (shards > 0) {
+            conf.put("db-shards", shards);
+        }
+        form.put("@", conf);
+        form.put(Cnst.ID_KEY, field(Cnst.ID_KEY, "__type__", "string", "sortable", true, "findable", true));
+        form.put("name" , field("name" , "__type__", "string", "findable", true, "statable", true));
+        form.put("state", field("state", "__type__", "int"   , "findable", true, "sortable", true, "statable", true));
+        form.put("ctime", field("ctime", "__type__", "long"  , "findable", true, "sortable", true));
+        return form;
+    }
+
+    private static Map field(String name, Object... kvs) {
+        Map m = new HashMap();
+        if (name != null) {
+            m.put("__name__", name);
+        }
+        for (int i = 0; i < kvs.length; i += 2) {
+            m.put(kvs[i], kvs[i + 1]);
+        }
+        return m;
+    }
+
+}
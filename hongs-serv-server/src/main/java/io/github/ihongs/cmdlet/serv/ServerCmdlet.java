@@ -2,10 +2,12 @@ package io.github.ihongs.cmdlet.serv;
 
 import io.github.ihongs.Core;
 import io.github.ihongs.CoreConfig;
+import io.github.ihongs.CoreLogger;
 import io.github.ihongs.HongsException;
 import io.github.ihongs.HongsExemption;
 import io.github.ihongs.cmdlet.anno.Cmdlet;
 import io.github.ihongs.db.DBConfig;
+import io.github.ihongs.util.Latency;
 import io.github.ihongs.util.reflex.Classes;
 
 import java.io.File;
@@ -16,9 +18,14 @@ import java.util.EventListener;
 import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 import javax.servlet.DispatcherType;
 import javax.servlet.annotation.WebFilter;
@@ -27,11 +34,26 @@ import javax.servlet.annotation.WebListener;
 import javax.servlet.annotation.WebInitParam;
 
 import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.gzip.GzipHandler;
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.component.ContainerLifeCycle;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ThreadPool;
 import org.eclipse.jetty.webapp.WebAppContext;
 import org.eclipse.jetty.servlet.ServletContextHandler;
 
 // Session 初始化依赖的类
 import org.eclipse.jetty.server.session.SessionHandler;
+import org.eclipse.jetty.server.session.SessionCache;
+import org.eclipse.jetty.server.session.SessionContext;
+import org.eclipse.jetty.server.session.SessionData;
+import org.eclipse.jetty.server.session.SessionDataStore;
+import org.eclipse.jetty.server.session.AbstractSessionDataStore;
 import org.eclipse.jetty.server.session.DatabaseAdaptor;
 import org.eclipse.jetty.server.session.DefaultSessionCache;
 import org.eclipse.jetty.server.session.DefaultSessionIdManager;
@@ -48,6 +70,31 @@ import org.apache.tomcat.SimpleInstanceManager;
 
 /**
  * 服务启动命令
+ *
+ * <h3>配置选项(defines):</h3>
+ * <pre>
+ * jetty.pool.min           最少线程数, 默认为 8
+ * jetty.pool.max           最多线程数, 默认为 200
+ * jetty.pool.idle          空闲线程回收毫秒数, 默认为 60000
+ * jetty.pool.virtual       使用虚拟线程(JDK 21+), 默认为 false, 此时忽略以上设置
+ * jetty.accept.queue       连接等待队列长度, 默认为 0 即系统默认
+ * jetty.h2c                启用明文 HTTP/2, 默认为 false
+ * jetty.gzip               启用 gzip 压缩, 默认为 false
+ * jetty.gzip.min.size      最小压缩字节数, 默认为 1024
+ * jetty.gzip.mime.types    压缩的类型, 逗号分隔, 默认为 Jetty 的设置(文本, JSON, JS 等)
+ * jetty.static.mapped      静态文件使用内存映射, 默认为 false, Windows 下会锁定文件
+ * jetty.static.cache.size  静态文件缓存字节数, 默认为 0 即不缓存
+ * jetty.static.cache.file  缓存的单个文件最大字节数, 默认为 1048576
+ * jetty.static.cache.control 静态文件的 Cache-Control, 默认不设置
+ * jetty.session.cache.evict 会话缓存的闲置逐出秒数, 默认为 -1 即常驻内存, 在会话清理时执行,
+ *                          不可为 0 (请求结束即逐出), 同一会话的并发请求会出错
+ * jetty.session.cache.save.on.evict  逐出前是否写入存储, 默认为 false
+ * jetty.session.cache.save.on.create 新建即写入存储, 默认为 false
+ * jetty.session.cache.remove.unloadable 删除无法读取的会话, 默认为 false
+ * jetty.session.save.period 会话未修改时的最短写入间隔秒数, 默认为 0 即每次请求都写,
+ *                          大于 0 则仅在修改后或超过间隔时才写, 应小于会话超时时间
+ * </pre>
+ *
  * @author Hongs
  */
 @Cmdlet("server")
@@ -90,24 +137,25 @@ public class ServerCmdlet {
          */
         Core.ACTION_NAME.remove();
 
+        CoreConfig cc = CoreConfig.getInstance("defines");
+
         // 构建应用
         Server        server;
         WebAppContext webapp;
         webapp = new  WebAppContext();
-        server = new  Server ( port );
+        server = new  Server (getPool(cc));
+        server.addConnector  (getConnector(server, port, cc));
         webapp.setDescriptor ( conf );
         webapp.setContextPath (Core.BASE_HREF);
         webapp.setResourceBase(Core.BASE_PATH);
         webapp.setParentLoaderPriority              (true);
         webapp.setThrowUnavailableOnStartupException(true);
-        server.setHandler    (webapp);
+        server.setHandler    (getHandler(webapp, cc));
 
         String x;
 
         // 默认微调
-        x = org.eclipse.jetty.servlet.DefaultServlet.CONTEXT_INIT;
-        webapp.setInitParameter(x+"useFileMappedBuffer", "false");
-        webapp.setInitParameter(x+"dirAllowed"         , "false");
+        setStatic(webapp, cc);
 
         /**
          * 初始设置
@@ -115,7 +163,7 @@ public class ServerCmdlet {
          * 可能需要替换 JSP 解析器或 Session 容器
          * 可以设置 jetty.init 来注入 Initer 对象
          */
-        x = CoreConfig.getInstance("defines").getProperty( "jetty.init" );
+        x = cc.getProperty( "jetty.init" );
         if (null !=  x) {
             String[] a = x.split(";");
             for ( String n  : a ) {
@@ -163,6 +211,277 @@ public class ServerCmdlet {
         }
     }
 
+    /**
+     * 构建线程池
+     * @param cc
+     * @return
+     */
+    public static ThreadPool getPool(CoreConfig cc) {
+        if (cc.getProperty("jetty.pool.virtual", false)) {
+            try {
+                ExecutorService es = (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke   (null);
+                return new Looms(es);
+            } catch (ReflectiveOperationException e) {
+                CoreLogger.error("Virtual threads require JDK 21+, use the queued thread pool");
+            }
+        }
+
+        QueuedThreadPool tp = new QueuedThreadPool(
+            cc.getProperty("jetty.pool.max" , 200  ),
+            cc.getProperty("jetty.pool.min" , 8    ),
+            cc.getProperty("jetty.pool.idle", 60000)
+        );
+        tp.setName("jetty-pool");
+        return tp;
+    }
+
+    /**
+     * 构建连接器
+     * @param server
+     * @param port
+     * @param cc
+     * @return
+     */
+    public static ServerConnector getConnector(Server server, int port, CoreConfig cc) {
+        HttpConfiguration hc = new HttpConfiguration();
+        ServerConnector   sc ;
+        if (cc.getProperty("jetty.h2c", false)) {
+            sc = new ServerConnector(server,
+                 new HttpConnectionFactory(hc),
+                 new HTTP2CServerConnectionFactory(hc));
+        } else {
+            sc = new ServerConnector(server,
+                 new HttpConnectionFactory(hc));
+        }
+        sc.setPort(port);
+        sc.setAcceptQueueSize(cc.getProperty("jetty.accept.queue", 0));
+        return sc;
+    }
+
+    /**
+     * 包装处理器
+     * 按需加上 gzip 压缩
+     * @param handler
+     * @param cc
+     * @return
+     */
+    public static Handler getHandler(Handler handler, CoreConfig cc) {
+        if (! cc.getProperty("jetty.gzip", false)) {
+            return handler;
+        }
+
+        GzipHandler gh = new GzipHandler();
+        gh.setMinGzipSize(cc.getProperty("jetty.gzip.min.size", 1024));
+        String mt = cc.getProperty("jetty.gzip.mime.types", "");
+        if (! mt.isEmpty()) {
+            gh.setIncludedMimeTypes(mt.split("\\s*,\\s*"));
+        }
+        gh.setHandler(handler);
+        return gh;
+    }
+
+    /**
+     * 静态文件设置
+     * @param sc
+     * @param cc
+     */
+    public static void setStatic(ServletContextHandler sc, CoreConfig cc) {
+        String x = org.eclipse.jetty.servlet.DefaultServlet.CONTEXT_INIT;
+        sc.setInitParameter(x+"dirAllowed"         , "false");
+        sc.setInitParameter(x+"useFileMappedBuffer", cc.getProperty("jetty.static.mapped", "false"));
+
+        int cs = cc.getProperty("jetty.static.cache.size", 0);
+        if (cs > 0) {
+            sc.setInitParameter(x+"maxCacheSize"     , String.valueOf(cs));
+            sc.setInitParameter(x+"maxCachedFileSize", cc.getProperty("jetty.static.cache.file", "1048576"));
+            sc.setInitParameter(x+"etags"            , "true");
+        }
+        String cl = cc.getProperty("jetty.static.cache.control", "");
+        if (! cl.isEmpty()) {
+            sc.setInitParameter(x+"cacheControl"     , cl);
+        }
+    }
+
+    /**
+     * 构建会话缓存
+     * 在文件或数据库存储前加一层内存缓存, 仅在加载, 逐出和写回时访问存储
+     * @param sh
+     * @param sd 文件或数据库存储
+     * @param cc
+     * @return
+     */
+    public static SessionCache getCache(SessionHandler sh, AbstractSessionDataStore sd, CoreConfig cc) {
+        sd.setSavePeriodSec(cc.getProperty("jetty.session.save.period", 0));
+
+        /**
+         * 请求结束即逐出(EVICT_ON_SESSION_EXIT)时,
+         * 同一会话的并发请求会取到已逐出的会话而报错,
+         * 故不接受 0, 需要尽快逐出可设为 1 秒.
+         */
+        int ev = cc.getProperty("jetty.session.cache.evict", SessionCache.NEVER_EVICT);
+        if (ev == SessionCache.EVICT_ON_SESSION_EXIT) {
+            throw new HongsExemption("Wrong jetty.session.cache.evict 0, concurrent requests on one session will fail, use 1 or more!");
+        }
+
+        DefaultSessionCache ch = new DefaultSessionCache(sh);
+        ch.setEvictionPolicy         (ev);
+        ch.setSaveOnInactiveEviction (cc.getProperty("jetty.session.cache.save.on.evict" , false));
+        ch.setSaveOnCreate           (cc.getProperty("jetty.session.cache.save.on.create", false));
+        ch.setRemoveUnloadableSessions(cc.getProperty("jetty.session.cache.remove.unloadable", false));
+        ch.setSessionDataStore(new Tally(sd));
+        SESSION_CACHE = ch;
+        return ch;
+    }
+
+    /**
+     * 会话统计
+     * 存储的读写耗时另计入 Latency 的 session:load, session:store
+     * @return
+     */
+    public static Map getSessionStats() {
+        Map map = new LinkedHashMap();
+        DefaultSessionCache ch = SESSION_CACHE;
+        if (ch != null) {
+            map.put("current", ch.getSessionsCurrent());
+            map.put("max"    , ch.getSessionsMax());
+            map.put("total"  , ch.getSessionsTotal());
+        }
+        map.put("loads"  , Tally.LOADS  .sum());
+        map.put("misses" , Tally.MISSES .sum());
+        map.put("stores" , Tally.STORES .sum());
+        map.put("deletes", Tally.DELETES.sum());
+        return map;
+    }
+
+    private static volatile DefaultSessionCache SESSION_CACHE = null;
+
+    /**
+     * 会话存储计数
+     * 缓存未命中才会加载, 故 loads 即存储的读取次数
+     */
+    private static class Tally extends ContainerLifeCycle implements SessionDataStore {
+
+        static final LongAdder LOADS   = new LongAdder();
+        static final LongAdder MISSES  = new LongAdder();
+        static final LongAdder STORES  = new LongAdder();
+        static final LongAdder DELETES = new LongAdder();
+
+        private final SessionDataStore sd;
+
+        public Tally(SessionDataStore sd) {
+            this.sd = sd;
+            addBean(sd, true);
+        }
+
+        @Override
+        public void initialize(SessionContext context) throws Exception {
+            sd.initialize(context);
+        }
+
+        @Override
+        public SessionData load(String id) throws Exception {
+            long tm = Latency.start();
+            try {
+                SessionData da = sd.load(id);
+                if (da == null) {
+                    MISSES.increment();
+                }
+                return da;
+            } finally {
+                LOADS.increment();
+                Latency.record("session:load", tm);
+            }
+        }
+
+        @Override
+        public void store(String id, SessionData data) throws Exception {
+            // 未修改且未到写入间隔时存储内部会跳过, 仅计实际写入
+            long ls = data.getLastSaved();
+            long tm = Latency.start();
+            try {
+                sd.store(id, data);
+            } finally {
+                if (ls != data.getLastSaved()) {
+                    STORES.increment();
+                    Latency.record("session:store", tm);
+                }
+            }
+        }
+
+        @Override
+        public boolean delete(String id) throws Exception {
+            DELETES.increment();
+            return sd.delete(id);
+        }
+
+        @Override
+        public SessionData newSessionData(String id, long created, long accessed, long lastAccessed, long maxInactiveMs) {
+            return sd.newSessionData(id, created, accessed, lastAccessed, maxInactiveMs);
+        }
+
+        @Override
+        public Set<String> getExpired(Set<String> candidates) {
+            return sd.getExpired(candidates);
+        }
+
+        @Override
+        public boolean isPassivating() {
+            return sd.isPassivating();
+        }
+
+        @Override
+        public boolean exists(String id) throws Exception {
+            return sd.exists(id);
+        }
+
+    }
+
+    /**
+     * 虚拟线程池
+     * 每个任务一个虚拟线程, 无需设置数量
+     */
+    private static class Looms extends AbstractLifeCycle implements ThreadPool {
+
+        private final ExecutorService es;
+
+        public Looms(ExecutorService es) {
+            this.es = es;
+        }
+
+        @Override
+        public void execute(Runnable r) {
+            es.execute(r);
+        }
+
+        @Override
+        public void join() throws InterruptedException {
+            es.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int getThreads() {
+            return 0;
+        }
+
+        @Override
+        public int getIdleThreads() {
+            return 0;
+        }
+
+        @Override
+        public boolean isLowOnThreads() {
+            return false;
+        }
+
+        @Override
+        protected void doStop() throws Exception {
+            es.shutdown();
+        }
+
+    }
+
     private static class Stoper extends Thread {
 
         private final Server server;
@@ -254,10 +573,9 @@ public class ServerCmdlet {
             sv.setSessionIdManager (im);
 
             SessionHandler          sh = sc . getSessionHandler  (  );
-            DefaultSessionCache     ch = new DefaultSessionCache (sh);
             FileSessionDataStore    sd = new FileSessionDataStore(  );
             sd.setStoreDir         (dh);
-            ch.setSessionDataStore (sd);
+            SessionCache            ch = getCache(sh, sd, cc);
             sh.setSessionCache     (ch);
             sc.setSessionHandler   (sh);
         }
@@ -280,10 +598,9 @@ public class ServerCmdlet {
             sv.setSessionIdManager (im);
 
             SessionHandler          sh = sc . getSessionHandler  (  );
-            DefaultSessionCache     ch = new DefaultSessionCache (sh);
             JDBCSessionDataStore    sd = new JDBCSessionDataStore(  );
             sd.setDatabaseAdaptor  (getAdaptor(dh));
-            ch.setSessionDataStore (sd);
+            SessionCache            ch = getCache(sh, sd, cc);
             sh.setSessionCache     (ch);
             sc.setSessionHandler   (sh);
         }
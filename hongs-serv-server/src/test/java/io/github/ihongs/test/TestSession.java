@@ -0,0 +1,250 @@
+package io.github.ihongs.test;
+
+import io.github.ihongs.CoreConfig;
+import io.github.ihongs.HongsExemption;
+import io.github.ihongs.cmdlet.serv.ServerCmdlet;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import junit.framework.TestCase;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.session.DefaultSessionIdManager;
+import org.eclipse.jetty.server.session.FileSessionDataStore;
+import org.eclipse.jetty.server.session.SessionCache;
+import org.eclipse.jetty.server.session.SessionData;
+import org.eclipse.jetty.server.session.SessionHandler;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.junit.Test;
+
+/**
+ * 同一会话的并发请求经会话缓存读写
+ * @author Hongs
+ */
+public class TestSession extends TestCase {
+
+    private static final int THREADS = 8;
+    private static final int LOOPS   = 20;
+
+    private File   path;
+    private Server server;
+    private FileSessionDataStore store;
+    private String cookie;
+    private String sessid;
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (server != null) {
+            server.stop();
+        }
+        if (path != null) {
+            Files.walk(path.toPath())
+                 .sorted(Comparator.reverseOrder())
+                 .map(Path::toFile)
+                 .forEach(File::delete);
+        }
+    }
+
+    /**
+     * 常驻内存, 仅写回存储
+     */
+    @Test
+    public void testNeverEvict() throws Exception {
+        start(SessionCache.NEVER_EVICT);
+        Map st0 = ServerCmdlet.getSessionStats();
+        Set<String> ks = burst();
+        Map st1 = ServerCmdlet.getSessionStats();
+
+        // 全部命中缓存, 不读存储
+        assertEquals(0L, delta(st0, st1, "loads" ));
+        assertEquals(0L, delta(st0, st1, "misses"));
+        long ss = delta(st0, st1, "stores");
+        assertTrue("stores: " + ss, ss >= 1 && ss <= THREADS * LOOPS + 1);
+        assertStored(ks);
+    }
+
+    /**
+     * 闲置逐出, 逐出前写回, 下次请求重新读取
+     */
+    @Test
+    public void testIdleEvict() throws Exception {
+        start(1);
+        Map st0 = ServerCmdlet.getSessionStats();
+        Set<String> ks = burst();
+        Map st1 = ServerCmdlet.getSessionStats();
+
+        // 请求期间不会逐出
+        assertEquals(0L, delta(st0, st1, "loads" ));
+        assertEquals(0L, delta(st0, st1, "misses"));
+
+        // 闲置超时后逐出
+        for (int i = 0; i < 50 && ((Number) st1.get("current")).intValue() > 0; i ++) {
+            Thread.sleep(100);
+            st1 = ServerCmdlet.getSessionStats();
+        }
+        assertEquals(0, ((Number) st1.get("current")).intValue());
+        assertStored(ks);
+
+        // 再次请求从存储读取, 属性仍在
+        String[] rs = fetch(null);
+        Map st2 = ServerCmdlet.getSessionStats();
+        assertEquals(1L, delta(st1, st2, "loads" ));
+        assertEquals(0L, delta(st1, st2, "misses"));
+        assertEquals(ks, new HashSet(Arrays.asList(rs[1].split(","))));
+    }
+
+    /**
+     * 请求结束即逐出时同一会话的并发请求会出错, 不可设置
+     */
+    @Test
+    public void testEvictOnExit() throws Exception {
+        try {
+            start(SessionCache.EVICT_ON_SESSION_EXIT);
+            fail("Must throw");
+        } catch (HongsExemption e) {
+            assertTrue(e.getMessage().contains("jetty.session.cache.evict"));
+        }
+    }
+
+    private void start(int evict) throws Exception {
+        path = Files.createTempDirectory("sess").toFile();
+
+        CoreConfig cc = new CoreConfig(null);
+        cc.setProperty("jetty.session.cache.evict", String.valueOf(evict));
+        cc.setProperty("jetty.session.cache.save.on.evict", "true");
+
+        server = new Server(0);
+        DefaultSessionIdManager im = new DefaultSessionIdManager(server);
+        im.setWorkerName("test");
+        server.setSessionIdManager(im);
+
+        ServletContextHandler sc = new ServletContextHandler(ServletContextHandler.SESSIONS);
+        SessionHandler sh = sc.getSessionHandler();
+        store = new FileSessionDataStore();
+        store.setStoreDir(path);
+        sh.setSessionCache(ServerCmdlet.getCache(sh, store, cc));
+        sc.addServlet(new ServletHolder(new Echo()), "/*");
+        server.setHandler(sc);
+        server.start();
+
+        // 建立会话
+        String[] rs = fetch("init");
+        sessid = rs[0];
+        assertNotNull(cookie);
+    }
+
+    /**
+     * 多线程在同一会话上各自设置属性
+     * @return 全部属性名
+     */
+    private Set<String> burst() throws Exception {
+        ExecutorService es = Executors.newFixedThreadPool(THREADS);
+        List<Future> fs = new ArrayList();
+        Set<String>  ks = Collections.synchronizedSet(new HashSet());
+        ks.add("init");
+        try {
+            for (int i = 0; i < THREADS; i ++) {
+                final int t = i;
+                fs.add(es.submit(() -> {
+                    for (int j = 0; j < LOOPS; j ++) {
+                        String k = "t" + t + "-" + j;
+                        fetch(k);
+                        ks.add(k);
+                    }
+                    return null;
+                }));
+            }
+            for (Future f : fs) {
+                f.get();
+            }
+        } finally {
+            es.shutdown();
+        }
+
+        // 属性不可丢失
+        String[] rs = fetch(null);
+        assertEquals(sessid, rs[0]);
+        assertEquals(ks, new HashSet(Arrays.asList(rs[1].split(","))));
+        return ks;
+    }
+
+    /**
+     * 写回在响应之后, 需稍等
+     */
+    private void assertStored(Set<String> ks) throws Exception {
+        Set<String> ns = null;
+        for (int i = 0; i < 50; i ++) {
+            SessionData sd = store.load(sessid);
+            ns = sd != null ? sd.getKeys() : null;
+            if (ks.equals(ns)) {
+                return;
+            }
+            Thread.sleep(100);
+        }
+        assertEquals(ks, ns);
+    }
+
+    private String[] fetch(String k) throws IOException {
+        URL u = new URL("http://127.0.0.1:" + ((ServerConnector) server.getConnectors()[0]).getLocalPort()
+              + "/" + (k != null ? "?k=" + k : ""));
+        HttpURLConnection c = (HttpURLConnection) u.openConnection();
+        if (cookie != null) {
+            c.setRequestProperty("Cookie", cookie);
+        }
+        assertEquals(200, c.getResponseCode());
+        String s = c.getHeaderField("Set-Cookie");
+        if (s != null && cookie == null) {
+            cookie = s.split(";", 2)[0];
+        }
+        try (InputStream in = c.getInputStream()) {
+            byte[] b = new byte[65536];
+            int    n = 0 , m;
+            while ((m = in.read(b, n, b.length - n)) > 0) {
+                n += m;
+            }
+            return new String(b, 0, n, StandardCharsets.UTF_8).split("\n", 2);
+        }
+    }
+
+    private static long delta(Map st0, Map st1, String key) {
+        return ((Number) st1.get(key)).longValue() - ((Number) st0.get(key)).longValue();
+    }
+
+    public static class Echo extends HttpServlet {
+
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse rsp) throws IOException {
+            HttpSession ss = req.getSession(true);
+            String k = req.getParameter("k");
+            if (k != null) {
+                ss.setAttribute(k, k);
+            }
+            List<String> ns = Collections.list(ss.getAttributeNames());
+            rsp.setContentType("text/plain");
+            rsp.getWriter().print(ss.getId() + "\n" + String.join(",", ns));
+        }
+
+    }
+
+}
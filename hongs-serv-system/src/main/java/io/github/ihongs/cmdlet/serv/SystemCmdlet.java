@@ -8,6 +8,7 @@ import io.github.ihongs.cmdlet.CmdletHelper;
 import io.github.ihongs.cmdlet.CmdletRunner;
 import io.github.ihongs.cmdlet.anno.Cmdlet;
 import io.github.ihongs.db.DB;
+import io.github.ihongs.db.util.SqlReader;
 import io.github.ihongs.util.Synt;
 
 import java.io.File;
@@ -16,8 +17,9 @@ import java.io.BufferedReader;
 import java.io.FileInputStream;
 import java.io.InputStreamReader;
 import java.io.ByteArrayOutputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -59,12 +61,25 @@ import org.xml.sax.SAXException;
  * day.cmd.xml 每天的0时执行
  * </pre>
  *
+ * <p>
+ * .sql 文件为流式逐条读取, 可在注释中设置:
+ * </p>
+ * <pre>
+ * -- DB: 库名, 默认为文件名去掉前缀和扩展名
+ * -- DT: 时间偏移, 用于语句中的 {{时间格式}}
+ * -- TX: 每块条数, 默认取 --chunk 选项(500), 为 0 则逐条自动提交
+ * </pre>
+ * <p>
+ * 连续的 INSERT/UPDATE/DELETE/REPLACE 按块批量执行并在同一事务中提交,
+ * 块内出错则回滚后逐条重试, 仅跳过出错的语句, 错误附带起始行号.
+ * </p>
+ *
  * @author Hongs
  */
 @Cmdlet("system")
 public class SystemCmdlet {
 
-    private static final Pattern SQL_CMN_PAT = Pattern.compile("--.*?[\r\n]");
+    private static final Pattern SQL_DML_PAT = Pattern.compile("(INSERT|UPDATE|DELETE|REPLACE)\\b", Pattern.CASE_INSENSITIVE);
     private static final Pattern SQL_SET_PAT = Pattern.compile("--\\s*(\\S+):\\s*(\\S+)");
     private static final Pattern TIM_VAR_PAT = Pattern.compile("\\{\\{(.+?)(\\|(.+?))?\\}\\}");
     private static final Pattern TIM_FMT_PAT = Pattern.compile("([\\-\\+])(\\d+Y)?(\\d+M)?(\\d+w)?(\\d+d)?(\\d+h)?(\\d+m)?(\\d+s)?$");
@@ -110,7 +125,7 @@ public class SystemCmdlet {
     @Cmdlet("__main__")
     public static void exec (String[] args) throws HongsException {
         Map<String, Object> opts;
-        opts = CmdletHelper.getOpts(args, "date:s", "!A");
+        opts = CmdletHelper.getOpts(args, "date:s", "chunk:i", "!A");
         args = ( String[] ) opts.remove("");
         if ( 0 == args.length ) {
             System.err.println("Serve name required!");
@@ -120,6 +135,7 @@ public class SystemCmdlet {
         String fn = args[0];
         File   fu = new File(fn);
         Date   dt = new Date(  );
+        int    cs = Synt.declare(opts.get("chunk"), 500);
 
         // 日期参数
         if (opts.containsKey("date")) {
@@ -160,7 +176,7 @@ public class SystemCmdlet {
             String fm = fo.getName();
             try {
                 if (fm.endsWith(".sql"/**/)) {
-                    runSql(dt, fo /**/);
+                    runSql(dt, fo, cs);
                 } else
                 if (fm.endsWith(".cmd.xml")) {
                     runCmd(dt, fo, lgr);
@@ -178,34 +194,32 @@ public class SystemCmdlet {
         }
     }
 
-    private static void runSql(Date dt, File fo)
+    private static void runSql(Date dt, File fo, int cs)
             throws HongsException {
-        // 读取代码
-        String sql;
-        byte[] buf;
-        try {
-            FileInputStream in = new FileInputStream(fo);
-            buf = new byte [in.available()];
-                            in.read( buf ) ;
-            sql = new String(buf, "UTF-8") ;
-        } catch (FileNotFoundException ex) {
-            throw new HongsException ( ex);
-        } catch (IOException ex) {
-            throw new HongsException ( ex);
-        }
-
-        // 解析配置
+        // 解析配置, 仅需逐行扫描
         Date    dzt = null;
         String  dbn = null;
-        Matcher mat = SQL_SET_PAT.matcher(sql);
-        while ( mat.find() ) {
-            String key = mat.group(1);
-            if ("DB".equals(key)) {
-                dbn = /****/ mat.group(2).trim(/***/);
-            } else
-            if ("DT".equals(key)) {
-                dzt = getTim(mat.group(2).trim(), dt);
+        try (
+            BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(fo), "UTF-8"));
+        ) {
+            String ln;
+            while ((ln = br.readLine()) != null) {
+                Matcher mat = SQL_SET_PAT.matcher(ln);
+                while ( mat.find() ) {
+                    String key = mat.group(1);
+                    if ("DB".equals(key)) {
+                        dbn = /****/ mat.group(2).trim(/***/);
+                    } else
+                    if ("DT".equals(key)) {
+                        dzt = getTim(mat.group(2).trim(), dt);
+                    } else
+                    if ("TX".equals(key)) {
+                        cs  = Synt.declare(mat.group(2).trim(), cs);
+                    }
+                }
             }
+        } catch (IOException ex) {
+            throw new HongsException(ex);
         }
         if (dzt == null) {
             dzt  = dt;
@@ -216,37 +230,143 @@ public class SystemCmdlet {
                      .replaceFirst("^[^\\.]+\\.", ""); // 去掉前缀名
         }
 
-        // 清理注释
-        sql = SQL_CMN_PAT.matcher(sql).replaceAll("");
-
-        // 设置时间
-        sql = repTim ( sql, dzt );
-
         CmdletHelper.println("Run '" + fo.getName() + "' for '" + dbn + "'");
 
-        // 逐条执行
-        String[] a = sql.split(";\\s*[\r\n]");
         DB   db = DB.getInstance(dbn);
-        long st = System.currentTimeMillis( );
-        int  al = a.length;
-        int  ok = 0;
-        int  er = 0;
-        for(String s : a) {
-            s = s.trim( );
+        long fl = fo.length();
+        long pt = 0 ;
+        int  ok = 0 ;
+        int  er = 0 ;
+        List<String > bs = new ArrayList(); // 批量语句
+        List<Integer> bl = new ArrayList(); // 批量行号
+        List<String > es = new ArrayList(); // 错误信息
+
+        // 逐条读取执行, DML 按块批量执行并提交
+        try (
+            FileInputStream in = new FileInputStream(fo);
+            SqlReader rd = new SqlReader(new BufferedReader(new InputStreamReader(in, "UTF-8")));
+        ) {
+            db.ready();
+            Statement st = db.createStatement();
             try {
-                if (0 < s.length()) {
-                    db.execute( s );
+                String s;
+                while ((s = rd.next()) != null) {
+                    s = repTim(s, dzt);
+                    int ln = rd.getLine();
+
+                    if (cs > 0 && SQL_DML_PAT.matcher(s).lookingAt()) {
+                        if (bs.isEmpty()) {
+                            db.begin();
+                        }
+                        st.addBatch(s);
+                        bs.add(s );
+                        bl.add(ln);
+                        if (bs.size() >= cs) {
+                            int e = runSql(db, st, fo, bs, bl, es);
+                            ok += bs.size() - e;
+                            er += e;
+                            bs.clear();
+                            bl.clear();
+                        }
+                    } else {
+                        if (! bs.isEmpty()) {
+                            int e = runSql(db, st, fo, bs, bl, es);
+                            ok += bs.size() - e;
+                            er += e;
+                            bs.clear();
+                            bl.clear();
+                        }
+                        try {
+                            db.execute(s);
+                            ok += 1;
+                        } catch (HongsException ex) {
+                            er += runErr(fo, ln, ex, es);
+                        }
+                    }
+
+                    // 每秒最多刷新一次进度
+                    long nt = System.currentTimeMillis();
+                    if (nt - pt >= 1000) {
+                        pt  = nt;
+                        CmdletHelper.progres(String.format("Ok(%d) Er(%d)", ok, er),
+                            fl > 0 ? (float) in.getChannel().position() / fl * 100 : 100);
+                    }
                 }
-                CmdletHelper.progres(st, al, ++ok,er);
-            } catch ( HongsException ex) {
-                CmdletHelper.progres(st, al, ok,++er);
-                if (Core.DEBUG > 0) {
-                    CmdletHelper.progres( );
-                    throw ex;
+
+                if (! bs.isEmpty()) {
+                    int e = runSql(db, st, fo, bs, bl, es);
+                    ok += bs.size() - e;
+                    er += e;
                 }
+            } finally {
+                db.closeStatement(st);
             }
+        } catch (IOException | SQLException ex) {
+            CmdletHelper.progres( );
+            throw new HongsException(ex);
+        } catch (HongsException | HongsExemption ex) {
+            CmdletHelper.progres( );
+            throw ex;
         }
+
+        CmdletHelper.progres(String.format("Ok(%d) Er(%d)", ok, er), 100);
         CmdletHelper.progres( );
+
+        // 列出错误的行号
+        for (String e : es) {
+            CmdletHelper.println(e);
+        }
+        if (er > es.size()) {
+            CmdletHelper.println("... " + (er - es.size()) + " more errors");
+        }
+    }
+
+    /**
+     * 执行一块批量语句并提交, 失败则回滚后逐条重试
+     * @return 错误条数
+     */
+    private static int runSql(DB db, Statement st, File fo, List<String> bs, List<Integer> bl, List<String> es)
+            throws HongsException {
+        try {
+            st.executeBatch();
+            db.commit( );
+            return 0 ;
+        } catch (SQLException ex) {
+            db.revert( );
+            try {
+                st.clearBatch();
+            } catch (SQLException ez) {
+                throw new HongsException(ez);
+            }
+        }
+
+        // 逐条重试, 仅跳过出错的语句
+        int er = 0;
+        for (int i = 0; i < bs.size(); i ++) {
+            try {
+                db.execute(bs.get(i));
+            } catch (HongsException ex) {
+                er += runErr(fo, bl.get(i), ex, es);
+            }
+        }
+        return er;
+    }
+
+    /**
+     * 记录错误, 调试模式下直接抛出
+     * @return 1
+     */
+    private static int runErr(File fo, int ln, HongsException ex, List<String> es)
+            throws HongsException {
+        String  msg = "'" + fo.getName() + "' line " + ln + ": " + ex.getMessage();
+        if (Core.DEBUG > 0) {
+            throw new HongsException(msg, ex);
+        }
+        CoreLogger.error(msg);
+        if (es.size( ) < 100) {
+            es.add(msg);
+        }
+        return 1;
     }
 
     private static void runCmd(Date dt, File fo, Looker lg)
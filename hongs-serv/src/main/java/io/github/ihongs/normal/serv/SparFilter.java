@@ -3,6 +3,7 @@ package io.github.ihongs.normal.serv;
 import io.github.ihongs.Core;
 import io.github.ihongs.action.ActionDriver;
 import io.github.ihongs.action.PasserHelper;
+import io.github.ihongs.action.RouteCache;
 import io.github.ihongs.util.Synt;
 import java.io.File;
 import java.io.IOException;
@@ -31,6 +32,7 @@ public class SparFilter implements Filter {
 
     private PasserHelper ignore;
     private Set<String>  access;
+    private RouteCache<String> routes;
 
     @Override
     public void init(FilterConfig cnf) throws ServletException {
@@ -44,10 +46,17 @@ public class SparFilter implements Filter {
         if (access == null) {
             access  = getWelcomeFileList(cnf.getServletContext().getContextPath());
         }
+
+        // 路由缓存, 文件有增删时清空
+        routes = new RouteCache(Core.BASE_PATH);
     }
 
     @Override
     public void destroy() {
+        if (this.routes != null) {
+            this.routes.close();
+            this.routes = null;
+        }
         this.ignore = null;
         this.access = null;
     }
@@ -63,6 +72,21 @@ public class SparFilter implements Filter {
             return;
         }
 
+        String uri = routes.get(url, this::route);
+        if (! uri.isEmpty()) {
+            raq.getRequestDispatcher(uri).forward(req, rsp);
+            return;
+        }
+
+        fc.doFilter(req, rsp);
+    }
+
+    /**
+     * 解析路由
+     * @param url
+     * @return 需转发的索引文件, 空串表示无需转发
+     */
+    private String route(String url) {
         String uri;
         File   src;
 
@@ -70,16 +94,14 @@ public class SparFilter implements Filter {
         if (! url.endsWith("/") ) {
             src = new File(Core.BASE_PATH + url);
             if (src.isFile()) {
-                fc.doFilter(req, rsp);
-                return;
+                return "";
             }
 
             for (String idx : access) {
                 uri = url +"/"+ idx;
                 src = new File(Core.BASE_PATH + uri);
                 if (src.isFile()) {
-                    fc.doFilter(req, rsp);
-                    return;
+                    return "";
                 }
             }
         } else {
@@ -87,8 +109,7 @@ public class SparFilter implements Filter {
                 uri = url   +   idx;
                 src = new File(Core.BASE_PATH + uri);
                 if (src.isFile()) {
-                    fc.doFilter(req, rsp);
-                    return;
+                    return "";
                 }
             }
         }
@@ -102,13 +123,12 @@ public class SparFilter implements Filter {
                 uri = url +"/"+ idx;
                 src = new File(Core.BASE_PATH + uri);
                 if (src.isFile()) {
-                    raq.getRequestDispatcher(uri).forward(req, rsp);
-                    return;
+                    return uri;
                 }
             }
         }
 
-        fc.doFilter(req, rsp);
+        return "";
     }
 
     private static Set<String> getWelcomeFileList(String WEBDIR) throws ServletException {
@@ -116,6 +116,32 @@ public class InfoAction {
         if ( rb != null && rb.contains("lock_info")) {
             rsp.put("lock_map", io.github.ihongs.util.reflex.Block.counts());
         }
+        if ( rb != null && rb.contains("lock_stat")) {
+            rsp.put("lock_stat", io.github.ihongs.util.reflex.Block.stats());
+        }
+        if ( rb != null && rb.contains("db_cache")) {
+            rsp.put("db_cache", io.github.ihongs.db.util.FetchCache.getStats());
+        }
+        if ( rb != null && rb.contains("lucene_cache")) {
+            // 检索模块为可选, 故按类名调取
+            try {
+                rsp.put("lucene_cache", Class.forName("io.github.ihongs.dh.lucene.HitsCache").getMethod("getStats").invoke(null));
+            } catch (ClassNotFoundException e) {
+                // 未引入检索模块
+            } catch (ReflectiveOperationException e) {
+                throw new HongsException(e);
+            }
+        }
+        if ( rb != null && rb.contains("session_cache")) {
+            // 内置服务为可选, 故按类名调取
+            try {
+                rsp.put("session_cache", Class.forName("io.github.ihongs.cmdlet.serv.ServerCmdlet").getMethod("getSessionStats").invoke(null));
+            } catch (ClassNotFoundException e) {
+                // 未引入服务模块
+            } catch (ReflectiveOperationException e) {
+                throw new HongsException(e);
+            }
+        }
 
         helper.reply("", rsp);
     }
@@ -0,0 +1,40 @@
+package io.github.ihongs.serv.centra;
+
+import io.github.ihongs.HongsException;
+import io.github.ihongs.action.ActionHelper;
+import io.github.ihongs.action.anno.Action;
+import io.github.ihongs.action.anno.Permit;
+import io.github.ihongs.util.Latency;
+import io.github.ihongs.util.Synt;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 耗时统计
+ *
+ * 请求参数说明:
+ * 参数 pf 为名称前缀, 如 action:, db:, lucene:
+ * 参数 rs 为 1 时取出后清空统计
+ *
+ * @author Hongs
+ */
+@Action("common/stats")
+public class StatsAction {
+
+    @Action("__main__")
+    @Permit(conf="manage", role={"centra/manage/info"})
+    public void stats(ActionHelper helper) throws HongsException {
+        String  pf = helper.getParameter("pf");
+        boolean rs = Synt.declare(helper.getParameter("rs"), false);
+
+        Map rsp = new HashMap();
+        rsp.put("enable", Latency.isEnable());
+        rsp.put("list"  , Latency.stats(pf));
+        if (rs) {
+            Latency.reset();
+        }
+
+        helper.reply("", rsp);
+    }
+
+}
@@ -0,0 +1,24 @@
+@echo off
+
+set CURR_PATH=%~DP0
+set CORE_PATH=%CURR_PATH%..
+set JAVA_PATH=%JAVA_HOME%\bin\java
+set KLASSPATH=%CORE_PATH%\lib\*;%CORE_PATH%\classes;%CORE_PATH%\lib\classes
+if "%HDC_PORT%"=="" set HDC_PORT=18080
+set HDC_KEYF=%CORE_PATH%\var\server\daemon-%HDC_PORT%.key
+
+if not exist "%HDC_KEYF%" goto fallback
+
+"%JAVA_PATH%" -XX:TieredStopAtLevel=1 ^
+  -classpath "%KLASSPATH%"^
+  -Dhongs.daemon.port="%HDC_PORT%"^
+  -Dhongs.daemon.key="%HDC_KEYF%"^
+  io.github.ihongs.cmdlet.serv.DaemonCmdlet %*
+if not errorlevel 9 goto end
+if errorlevel 10 goto end
+
+:fallback
+call "%CURR_PATH%hdo" %*
+
+:end
+@echo on
@@ -78,6 +78,20 @@ CREATE INDEX `IK_a_matrix_data_ctime` ON `a_matrix_data` (`ctime`);
 CREATE INDEX `IK_a_matrix_data_etime` ON `a_matrix_data` (`etime`);
 CREATE INDEX `IK_a_matrix_data_rtime` ON `a_matrix_data` (`rtime`);
 
+--
+-- 发件箱
+--
+
+DROP TABLE IF EXISTS `a_matrix_outbox`;
+CREATE TABLE `a_matrix_outbox` (
+  `name` VARCHAR(200) NOT NULL, /* 配置.表单 */
+  `ref` CHAR(16) NOT NULL, /* 记录ID */
+  `mtime` BIGINT NOT NULL, /* 写入时间(毫秒) */
+  PRIMARY KEY (`name`,`ref`)
+);
+
+CREATE INDEX `IK_a_matrix_outbox_mtime` ON `a_matrix_outbox` (`mtime`);
+
 --
 -- 预定内置关联资源
 --